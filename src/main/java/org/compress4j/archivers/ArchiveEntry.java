@@ -65,6 +65,9 @@ public interface ArchiveEntry {
      *
      * <p>The destination is expected to be a writable directory.
      *
+     * <p>The mode and modification time of an extracted file are restored immediately. Those of an extracted directory
+     * are restored once the {@link ArchiveStream} is closed, so that entries can still be extracted into it.
+     *
      * @param destination the directory to extract the value to
      * @return the extracted File
      * @throws IOException propagated I/O errors by {@code java.io}
@@ -0,0 +1,730 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * A read-only {@link FileSystem} over the entries of an archive file, created by the {@link ArchiveFileSystemProvider}.
+ * <br>
+ * The archive is indexed when the file system is mounted, afterwards the directory tree is served from memory.
+ * Contents are read lazily, only the entries that are actually opened are decompressed. ZIP, JAR and TAR archives, and
+ * gzip or xz compressed TAR archives through their {@link ArchiveIndex}, are read with random access by a shared
+ * {@link ArchiveReader}. Entries of 7z archives and of archives that can only be streamed are decompressed from the
+ * start of their solid block or of the archive, so their contents are kept in a cache bounded by
+ * {@link ArchiveFileSystemProvider#CACHE_SIZE}. Entries larger than the cache are streamed on every access.
+ */
+final class ArchiveFileSystem extends FileSystem {
+
+    private final ArchiveFileSystemProvider provider;
+    private final Path archive;
+    private final Archiver archiver;
+    private final ArchiveReader reader;
+    private final boolean solid;
+    private final Map<String, Node> nodes;
+    private final ContentCache cache;
+    private final ArchivePath root;
+    private final ArchiveFileStore store;
+    private volatile boolean open = true;
+
+    /**
+     * Mounts the given archive.
+     *
+     * @param provider the provider that created the file system
+     * @param archive the archive file, on the default file system
+     * @param cacheSize the maximum size of decompressed contents cached for archives without random access
+     * @throws IOException if the archive can not be indexed
+     * @throws IllegalArgumentException if the file is not a known archive
+     */
+    ArchiveFileSystem(ArchiveFileSystemProvider provider, Path archive, long cacheSize) throws IOException {
+        this.provider = provider;
+        this.archive = archive;
+        this.archiver = ArchiverFactory.createArchiver(archive.toFile());
+        this.solid = archiver instanceof SevenZArchiver;
+        this.reader = solid ? null : openReader(archiver, archive.toFile());
+        try {
+            List<ArchiveEntry> entries = reader != null ? reader.getEntries() : archiver.list(archive.toFile());
+            this.nodes = index(entries, Files.getLastModifiedTime(archive));
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(reader);
+            throw e;
+        }
+        this.cache = new ContentCache(cacheSize);
+        this.root = new ArchivePath(this, "/");
+        this.store = new ArchiveFileStore();
+    }
+
+    private static ArchiveReader openReader(Archiver archiver, File archive) throws IOException {
+        try {
+            return archiver.reader(archive);
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Node> index(List<ArchiveEntry> entries, FileTime archiveTime) {
+        Map<String, Node> nodes = new HashMap<>();
+        nodes.put("", new Node("", null, -1, archiveTime, new TreeMap<>()));
+
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            ArchiveEntry entry = entries.get(ordinal);
+            String name = DestinationResolver.normalize(entry.getName());
+            if (name != null && name.endsWith("/")) {
+                name = name.substring(0, name.length() - 1);
+            }
+            if (name == null || name.isEmpty()) {
+                // names that escape the archive root can not be addressed by a path
+                continue;
+            }
+
+            Node parent = directory(nodes, parentName(name), archiveTime);
+            Node existing = nodes.get(name);
+            FileTime time = entry.getLastModifiedDate() != null
+                    ? FileTime.fromMillis(entry.getLastModifiedDate().getTime())
+                    : archiveTime;
+            Map<String, Node> children = null;
+            if (entry.isDirectory()) {
+                children = existing != null && existing.children != null ? existing.children : new TreeMap<>();
+            }
+
+            Node node = new Node(name, entry, ordinal, time, children);
+            nodes.put(name, node);
+            parent.children.put(fileName(name), node);
+        }
+
+        return nodes;
+    }
+
+    /** Returns the directory node of the given name, creating it and its parents if the archive has no such entry. */
+    private static Node directory(Map<String, Node> nodes, String name, FileTime archiveTime) {
+        Node node = nodes.get(name);
+        if (node != null && node.children != null) {
+            return node;
+        }
+
+        Node parent = directory(nodes, parentName(name), archiveTime);
+        Node directory = new Node(name, null, -1, archiveTime, new TreeMap<>());
+        nodes.put(name, directory);
+        parent.children.put(fileName(name), directory);
+        return directory;
+    }
+
+    private static String parentName(String name) {
+        int separator = name.lastIndexOf('/');
+        return separator < 0 ? "" : name.substring(0, separator);
+    }
+
+    private static String fileName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    Path getArchive() {
+        return archive;
+    }
+
+    ArchivePath getRootDirectory() {
+        return root;
+    }
+
+    /**
+     * Looks up the node of the given path.
+     *
+     * @param path the path to look up
+     * @return the node, holding the attributes of the file or directory
+     * @throws NoSuchFileException if the archive has no such file or directory
+     */
+    Node getNode(ArchivePath path) throws NoSuchFileException {
+        ensureOpen();
+        Node node = nodes.get(path.getEntryName());
+        if (node == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return node;
+    }
+
+    /**
+     * Opens a stream over the contents of the given file.
+     *
+     * @param path the path of the file
+     * @return a new stream over the contents of the file
+     * @throws IOException if the file does not exist, is a directory or can not be read
+     */
+    InputStream newInputStream(ArchivePath path) throws IOException {
+        Node node = getNode(path);
+        if (node.isDirectory()) {
+            throw new FileSystemException(path.toString(), null, "Is a directory");
+        }
+
+        if (reader != null) {
+            return reader.openStream(node.entry);
+        }
+
+        byte[] cached = cache.get(node.name);
+        if (cached != null) {
+            return new ByteArrayInputStream(cached);
+        }
+
+        InputStream in = openSequential(node);
+        if (node.size() > cache.maxSize) {
+            return in;
+        }
+        try (in) {
+            byte[] content = in.readAllBytes();
+            cache.put(node.name, content);
+            return new ByteArrayInputStream(content);
+        }
+    }
+
+    /** Opens a stream over an entry of an archive that is decompressed sequentially, with resources of its own. */
+    private InputStream openSequential(Node node) throws IOException {
+        if (solid) {
+            ArchiveReader own = archiver.reader(archive.toFile());
+            try {
+                return new FilterInputStream(own.openStream(own.getEntry(node.name))) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            own.close();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                own.close();
+                throw e;
+            }
+        }
+
+        ArchiveStream stream = archiver.stream(archive.toFile());
+        try {
+            for (int ordinal = 0; stream.getNextEntry() != null; ordinal++) {
+                if (ordinal == node.ordinal) {
+                    return stream;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        stream.close();
+        throw new NoSuchFileException(node.name, null, "Entry is no longer in the archive");
+    }
+
+    /**
+     * Opens a read-only channel over the contents of the given file. The channel reads through
+     * {@link #newInputStream(ArchivePath)}, seeking backwards reopens the stream.
+     *
+     * @param path the path of the file
+     * @return a new channel over the contents of the file
+     * @throws IOException if the file does not exist, is a directory or can not be read
+     */
+    SeekableByteChannel newByteChannel(ArchivePath path) throws IOException {
+        return new EntryChannel(path, newInputStream(path), getNode(path).size());
+    }
+
+    /**
+     * Opens a stream over the children of the given directory.
+     *
+     * @param directory the path of the directory
+     * @param filter the filter that selects the children
+     * @return a new directory stream
+     * @throws IOException if the directory does not exist or is not a directory
+     */
+    DirectoryStream<Path> newDirectoryStream(ArchivePath directory, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        Node node = getNode(directory);
+        if (!node.isDirectory()) {
+            throw new NotDirectoryException(directory.toString());
+        }
+
+        List<Path> children = new ArrayList<>(node.children.size());
+        for (String name : node.children.keySet()) {
+            Path child = directory.resolve(name);
+            if (filter == null || filter.accept(child)) {
+                children.add(child);
+            }
+        }
+
+        return new DirectoryStream<>() {
+            private boolean iterated;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated) {
+                    throw new IllegalStateException("Iterator already obtained");
+                }
+                iterated = true;
+                return Collections.unmodifiableList(children).iterator();
+            }
+
+            @Override
+            public void close() {
+                iterated = true;
+            }
+        };
+    }
+
+    FileStore getFileStore() {
+        ensureOpen();
+        return store;
+    }
+
+    /**
+     * Returns a view of the basic attributes of the given path.
+     *
+     * @param path the path of the file or directory
+     * @return an attribute view that reads the attributes when they are requested
+     */
+    BasicFileAttributeView getAttributeView(ArchivePath path) {
+        return new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return getNode(path);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    private void ensureOpen() {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        provider.closed(this);
+        cache.clear();
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        ensureOpen();
+        return List.of(root);
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        ensureOpen();
+        return List.of(store);
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        if (more.length == 0) {
+            return new ArchivePath(this, first);
+        }
+
+        StringBuilder path = new StringBuilder(first);
+        for (String name : more) {
+            if (!name.isEmpty()) {
+                if (path.length() > 0) {
+                    path.append('/');
+                }
+                path.append(name);
+            }
+        }
+        return new ArchivePath(this, path.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected syntax:pattern, was " + syntaxAndPattern);
+        }
+
+        String syntax = syntaxAndPattern.substring(0, colon).toLowerCase(Locale.ROOT);
+        String pattern = syntaxAndPattern.substring(colon + 1);
+        Pattern regex = switch (syntax) {
+            case "glob" -> Glob.compile(pattern);
+            case "regex" -> Pattern.compile(pattern);
+            default -> throw new UnsupportedOperationException("Syntax " + syntax + " is not supported");
+        };
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("Archive file systems have no user principals");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Archive file systems can not be watched");
+    }
+
+    /** A file or directory of the archive, with its basic attributes. */
+    static final class Node implements BasicFileAttributes {
+
+        private final String name;
+        private final ArchiveEntry entry;
+        private final int ordinal;
+        private final FileTime lastModifiedTime;
+        private final Map<String, Node> children;
+
+        /**
+         * Creates a node.
+         *
+         * @param name the normalized entry name
+         * @param entry the archive entry, {@code null} for directories that are only implied by the names of entries
+         * @param ordinal the position of the entry in the archive
+         * @param lastModifiedTime the last modification time
+         * @param children the children by name for directories, {@code null} for files
+         */
+        Node(String name, ArchiveEntry entry, int ordinal, FileTime lastModifiedTime, Map<String, Node> children) {
+            this.name = name;
+            this.entry = entry;
+            this.ordinal = ordinal;
+            this.lastModifiedTime = lastModifiedTime;
+            this.children = children;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return lastModifiedTime;
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastModifiedTime;
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return lastModifiedTime;
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return children == null;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return children != null;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return children == null ? Math.max(entry.getSize(), 0) : 0;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+    }
+
+    /** Decompressed entry contents, evicted least recently used first once their total size exceeds the limit. */
+    private static final class ContentCache {
+
+        private final long maxSize;
+        private final LinkedHashMap<String, byte[]> contents = new LinkedHashMap<>(16, 0.75f, true);
+        private long size;
+
+        ContentCache(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        synchronized byte[] get(String name) {
+            return contents.get(name);
+        }
+
+        synchronized void put(String name, byte[] content) {
+            if (content.length > maxSize) {
+                return;
+            }
+
+            byte[] previous = contents.put(name, content);
+            size += content.length - (previous != null ? previous.length : 0);
+
+            Iterator<byte[]> eldest = contents.values().iterator();
+            while (size > maxSize && eldest.hasNext()) {
+                size -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+
+        synchronized void clear() {
+            contents.clear();
+            size = 0;
+        }
+    }
+
+    /** A read-only channel over the contents of a file, reading through a stream. */
+    private final class EntryChannel implements SeekableByteChannel {
+
+        private final ArchivePath path;
+        private final long size;
+        private InputStream in;
+        private long streamPosition;
+        private long position;
+        private boolean closed;
+
+        EntryChannel(ArchivePath path, InputStream in, long size) {
+            this.path = path;
+            this.in = in;
+            this.size = size;
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            ensureChannelOpen();
+            if (position < streamPosition) {
+                in.close();
+                in = newInputStream(path);
+                streamPosition = 0;
+            }
+            if (position > streamPosition) {
+                streamPosition += skip(position - streamPosition);
+                if (streamPosition < position) {
+                    return -1;
+                }
+            }
+
+            int n;
+            if (dst.hasArray()) {
+                n = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+            } else {
+                byte[] buffer = new byte[Math.min(dst.remaining(), 8192)];
+                n = in.read(buffer);
+                if (n > 0) {
+                    dst.put(buffer, 0, n);
+                }
+            }
+
+            if (n > 0) {
+                position += n;
+                streamPosition += n;
+            }
+            return n;
+        }
+
+        private long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                long s = in.skip(n - skipped);
+                if (s <= 0) {
+                    if (in.read() == -1) {
+                        break;
+                    }
+                    s = 1;
+                }
+                skipped += s;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized long position() throws IOException {
+            ensureChannelOpen();
+            return position;
+        }
+
+        @Override
+        public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+            ensureChannelOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Position must not be negative, was " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureChannelOpen();
+            return size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                in.close();
+            }
+        }
+
+        private void ensureChannelOpen() throws ClosedChannelException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+
+    /** The single, read-only store of an archive file system. */
+    private final class ArchiveFileStore extends FileStore {
+
+        @Override
+        public String name() {
+            return archive.getFileName().toString();
+        }
+
+        @Override
+        public String type() {
+            return "archive";
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
+        @Override
+        public long getTotalSpace() throws IOException {
+            return Files.size(archive);
+        }
+
+        @Override
+        public long getUsableSpace() {
+            return 0;
+        }
+
+        @Override
+        public long getUnallocatedSpace() {
+            return 0;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+            return type == BasicFileAttributeView.class;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(String name) {
+            return "basic".equals(name);
+        }
+
+        @Override
+        public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) {
+            throw new UnsupportedOperationException("Attribute " + attribute + " is not supported");
+        }
+    }
+}
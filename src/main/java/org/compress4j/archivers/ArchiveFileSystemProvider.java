@@ -0,0 +1,349 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only {@link FileSystemProvider} that mounts archive files as file systems, so their contents can be browsed
+ * with {@link java.nio.file.Files#walk(Path, java.nio.file.FileVisitOption...)} and read with
+ * {@link java.nio.file.Files#newInputStream(Path, OpenOption...)} without extracting them. All archive formats
+ * supported by {@link ArchiverFactory} can be mounted. <br>
+ * The archive is indexed when it is mounted, and only the entries that are read are decompressed. ZIP, JAR and TAR
+ * archives, and gzip or xz compressed TAR archives, are read with random access. Entries of other archives are
+ * decompressed sequentially and cached up to {@link #CACHE_SIZE}. <br>
+ * The provider is registered for the {@value #SCHEME} scheme. Archives are mounted with
+ * {@link java.nio.file.FileSystems#newFileSystem(Path)}, or by URI, e.g.
+ * {@code archive:file:///data/archive.tar.gz!/folder/file.txt}, with
+ * {@link java.nio.file.FileSystems#newFileSystem(URI, Map)}.
+ */
+public final class ArchiveFileSystemProvider extends FileSystemProvider {
+
+    /** The URI scheme of archive file systems. */
+    public static final String SCHEME = "archive";
+
+    /**
+     * Environment key of the maximum total size of decompressed contents cached for archives without random access,
+     * as a number of bytes or a string holding one.
+     */
+    public static final String CACHE_SIZE = "cacheSize";
+
+    /** Default maximum total size of cached decompressed contents, 64 MiB. */
+    public static final long DEFAULT_CACHE_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEPARATOR = "!/";
+
+    private final Map<Path, ArchiveFileSystem> fileSystems = new HashMap<>();
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+        Path archive = getArchive(uri).toRealPath();
+        synchronized (fileSystems) {
+            if (fileSystems.containsKey(archive)) {
+                throw new FileSystemAlreadyExistsException(archive.toString());
+            }
+            ArchiveFileSystem fileSystem = new ArchiveFileSystem(this, archive, getCacheSize(env));
+            fileSystems.put(archive, fileSystem);
+            return fileSystem;
+        }
+    }
+
+    /**
+     * {@inheritDoc} <br>
+     * The file system is not registered with the provider, and can not be looked up by URI.
+     *
+     * @throws UnsupportedOperationException if the path is not an archive file on the default file system
+     */
+    @Override
+    public FileSystem newFileSystem(Path path, Map<String, ?> env) throws IOException {
+        if (!IOUtils.isDefaultFileSystem(path) || !FileType.get(path.toFile()).isArchive()) {
+            throw new UnsupportedOperationException("Not an archive file: " + path);
+        }
+        return new ArchiveFileSystem(this, path.toRealPath(), getCacheSize(env));
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        Path archive;
+        try {
+            archive = getArchive(uri).toRealPath();
+        } catch (IOException e) {
+            throw new FileSystemNotFoundException(uri.toString());
+        }
+
+        synchronized (fileSystems) {
+            ArchiveFileSystem fileSystem = fileSystems.get(archive);
+            if (fileSystem == null) {
+                throw new FileSystemNotFoundException(uri.toString());
+            }
+            return fileSystem;
+        }
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        String spec = uri.getSchemeSpecificPart();
+        int separator = spec.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("URI " + uri + " does not contain a path inside the archive");
+        }
+        return getFileSystem(uri).getPath(spec.substring(separator + 1));
+    }
+
+    /** Removes a closed file system from the registered file systems. */
+    void closed(ArchiveFileSystem fileSystem) {
+        synchronized (fileSystems) {
+            fileSystems.remove(fileSystem.getArchive(), fileSystem);
+        }
+    }
+
+    /**
+     * Returns the URI of a path in the file system of the given archive.
+     *
+     * @param archive the archive file
+     * @param path the absolute path inside the archive
+     * @return the URI of the path
+     */
+    static URI toUri(Path archive, String path) {
+        try {
+            return new URI(SCHEME, "file://" + archive.toUri().getPath() + "!" + path, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private Path getArchive(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("URI scheme is not " + SCHEME + ": " + uri);
+        }
+
+        String spec = uri.getSchemeSpecificPart();
+        int separator = spec.indexOf(SEPARATOR);
+        if (separator >= 0) {
+            spec = spec.substring(0, separator);
+        }
+        if (!spec.startsWith("file:")) {
+            throw new IllegalArgumentException("Only archives on the default file system can be mounted: " + uri);
+        }
+
+        String path = spec.substring("file:".length());
+        if (path.startsWith("//")) {
+            path = path.substring(2);
+        }
+        try {
+            return Path.of(new URI("file", null, path, null));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid archive URI " + uri, e);
+        }
+    }
+
+    private static long getCacheSize(Map<String, ?> env) {
+        Object value = env.get(CACHE_SIZE);
+        if (value == null) {
+            return DEFAULT_CACHE_SIZE;
+        }
+
+        long cacheSize = value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative, was " + cacheSize);
+        }
+        return cacheSize;
+    }
+
+    private static ArchivePath toArchivePath(Path path) {
+        if (path instanceof ArchivePath archivePath) {
+            return archivePath;
+        }
+        throw new ProviderMismatchException();
+    }
+
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        for (OpenOption option : options) {
+            if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND) {
+                throw new UnsupportedOperationException("'" + option + "' not allowed");
+            }
+        }
+        return toArchivePath(path).getFileSystem().newInputStream(toArchivePath(path));
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+            throws IOException {
+        for (OpenOption option : options) {
+            if (option != StandardOpenOption.READ && option != LinkOption.NOFOLLOW_LINKS) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+        return toArchivePath(path).getFileSystem().newByteChannel(toArchivePath(path));
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        return toArchivePath(dir).getFileSystem().newDirectoryStream(toArchivePath(dir), filter);
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) {
+            return true;
+        }
+        if (!(path2 instanceof ArchivePath) || path.getFileSystem() != path2.getFileSystem()) {
+            return false;
+        }
+        return path.toRealPath().equals(path2.toRealPath());
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        return false;
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        return toArchivePath(path).getFileSystem().getFileStore();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        ArchivePath archivePath = toArchivePath(path);
+        archivePath.getFileSystem().getNode(archivePath);
+        for (AccessMode mode : modes) {
+            if (mode == AccessMode.WRITE) {
+                throw new AccessDeniedException(path.toString(), null, "Archive file systems are read-only");
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        ArchivePath archivePath = toArchivePath(path);
+        if (type == BasicFileAttributeView.class) {
+            return (V) archivePath.getFileSystem().getAttributeView(archivePath);
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+            throws IOException {
+        ArchivePath archivePath = toArchivePath(path);
+        if (type == BasicFileAttributes.class) {
+            return (A) archivePath.getFileSystem().getNode(archivePath);
+        }
+        throw new UnsupportedOperationException("Attributes of type " + type.getName() + " are not supported");
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options)
+            throws IOException {
+        String names = attributes;
+        int colon = attributes.indexOf(':');
+        if (colon >= 0) {
+            if (!"basic".equals(attributes.substring(0, colon))) {
+                throw new UnsupportedOperationException("View " + attributes.substring(0, colon) + " is not supported");
+            }
+            names = attributes.substring(colon + 1);
+        }
+
+        BasicFileAttributes node = readAttributes(path, BasicFileAttributes.class, options);
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put("lastModifiedTime", node.lastModifiedTime());
+        all.put("lastAccessTime", node.lastAccessTime());
+        all.put("creationTime", node.creationTime());
+        all.put("size", node.size());
+        all.put("isRegularFile", node.isRegularFile());
+        all.put("isDirectory", node.isDirectory());
+        all.put("isSymbolicLink", node.isSymbolicLink());
+        all.put("isOther", node.isOther());
+        all.put("fileKey", node.fileKey());
+
+        if ("*".equals(names)) {
+            return all;
+        }
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String name : names.split(",")) {
+            if ("*".equals(name)) {
+                selected.putAll(all);
+            } else if (all.containsKey(name)) {
+                selected.put(name, all.get(name));
+            } else {
+                throw new IllegalArgumentException("Attribute " + name + " is not supported");
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+}
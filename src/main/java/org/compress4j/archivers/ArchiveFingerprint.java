@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Identifies the contents of an archive file without reading all of it. The fingerprint is a SHA-256 digest of the
+ * size and modification time of the file, together with the central directory of ZIP and JAR archives, which records
+ * the names, sizes and CRCs of all entries, or the first and last {@value #BLOCK_SIZE} bytes of other archives.
+ */
+final class ArchiveFingerprint {
+
+    /** The number of bytes read from the start and the end of archives without central directory. */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private ArchiveFingerprint() {}
+
+    /**
+     * Computes the fingerprint of the given archive file.
+     *
+     * @param archive the archive file
+     * @return the fingerprint as 64 hex digits
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     */
+    static String of(File archive) throws IOException {
+        MessageDigest digest = IOUtils.sha256();
+        try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(2 * Long.BYTES)
+                    .putLong(size)
+                    .putLong(Files.getLastModifiedTime(archive.toPath()).toMillis())
+                    .flip());
+
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+            long[] centralDirectory = isZip(archive) ? findCentralDirectory(channel, size) : null;
+            if (centralDirectory != null) {
+                update(digest, channel, buffer, centralDirectory[0], centralDirectory[1]);
+            } else {
+                update(digest, channel, buffer, 0, Math.min(size, BLOCK_SIZE));
+                long tail = Math.max(BLOCK_SIZE, size - BLOCK_SIZE);
+                update(digest, channel, buffer, tail, size - Math.min(tail, size));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static boolean isZip(File archive) {
+        ArchiveFormat format = FileType.get(archive).getArchiveFormat();
+        return format == ArchiveFormat.ZIP || format == ArchiveFormat.JAR;
+    }
+
+    /**
+     * Locates the central directory from the end of central directory record, which ends the archive, followed by a
+     * comment of up to 64 KiB.
+     *
+     * @return the offset and the size of the central directory together with the end record, or {@code null} if the
+     *     archive has no plausible end record or is a ZIP64 archive
+     */
+    private static long[] findCentralDirectory(FileChannel channel, long size) throws IOException {
+        int length = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(channel, size - length, length).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = length - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) != EOCD_SIGNATURE) {
+                continue;
+            }
+            long cdSize = tail.getInt(i + 12) & 0xFFFFFFFFL;
+            long cdOffset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+            long eocdOffset = size - length + i;
+            if (cdOffset + cdSize == eocdOffset) {
+                return new long[] {cdOffset, size - cdOffset};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Feeds the given range of the file to the digest in blocks of the size of the given buffer, so that large central
+     * directories are not held in memory at once.
+     */
+    private static void update(MessageDigest digest, FileChannel channel, ByteBuffer buffer, long position, long length)
+            throws IOException {
+        long end = position + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                break;
+            }
+            digest.update(buffer.flip());
+            position += n;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,718 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+/**
+ * An index of a gzip or xz compressed tar archive, which allows reading any entry without decompressing the archive
+ * up to the entry. <br>
+ * The index records the headers of all entries together with the uncompressed offset of their contents. For gzip
+ * compressed archives it additionally records decompressor checkpoints, one per checkpoint interval of uncompressed
+ * data, so opening an entry costs one seek plus decompressing at most one interval. XZ compressed archives are
+ * located through the block index every xz file ends with, their granularity is the block size the archive was
+ * compressed with. An xz archive compressed into a single block has to be decompressed from its start. <br>
+ * Building an index decompresses the whole archive once. Seekable archives, created with
+ * {@link CreateOptions.Builder#setSeekable(boolean)}, embed their index as a table of contents. Other archives can have
+ * their index written to a sidecar file next to the archive, see {@link #sidecarFor(File)}, which
+ * {@link Archiver#reader(File)} uses as long as it is up to date:
+ *
+ * <pre>
+ * ArchiveIndex.build(archive).write(ArchiveIndex.sidecarFor(archive));
+ * </pre>
+ */
+public final class ArchiveIndex {
+
+    /** Default amount of uncompressed data between two checkpoints, 1 MiB. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1024 * 1024;
+
+    /** File extension of index sidecar files. */
+    public static final String SIDECAR_EXTENSION = ".idx";
+
+    private static final byte[] MAGIC = {'C', '4', 'J', 'I'};
+    private static final int VERSION = 1;
+    private static final int MAX_DIGEST_LENGTH = 64;
+
+    private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+    private static final byte[] XZ_MAGIC = {(byte) 0xFD, '7', 'z', 'X', 'Z', 0};
+
+    private final CompressionType compressionType;
+    private final long archiveLength;
+    private final long archiveLastModified;
+    private final int checkpointInterval;
+    private final List<GzipInflater.Checkpoint> checkpoints;
+    private final List<TarArchiveEntry> entries;
+    private final Set<TarArchiveEntry> sparseEntries;
+    private final Map<TarArchiveEntry, byte[]> digests;
+
+    private ArchiveIndex(
+            CompressionType compressionType,
+            long archiveLength,
+            long archiveLastModified,
+            int checkpointInterval,
+            List<GzipInflater.Checkpoint> checkpoints,
+            List<TarArchiveEntry> entries,
+            Set<TarArchiveEntry> sparseEntries,
+            Map<TarArchiveEntry, byte[]> digests) {
+        this.compressionType = compressionType;
+        this.archiveLength = archiveLength;
+        this.archiveLastModified = archiveLastModified;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpoints = checkpoints;
+        this.entries = entries;
+        this.sparseEntries = sparseEntries;
+        this.digests = digests;
+    }
+
+    /**
+     * Builds the index of the given archive with the {@link #DEFAULT_CHECKPOINT_INTERVAL default checkpoint interval}.
+     *
+     * @param archive a gzip or xz compressed tar archive
+     * @return the index of the archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws IllegalArgumentException if the archive is neither gzip nor xz compressed
+     */
+    public static ArchiveIndex build(File archive) throws IOException {
+        return build(archive, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Builds the index of the given archive. Every checkpoint holds up to 32 KiB of decompressor state, smaller
+     * intervals make opening entries cheaper at the expense of a larger index.
+     *
+     * @param archive a gzip or xz compressed tar archive
+     * @param checkpointInterval the amount of uncompressed data between two checkpoints of gzip archives
+     * @return the index of the archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws IllegalArgumentException if the archive is neither gzip nor xz compressed, or the interval is not
+     *     positive
+     */
+    public static ArchiveIndex build(File archive, int checkpointInterval) throws IOException {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1, was " + checkpointInterval);
+        }
+
+        CompressionType compressionType = detectCompressionType(archive);
+        long length = archive.length();
+        long lastModified = archive.lastModified();
+        List<GzipInflater.Checkpoint> checkpoints = new ArrayList<>();
+        List<TarArchiveEntry> entries = new ArrayList<>();
+        Set<TarArchiveEntry> sparseEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        if (compressionType == CompressionType.GZIP) {
+            try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+                GzipInflater inflater = new GzipInflater(channel);
+                inflater.setCheckpointListener((in, memberStart) -> {
+                    if (checkpoints.isEmpty()
+                            || in.getPosition() - checkpoints.get(checkpoints.size() - 1).uncompressedOffset()
+                                    >= checkpointInterval) {
+                        checkpoints.add(in.checkpoint(memberStart));
+                    }
+                });
+                scan(inflater, entries, sparseEntries);
+            }
+        } else {
+            MemoryBudget.Reservation reservation = reserveXz(archive);
+            try (InputStream in = new SeekableXZInputStream(new SeekableFileInputStream(archive), xzMemoryLimit())) {
+                scan(in, entries, sparseEntries);
+            } finally {
+                reservation.close();
+            }
+        }
+
+        return new ArchiveIndex(
+                compressionType,
+                length,
+                lastModified,
+                checkpointInterval,
+                checkpoints,
+                entries,
+                sparseEntries,
+                Collections.emptyMap());
+    }
+
+    /**
+     * Reads an index that was written with {@link #write(File)}.
+     *
+     * @param index the index file
+     * @return the index
+     * @throws IOException if the file is not a valid index, or propagated I/O errors by {@code java.io}
+     */
+    public static ArchiveIndex read(File index) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(index))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Returns the sidecar file of the given archive, which {@link Archiver#reader(File)} looks up. The sidecar file
+     * is located next to the archive, its name is the archive name followed by {@value #SIDECAR_EXTENSION}.
+     *
+     * @param archive the archive file
+     * @return the sidecar file of the archive
+     */
+    public static File sidecarFor(File archive) {
+        return new File(archive.getPath() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Writes this index to the given file. The index is written to a temporary file first, so concurrent readers
+     * never see a partially written index.
+     *
+     * @param index the index file
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    public void write(File index) throws IOException {
+        Path target = index.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), index.getName(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                write(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Checks whether this index was built for the given archive in its current state, by comparing the length and
+     * last modification time of the archive.
+     *
+     * @param archive the archive file
+     * @return true if the index is up to date with the archive
+     */
+    public boolean isFor(File archive) {
+        return archive.length() == archiveLength && archive.lastModified() == archiveLastModified;
+    }
+
+    /**
+     * Returns the compression of the indexed archive.
+     *
+     * @return the compression type, either gzip or xz
+     */
+    public CompressionType getCompressionType() {
+        return compressionType;
+    }
+
+    /**
+     * Returns the amount of uncompressed data between two checkpoints of gzip archives.
+     *
+     * @return the checkpoint interval in bytes
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Returns the number of decompressor checkpoints. XZ archives need no checkpoints.
+     *
+     * @return the number of checkpoints
+     */
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    /**
+     * Returns the number of indexed tar entries.
+     *
+     * @return the number of entries
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Loads the index of the given archive from its sidecar file or its embedded table of contents, or builds it if
+     * there is neither an up to date sidecar nor a table of contents. The built index is not written.
+     *
+     * @param archive a gzip or xz compressed tar archive
+     * @return the index of the archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static ArchiveIndex load(File archive) throws IOException {
+        ArchiveIndex index = find(archive);
+        return index != null ? index : build(archive);
+    }
+
+    /**
+     * Loads the index of the given archive from its sidecar file or its embedded table of contents, without building
+     * it.
+     *
+     * @param archive a gzip or xz compressed tar archive
+     * @return the index of the archive, or {@code null} if there is neither an up to date sidecar nor a table of
+     *     contents
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static ArchiveIndex find(File archive) throws IOException {
+        File sidecar = sidecarFor(archive);
+        if (sidecar.isFile()) {
+            try {
+                ArchiveIndex index = read(sidecar);
+                if (index.isFor(archive)) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // an unreadable sidecar is treated like a missing one
+            }
+        }
+
+        return readTableOfContents(archive);
+    }
+
+    /**
+     * Creates the index of a gzip archive that is being written as a sequence of independent members, such as the
+     * table of contents of a {@link SeekableTarGzOutputStream}.
+     *
+     * @param members the checkpoints of the member starts
+     * @param chunkSize the maximum amount of uncompressed data in a member
+     * @param entries the indexed entries, see {@link #indexEntry(TarArchiveEntry, long)}
+     * @param digests the SHA-256 digests of the contents of the entries
+     * @return the index
+     */
+    static ArchiveIndex ofMembers(
+            List<GzipInflater.Checkpoint> members,
+            int chunkSize,
+            List<TarArchiveEntry> entries,
+            Map<TarArchiveEntry, byte[]> digests) {
+        return new ArchiveIndex(
+                CompressionType.GZIP,
+                0,
+                0,
+                chunkSize,
+                members,
+                entries,
+                Collections.newSetFromMap(new IdentityHashMap<>()),
+                digests);
+    }
+
+    /**
+     * Reads an index in the format written by {@link #write(OutputStream)}. The stream is not closed.
+     *
+     * @param source the stream to read from
+     * @return the index
+     * @throws IOException if the stream does not contain a valid index, or propagated I/O errors by {@code java.io}
+     */
+    static ArchiveIndex read(InputStream source) throws IOException {
+        if (!Arrays.equals(source.readNBytes(MAGIC.length), MAGIC)) {
+            throw new IOException("Not an archive index");
+        }
+        int version = source.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive index version " + version);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            return readBody(new DataInputStream(new InflaterInputStream(source, inflater)));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Writes this index in a compact binary format, a short header followed by the deflated index. The stream is not
+     * closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    void write(OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+
+        Deflater deflater = new Deflater();
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater);
+            DataOutputStream data = new DataOutputStream(deflated);
+            writeBody(data);
+            data.flush();
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Creates the indexed copy of a tar entry, holding the attributes of the entry and the offset of its contents.
+     *
+     * @param entry the tar entry
+     * @param dataOffset the offset of the contents of the entry in the uncompressed archive
+     * @return the indexed entry
+     */
+    static TarArchiveEntry indexEntry(TarArchiveEntry entry, long dataOffset) {
+        return createEntry(
+                entry.getName(),
+                entry.getLinkFlag(),
+                entry.getLinkName(),
+                entry.getMode(),
+                entry.getLongUserId(),
+                entry.getLongGroupId(),
+                entry.getLastModifiedTime().toMillis(),
+                entry.getSize(),
+                dataOffset);
+    }
+
+    /**
+     * Checks whether archives compressed with the given compression can be indexed.
+     *
+     * @param compressionType the compression type
+     * @return true for gzip, BGZF and xz
+     */
+    static boolean isIndexable(CompressionType compressionType) {
+        return compressionType.getDecompressionType() == CompressionType.GZIP || compressionType == CompressionType.XZ;
+    }
+
+    List<TarArchiveEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Checks whether the given entry is sparse. The contents of sparse entries are not contiguous in the uncompressed
+     * archive, so they can not be read with {@link #openAt(File, FileChannel, long)}.
+     *
+     * @param entry an entry of this index
+     * @return true if the entry is sparse
+     */
+    boolean isSparse(TarArchiveEntry entry) {
+        return sparseEntries.contains(entry);
+    }
+
+    /**
+     * Returns the SHA-256 digest of the contents of the given entry. Digests are only recorded by
+     * {@link SeekableTarGzOutputStream}.
+     *
+     * @param entry an entry of this index
+     * @return the digest, or {@code null} if none was recorded
+     */
+    byte[] getDigest(TarArchiveEntry entry) {
+        return digests.get(entry);
+    }
+
+    /**
+     * Opens a stream over the uncompressed archive, positioned at the given offset.
+     *
+     * @param archive the archive file
+     * @param channel a channel of the archive file, used for gzip archives
+     * @param offset the uncompressed offset
+     * @return a new stream positioned at the offset
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    InputStream openAt(File archive, FileChannel channel, long offset) throws IOException {
+        if (compressionType == CompressionType.GZIP) {
+            GzipInflater.Checkpoint checkpoint = checkpointBefore(offset);
+            GzipInflater in = new GzipInflater(channel, checkpoint);
+            in.skipNBytes(offset - checkpoint.uncompressedOffset());
+            return in;
+        }
+
+        MemoryBudget.Reservation reservation = reserveXz(archive);
+        SeekableXZInputStream in = null;
+        try {
+            in = new SeekableXZInputStream(new SeekableFileInputStream(archive), xzMemoryLimit());
+            in.seek(offset);
+            return MemoryBudget.releaseOnClose(in, reservation);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(in);
+            reservation.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reserves the footprint of the xz decoder of the given archive from the global {@link MemoryBudget}, as estimated
+     * from the header of its first block.
+     */
+    private static MemoryBudget.Reservation reserveXz(File archive) throws IOException {
+        MemoryBudget budget = MemoryBudget.getGlobal();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(archive), DecoderMemory.HEADER_READ_LIMIT)) {
+            return budget.reserveDecoder(
+                    DecoderMemory.estimate(CompressorStreamFactory.XZ, in, budget.getMaxStreamMemory()),
+                    CancellationToken.NONE);
+        }
+    }
+
+    /** Returns the memory limit of xz decoders in KiB, the maximum stream memory of the global budget. */
+    private static int xzMemoryLimit() {
+        return MemoryBudget.getGlobal().getMaxStreamMemoryInKb();
+    }
+
+    private GzipInflater.Checkpoint checkpointBefore(long offset) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (checkpoints.get(middle).uncompressedOffset() <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return checkpoints.get(low);
+    }
+
+    private static CompressionType detectCompressionType(File archive) throws IOException {
+        byte[] magic;
+        try (InputStream in = new FileInputStream(archive)) {
+            magic = in.readNBytes(XZ_MAGIC.length);
+        }
+
+        if (startsWith(magic, GZIP_MAGIC)) {
+            return CompressionType.GZIP;
+        } else if (startsWith(magic, XZ_MAGIC)) {
+            return CompressionType.XZ;
+        }
+        throw new IllegalArgumentException("Only gzip and xz compressed archives can be indexed: " + archive);
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        return bytes.length >= prefix.length && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static void scan(InputStream decompressed, List<TarArchiveEntry> entries, Set<TarArchiveEntry> sparse)
+            throws IOException {
+        CountingInputStream counting = new CountingInputStream(decompressed);
+        TarArchiveInputStream tar = new TarArchiveInputStream(counting);
+
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextEntry()) != null) {
+            TarArchiveEntry copy = indexEntry(entry, counting.count);
+            entries.add(copy);
+            if (entry.isSparse()) {
+                sparse.add(copy);
+            }
+        }
+    }
+
+    private static TarArchiveEntry createEntry(
+            String name,
+            byte linkFlag,
+            String linkName,
+            int mode,
+            long userId,
+            long groupId,
+            long lastModified,
+            long size,
+            long dataOffset) {
+        TarArchiveEntry entry = new TarArchiveEntry(name, linkFlag, true);
+        entry.setLinkName(linkName);
+        entry.setMode(mode);
+        entry.setUserId(userId);
+        entry.setGroupId(groupId);
+        entry.setLastModifiedTime(FileTime.fromMillis(lastModified));
+        entry.setSize(size);
+        entry.setDataOffset(dataOffset);
+        return entry;
+    }
+
+    private void writeBody(DataOutput out) throws IOException {
+        out.writeUTF(compressionType.name());
+        out.writeLong(archiveLength);
+        out.writeLong(archiveLastModified);
+        out.writeInt(checkpointInterval);
+
+        out.writeInt(checkpoints.size());
+        for (GzipInflater.Checkpoint checkpoint : checkpoints) {
+            out.writeLong(checkpoint.bitPosition());
+            out.writeLong(checkpoint.uncompressedOffset());
+            out.writeBoolean(checkpoint.memberStart());
+            out.writeInt(checkpoint.window().length);
+            out.write(checkpoint.window());
+        }
+
+        out.writeInt(entries.size());
+        for (TarArchiveEntry entry : entries) {
+            writeString(out, entry.getName());
+            out.writeByte(entry.getLinkFlag());
+            writeString(out, entry.getLinkName());
+            out.writeInt(entry.getMode());
+            out.writeLong(entry.getLongUserId());
+            out.writeLong(entry.getLongGroupId());
+            out.writeLong(entry.getLastModifiedTime().toMillis());
+            out.writeLong(entry.getSize());
+            out.writeLong(entry.getDataOffset());
+            out.writeBoolean(sparseEntries.contains(entry));
+            byte[] digest = digests.get(entry);
+            out.writeInt(digest != null ? digest.length : 0);
+            if (digest != null) {
+                out.write(digest);
+            }
+        }
+    }
+
+    private static ArchiveIndex readBody(DataInput in) throws IOException {
+        CompressionType compressionType;
+        try {
+            compressionType = CompressionType.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt archive index", e);
+        }
+        long archiveLength = in.readLong();
+        long archiveLastModified = in.readLong();
+        int checkpointInterval = in.readInt();
+
+        int checkpointCount = in.readInt();
+        List<GzipInflater.Checkpoint> checkpoints = new ArrayList<>(checkpointCount);
+        for (int i = 0; i < checkpointCount; i++) {
+            long bitPosition = in.readLong();
+            long uncompressedOffset = in.readLong();
+            boolean memberStart = in.readBoolean();
+            byte[] window = readBytes(in, GzipInflater.WINDOW_SIZE);
+            checkpoints.add(new GzipInflater.Checkpoint(bitPosition, uncompressedOffset, memberStart, window));
+        }
+
+        int entryCount = in.readInt();
+        List<TarArchiveEntry> entries = new ArrayList<>(entryCount);
+        Set<TarArchiveEntry> sparseEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<TarArchiveEntry, byte[]> digests = new IdentityHashMap<>();
+        for (int i = 0; i < entryCount; i++) {
+            TarArchiveEntry entry = createEntry(
+                    readString(in),
+                    in.readByte(),
+                    readString(in),
+                    in.readInt(),
+                    in.readLong(),
+                    in.readLong(),
+                    in.readLong(),
+                    in.readLong(),
+                    in.readLong());
+            entries.add(entry);
+            if (in.readBoolean()) {
+                sparseEntries.add(entry);
+            }
+            byte[] digest = readBytes(in, MAX_DIGEST_LENGTH);
+            if (digest.length > 0) {
+                digests.put(entry, digest);
+            }
+        }
+
+        return new ArchiveIndex(
+                compressionType,
+                archiveLength,
+                archiveLastModified,
+                checkpointInterval,
+                checkpoints,
+                entries,
+                sparseEntries,
+                digests);
+    }
+
+    private static ArchiveIndex readTableOfContents(File archive) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            long offset = SeekableTarGzOutputStream.readFooter(channel);
+            if (offset < 0) {
+                return null;
+            }
+
+            GzipInflater.Checkpoint start = new GzipInflater.Checkpoint(offset * 8, 0, true, new byte[0]);
+            TarArchiveInputStream tar = new TarArchiveInputStream(new GzipInflater(channel, start));
+            TarArchiveEntry entry = tar.getNextEntry();
+            if (entry == null || !SeekableTarGzOutputStream.TOC_NAME.equals(entry.getName())) {
+                throw new IOException("Corrupt table of contents in " + archive);
+            }
+            return read(tar);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in, Integer.MAX_VALUE), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInput in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Corrupt archive index");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /** Counts the bytes read or skipped, to locate the contents of tar entries in the uncompressed archive. */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
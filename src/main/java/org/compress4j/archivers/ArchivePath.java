@@ -0,0 +1,311 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * A path inside an {@link ArchiveFileSystem}. Names are separated by {@code /}, the root of the file system is the
+ * root directory of the archive. Paths are purely lexical, they are only looked up in the archive when they are
+ * accessed through the {@link ArchiveFileSystemProvider}.
+ */
+final class ArchivePath implements Path {
+
+    private static final String SEPARATOR = "/";
+
+    private final ArchiveFileSystem fileSystem;
+    private final String path;
+    private String[] names;
+
+    ArchivePath(ArchiveFileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.path = clean(path);
+    }
+
+    /** Removes duplicate and trailing separators. */
+    private static String clean(String path) {
+        if (path.indexOf('\u0000') >= 0) {
+            throw new InvalidPathException(path, "Nul character not allowed");
+        }
+
+        StringBuilder cleaned = new StringBuilder(path.length());
+        char previous = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c != '/' || previous != '/') {
+                cleaned.append(c);
+            }
+            previous = c;
+        }
+        if (cleaned.length() > 1 && cleaned.charAt(cleaned.length() - 1) == '/') {
+            cleaned.setLength(cleaned.length() - 1);
+        }
+        return cleaned.toString();
+    }
+
+    private String[] names() {
+        if (names == null) {
+            if (SEPARATOR.equals(path)) {
+                names = new String[0];
+            } else {
+                names = (isAbsolute() ? path.substring(1) : path).split(SEPARATOR);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the name of the archive entry this path refers to: the normalized absolute path without its leading
+     * separator, or an empty string for the root directory.
+     *
+     * @return the entry name
+     */
+    String getEntryName() {
+        return toAbsolutePath().normalize().path.substring(1);
+    }
+
+    @Override
+    public ArchiveFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return path.startsWith(SEPARATOR);
+    }
+
+    @Override
+    public Path getRoot() {
+        return isAbsolute() ? fileSystem.getRootDirectory() : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        String[] names = names();
+        if (names.length == 0) {
+            return null;
+        }
+        if (names.length == 1 && !isAbsolute()) {
+            return this;
+        }
+        return new ArchivePath(fileSystem, names[names.length - 1]);
+    }
+
+    @Override
+    public Path getParent() {
+        String[] names = names();
+        if (names.length == 0 || (names.length == 1 && !isAbsolute())) {
+            return null;
+        }
+        int separator = path.lastIndexOf('/');
+        return separator == 0 ? getRoot() : new ArchivePath(fileSystem, path.substring(0, separator));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names().length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        String[] names = names();
+        if (index < 0 || index >= names.length) {
+            throw new IllegalArgumentException("Name index out of range: " + index);
+        }
+        return new ArchivePath(fileSystem, names[index]);
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        String[] names = names();
+        if (beginIndex < 0 || beginIndex >= names.length || endIndex <= beginIndex || endIndex > names.length) {
+            throw new IllegalArgumentException("Invalid subpath range: " + beginIndex + ", " + endIndex);
+        }
+        return new ArchivePath(fileSystem, String.join(SEPARATOR, Arrays.copyOfRange(names, beginIndex, endIndex)));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        ArchivePath o = checkPath(other);
+        if (o.isAbsolute() != isAbsolute() || o.path.isEmpty() != path.isEmpty()) {
+            return false;
+        }
+        String[] names = names();
+        String[] prefix = o.names();
+        if (prefix.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (!prefix[i].equals(names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        ArchivePath o = checkPath(other);
+        if (o.isAbsolute()) {
+            return equals(o);
+        }
+        if (o.path.isEmpty()) {
+            return path.isEmpty();
+        }
+        String[] names = names();
+        String[] suffix = o.names();
+        if (suffix.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            if (!suffix[i].equals(names[names.length - suffix.length + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ArchivePath normalize() {
+        Deque<String> normalized = new ArrayDeque<>();
+        for (String name : names()) {
+            if (".".equals(name) || name.isEmpty()) {
+                continue;
+            }
+            if ("..".equals(name)) {
+                if (!normalized.isEmpty() && !"..".equals(normalized.peekLast())) {
+                    normalized.removeLast();
+                    continue;
+                } else if (isAbsolute()) {
+                    // the parent of the root is the root itself
+                    continue;
+                }
+            }
+            normalized.addLast(name);
+        }
+
+        String joined = String.join(SEPARATOR, normalized);
+        return new ArchivePath(fileSystem, isAbsolute() ? SEPARATOR + joined : joined);
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        ArchivePath o = checkPath(other);
+        if (o.isAbsolute()) {
+            return o;
+        }
+        if (o.path.isEmpty()) {
+            return this;
+        }
+        if (path.isEmpty()) {
+            return o;
+        }
+        return new ArchivePath(fileSystem, path + SEPARATOR + o.path);
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        ArchivePath o = checkPath(other);
+        if (o.isAbsolute() != isAbsolute()) {
+            throw new IllegalArgumentException("'other' is different type of Path");
+        }
+        if (path.isEmpty()) {
+            return o;
+        }
+
+        String[] names = names();
+        String[] target = o.path.isEmpty() ? new String[0] : o.names();
+        int common = 0;
+        while (common < names.length && common < target.length && names[common].equals(target[common])) {
+            common++;
+        }
+
+        StringBuilder relative = new StringBuilder();
+        for (int i = common; i < names.length; i++) {
+            relative.append(relative.length() == 0 ? ".." : "/..");
+        }
+        for (int i = common; i < target.length; i++) {
+            if (relative.length() > 0) {
+                relative.append('/');
+            }
+            relative.append(target[i]);
+        }
+        return new ArchivePath(fileSystem, relative.toString());
+    }
+
+    @Override
+    public URI toUri() {
+        return ArchiveFileSystemProvider.toUri(fileSystem.getArchive(), toAbsolutePath().path);
+    }
+
+    @Override
+    public ArchivePath toAbsolutePath() {
+        if (isAbsolute()) {
+            return this;
+        }
+        return new ArchivePath(fileSystem, SEPARATOR + path);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        ArchivePath real = toAbsolutePath().normalize();
+        fileSystem.getNode(real);
+        return real;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Archive file systems can not be watched");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(((ArchivePath) other).path);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ArchivePath other && fileSystem == other.fileSystem && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private ArchivePath checkPath(Path other) {
+        if (other instanceof ArchivePath archivePath && archivePath.fileSystem == fileSystem) {
+            return archivePath;
+        }
+        throw new ProviderMismatchException();
+    }
+}
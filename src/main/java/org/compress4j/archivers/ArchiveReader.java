@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Random access to the entries of an archive file. In contrast to an {@link ArchiveStream}, entries can be looked up
+ * by name and read in any order, without scanning the archive from its start. <br>
+ * Streams of different entries can be read concurrently for ZIP and TAR archives. Streams of 7z archives share the
+ * decoder state of the archive and have to be read one at a time.
+ *
+ * @see Archiver#reader(java.io.File)
+ */
+public interface ArchiveReader extends Closeable {
+
+    /**
+     * Returns all entries of the archive, in the order they are stored in the archive.
+     *
+     * @return an unmodifiable list of the entries
+     */
+    List<ArchiveEntry> getEntries();
+
+    /**
+     * Returns the entry with the given name. Names are matched without a trailing slash, so the directory entry
+     * {@code folder/} is found by the name {@code folder}. If an archive contains several entries with the same name,
+     * the last one is returned.
+     *
+     * @param name the name of the entry
+     * @return the entry, or {@code null} if the archive contains no entry with that name
+     */
+    ArchiveEntry getEntry(String name);
+
+    /**
+     * Opens a stream over the contents of the given entry.
+     *
+     * @param entry an entry of this reader
+     * @return a new stream over the contents of the entry
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws IllegalArgumentException if the entry does not belong to this reader
+     * @throws IllegalStateException if the reader has already been closed
+     */
+    InputStream openStream(ArchiveEntry entry) throws IOException;
+}
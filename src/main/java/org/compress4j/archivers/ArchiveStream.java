@@ -16,19 +16,29 @@
 package org.compress4j.archivers;
 
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * An input stream of an archive. Can be used to retrieve each individual {@link ArchiveEntry}. <br>
  * The {@link #getNextEntry()} method is used to reset the input stream ready for reading the data from the next entry.
+ * <br>
+ * Implementations delegate {@link #skip(long)}, {@link #available()} and the {@code transferTo} methods to the most
+ * efficient primitive of the underlying archive reader, e.g. skipping within an uncompressed entry of a file is a seek.
  */
-public abstract class ArchiveStream extends InputStream implements Closeable {
+public abstract class ArchiveStream extends InputStream implements Closeable, ChannelTransferable {
 
     private ArchiveEntry currentEntry;
 
     private boolean closed;
 
+    private EntryExtractor entryExtractor;
+
     /**
      * Returns the {@link ArchiveEntry} the stream currently points to.
      *
@@ -49,6 +59,59 @@ public abstract class ArchiveStream extends InputStream implements Closeable {
         return currentEntry;
     }
 
+    /**
+     * Transfers the remaining data of the current entry into the given stream. If the stream writes to a file, the
+     * data is transferred through its {@link java.nio.channels.FileChannel}.
+     *
+     * @param out the stream to write to
+     * @return the number of bytes transferred
+     * @throws IOException if an I/O error occurs when reading or writing
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        if (out instanceof FileOutputStream fileOutputStream) {
+            return transferTo(fileOutputStream.getChannel());
+        }
+        return super.transferTo(out);
+    }
+
+    /**
+     * Transfers the remaining data of the current entry into the given channel. Implementations that read uncompressed
+     * entries from a file transfer them without copying through heap buffers.
+     *
+     * @param target the channel to write to
+     * @return the number of bytes transferred
+     * @throws IOException if an I/O error occurs when reading or writing
+     */
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return super.transferTo(Channels.newOutputStream(target));
+    }
+
+    /**
+     * Returns an {@link EntryExtractor} for extracting entries of this stream into the given destination. The extractor
+     * is reused as long as entries are extracted into the same destination. Attributes of extracted directories are
+     * applied when the destination changes or the stream is closed.
+     *
+     * @param destination the destination directory
+     * @return an extractor for the destination
+     * @throws IOException if the destination can not be canonicalized
+     */
+    EntryExtractor getEntryExtractor(File destination) throws IOException {
+        if (entryExtractor == null || !entryExtractor.getResolver().isFor(destination)) {
+            finishEntryExtractor();
+            entryExtractor = new EntryExtractor(destination, ExtractOptions.DEFAULT);
+        }
+        return entryExtractor;
+    }
+
+    private void finishEntryExtractor() {
+        if (entryExtractor != null) {
+            entryExtractor.finish();
+            entryExtractor = null;
+        }
+    }
+
     /**
      * Abstract method to create the next {@link ArchiveEntry} for the {@link ArchiveStream} implementation.
      *
@@ -60,6 +123,7 @@ public abstract class ArchiveStream extends InputStream implements Closeable {
     @Override
     public void close() throws IOException {
         closed = true;
+        finishEntryExtractor();
     }
 
     /**
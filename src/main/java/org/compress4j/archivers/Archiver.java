@@ -15,9 +15,18 @@
  */
 package org.compress4j.archivers;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * An Archiver facades a specific archiving library, allowing for simple archiving of files and directories, and
@@ -56,6 +65,72 @@ public interface Archiver {
      */
     File create(String archive, File destination, File... sources) throws IOException;
 
+    /**
+     * Creates an archive from the given source files or directories using the given {@link CreateOptions}, and saves
+     * it into the given destination. <br>
+     * If the source is a directory, the archive will contain all the files in that directory, but not the directory
+     * itself.
+     *
+     * @param archive the name of the archive to create
+     * @param destination the destination directory where to place the created archive
+     * @param options the options that control the creation
+     * @param sources the input files or directories to archive
+     * @return the newly created archive file
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws UnsupportedOperationException if the options request a seekable archive, which is only supported for
+     *     tar.gz archives
+     * @see CreateOptions
+     */
+    default File create(String archive, File destination, CreateOptions options, File... sources) throws IOException {
+        if (options.isSeekable()) {
+            throw new UnsupportedOperationException(
+                    "Seekable archives are not supported for " + getFilenameExtension() + " archives");
+        }
+        return create(archive, destination, sources);
+    }
+
+    /**
+     * Creates an archive from the given source files or directories, and saves it into the given destination. The
+     * destination and the sources may belong to any {@link java.nio.file.FileSystem}, e.g. an in-memory or a zip file
+     * system. <br>
+     * If the source is a directory, the archive will contain the directory and all the files in it.
+     *
+     * @param archive the name of the archive to create
+     * @param destination the destination directory where to place the created archive
+     * @param sources the input files or directories to archive
+     * @return the path of the newly created archive
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     * @see #create(String, File, File...)
+     */
+    default Path create(String archive, Path destination, Path... sources) throws IOException {
+        return create(archive, destination, CreateOptions.DEFAULT, sources);
+    }
+
+    /**
+     * Creates an archive from the given source files or directories using the given {@link CreateOptions}, and saves
+     * it into the given destination. The destination and the sources may belong to any
+     * {@link java.nio.file.FileSystem}. By default, only paths of the default file system are supported, which are
+     * archived by {@link #create(String, File, CreateOptions, File...)}.
+     *
+     * @param archive the name of the archive to create
+     * @param destination the destination directory where to place the created archive
+     * @param options the options that control the creation
+     * @param sources the input files or directories to archive
+     * @return the path of the newly created archive
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     * @throws UnsupportedOperationException if the options request a seekable archive, which is only supported for
+     *     tar.gz archives, or if the archiver does not support the file system of a path
+     * @see #create(String, File, CreateOptions, File...)
+     */
+    default Path create(String archive, Path destination, CreateOptions options, Path... sources)
+            throws IOException {
+        File[] files = new File[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            files[i] = toDefaultFile(sources[i]);
+        }
+        return create(archive, toDefaultFile(destination), options, files).toPath();
+    }
+
     /**
      * Extracts the given archive file into the given destination directory. <br>
      * The destination is expected to be a writable directory.
@@ -64,7 +139,35 @@ public interface Archiver {
      * @param destination the directory to which to extract the files
      * @throws IOException propagated I/O errors by {@code java.io}
      */
-    void extract(File archive, File destination) throws IOException;
+    default void extract(File archive, File destination) throws IOException {
+        extract(archive, destination, ExtractOptions.DEFAULT);
+    }
+
+    /**
+     * Extracts the given archive file into the given destination directory, using the given {@link ExtractOptions}.
+     * <br>
+     * The destination is expected to be a writable directory.
+     *
+     * @param archive the archive file to extract
+     * @param destination the directory to which to extract the files
+     * @param options the options that control the extraction
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    void extract(File archive, File destination, ExtractOptions options) throws IOException;
+
+    /**
+     * Extracts the entries of the given archive file that are accepted by the given {@link EntryFilter} into the given
+     * destination directory. Entries that are not accepted are skipped as cheaply as the archive format allows. <br>
+     * The destination is expected to be a writable directory.
+     *
+     * @param archive the archive file to extract
+     * @param destination the directory to which to extract the files
+     * @param filter the filter that selects the entries to extract
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    default void extract(File archive, File destination, EntryFilter filter) throws IOException {
+        extract(archive, destination, ExtractOptions.builder().setFilter(filter).build());
+    }
 
     /**
      * Extracts the given archive supplied as an input stream into the given destination directory. <br>
@@ -74,7 +177,132 @@ public interface Archiver {
      * @param destination the destination directory.
      * @throws IOException propagated I/O errors by {@code java.io}
      */
-    void extract(InputStream archive, File destination) throws IOException;
+    default void extract(InputStream archive, File destination) throws IOException {
+        extract(archive, destination, ExtractOptions.DEFAULT);
+    }
+
+    /**
+     * Extracts the given archive supplied as an input stream into the given destination directory, using the given
+     * {@link ExtractOptions}. <br>
+     * The destination directory is expected to be a writable directory.
+     *
+     * @param archive the archive contents as a stream.
+     * @param destination the destination directory.
+     * @param options the options that control the extraction
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    void extract(InputStream archive, File destination, ExtractOptions options) throws IOException;
+
+    /**
+     * Extracts the given archive into the given destination directory. The archive and the destination may belong to
+     * any {@link java.nio.file.FileSystem}, e.g. an in-memory or a zip file system. <br>
+     * The destination is expected to be a writable directory.
+     *
+     * @param archive the archive file to extract
+     * @param destination the directory to which to extract the files
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     */
+    default void extract(Path archive, Path destination) throws IOException {
+        extract(archive, destination, ExtractOptions.DEFAULT);
+    }
+
+    /**
+     * Extracts the given archive into the given destination directory, using the given {@link ExtractOptions}. The
+     * archive and the destination may belong to any {@link java.nio.file.FileSystem}. If both belong to the default
+     * file system, this is the same as {@link #extract(File, File, ExtractOptions)}. Otherwise, the archive is
+     * streamed and extracted on the calling thread. <br>
+     * The destination is expected to be a writable directory.
+     *
+     * @param archive the archive file to extract
+     * @param destination the directory to which to extract the files
+     * @param options the options that control the extraction
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     */
+    default void extract(Path archive, Path destination, ExtractOptions options) throws IOException {
+        if (IOUtils.isDefaultFileSystem(archive) && IOUtils.isDefaultFileSystem(destination)) {
+            extract(archive.toFile(), destination.toFile(), options);
+            return;
+        }
+
+        try (InputStream input = options.getReadThrottle().wrap(Files.newInputStream(archive))) {
+            extract(input, destination, options);
+        }
+    }
+
+    /**
+     * Extracts the given archive supplied as an input stream into the given destination directory, using the given
+     * {@link ExtractOptions}. The destination may belong to any {@link java.nio.file.FileSystem}. By default, only
+     * destinations on the default file system are supported, which are extracted by
+     * {@link #extract(InputStream, File, ExtractOptions)}. <br>
+     * The destination directory is expected to be a writable directory.
+     *
+     * @param archive the archive contents as a stream
+     * @param destination the destination directory
+     * @param options the options that control the extraction
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     * @throws UnsupportedOperationException if the archiver does not support the file system of the destination
+     */
+    default void extract(InputStream archive, Path destination, ExtractOptions options) throws IOException {
+        extract(archive, toDefaultFile(destination), options);
+    }
+
+    /**
+     * Extracts the given archive file into memory, without touching the file system. The contents of every file entry
+     * accepted by the {@link ExtractOptions#getFilter() filter} are returned as a read-only {@link ByteBuffer}, keyed
+     * by the normalized entry name without a trailing slash. Directory entries are not part of the result. <br>
+     * The total size of the extracted entries is limited by {@link ExtractOptions#getMaxInMemorySize()}, and
+     * {@link ExtractOptions#isDirectBuffers()} places the contents outside of the Java heap. Options that only concern
+     * the file system are ignored.
+     *
+     * @param archive the archive file to extract
+     * @param options the options that control the extraction
+     * @return an unmodifiable map of entry names to their contents, in archive order
+     * @throws IOException propagated I/O errors by {@code java.io}, or if the entries exceed the size limit
+     */
+    default Map<String, ByteBuffer> extractToMemory(File archive, ExtractOptions options) throws IOException {
+        ExtractionGuard guard = ExtractionGuard.forArchive(options, archive.length());
+        MemoryExtractor extractor = new MemoryExtractor(options, guard);
+        try (ArchiveStream stream = stream(archive)) {
+            ArchiveEntry entry;
+            while ((entry = stream.getNextEntry()) != null) {
+                guard.checkEntry(entry.getName());
+                if (extractor.accepts(entry)) {
+                    extractor.extract(entry, stream);
+                }
+            }
+        }
+        return extractor.finish();
+    }
+
+    /**
+     * Extracts the given archive supplied as an input stream into memory, without touching the file system. The
+     * stream is not closed.
+     *
+     * @param archive the archive contents as a stream
+     * @param options the options that control the extraction
+     * @return an unmodifiable map of entry names to their contents, in archive order
+     * @throws IOException propagated I/O errors by {@code java.io}, or if the entries exceed the size limit
+     * @throws UnsupportedOperationException if the archiver can only read archive files
+     * @see #extractToMemory(File, ExtractOptions)
+     */
+    default Map<String, ByteBuffer> extractToMemory(InputStream archive, ExtractOptions options) throws IOException {
+        throw new UnsupportedOperationException(
+                "Extracting streams into memory is not supported for " + getFilenameExtension() + " archives");
+    }
+
+    /**
+     * Extracts the given archive held in a byte array into memory, without touching the file system. ZIP, JAR, 7z and
+     * TAR archives are read with random access, other archives are streamed.
+     *
+     * @param archive the archive contents
+     * @param options the options that control the extraction
+     * @return an unmodifiable map of entry names to their contents, in archive order
+     * @throws IOException propagated I/O errors by {@code java.io}, or if the entries exceed the size limit
+     * @see #extractToMemory(File, ExtractOptions)
+     */
+    default Map<String, ByteBuffer> extractToMemory(byte[] archive, ExtractOptions options) throws IOException {
+        return extractToMemory(new ByteArrayInputStream(archive), options);
+    }
 
     /**
      * Reads the given archive file as an {@link ArchiveStream} which is used to access individual {@link ArchiveEntry}
@@ -86,6 +314,98 @@ public interface Archiver {
      */
     ArchiveStream stream(File archive) throws IOException;
 
+    /**
+     * Lists the entries of the given archive file without extracting them. Only the metadata of the entries is read,
+     * as cheaply as the archive format allows: ZIP and JAR archives are listed from their central directory, 7z
+     * archives from their header block and uncompressed TAR archives by seeking from header to header. Compressed
+     * archives are streamed, unless a gzip or xz compressed TAR archive has an {@link ArchiveIndex}. <br>
+     * The returned entries can be inspected at any time, but not extracted.
+     *
+     * @param archive the archive file to list
+     * @return an unmodifiable list of the entries, in the order they are stored in the archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    default List<ArchiveEntry> list(File archive) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        try (ArchiveStream stream = stream(archive)) {
+            ArchiveEntry entry;
+            while ((entry = stream.getNextEntry()) != null) {
+                entries.add(entry);
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Opens the given archive file as an {@link ArchiveReader}, which looks up entries by name and reads them in any
+     * order. Random access is supported for ZIP, JAR, 7z and TAR archives. Gzip and xz compressed TAR archives are
+     * read through an {@link ArchiveIndex}.
+     *
+     * @param archive the archive file to read
+     * @return a new archive reader for the given archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws UnsupportedOperationException if the archive format does not support random access
+     */
+    default ArchiveReader reader(File archive) throws IOException {
+        throw new UnsupportedOperationException(
+                "Random access is not supported for " + getFilenameExtension() + " archives");
+    }
+
+    /**
+     * Opens the archive read from the given channel as an {@link ArchiveReader}, e.g. an archive held in memory by a
+     * {@link org.apache.commons.compress.utils.SeekableInMemoryByteChannel}. Random access is supported for ZIP, JAR,
+     * 7z and TAR archives. Closing the reader closes the channel.
+     *
+     * @param archive the channel to read the archive from
+     * @return a new archive reader for the given archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws UnsupportedOperationException if the archive format does not support random access
+     */
+    default ArchiveReader reader(SeekableByteChannel archive) throws IOException {
+        throw new UnsupportedOperationException(
+                "Random access is not supported for " + getFilenameExtension() + " archives");
+    }
+
+    /**
+     * Opens the archive read from the given range source, such as an object in remote storage, as an
+     * {@link ArchiveReader}. The source is read through a block cache with the default {@link RangeReadOptions}.
+     *
+     * @param archive the source to read the archive from
+     * @return a new archive reader for the given archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws UnsupportedOperationException if the archive format does not support random access
+     * @see #reader(RangeSource, RangeReadOptions)
+     */
+    default ArchiveReader reader(RangeSource archive) throws IOException {
+        return reader(archive, RangeReadOptions.DEFAULT);
+    }
+
+    /**
+     * Opens the archive read from the given range source, such as an object in remote storage, as an
+     * {@link ArchiveReader}. Random access is supported for ZIP, JAR, 7z and TAR archives. <br>
+     * The source is fetched in blocks that are cached, and adjacent missing blocks are fetched with a single request.
+     * The tail of the source and the central directory of ZIP archives are prefetched, so listing a ZIP archive or
+     * reading one of its entries only transfers a few blocks. Closing the reader closes the source, as does a failure
+     * to open the reader.
+     *
+     * @param archive the source to read the archive from
+     * @param options the block size, cache size and prefetch
+     * @return a new archive reader for the given archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     * @throws UnsupportedOperationException if the archive format does not support random access
+     */
+    default ArchiveReader reader(RangeSource archive, RangeReadOptions options) throws IOException {
+        CachingRangeChannel channel = null;
+        try {
+            channel = new CachingRangeChannel(archive, options);
+            return reader(channel);
+        } catch (IOException | RuntimeException e) {
+            // no reader took over the source
+            IOUtils.closeQuietly(channel != null ? channel : archive);
+            throw e;
+        }
+    }
+
     /**
      * Returns the filename extension that indicates the file format this archiver handles. E.g .tar" or ".zip". In case
      * of compressed archives, it will return the composite filename extensions, e.g. ".tar.gz"
@@ -93,4 +413,19 @@ public interface Archiver {
      * @return a filename extension with a preceding dot
      */
     String getFilenameExtension();
+
+    /**
+     * Returns the file of a path of the default file system, for the methods that only support files by default.
+     *
+     * @param path the path
+     * @return the file of the path
+     * @throws UnsupportedOperationException if the path belongs to another file system
+     */
+    private File toDefaultFile(Path path) {
+        if (!IOUtils.isDefaultFileSystem(path)) {
+            throw new UnsupportedOperationException(
+                    "Paths of other file systems are not supported for " + getFilenameExtension() + " archives");
+        }
+        return path.toFile();
+    }
 }
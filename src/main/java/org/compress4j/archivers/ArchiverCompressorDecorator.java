@@ -16,14 +16,26 @@
 package org.compress4j.archivers;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorOutputStream;
 
 /**
  * Decorates an {@link Archiver} with a {@link Compressor}, s.t. it is able to compress the archives it generates and
@@ -69,8 +81,121 @@ class ArchiverCompressorDecorator<E extends org.apache.commons.compress.archiver
         return destinationArchive;
     }
 
+    /**
+     * {@inheritDoc} <br>
+     * Seekable archives, and archives whose creation is throttled or can be cancelled, are written directly: every
+     * entry is compressed as it is added.
+     */
+    @Override
+    public File create(String archive, File destination, CreateOptions options, File... sources) throws IOException {
+        if (options.isSeekable() ? !isSeekableTarGz() : !isWrittenDirectly(options)) {
+            return Archiver.super.create(archive, destination, options, sources);
+        }
+
+        IOUtils.requireDirectory(destination);
+        File destinationArchive = new File(destination, getArchiveFileName(archive));
+
+        if (options.isSeekable()) {
+            try (SeekableTarGzOutputStream out = new SeekableTarGzOutputStream(
+                    new BufferedOutputStream(options.getWriteThrottle().wrap(new FileOutputStream(destinationArchive))),
+                    options.getChunkSize())) {
+                writeToArchive(sources, out, options);
+            } catch (OperationCancelledException e) {
+                CommonsArchiver.deleteOnCancel(destinationArchive.toPath(), options, e);
+                throw e;
+            }
+        } else {
+            Path[] paths = Arrays.stream(sources).map(File::toPath).toArray(Path[]::new);
+            write(destinationArchive.toPath(), options, paths);
+        }
+
+        return destinationArchive;
+    }
+
+    /**
+     * {@inheritDoc} <br>
+     * Archives that are not written to the default file system are compressed while they are written, without a
+     * temporary file.
+     */
+    @Override
+    public Path create(String archive, Path destination, CreateOptions options, Path... sources) throws IOException {
+        if (IOUtils.isDefaultFileSystem(destination)
+                && Arrays.stream(sources).allMatch(IOUtils::isDefaultFileSystem)) {
+            File[] files = Arrays.stream(sources).map(Path::toFile).toArray(File[]::new);
+            return create(archive, destination.toFile(), options, files).toPath();
+        }
+        if (options.isSeekable() && !isSeekableTarGz()) {
+            throw new UnsupportedOperationException(
+                    "Seekable archives are not supported for " + getFilenameExtension() + " archives");
+        }
+
+        IOUtils.requireDirectory(destination);
+        Path destinationArchive = destination.resolve(getArchiveFileName(archive));
+        write(destinationArchive, options, sources);
+
+        return destinationArchive;
+    }
+
+    /** Writes the sources into the given archive, compressing every entry as it is added. */
+    private void write(Path destinationArchive, CreateOptions options, Path... sources) throws IOException {
+        try {
+            writeCompressed(destinationArchive, options, sources);
+        } catch (OperationCancelledException e) {
+            CommonsArchiver.deleteOnCancel(destinationArchive, options, e);
+            throw e;
+        }
+    }
+
+    private void writeCompressed(Path destinationArchive, CreateOptions options, Path... sources) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(
+                options.getWriteThrottle().wrap(Files.newOutputStream(destinationArchive)),
+                EntryExtractor.BUFFER_SIZE)) {
+            if (options.isSeekable()) {
+                try (SeekableTarGzOutputStream tar = new SeekableTarGzOutputStream(out, options.getChunkSize())) {
+                    writeToArchive(sources, tar, options);
+                }
+            } else {
+                try (ArchiveOutputStream<E> archiveOut =
+                        archiver.createArchiveOutputStream(createCompressorOutputStream(out))) {
+                    archiver.writeToArchive(sources, archiveOut, options);
+                }
+            }
+        }
+    }
+
+    private static boolean isWrittenDirectly(CreateOptions options) {
+        return !options.getReadThrottle().isUnlimited()
+                || !options.getWriteThrottle().isUnlimited()
+                || options.getCancellation().isCancellable();
+    }
+
+    private boolean isSeekableTarGz() {
+        return archiver.getArchiveFormat() == ArchiveFormat.TAR
+                && compressor.getCompressionType() == CompressionType.GZIP;
+    }
+
+    private CompressorOutputStream createCompressorOutputStream(OutputStream out) throws IOException {
+        try {
+            return CommonsStreamFactory.createCompressorOutputStream(compressor.getCompressionType(), out);
+        } catch (CompressorException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeToArchive(File[] sources, SeekableTarGzOutputStream out, CreateOptions options)
+            throws IOException {
+        ((CommonsArchiver<TarArchiveEntry>) archiver).writeToArchive(sources, out, options);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeToArchive(Path[] sources, SeekableTarGzOutputStream out, CreateOptions options)
+            throws IOException {
+        ((CommonsArchiver<TarArchiveEntry>) archiver).writeToArchive(sources, out, options);
+    }
+
     @Override
-    public void extract(File archive, File destination) throws IOException {
+    public void extract(File archive, File destination, ExtractOptions options) throws IOException {
         IOUtils.requireDirectory(destination);
 
         /*
@@ -81,8 +206,15 @@ class ArchiverCompressorDecorator<E extends org.apache.commons.compress.archiver
             throw new FileNotFoundException(String.format("Archive %s does not exist.", archive.getAbsolutePath()));
         }
 
-        try (InputStream archiveStream = new BufferedInputStream(new FileInputStream(archive))) {
-            archiver.extract(compressor.decompressingStream(archiveStream), destination);
+        try (InputStream archiveStream =
+                        new BufferedInputStream(options.getReadThrottle().wrap(new FileInputStream(archive)));
+                InputStream decompressed =
+                        compressor.decompressingStream(archiveStream, options.getCancellation())) {
+            archiver.extract(
+                    entries(archive, decompressed),
+                    destination,
+                    options,
+                    ExtractionGuard.forArchive(options, archive.length()));
         } catch (FileNotFoundException e) {
             // Java throws F-N-F for no access, and callers expect I-A-E for that.
             throw new IllegalArgumentException(
@@ -91,19 +223,111 @@ class ArchiverCompressorDecorator<E extends org.apache.commons.compress.archiver
     }
 
     @Override
-    public void extract(InputStream archive, File destination) throws IOException {
+    public void extract(InputStream archive, File destination, ExtractOptions options) throws IOException {
         IOUtils.requireDirectory(destination);
-        archiver.extract(compressor.decompressingStream(archive), destination);
+        ExtractionGuard guard = new ExtractionGuard(options);
+        try (InputStream decompressed = decompressingStream(guard.countArchive(archive), options)) {
+            archiver.extract(decompressed, destination, options, guard);
+        }
     }
 
+    @Override
+    public void extract(InputStream archive, Path destination, ExtractOptions options) throws IOException {
+        ExtractionGuard guard = new ExtractionGuard(options);
+        try (InputStream decompressed = decompressingStream(guard.countArchive(archive), options)) {
+            archiver.extract(decompressed, destination, options, guard);
+        }
+    }
+
+    @Override
+    public Map<String, ByteBuffer> extractToMemory(InputStream archive, ExtractOptions options) throws IOException {
+        ExtractionGuard guard = new ExtractionGuard(options);
+        try (InputStream decompressed = decompressingStream(guard.countArchive(archive), options)) {
+            return archiver.extractToMemory(decompressed, options, guard);
+        }
+    }
+
+    /**
+     * Decompresses a stream of the caller. The decompressor is closed once the archive is extracted, which releases
+     * its {@link MemoryBudget memory reservation}, but the stream itself is left open.
+     */
+    private InputStream decompressingStream(InputStream archive, ExtractOptions options) throws IOException {
+        return compressor.decompressingStream(IOUtils.closeShield(archive), options.getCancellation());
+    }
+
+    /**
+     * {@inheritDoc} <br>
+     * The table of contents of a seekable tar.gz archive is not streamed.
+     */
     @Override
     public ArchiveStream stream(File archive) throws IOException {
         try {
-            return new CommonsArchiveStream<>(CommonsStreamFactory.createArchiveInputStream(
-                    archiver, CommonsStreamFactory.createCompressorInputStream(archive)));
-        } catch (ArchiveException | CompressorException e) {
+            return new CommonsArchiveStream<>(
+                    entries(archive, CommonsStreamFactory.createCompressorInputStream(archive)));
+        } catch (CompressorException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Opens the entries of the given archive, without the table of contents of a seekable tar.gz archive. */
+    private ArchiveInputStream<E> entries(File archive, InputStream decompressed) throws IOException {
+        ArchiveInputStream<E> entries;
+        try {
+            entries = CommonsStreamFactory.createArchiveInputStream(archiver, decompressed);
+        } catch (ArchiveException e) {
             throw new IOException(e);
         }
+        return hasTableOfContents(archive) ? SeekableTarGzOutputStream.hideTableOfContents(entries) : entries;
+    }
+
+    private boolean hasTableOfContents(File archive) throws IOException {
+        return isSeekableTarGz() && SeekableTarGzOutputStream.isSeekable(archive);
+    }
+
+    /**
+     * {@inheritDoc} <br>
+     * Gzip and xz compressed tar archives that have an up to date {@link ArchiveIndex#sidecarFor(File) sidecar index}
+     * or an embedded table of contents are listed from their index, without decompressing them. Like
+     * {@link #stream(File)}, the list leaves out the table of contents of a seekable tar.gz archive.
+     */
+    @Override
+    public List<ArchiveEntry> list(File archive) throws IOException {
+        archiver.assertExtractSource(archive);
+
+        if (archiver.getArchiveFormat() == ArchiveFormat.TAR
+                && ArchiveIndex.isIndexable(compressor.getCompressionType())) {
+            ArchiveIndex index = ArchiveIndex.find(archive);
+            if (index != null) {
+                boolean seekable = hasTableOfContents(archive);
+                return DetachedArchiveEntry.detach(index.getEntries()).stream()
+                        .filter(entry -> !seekable || !SeekableTarGzOutputStream.TOC_NAME.equals(entry.getName()))
+                        .toList();
+            }
+        }
+
+        try {
+            return DetachedArchiveEntry.list(
+                    entries(archive, CommonsStreamFactory.createCompressorInputStream(archive)));
+        } catch (CompressorException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc} <br>
+     * Gzip and xz compressed tar archives are read through an {@link ArchiveIndex}. The index is loaded from the
+     * {@link ArchiveIndex#sidecarFor(File) sidecar file} of the archive if it is up to date, otherwise it is built by
+     * decompressing the archive once, without writing a sidecar file.
+     */
+    @Override
+    public ArchiveReader reader(File archive) throws IOException {
+        if (archiver.getArchiveFormat() != ArchiveFormat.TAR
+                || !ArchiveIndex.isIndexable(compressor.getCompressionType())) {
+            return Archiver.super.reader(archive);
+        }
+
+        archiver.assertExtractSource(archive);
+        return new IndexedTarArchiveReader(archive, ArchiveIndex.load(archive));
     }
 
     @Override
@@ -128,6 +128,8 @@ public final class ArchiverFactory {
             return new SevenZArchiver();
         } else if (archiveFormat == ArchiveFormat.ZIP) {
             return new ZipFileArchiver();
+        } else if (archiveFormat == ArchiveFormat.TAR) {
+            return new TarFileArchiver();
         }
         return new CommonsArchiver<E>(archiveFormat);
     }
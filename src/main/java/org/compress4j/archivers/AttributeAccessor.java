@@ -16,12 +16,17 @@
 package org.compress4j.archivers;
 
 import java.io.IOException;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
 import org.apache.commons.compress.archivers.arj.ArjArchiveEntry;
 import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.zip.X7875_NewUnix;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipExtraField;
 
 /**
  * Adapter for accessing mode flags from the different types of ArchiveEntries.
@@ -30,6 +35,9 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
  */
 abstract class AttributeAccessor<E extends ArchiveEntry> {
 
+    /** Special value indicating that a user or group id is unknown. */
+    public static final long UNKNOWN_ID = -1;
+
     private final E entry;
 
     protected AttributeAccessor(E entry) {
@@ -53,6 +61,34 @@ abstract class AttributeAccessor<E extends ArchiveEntry> {
      */
     public abstract int getMode() throws IOException;
 
+    /**
+     * Returns the last modification time of the entry.
+     *
+     * @return the last modification time, or {@code null} if the entry does not record one
+     */
+    public FileTime getLastModifiedTime() {
+        Date date = getEntry().getLastModifiedDate();
+        return (date == null || date.getTime() < 0) ? null : FileTime.fromMillis(date.getTime());
+    }
+
+    /**
+     * Returns the numeric id of the user owning the entry.
+     *
+     * @return the user id, or {@link #UNKNOWN_ID} if the entry does not record one
+     */
+    public long getUserId() {
+        return UNKNOWN_ID;
+    }
+
+    /**
+     * Returns the numeric id of the group owning the entry.
+     *
+     * @return the group id, or {@link #UNKNOWN_ID} if the entry does not record one
+     */
+    public long getGroupId() {
+        return UNKNOWN_ID;
+    }
+
     /**
      * Detects the type of the given ArchiveEntry and returns an appropriate AttributeAccessor for it.
      *
@@ -71,6 +107,8 @@ abstract class AttributeAccessor<E extends ArchiveEntry> {
             return (T) new ArjAttributeAccessor(arjArchiveEntry);
         } else if (entry instanceof ArArchiveEntry arArchiveEntry) {
             return (T) new ArAttributeAccessor(arArchiveEntry);
+        } else if (entry instanceof SevenZArchiveEntry sevenZArchiveEntry) {
+            return (T) new SevenZAttributeAccessor(sevenZArchiveEntry);
         }
 
         return (T) new FallbackAttributeAccessor(entry);
@@ -96,6 +134,21 @@ abstract class AttributeAccessor<E extends ArchiveEntry> {
         public int getMode() {
             return getEntry().getMode();
         }
+
+        @Override
+        public FileTime getLastModifiedTime() {
+            return getEntry().getLastModifiedTime();
+        }
+
+        @Override
+        public long getUserId() {
+            return getEntry().getLongUserId();
+        }
+
+        @Override
+        public long getGroupId() {
+            return getEntry().getLongGroupId();
+        }
     }
 
     public static class ZipAttributeAccessor extends AttributeAccessor<ZipArchiveEntry> {
@@ -107,6 +160,32 @@ abstract class AttributeAccessor<E extends ArchiveEntry> {
         public int getMode() {
             return getEntry().getUnixMode();
         }
+
+        @Override
+        public FileTime getLastModifiedTime() {
+            return getEntry().getLastModifiedTime();
+        }
+
+        @Override
+        public long getUserId() {
+            X7875_NewUnix unixExtraField = getUnixExtraField();
+            return unixExtraField != null ? unixExtraField.getUID() : UNKNOWN_ID;
+        }
+
+        @Override
+        public long getGroupId() {
+            X7875_NewUnix unixExtraField = getUnixExtraField();
+            return unixExtraField != null ? unixExtraField.getGID() : UNKNOWN_ID;
+        }
+
+        private X7875_NewUnix getUnixExtraField() {
+            for (ZipExtraField extraField : getEntry().getExtraFields()) {
+                if (extraField instanceof X7875_NewUnix unixExtraField) {
+                    return unixExtraField;
+                }
+            }
+            return null;
+        }
     }
 
     public static class CpioAttributeAccessor extends AttributeAccessor<CpioArchiveEntry> {
@@ -118,6 +197,16 @@ abstract class AttributeAccessor<E extends ArchiveEntry> {
         public int getMode() {
             return (int) getEntry().getMode();
         }
+
+        @Override
+        public long getUserId() {
+            return getEntry().getUID();
+        }
+
+        @Override
+        public long getGroupId() {
+            return getEntry().getGID();
+        }
     }
 
     public static class ArjAttributeAccessor extends AttributeAccessor<ArjArchiveEntry> {
@@ -140,5 +229,36 @@ abstract class AttributeAccessor<E extends ArchiveEntry> {
         public int getMode() {
             return getEntry().getMode();
         }
+
+        @Override
+        public long getUserId() {
+            return getEntry().getUserId();
+        }
+
+        @Override
+        public long getGroupId() {
+            return getEntry().getGroupId();
+        }
+    }
+
+    public static class SevenZAttributeAccessor extends AttributeAccessor<SevenZArchiveEntry> {
+
+        /** Windows attribute flag set by p7zip when the high 16 bits hold the unix mode. */
+        private static final int UNIX_EXTENSION = 0x8000;
+
+        public SevenZAttributeAccessor(SevenZArchiveEntry entry) {
+            super(entry);
+        }
+
+        @Override
+        public int getMode() {
+            int attributes = getEntry().getHasWindowsAttributes() ? getEntry().getWindowsAttributes() : 0;
+            return (attributes & UNIX_EXTENSION) != 0 ? attributes >>> 16 : 0;
+        }
+
+        @Override
+        public FileTime getLastModifiedTime() {
+            return getEntry().getHasLastModifiedDate() ? getEntry().getLastModifiedTime() : null;
+        }
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+
+/**
+ * Restores the file attributes recorded in archive entries onto extracted files: the unix mode, the last modification
+ * time and, optionally, the owning user and group ids. <br>
+ * The attributes of an entry are read once and applied through a single attribute view of the file. Attributes of
+ * directories are deferred until {@link #finish()} is called, so that read-only directories can still receive their
+ * children and the modification times of directories are not changed by the files written into them. <br>
+ * Instances are thread-safe, files may be restored concurrently by multiple writer threads.
+ */
+final class AttributeRestorer {
+
+    private static final Logger LOG = Logger.getLogger(AttributeRestorer.class.getCanonicalName());
+    private static final boolean IS_POSIX =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final boolean IS_UNIX =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    private static final FileModeMapper.PosixFilePermissionsMapper PERMISSIONS_MAPPER =
+            new FileModeMapper.PosixFilePermissionsMapper();
+
+    private final boolean restoreTimes;
+    private final boolean restoreOwnership;
+    private final Queue<Deferred> deferred = new ConcurrentLinkedQueue<>();
+
+    /** Creates a restorer that restores modes and modification times. */
+    AttributeRestorer() {
+        this(true, false);
+    }
+
+    /**
+     * Creates a new restorer.
+     *
+     * @param restoreTimes whether to restore the last modification time
+     * @param restoreOwnership whether to restore the owning user and group ids
+     */
+    AttributeRestorer(boolean restoreTimes, boolean restoreOwnership) {
+        this.restoreTimes = restoreTimes;
+        this.restoreOwnership = restoreOwnership;
+    }
+
+    /**
+     * Restores the attributes of the given entry onto the given file. If the entry is a directory, the attributes are
+     * only recorded and applied by {@link #finish()}.
+     *
+     * @param entry the archive entry holding the attributes
+     * @param file the extracted file
+     */
+    void restore(ArchiveEntry entry, File file) {
+        restore(entry, file.toPath());
+    }
+
+    /**
+     * Restores the attributes of the given entry onto the given path, which may belong to any file system. Attributes
+     * that the file system of the path does not support are skipped.
+     *
+     * @param entry the archive entry holding the attributes
+     * @param path the extracted file
+     * @see #restore(ArchiveEntry, File)
+     */
+    void restore(ArchiveEntry entry, Path path) {
+        Attributes attributes = Attributes.of(entry);
+
+        if (entry.isDirectory()) {
+            deferred.add(new Deferred(path, attributes));
+        } else {
+            apply(path, attributes);
+        }
+    }
+
+    /**
+     * Returns the unix permissions recorded in the given entry.
+     *
+     * @param entry the archive entry holding the attributes
+     * @return the permission bits of the mode, {@code 0} if unknown
+     */
+    static int mode(ArchiveEntry entry) {
+        return Attributes.of(entry).mode();
+    }
+
+    /**
+     * Returns the last modification time recorded in the given entry.
+     *
+     * @param entry the archive entry holding the attributes
+     * @return the last modification time, or {@code null} if unknown
+     */
+    static FileTime lastModifiedTime(ArchiveEntry entry) {
+        return Attributes.of(entry).lastModifiedTime();
+    }
+
+    /** Applies the deferred attributes of all directories, deepest directories first. */
+    void finish() {
+        List<Deferred> directories = new ArrayList<>();
+        Deferred directory;
+        while ((directory = deferred.poll()) != null) {
+            directories.add(directory);
+        }
+
+        directories.sort(Comparator.comparing(Deferred::path).reversed());
+        for (Deferred d : directories) {
+            apply(d.path(), d.attributes());
+        }
+    }
+
+    private void apply(Path path, Attributes attributes) {
+        FileTime mtime = restoreTimes ? attributes.lastModifiedTime() : null;
+
+        try {
+            if (supports(path, "posix", IS_POSIX)) {
+                PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+                if (restoreOwnership) {
+                    restoreOwnership(path, attributes);
+                }
+                if (attributes.mode() > 0) {
+                    view.setPermissions(PERMISSIONS_MAPPER.map(attributes.mode()));
+                }
+                if (mtime != null) {
+                    view.setTimes(mtime, null, null);
+                }
+            } else if (mtime != null) {
+                Files.getFileAttributeView(path, BasicFileAttributeView.class).setTimes(mtime, null, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warning("Could not set file attributes of " + path + ". Exception was: " + e.getMessage());
+        }
+    }
+
+    private static void restoreOwnership(Path path, Attributes attributes) throws IOException {
+        if (!supports(path, "unix", IS_UNIX)) {
+            return;
+        }
+        if (attributes.userId() != AttributeAccessor.UNKNOWN_ID) {
+            Files.setAttribute(path, "unix:uid", (int) attributes.userId());
+        }
+        if (attributes.groupId() != AttributeAccessor.UNKNOWN_ID) {
+            Files.setAttribute(path, "unix:gid", (int) attributes.groupId());
+        }
+    }
+
+    private static boolean supports(Path path, String view, boolean onDefaultFileSystem) {
+        FileSystem fileSystem = path.getFileSystem();
+        return fileSystem == FileSystems.getDefault()
+                ? onDefaultFileSystem
+                : fileSystem.supportedFileAttributeViews().contains(view);
+    }
+
+    /** The attributes of an archive entry, read once through its {@link AttributeAccessor}. */
+    private record Attributes(int mode, FileTime lastModifiedTime, long userId, long groupId) {
+
+        static Attributes of(ArchiveEntry entry) {
+            AttributeAccessor<ArchiveEntry> accessor = AttributeAccessor.create(entry);
+            int mode;
+            try {
+                mode = accessor.getMode() & FileModeMapper.UNIX_PERMISSION_MASK;
+            } catch (IOException e) {
+                mode = 0;
+            }
+            return new Attributes(mode, accessor.getLastModifiedTime(), accessor.getUserId(), accessor.getGroupId());
+        }
+    }
+
+    private record Deferred(Path path, Attributes attributes) {}
+}
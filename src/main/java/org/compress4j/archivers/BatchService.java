@@ -0,0 +1,522 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Runs many archive jobs concurrently, such as extracting thousands of archives, within global limits. <br>
+ * Every job runs on its own virtual thread when the runtime supports them, and on a pool of
+ * {@link Builder#setCpuParallelism(int) CPU parallelism} platform threads otherwise. A job first waits for its share
+ * of the {@link Builder#setMaxOpenFiles(int) open files} and {@link Builder#setMaxInFlightBytes(long) in-flight
+ * bytes}. While it runs, its compressor and decompressor streams take one of the CPU permits for every buffer they
+ * encode or decode, so jobs that wait for the file system do not hold a permit, and jobs that only copy bytes, such as
+ * extracting a plain tar archive, never need one. Waiting jobs park their virtual threads, so the number of queued
+ * jobs is not bounded by the number of platform threads. <br>
+ * Jobs are submitted with {@link #extract(File, File, ExtractOptions)}, {@link #create(Archiver, String, File,
+ * File...)} and {@link #compress(Compressor, File, File)}, which return a future that completes when the job has
+ * finished. The aggregate throughput of all jobs is reported by {@link #getStatistics()}. <br>
+ * Closing the service waits for all submitted jobs to finish.
+ */
+public final class BatchService implements AutoCloseable {
+
+    /** Default upper bound of files held open by running jobs, 256. */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    /** Default upper bound of input bytes processed by running jobs, 256 MiB. */
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 256L * 1024 * 1024;
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final int maxOpenFiles;
+    private final long maxInFlightBytes;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private final CpuPermits cpu;
+    private final Semaphore openFiles;
+    private final ByteBudget inFlightBytes;
+
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+    private final AtomicLong processedBytes = new AtomicLong();
+    private final AtomicInteger runningJobs = new AtomicInteger();
+    private final AtomicInteger peakRunningJobs = new AtomicInteger();
+    private final AtomicInteger heldFiles = new AtomicInteger();
+    private final AtomicInteger peakHeldFiles = new AtomicInteger();
+    private final AtomicLong firstStart = new AtomicLong(-1);
+    private final AtomicLong lastEnd = new AtomicLong();
+
+    private volatile boolean closed;
+
+    private BatchService(Builder builder) {
+        this.maxOpenFiles = builder.maxOpenFiles;
+        this.maxInFlightBytes = builder.maxInFlightBytes;
+        this.cpu = new CpuPermits(builder.cpuParallelism);
+        this.openFiles = new Semaphore(builder.maxOpenFiles, true);
+        this.inFlightBytes = new ByteBudget(builder.maxInFlightBytes);
+
+        ExecutorService virtual = builder.virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null
+                ? virtual
+                : Executors.newFixedThreadPool(builder.cpuParallelism, new BatchThreadFactory());
+    }
+
+    /**
+     * Returns a new builder initialised with the default limits.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns whether jobs run on virtual threads. Virtual threads are used if they were requested and the runtime
+     * supports them, i.e. from Java 21 on.
+     *
+     * @return true if jobs run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Submits a job that extracts the given archive into the destination directory with the default options.
+     *
+     * @param archive the archive file to extract
+     * @param destination the directory the archive is extracted to
+     * @return a future that completes when the archive has been extracted
+     * @throws IllegalStateException if the service has been closed
+     * @see #extract(File, File, ExtractOptions)
+     */
+    public CompletableFuture<Void> extract(File archive, File destination) {
+        return extract(archive, destination, ExtractOptions.DEFAULT);
+    }
+
+    /**
+     * Submits a job that extracts the given archive into the destination directory. The archiver is chosen by the file
+     * type of the archive. The job holds one open file for the archive and one for every writer thread of the options.
+     *
+     * @param archive the archive file to extract
+     * @param destination the directory the archive is extracted to
+     * @param options the options of the extraction
+     * @return a future that completes when the archive has been extracted
+     * @throws IllegalStateException if the service has been closed
+     */
+    public CompletableFuture<Void> extract(File archive, File destination, ExtractOptions options) {
+        return submit(1 + options.getWriterThreads(), () -> archive.length(), () -> {
+            ArchiverFactory.createArchiver(archive).extract(archive, destination, options);
+            return null;
+        });
+    }
+
+    /**
+     * Submits a job that creates an archive of the given sources.
+     *
+     * @param archiver the archiver that creates the archive
+     * @param archiveName the name of the archive, without its extension
+     * @param destination the directory the archive is created in
+     * @param sources the files and directories to archive
+     * @return a future that completes with the created archive file
+     * @throws IllegalStateException if the service has been closed
+     */
+    public CompletableFuture<File> create(Archiver archiver, String archiveName, File destination, File... sources) {
+        return submit(2, () -> sizeOf(sources), () -> archiver.create(archiveName, destination, sources));
+    }
+
+    /**
+     * Submits a job that compresses the given file.
+     *
+     * @param compressor the compressor that compresses the file
+     * @param source the file to compress
+     * @param destination the compressed file, or the directory it is created in
+     * @return a future that completes when the file has been compressed
+     * @throws IllegalStateException if the service has been closed
+     */
+    public CompletableFuture<Void> compress(Compressor compressor, File source, File destination) {
+        return submit(2, () -> source.length(), () -> {
+            compressor.compress(source, destination);
+            return null;
+        });
+    }
+
+    /**
+     * Returns a snapshot of the jobs run by this service and their aggregate throughput.
+     *
+     * @return the statistics of this service
+     */
+    public Statistics getStatistics() {
+        long start = firstStart.get();
+        long end = runningJobs.get() > 0 ? System.nanoTime() : lastEnd.get();
+        Duration elapsed = start < 0 ? Duration.ZERO : Duration.ofNanos(Math.max(0, end - start));
+        return new Statistics(completedJobs.get(), failedJobs.get(), processedBytes.get(), elapsed);
+    }
+
+    /**
+     * Stops accepting jobs and waits for all submitted jobs to finish. If the calling thread is interrupted while
+     * waiting, the running jobs are interrupted and the jobs that have not started yet are abandoned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(int files, SizeSupplier size, Callable<T> job) {
+        if (closed) {
+            throw new IllegalStateException("Batch service is closed");
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(Math.min(files, maxOpenFiles), size, job, future));
+        } catch (RejectedExecutionException e) {
+            // the service was closed concurrently
+            throw new IllegalStateException("Batch service is closed", e);
+        }
+        return future;
+    }
+
+    private <T> void run(int files, SizeSupplier size, Callable<T> job, CompletableFuture<T> future) {
+        long bytes = 0;
+        boolean acquiredFiles = false;
+        boolean acquiredBytes = false;
+        try {
+            bytes = size.get();
+            openFiles.acquire(files);
+            acquiredFiles = true;
+            peakHeldFiles.accumulateAndGet(heldFiles.addAndGet(files), Math::max);
+            inFlightBytes.acquire(Math.min(bytes, maxInFlightBytes));
+            acquiredBytes = true;
+
+            started();
+            T result;
+            try {
+                result = cpu.run(job);
+            } finally {
+                finished();
+            }
+            processedBytes.addAndGet(bytes);
+            completedJobs.incrementAndGet();
+            future.complete(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedJobs.incrementAndGet();
+            future.completeExceptionally(e);
+        } catch (Throwable t) {
+            failedJobs.incrementAndGet();
+            future.completeExceptionally(t);
+        } finally {
+            if (acquiredBytes) {
+                inFlightBytes.release(Math.min(bytes, maxInFlightBytes));
+            }
+            if (acquiredFiles) {
+                heldFiles.addAndGet(-files);
+                openFiles.release(files);
+            }
+        }
+    }
+
+    /**
+     * Returns the largest number of jobs that ran at the same time.
+     *
+     * @return the peak number of running jobs
+     */
+    int getPeakRunningJobs() {
+        return peakRunningJobs.get();
+    }
+
+    /**
+     * Returns the largest number of open files that running jobs held at the same time.
+     *
+     * @return the peak number of held files
+     */
+    int getPeakOpenFiles() {
+        return peakHeldFiles.get();
+    }
+
+    /**
+     * Returns the largest number of jobs that ran their codec at the same time.
+     *
+     * @return the peak number of CPU permit holders
+     */
+    int getPeakCpuHolders() {
+        return cpu.getPeakHolders();
+    }
+
+    private void started() {
+        peakRunningJobs.accumulateAndGet(runningJobs.incrementAndGet(), Math::max);
+        firstStart.compareAndSet(-1, System.nanoTime());
+    }
+
+    private void finished() {
+        lastEnd.set(System.nanoTime());
+        runningJobs.decrementAndGet();
+    }
+
+    private static long sizeOf(File... sources) {
+        long size = 0;
+        for (File source : sources) {
+            try (Stream<Path> files = Files.walk(source.toPath())) {
+                size += files.filter(Files::isRegularFile)
+                        .mapToLong(file -> file.toFile().length())
+                        .sum();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return size;
+    }
+
+    /** Creates a virtual thread per task executor through reflection, as the library is compiled for Java 17. */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Determines the input size of a job once it runs, as walking the sources of an archive touches the disk. */
+    @FunctionalInterface
+    private interface SizeSupplier {
+        long get();
+    }
+
+    /** A counting semaphore over a number of bytes that may exceed the range of an {@code int}. */
+    private static final class ByteBudget {
+
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private final Condition released = lock.newCondition();
+        private long available;
+
+        ByteBudget(long available) {
+            this.available = available;
+        }
+
+        void acquire(long bytes) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (available < bytes) {
+                    released.await();
+                }
+                available -= bytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long bytes) {
+            lock.lock();
+            try {
+                available += bytes;
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class BatchThreadFactory implements ThreadFactory {
+
+        private final int pool = POOL_COUNTER.incrementAndGet();
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "compress4j-batch-" + pool + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /** A snapshot of the jobs run by a {@link BatchService}. */
+    public static final class Statistics {
+
+        private final long completedJobs;
+        private final long failedJobs;
+        private final long bytes;
+        private final Duration elapsed;
+
+        Statistics(long completedJobs, long failedJobs, long bytes, Duration elapsed) {
+            this.completedJobs = completedJobs;
+            this.failedJobs = failedJobs;
+            this.bytes = bytes;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * Returns the number of jobs that have completed successfully.
+         *
+         * @return the number of completed jobs
+         */
+        public long getCompletedJobs() {
+            return completedJobs;
+        }
+
+        /**
+         * Returns the number of jobs that have failed.
+         *
+         * @return the number of failed jobs
+         */
+        public long getFailedJobs() {
+            return failedJobs;
+        }
+
+        /**
+         * Returns the total input size of the completed jobs: the size of extracted archives, and of the files that
+         * were archived or compressed.
+         *
+         * @return the processed bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the time from the start of the first job to the end of the last one, or to now while jobs are
+         * running.
+         *
+         * @return the elapsed time
+         */
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * Returns the aggregate throughput of the completed jobs.
+         *
+         * @return the processed bytes per second, {@code 0} if no time has elapsed
+         */
+        public double getBytesPerSecond() {
+            long nanos = elapsed.toNanos();
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics[completedJobs=" + completedJobs + ", failedJobs=" + failedJobs + ", bytes=" + bytes
+                    + ", elapsed=" + elapsed + "]";
+        }
+    }
+
+    /** Builder for {@link BatchService}. */
+    public static final class Builder {
+
+        private int cpuParallelism = Runtime.getRuntime().availableProcessors();
+        private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+        private long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+        private boolean virtualThreads = true;
+
+        private Builder() {}
+
+        /**
+         * Sets the number of jobs that run their codec at the same time, which is also the number of platform threads
+         * if virtual threads are not available. Defaults to the number of available processors.
+         *
+         * @param cpuParallelism the number of concurrently running codecs, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code cpuParallelism} is less than 1
+         */
+        public Builder setCpuParallelism(int cpuParallelism) {
+            if (cpuParallelism < 1) {
+                throw new IllegalArgumentException("CPU parallelism must be at least 1, was " + cpuParallelism);
+            }
+            this.cpuParallelism = cpuParallelism;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of files held open by running jobs. A job that needs more files than the limit runs
+         * alone.
+         *
+         * @param maxOpenFiles the maximum number of open files, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxOpenFiles} is less than 1
+         */
+        public Builder setMaxOpenFiles(int maxOpenFiles) {
+            if (maxOpenFiles < 1) {
+                throw new IllegalArgumentException("Max open files must be at least 1, was " + maxOpenFiles);
+            }
+            this.maxOpenFiles = maxOpenFiles;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of input bytes processed by running jobs at the same time. A job whose input exceeds the
+         * limit runs alone.
+         *
+         * @param maxInFlightBytes the maximum number of bytes, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxInFlightBytes} is less than 1
+         */
+        public Builder setMaxInFlightBytes(long maxInFlightBytes) {
+            if (maxInFlightBytes < 1) {
+                throw new IllegalArgumentException("Max in-flight bytes must be at least 1, was " + maxInFlightBytes);
+            }
+            this.maxInFlightBytes = maxInFlightBytes;
+            return this;
+        }
+
+        /**
+         * Sets whether jobs run on virtual threads if the runtime supports them. Enabled by default.
+         *
+         * @param virtualThreads true to use virtual threads where available
+         * @return this builder
+         */
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Creates the {@link BatchService}.
+         *
+         * @return a new batch service
+         */
+        public BatchService build() {
+            return new BatchService(this);
+        }
+    }
+}
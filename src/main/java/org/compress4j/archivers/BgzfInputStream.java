@@ -0,0 +1,266 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a file written in BGZF, the blocked gzip format produced by {@link CompressionType#BGZF}, with random access.
+ * <br>
+ * Positions in the uncompressed data are addressed by virtual offsets: the file offset of the block that holds a byte
+ * in the upper 48 bits, and the offset of the byte within the uncompressed block in the lower 16 bits. Virtual offsets
+ * obtained from {@link #getVirtualOffset()} while reading can later be passed to {@link #seek(long)}, which only
+ * decompresses the single block that holds the position.
+ */
+public final class BgzfInputStream extends InputStream {
+
+    private static final int FIXED_HEADER_SIZE = 12;
+
+    private final File file;
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] compressed = new byte[BgzfOutputStream.MAX_BLOCK_SIZE];
+    private final byte[] block = new byte[BgzfOutputStream.MAX_BLOCK_SIZE];
+
+    private long blockAddress;
+    private long nextBlockAddress;
+    private int blockLength;
+    private int position;
+    private boolean closed;
+
+    /**
+     * Opens the given BGZF file, positioned at its start.
+     *
+     * @param file the file to read
+     * @throws IOException if the file can not be opened, or does not start with a BGZF block
+     */
+    public BgzfInputStream(File file) throws IOException {
+        this.file = Objects.requireNonNull(file, "file");
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            loadBlock(0);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Combines a block address and an offset within the uncompressed block into a virtual offset.
+     *
+     * @param blockAddress the file offset of the block
+     * @param offsetInBlock the offset within the uncompressed data of the block
+     * @return the virtual offset
+     */
+    public static long virtualOffset(long blockAddress, int offsetInBlock) {
+        if (blockAddress < 0 || blockAddress >= 1L << 48) {
+            throw new IllegalArgumentException("Invalid block address " + blockAddress);
+        }
+        if (offsetInBlock < 0 || offsetInBlock >= BgzfOutputStream.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid offset in block " + offsetInBlock);
+        }
+        return blockAddress << 16 | offsetInBlock;
+    }
+
+    /**
+     * Returns the virtual offset of the next byte to be read.
+     *
+     * @return the current virtual offset
+     */
+    public long getVirtualOffset() {
+        if (position == blockLength) {
+            return virtualOffset(nextBlockAddress, 0);
+        }
+        return virtualOffset(blockAddress, position);
+    }
+
+    /**
+     * Positions the stream at the given virtual offset.
+     *
+     * @param virtualOffset a virtual offset, as returned by {@link #getVirtualOffset()}
+     * @throws IOException if the offset does not address a position inside a block of this file
+     */
+    public void seek(long virtualOffset) throws IOException {
+        ensureOpen();
+        long address = virtualOffset >>> 16;
+        int offset = (int) (virtualOffset & 0xFFFF);
+        if (address >= channel.size()) {
+            throw new EOFException("Virtual offset " + virtualOffset + " is beyond the end of " + file);
+        }
+        if (address != blockAddress || blockLength == 0) {
+            loadBlock(address);
+        }
+        if (offset > blockLength) {
+            throw new IOException("Virtual offset " + virtualOffset + " is beyond the end of its block in " + file);
+        }
+        position = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+        while (position == blockLength) {
+            if (nextBlockAddress >= channel.size()) {
+                return -1;
+            }
+            loadBlock(nextBlockAddress);
+        }
+        int n = Math.min(len, blockLength - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return blockLength - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            inflater.end();
+            channel.close();
+        }
+    }
+
+    /** Reads and decompresses the block at the given file offset. */
+    private void loadBlock(long address) throws IOException {
+        readFully(address, compressed, 0, FIXED_HEADER_SIZE);
+        if ((compressed[0] & 0xFF) != 0x1f
+                || (compressed[1] & 0xFF) != 0x8b
+                || compressed[2] != 8
+                || (compressed[3] & 4) == 0) {
+            throw new ZipException(file + " is not a BGZF file, no BGZF block at offset " + address);
+        }
+
+        int extraLength = readShort(compressed, 10);
+        if (FIXED_HEADER_SIZE + extraLength > BgzfOutputStream.MAX_BLOCK_SIZE) {
+            throw new ZipException("Invalid BGZF extra field length " + extraLength + " at offset " + address);
+        }
+        readFully(address + FIXED_HEADER_SIZE, compressed, FIXED_HEADER_SIZE, extraLength);
+        int blockSize = blockSize(compressed, FIXED_HEADER_SIZE, extraLength);
+        if (blockSize < 0) {
+            throw new ZipException(file + " is not a BGZF file, no block size at offset " + address);
+        }
+        int dataStart = FIXED_HEADER_SIZE + extraLength;
+        int dataEnd = blockSize - BgzfOutputStream.TRAILER_SIZE;
+        if (dataEnd < dataStart) {
+            throw new ZipException("Invalid BGZF block size " + blockSize + " at offset " + address);
+        }
+        readFully(address + dataStart, compressed, dataStart, blockSize - dataStart);
+
+        int expectedCrc = readInt(compressed, dataEnd);
+        int expectedSize = readInt(compressed, dataEnd + 4);
+        if (expectedSize < 0 || expectedSize > block.length) {
+            throw new ZipException("Invalid BGZF block length " + expectedSize + " at offset " + address);
+        }
+
+        int length = inflate(dataStart, dataEnd - dataStart, address);
+        crc.reset();
+        crc.update(block, 0, length);
+        if (length != expectedSize || (int) crc.getValue() != expectedCrc) {
+            throw new ZipException("Corrupt BGZF block at offset " + address + " of " + file);
+        }
+
+        blockAddress = address;
+        nextBlockAddress = address + blockSize;
+        blockLength = length;
+        position = 0;
+    }
+
+    private int inflate(int offset, int length, long address) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed, offset, length);
+        try {
+            int n = 0;
+            while (!inflater.finished() && n < block.length) {
+                int inflated = inflater.inflate(block, n, block.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (!inflater.finished()) {
+                throw new ZipException("Truncated BGZF block at offset " + address + " of " + file);
+            }
+            return n;
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt BGZF block at offset " + address + " of " + file + ": " + e.getMessage());
+        }
+    }
+
+    /** Returns the total size of the block from its BC extra subfield, or -1 if there is none. */
+    private static int blockSize(byte[] b, int offset, int length) {
+        int end = offset + length;
+        while (offset + 4 <= end) {
+            int subfieldLength = readShort(b, offset + 2);
+            if (b[offset] == 'B' && b[offset + 1] == 'C' && subfieldLength == 2 && offset + 6 <= end) {
+                return readShort(b, offset + 4) + 1;
+            }
+            offset += 4 + subfieldLength;
+        }
+        return -1;
+    }
+
+    private void readFully(long address, byte[] b, int off, int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, address + buffer.position() - off) < 0) {
+                throw new EOFException("Unexpected end of BGZF file " + file + " in block at offset " + address);
+            }
+        }
+    }
+
+    private static int readShort(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return readShort(b, off) | readShort(b, off + 2) << 16;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.apache.commons.compress.compressors.CompressorOutputStream;
+
+/**
+ * Writes BGZF, the blocked gzip format: a sequence of gzip members of at most 64 KiB each, whose headers record the
+ * compressed size of the member. The result is a valid gzip file, and its blocks can be located and decompressed
+ * independently by {@link BgzfInputStream}. <br>
+ * Since blocks do not share any state, they are compressed concurrently by a pool of daemon threads shared by all
+ * streams, and written in order. Within a {@link BatchService} job, whose codecs are limited by {@link CpuPermits},
+ * blocks are compressed on the calling thread, which holds the permit. The stream ends with the empty end-of-file
+ * block defined by the format.
+ */
+final class BgzfOutputStream extends CompressorOutputStream {
+
+    /** Maximum amount of uncompressed data in a block, chosen so that even incompressible data fits into a block. */
+    static final int MAX_BLOCK_INPUT = 0xff00;
+
+    /** Maximum size of a compressed block, including header and trailer. */
+    static final int MAX_BLOCK_SIZE = 0x10000;
+
+    static final int HEADER_SIZE = 18;
+    static final int TRAILER_SIZE = 8;
+
+    static final byte[] EOF_BLOCK = {
+        0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0, 0x1b, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private final OutputStream out;
+    private final boolean concurrent;
+    private final int maxPendingBlocks;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block = new byte[MAX_BLOCK_INPUT];
+    private int blockLength;
+    private boolean closed;
+
+    /**
+     * Creates a new stream that compresses as many blocks at the same time as there are processors, or one block at a
+     * time on the calling thread within a {@link BatchService} job.
+     *
+     * @param out the stream to write the compressed data to
+     */
+    BgzfOutputStream(OutputStream out) {
+        this(out, CpuPermits.isLimited() ? 1 : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new stream.
+     *
+     * @param out the stream to write the compressed data to
+     * @param threads the number of blocks that are compressed at the same time by the shared pool, {@code 1}
+     *     compresses on the calling thread
+     */
+    BgzfOutputStream(OutputStream out, int threads) {
+        this.out = Objects.requireNonNull(out, "out");
+        this.concurrent = threads > 1;
+        this.maxPendingBlocks = 2 * threads;
+    }
+
+    /**
+     * Returns whether blocks are compressed by the shared pool, rather than on the calling thread.
+     *
+     * @return true if blocks are compressed concurrently
+     */
+    boolean isConcurrent() {
+        return concurrent;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, MAX_BLOCK_INPUT - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == MAX_BLOCK_INPUT) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Ends the current block and writes all pending blocks to the underlying stream before flushing it.
+     *
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        submitBlock();
+        drain(0);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            submitBlock();
+            drain(0);
+            out.write(EOF_BLOCK);
+        } finally {
+            closed = true;
+            for (Future<byte[]> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (blockLength == 0) {
+            return;
+        }
+        byte[] data = block;
+        int length = blockLength;
+        if (concurrent) {
+            pending.add(Compressors.POOL.submit(() -> compress(data, length)));
+        } else {
+            pending.add(CompletableFuture.completedFuture(compress(data, length)));
+        }
+        block = new byte[MAX_BLOCK_INPUT];
+        blockLength = 0;
+        drain(maxPendingBlocks);
+    }
+
+    /** Writes completed blocks in order until no more than the given number of blocks are pending. */
+    private void drain(int maxPending) throws IOException {
+        while (pending.size() > maxPending) {
+            out.write(await(pending.poll()));
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing a BGZF block");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Could not compress a BGZF block", cause);
+        }
+    }
+
+    /**
+     * Compresses the given data into a complete BGZF block.
+     *
+     * @param data the uncompressed data
+     * @param length the number of bytes of {@code data} to compress, at most {@link #MAX_BLOCK_INPUT}
+     * @return the block, including header and trailer
+     */
+    static byte[] compress(byte[] data, int length) {
+        byte[] compressed = new byte[MAX_BLOCK_SIZE];
+        int size = deflate(data, length, compressed, Deflater.DEFAULT_COMPRESSION);
+        if (size < 0) {
+            // data that does not shrink is stored, which always fits
+            size = deflate(data, length, compressed, Deflater.NO_COMPRESSION);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        int total = HEADER_SIZE + size + TRAILER_SIZE;
+        byte[] result = Arrays.copyOf(EOF_BLOCK, total);
+        writeShort(result, 16, total - 1);
+        System.arraycopy(compressed, 0, result, HEADER_SIZE, size);
+        writeInt(result, HEADER_SIZE + size, (int) crc.getValue());
+        writeInt(result, HEADER_SIZE + size + 4, length);
+        return result;
+    }
+
+    /** Deflates the data into the buffer, returning the compressed size or -1 if it does not fit into a block. */
+    private static int deflate(byte[] data, int length, byte[] buffer, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            int limit = MAX_BLOCK_SIZE - HEADER_SIZE - TRAILER_SIZE;
+            int size = 0;
+            while (!deflater.finished() && size < limit) {
+                size += deflater.deflate(buffer, size, limit - size);
+            }
+            return deflater.finished() ? size : -1;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeShort(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeInt(byte[] b, int off, int value) {
+        writeShort(b, off, value);
+        writeShort(b, off + 2, value >>> 16);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * The pool of threads shared by all streams, created when the first block is compressed concurrently. It has a
+     * thread per processor, and idle threads terminate after a minute.
+     */
+    private static final class Compressors {
+
+        static final ExecutorService POOL = createPool();
+
+        private static ExecutorService createPool() {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    1,
+                    TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<>(),
+                    new CompressorThreadFactory());
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    private static final class CompressorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "compress4j-bgzf-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads the contents of an archive entry from a {@link ByteBuffer}, such as a mapping of a region of a
+ * {@link MappedArchive}. <br>
+ * Transfers into channels write the buffer directly, without copying it into an intermediate heap buffer. The buffer
+ * is not accessed anymore once the stream is closed, so that a mapping can be released on close.
+ */
+final class ByteBufferEntryStream extends InputStream implements ChannelTransferable {
+
+    private final Runnable onClose;
+
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a stream over the remaining bytes of the given buffer.
+     *
+     * @param buffer the buffer to read, its position is advanced by reading
+     * @param onClose run once when the stream is closed, after which the buffer is not accessed anymore
+     */
+    ByteBufferEntryStream(ByteBuffer buffer, Runnable onClose) {
+        this.buffer = buffer;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return buffer.remaining();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        ensureOpen();
+        long transferred = 0;
+        while (buffer.hasRemaining()) {
+            transferred += target.write(buffer);
+        }
+        return transferred;
+    }
+
+    @Override
+    public void close() {
+        if (buffer != null) {
+            buffer = null;
+            onClose.run();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read-only {@link SeekableByteChannel} over a {@link RangeSource}, which fetches the source in fixed-size blocks and
+ * keeps the least recently used blocks in a cache. <br>
+ * A read that misses the cache fetches the missing block together with all following missing blocks it covers, so
+ * that a large read results in a single request to the source. When the channel is opened, the tail of the source is
+ * prefetched with one request; if the tail ends with the end of central directory record of a ZIP archive, the
+ * central directory is prefetched with a second one. Listing a ZIP archive then costs at most two requests. <br>
+ * Instances are not thread-safe, as is usual for channels that have a position.
+ */
+final class CachingRangeChannel implements SeekableByteChannel {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_MIN_LENGTH = 22;
+    private static final int EOCD_MAX_COMMENT_LENGTH = 0xffff;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+
+    private final RangeSource source;
+    private final long size;
+    private final int blockSize;
+    private final int maxBlocks;
+    private final Map<Long, byte[]> blocks;
+
+    private long position;
+    private boolean open = true;
+
+    /**
+     * Creates a channel over the given source and prefetches its tail.
+     *
+     * @param source the source to read
+     * @param options the block size, cache size and prefetch
+     * @throws IOException if the size or the tail of the source can not be read
+     */
+    CachingRangeChannel(RangeSource source, RangeReadOptions options) throws IOException {
+        this.source = source;
+        this.size = source.size();
+        this.blockSize = options.getBlockSize();
+        this.maxBlocks = (int) Math.max(1, Math.min(options.getCacheSize() / blockSize, Integer.MAX_VALUE / blockSize));
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+
+        if (options.getTailPrefetch() > 0 && size > 0) {
+            prefetch(Math.max(0, size - options.getTailPrefetch()));
+        }
+    }
+
+    private void prefetch(long tailStart) throws IOException {
+        fetch(tailStart / blockSize, blockIndex(size - 1));
+
+        int length = (int) Math.min(size, EOCD_MIN_LENGTH + EOCD_MAX_COMMENT_LENGTH);
+        long start = Math.max(tailStart, size - length);
+        ByteBuffer tail = ByteBuffer.allocate((int) (size - start));
+        readAt(start, tail);
+
+        // scan backwards for the end of central directory record, which is followed by a comment of variable length
+        byte[] bytes = tail.array();
+        for (int i = bytes.length - EOCD_MIN_LENGTH; i >= 0; i--) {
+            if (intAt(bytes, i) == EOCD_SIGNATURE) {
+                long directorySize = intAt(bytes, i + 12) & ZIP64_MAGIC;
+                long directoryOffset = intAt(bytes, i + 16) & ZIP64_MAGIC;
+                if (directorySize != ZIP64_MAGIC
+                        && directoryOffset != ZIP64_MAGIC
+                        && directoryOffset + directorySize <= start + i
+                        && directoryOffset < tailStart
+                        && !blocks.containsKey(blockIndex(directoryOffset))) {
+                    fetch(blockIndex(directoryOffset), blockIndex(tailStart - 1));
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        int n = readAt(position, dst);
+        position += n;
+        return n;
+    }
+
+    /** Reads from the cached blocks into the buffer, fetching the blocks that are missing. */
+    private int readAt(long offset, ByteBuffer dst) throws IOException {
+        long end = Math.min(size, offset + dst.remaining());
+        long lastBlock = blockIndex(end - 1);
+        int read = 0;
+        while (offset < end) {
+            long index = blockIndex(offset);
+            byte[] block = blocks.get(index);
+            if (block == null) {
+                block = fetch(index, lastBlock);
+            }
+            int blockOffset = (int) (offset - index * blockSize);
+            int n = (int) Math.min(block.length - blockOffset, end - offset);
+            dst.put(block, blockOffset, n);
+            offset += n;
+            read += n;
+        }
+        return read;
+    }
+
+    /**
+     * Fetches the given block and the missing blocks that follow it up to {@code lastBlock} with a single request.
+     * Blocks that are already cached end the run, as does the capacity of the cache.
+     *
+     * @return the first fetched block
+     */
+    private byte[] fetch(long firstBlock, long lastBlock) throws IOException {
+        long last = firstBlock;
+        while (last < lastBlock && last - firstBlock + 1 < maxBlocks && !blocks.containsKey(last + 1)) {
+            last++;
+        }
+
+        long start = firstBlock * blockSize;
+        long end = Math.min(size, (last + 1) * blockSize);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (source.read(start + buffer.position(), buffer) < 0) {
+                throw new EOFException("Source ended at " + (start + buffer.position()) + " of " + size + " bytes");
+            }
+        }
+
+        byte[] bytes = buffer.array();
+        byte[] first = null;
+        for (long index = firstBlock; index <= last; index++) {
+            int from = (int) ((index - firstBlock) * blockSize);
+            byte[] block = Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + blockSize));
+            blocks.put(index, block);
+            if (first == null) {
+                first = block;
+            }
+        }
+        return first;
+    }
+
+    private long blockIndex(long offset) {
+        return offset / blockSize;
+    }
+
+    private static int intAt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+                | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            blocks.clear();
+            source.close();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
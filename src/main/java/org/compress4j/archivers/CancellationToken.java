@@ -0,0 +1,225 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * Stops running archive operations cooperatively. A token is passed to operations through {@link ExtractOptions} and
+ * {@link CreateOptions}, or to {@link Compressor#compress(File, File, CancellationToken)}, and may be shared between
+ * several operations. Once the token is {@link #cancel() cancelled}, or its deadline has passed, the operations fail
+ * with an {@link OperationCancelledException} at the next entry or buffer they process, usually within milliseconds,
+ * and close their streams. <br>
+ * Tokens are checked by the threads that transfer the data. An operation that waits for the bandwidth of a
+ * {@link Throttle} or for memory of the {@link MemoryBudget} checks the token at least every 10 milliseconds and
+ * wakes up at the deadline, so it stops waiting as promptly.
+ */
+public final class CancellationToken {
+
+    /** A token that is never cancelled. */
+    public static final CancellationToken NONE = new CancellationToken(false, 0);
+
+    private static final Duration MAX_TIMEOUT = Duration.ofNanos(Long.MAX_VALUE / 2);
+
+    /** The longest a wait sleeps before it checks the token again, as cancelling does not signal the waiters. */
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final boolean hasDeadline;
+    private final long deadline;
+
+    private volatile boolean cancelled;
+
+    private CancellationToken(boolean hasDeadline, long deadline) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates a token without deadline, which stops the operations once it is cancelled.
+     *
+     * @return a new token
+     */
+    public static CancellationToken create() {
+        return new CancellationToken(false, 0);
+    }
+
+    /**
+     * Creates a token whose deadline passes after the given timeout, counted from now. It may also be cancelled
+     * before.
+     *
+     * @param timeout the time after which the operations stop
+     * @return a new token
+     * @throws IllegalArgumentException if {@code timeout} is negative
+     */
+    public static CancellationToken withTimeout(Duration timeout) {
+        if (Objects.requireNonNull(timeout).isNegative()) {
+            throw new IllegalArgumentException("Timeout must not be negative, was " + timeout);
+        }
+        // differences of System.nanoTime() overflow after 292 years
+        long nanos = timeout.compareTo(MAX_TIMEOUT) > 0 ? MAX_TIMEOUT.toNanos() : timeout.toNanos();
+        return new CancellationToken(true, System.nanoTime() + nanos);
+    }
+
+    /**
+     * Cancels the operations that use this token. Cancelling a token again has no effect.
+     *
+     * @throws UnsupportedOperationException if this is {@link #NONE}
+     */
+    public void cancel() {
+        if (this == NONE) {
+            throw new UnsupportedOperationException("The NONE token can not be cancelled");
+        }
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether this token was cancelled or its deadline has passed.
+     *
+     * @return true if the operations that use this token are to stop
+     */
+    public boolean isCancelled() {
+        return cancelled || hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Throws if this token was cancelled or its deadline has passed.
+     *
+     * @throws OperationCancelledException if the operations that use this token are to stop
+     */
+    public void throwIfCancelled() throws OperationCancelledException {
+        if (cancelled) {
+            throw new OperationCancelledException("Operation cancelled", false);
+        } else if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            throw new OperationCancelledException("Operation deadline exceeded", true);
+        }
+    }
+
+    /**
+     * Returns whether this token can stop an operation at all.
+     *
+     * @return false for {@link #NONE}
+     */
+    boolean isCancellable() {
+        return this != NONE;
+    }
+
+    /**
+     * Waits on the given condition, as {@link Condition#await()}, until it is signalled or this token is cancelled.
+     * The caller holds the lock of the condition and checks its predicate again when this returns.
+     *
+     * @param condition the condition to wait on
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws OperationCancelledException if the token is cancelled or its deadline passes
+     */
+    void await(Condition condition) throws InterruptedException, OperationCancelledException {
+        if (isCancellable()) {
+            awaitNanos(condition, Long.MAX_VALUE);
+        } else {
+            condition.await();
+        }
+    }
+
+    /**
+     * Waits on the given condition, as {@link Condition#awaitNanos(long)}, until it is signalled, the time has elapsed
+     * or this token is cancelled. The wait is cut into slices that end no later than the deadline of this token, which
+     * is checked again on every wake-up.
+     *
+     * @param condition the condition to wait on
+     * @param nanos the maximum time to wait
+     * @return an estimate of the time left to wait, {@code 0} or less if it has elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws OperationCancelledException if the token is cancelled or its deadline passes
+     */
+    long awaitNanos(Condition condition, long nanos) throws InterruptedException, OperationCancelledException {
+        throwIfCancelled();
+        if (!isCancellable()) {
+            return condition.awaitNanos(nanos);
+        }
+        long start = System.nanoTime();
+        long slice = Math.min(nanos, POLL_NANOS);
+        if (hasDeadline) {
+            slice = Math.min(slice, Math.max(0, deadline - start));
+        }
+        condition.awaitNanos(slice);
+        throwIfCancelled();
+        return nanos - (System.nanoTime() - start);
+    }
+
+    InputStream wrap(InputStream in) {
+        return isCancellable() ? new CancellableInputStream(in) : in;
+    }
+
+    OutputStream wrap(OutputStream out) {
+        return isCancellable() ? new CancellableOutputStream(out) : out;
+    }
+
+    @Override
+    public String toString() {
+        if (this == NONE) {
+            return "CancellationToken[none]";
+        }
+        return "CancellationToken[cancelled=" + isCancelled() + "]";
+    }
+
+    /** Checks the token before every read. */
+    private final class CancellableInputStream extends FilterInputStream {
+
+        CancellableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            throwIfCancelled();
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            throwIfCancelled();
+            return in.read(b, off, len);
+        }
+    }
+
+    /** Checks the token before every write. */
+    private final class CancellableOutputStream extends FilterOutputStream {
+
+        CancellableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            throwIfCancelled();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            throwIfCancelled();
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A source of data that can transfer its remaining contents into a channel more efficiently than through an
+ * intermediate heap buffer, e.g. by letting the operating system copy between file descriptors.
+ */
+interface ChannelTransferable {
+
+    /**
+     * Transfers all remaining bytes of this source into the given channel. On return, the source is at its end.
+     *
+     * @param target the channel to write to
+     * @return the number of bytes transferred
+     * @throws IOException if an I/O error occurs when reading or writing
+     */
+    long transferTo(WritableByteChannel target) throws IOException;
+}
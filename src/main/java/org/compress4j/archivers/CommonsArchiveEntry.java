@@ -60,7 +60,7 @@ class CommonsArchiveEntry implements ArchiveEntry {
     @Override
     public File extract(File destination) throws IOException, IllegalStateException, IllegalArgumentException {
         assertState();
-        return IOUtils.copy(stream, destination, entry);
+        return stream.getEntryExtractor(destination).extract(stream, entry).toFile();
     }
 
     private void assertState() {
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base implementation of an {@link ArchiveReader} over the entries of a commons compress random access archive. The
+ * entries are indexed by their normalized name once, when the reader is opened.
+ *
+ * @param <E> the type of the commons compress archive entries
+ */
+abstract class CommonsArchiveReader<E extends org.apache.commons.compress.archivers.ArchiveEntry>
+        implements ArchiveReader {
+
+    private final List<ArchiveEntry> entries = new ArrayList<>();
+    private final Map<String, ReaderArchiveEntry> entriesByName = new HashMap<>();
+
+    private volatile boolean closed;
+
+    /**
+     * Indexes the given entries. Subclasses call this once from their constructor.
+     *
+     * @param archiveEntries the entries of the archive, in archive order
+     */
+    protected void index(Iterable<E> archiveEntries) {
+        for (E archiveEntry : archiveEntries) {
+            ReaderArchiveEntry entry = new ReaderArchiveEntry(this, archiveEntry);
+            entries.add(entry);
+            entriesByName.put(IOUtils.normalizeEntryName(archiveEntry.getName()), entry);
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    @Override
+    public ArchiveEntry getEntry(String name) {
+        return entriesByName.get(IOUtils.normalizeEntryName(name));
+    }
+
+    @Override
+    public InputStream openStream(ArchiveEntry entry) throws IOException {
+        if (!(entry instanceof ReaderArchiveEntry readerEntry) || readerEntry.reader != this) {
+            throw new IllegalArgumentException("Entry " + entry.getName() + " does not belong to this reader");
+        }
+        if (closed) {
+            throw new IllegalStateException("Reader has already been closed");
+        }
+
+        @SuppressWarnings("unchecked")
+        E archiveEntry = (E) readerEntry.entry;
+        return archiveEntry.isDirectory() ? InputStream.nullInputStream() : openStream(archiveEntry);
+    }
+
+    /**
+     * Opens a stream over the contents of the given commons compress entry.
+     *
+     * @param entry the entry to read
+     * @return a new stream over the contents of the entry
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    protected abstract InputStream openStream(E entry) throws IOException;
+
+    /**
+     * Closes the underlying archive file.
+     *
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    protected abstract void closeArchive() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            closeArchive();
+        }
+    }
+
+    /** {@link ArchiveEntry} of a reader, which can be extracted independently of any other entry. */
+    private static final class ReaderArchiveEntry implements ArchiveEntry {
+
+        private final ArchiveReader reader;
+        private final org.apache.commons.compress.archivers.ArchiveEntry entry;
+
+        ReaderArchiveEntry(ArchiveReader reader, org.apache.commons.compress.archivers.ArchiveEntry entry) {
+            this.reader = reader;
+            this.entry = entry;
+        }
+
+        @Override
+        public String getName() {
+            return entry.getName();
+        }
+
+        @Override
+        public long getSize() {
+            return entry.getSize();
+        }
+
+        @Override
+        public Date getLastModifiedDate() {
+            return entry.getLastModifiedDate();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return entry.isDirectory();
+        }
+
+        @Override
+        public File extract(File destination) throws IOException, IllegalStateException, IllegalArgumentException {
+            IOUtils.requireDirectory(destination);
+
+            EntryExtractor extractor = new EntryExtractor(destination, ExtractOptions.DEFAULT);
+            File file;
+            try (InputStream in = reader.openStream(this)) {
+                file = extractor.extract(in, entry).toFile();
+            }
+            extractor.finish();
+
+            return file;
+        }
+
+        @Override
+        public String toString() {
+            return entry.getName();
+        }
+    }
+}
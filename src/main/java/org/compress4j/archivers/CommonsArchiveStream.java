@@ -17,6 +17,7 @@ package org.compress4j.archivers;
 
 import jakarta.annotation.Nonnull;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 
 /** {@link ArchiveStream} implementation that wraps a commons compress {@link ArchiveInputStream}. */
@@ -50,6 +51,21 @@ class CommonsArchiveStream<E extends org.apache.commons.compress.archivers.Archi
         return stream.read(b, off, len);
     }
 
+    @Override
+    public long skip(long n) throws IOException {
+        return getCurrentEntry() == null ? 0 : stream.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return getCurrentEntry() == null ? 0 : stream.available();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return IOUtils.transfer(stream, target);
+    }
+
     @Override
     public void close() throws IOException {
         super.close();
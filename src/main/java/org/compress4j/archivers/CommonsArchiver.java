@@ -15,18 +15,34 @@
  */
 package org.compress4j.archivers;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 
 /**
  * Implementation of an {@link Archiver} that uses {@link ArchiveStreamFactory} to generate archive streams by a given
@@ -56,39 +72,241 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
 
     @Override
     public File create(String archive, File destination, File... sources) throws IOException {
+        return create(archive, destination, CreateOptions.DEFAULT, sources);
+    }
+
+    @Override
+    public File create(String archive, File destination, CreateOptions options, File... sources) throws IOException {
+        if (options.isSeekable()) {
+            // rejects seekable archives, which only exist for tar.gz
+            return Archiver.super.create(archive, destination, options, sources);
+        }
 
         IOUtils.requireDirectory(destination);
 
         File archiveFile = createNewArchiveFile(archive, getFilenameExtension(), destination);
 
-        try (ArchiveOutputStream<E> outputStream = createArchiveOutputStream(archiveFile)) {
-            writeToArchive(sources, outputStream);
+        try (ArchiveOutputStream<E> outputStream =
+                createArchiveOutputStream(archiveFile, options.getWriteThrottle())) {
+            writeToArchive(sources, outputStream, options);
             outputStream.flush();
+        } catch (OperationCancelledException e) {
+            deleteOnCancel(archiveFile.toPath(), options, e);
+            throw e;
         }
 
         return archiveFile;
     }
 
     @Override
-    public void extract(File archive, File destination) throws IOException {
+    public Path create(String archive, Path destination, CreateOptions options, Path... sources) throws IOException {
+        if (IOUtils.isDefaultFileSystem(destination)
+                && Arrays.stream(sources).allMatch(IOUtils::isDefaultFileSystem)) {
+            File[] files = Arrays.stream(sources).map(Path::toFile).toArray(File[]::new);
+            return create(archive, destination.toFile(), options, files).toPath();
+        }
+        if (options.isSeekable()) {
+            throw new UnsupportedOperationException(
+                    "Seekable archives are not supported for " + getFilenameExtension() + " archives");
+        }
+
+        IOUtils.requireDirectory(destination);
+
+        String extension = getFilenameExtension();
+        Path archivePath = destination.resolve(archive.endsWith(extension) ? archive : archive + extension);
+
+        try (ArchiveOutputStream<E> outputStream =
+                createArchiveOutputStream(archivePath, options.getWriteThrottle())) {
+            writeToArchive(sources, outputStream, options);
+            outputStream.flush();
+        } catch (OperationCancelledException e) {
+            deleteOnCancel(archivePath, options, e);
+            throw e;
+        }
+
+        return archivePath;
+    }
+
+    /**
+     * Removes the archive of a cancelled creation if the options ask for it.
+     *
+     * @param archive the partially written archive
+     * @param options the options of the creation
+     * @param cancelled the exception that stopped the creation, to which a failure to delete the archive is added
+     */
+    static void deleteOnCancel(Path archive, CreateOptions options, OperationCancelledException cancelled) {
+        if (!options.isDeleteOnCancel()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(archive);
+        } catch (IOException e) {
+            cancelled.addSuppressed(e);
+        }
+    }
+
+    @Override
+    public void extract(File archive, File destination, ExtractOptions options) throws IOException {
         assertExtractSource(archive);
 
         IOUtils.requireDirectory(destination);
 
-        try (ArchiveInputStream<?> input = createArchiveInputStream(archive)) {
-            extract(input, destination);
+        try (ArchiveInputStream<?> input = createArchiveInputStream(archive, options)) {
+            extract(input, destination, options, ExtractionGuard.forArchive(options, archive.length()));
         }
     }
 
     @Override
-    public void extract(InputStream archive, File destination) throws IOException {
-        extract(createArchiveInputStream(archive), destination);
+    public void extract(InputStream archive, File destination, ExtractOptions options) throws IOException {
+        ExtractionGuard guard = new ExtractionGuard(options);
+        extract(guard.countArchive(archive), destination, options, guard);
+    }
+
+    @Override
+    public void extract(InputStream archive, Path destination, ExtractOptions options) throws IOException {
+        ExtractionGuard guard = new ExtractionGuard(options);
+        extract(guard.countArchive(archive), destination, options, guard);
+    }
+
+    /**
+     * Extracts the given archive stream with the given guard, which may count a compressed stream the archive is
+     * decompressed from.
+     *
+     * @param archive the archive contents as a stream
+     * @param destination the destination directory
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    void extract(InputStream archive, File destination, ExtractOptions options, ExtractionGuard guard)
+            throws IOException {
+        extract(createArchiveInputStream(archive), destination, options, guard);
+    }
+
+    /**
+     * Extracts the given archive stream with the given guard, which may count a compressed stream the archive is
+     * decompressed from.
+     *
+     * @param archive the archive contents as a stream
+     * @param destination the destination directory
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     */
+    void extract(InputStream archive, Path destination, ExtractOptions options, ExtractionGuard guard)
+            throws IOException {
+        extract(createArchiveInputStream(archive), destination, options, guard);
+    }
+
+    /**
+     * Extracts the entries of the given stream into the given destination directory, which may belong to any file
+     * system.
+     *
+     * @param input the archive to extract
+     * @param destination the directory to which to extract the files
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @param <T> the type of the archive entries
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     */
+    <T extends ArchiveEntry> void extract(
+            ArchiveInputStream<T> input, Path destination, ExtractOptions options, ExtractionGuard guard)
+            throws IOException {
+        if (IOUtils.isDefaultFileSystem(destination)) {
+            IOUtils.requireDirectory(destination.toFile());
+            extract(input, destination.toFile(), options, guard);
+            return;
+        }
+
+        IOUtils.requireDirectory(destination);
+
+        try {
+            extract(input, new EntryExtractor(destination, options, guard), guard);
+        } catch (OperationCancelledException e) {
+            guard.deleteCreated();
+            throw e;
+        }
+    }
+
+    /**
+     * Extracts the entries of the given stream into the given destination directory.
+     *
+     * @param input the archive to extract
+     * @param destination the directory to which to extract the files
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @param <T> the type of the archive entries
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    <T extends ArchiveEntry> void extract(
+            ArchiveInputStream<T> input, File destination, ExtractOptions options, ExtractionGuard guard)
+            throws IOException {
+        try {
+            if (options.isParallel()) {
+                new ParallelExtractor(destination, options, guard).extract(input);
+                return;
+            }
+
+            extract(input, new EntryExtractor(destination, options, guard), guard);
+        } catch (OperationCancelledException e) {
+            // the writer threads of a parallel extraction have finished at this point
+            guard.deleteCreated();
+            throw e;
+        }
     }
 
-    private <T extends ArchiveEntry> void extract(ArchiveInputStream<T> input, File destination) throws IOException {
+    private <T extends ArchiveEntry> void extract(
+            ArchiveInputStream<T> input, EntryExtractor extractor, ExtractionGuard guard) throws IOException {
         T entry;
         while ((entry = input.getNextEntry()) != null) {
-            IOUtils.copy(input, destination, entry);
+            guard.checkEntry(entry.getName());
+            if (extractor.accepts(entry)) {
+                extractor.extract(input, entry);
+            }
+        }
+        extractor.removeStale();
+        extractor.finish();
+    }
+
+    @Override
+    public Map<String, ByteBuffer> extractToMemory(InputStream archive, ExtractOptions options) throws IOException {
+        ExtractionGuard guard = new ExtractionGuard(options);
+        return extractToMemory(guard.countArchive(archive), options, guard);
+    }
+
+    /**
+     * Extracts the given archive stream into memory with the given guard, which may count a compressed stream the
+     * archive is decompressed from.
+     *
+     * @param archive the archive contents as a stream
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @return an unmodifiable map of entry names to their contents, in archive order
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    Map<String, ByteBuffer> extractToMemory(InputStream archive, ExtractOptions options, ExtractionGuard guard)
+            throws IOException {
+        MemoryExtractor extractor = new MemoryExtractor(options, guard);
+        ArchiveInputStream<E> input = createArchiveInputStream(archive);
+        E entry;
+        while ((entry = input.getNextEntry()) != null) {
+            guard.checkEntry(entry.getName());
+            DetachedArchiveEntry detached = new DetachedArchiveEntry(entry);
+            if (extractor.accepts(detached)) {
+                extractor.extract(detached, CpuPermits.wrap(input, entry));
+            }
+        }
+        return extractor.finish();
+    }
+
+    @Override
+    public Map<String, ByteBuffer> extractToMemory(byte[] archive, ExtractOptions options) throws IOException {
+        if (!isRandomAccess()) {
+            return Archiver.super.extractToMemory(archive, options);
+        }
+
+        try (ArchiveReader reader = reader(new SeekableInMemoryByteChannel(archive))) {
+            return MemoryExtractor.extract(reader, options, ExtractionGuard.forArchive(options, archive.length));
         }
     }
 
@@ -97,11 +315,52 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
         return new CommonsArchiveStream<>(createArchiveInputStream(archive));
     }
 
+    @Override
+    public List<org.compress4j.archivers.ArchiveEntry> list(File archive) throws IOException {
+        assertExtractSource(archive);
+
+        if (archiveFormat == ArchiveFormat.JAR) {
+            return ZipFileArchiver.listCentralDirectory(archive);
+        }
+        return DetachedArchiveEntry.list(createArchiveInputStream(archive));
+    }
+
+    @Override
+    public ArchiveReader reader(File archive) throws IOException {
+        if (archiveFormat != ArchiveFormat.JAR) {
+            return Archiver.super.reader(archive);
+        }
+
+        assertExtractSource(archive);
+        return ZipFileArchiver.openReader(archive);
+    }
+
+    @Override
+    public ArchiveReader reader(SeekableByteChannel archive) throws IOException {
+        if (archiveFormat != ArchiveFormat.JAR) {
+            return Archiver.super.reader(archive);
+        }
+
+        return ZipFileArchiver.openReader(archive);
+    }
+
     @Override
     public String getFilenameExtension() {
         return getArchiveFormat().getDefaultFileExtension();
     }
 
+    /**
+     * Checks whether archives of this format can be opened as an {@link ArchiveReader}.
+     *
+     * @return true for ZIP, JAR, 7z and TAR archives
+     */
+    boolean isRandomAccess() {
+        return switch (archiveFormat) {
+            case ZIP, JAR, SEVEN_Z, TAR -> true;
+            default -> false;
+        };
+    }
+
     /**
      * Returns a new ArchiveInputStream for reading archives. Subclasses can override this to return their own custom
      * implementation.
@@ -118,6 +377,30 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
         }
     }
 
+    /**
+     * Returns a new ArchiveInputStream for extracting the given archive file, reading the file within the bandwidth
+     * of the read throttle of the given options.
+     *
+     * @param archive the archive file to stream from
+     * @param options the options of the extraction
+     * @return a new ArchiveInputStream for the given archive file
+     * @throws IOException propagated IO exceptions
+     */
+    ArchiveInputStream<E> createArchiveInputStream(File archive, ExtractOptions options) throws IOException {
+        Throttle throttle = options.getReadThrottle();
+        if (throttle.isUnlimited()) {
+            return createArchiveInputStream(archive);
+        }
+
+        InputStream in = throttle.wrap(new FileInputStream(archive));
+        try {
+            return createArchiveInputStream(new BufferedInputStream(in, EntryExtractor.BUFFER_SIZE));
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(in);
+            throw e;
+        }
+    }
+
     /**
      * Returns a new ArchiveInputStream for reading archives. Subclasses can override this to return their own custom
      * implementation.
@@ -144,19 +427,81 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
      */
     protected ArchiveOutputStream<E> createArchiveOutputStream(File archiveFile) throws IOException {
         try {
-            ArchiveOutputStream<E> archiveOutputStream =
-                    CommonsStreamFactory.createArchiveOutputStream(this, archiveFile);
+            return configure(CommonsStreamFactory.createArchiveOutputStream(this, archiveFile));
+        } catch (ArchiveException e) {
+            throw new IOException(e);
+        }
+    }
 
-            if (archiveOutputStream instanceof TarArchiveOutputStream tarArchiveOutputStream) {
-                (tarArchiveOutputStream).setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
-            }
+    /**
+     * Returns a new ArchiveOutputStream for creating archives at the given path, which may belong to any file system.
+     * An existing file is overwritten. Subclasses can override this to return their own custom implementation.
+     *
+     * @param archive the path of the archive to stream to
+     * @return a new ArchiveOutputStream for the given archive path
+     * @throws IOException propagated IO exceptions
+     */
+    protected ArchiveOutputStream<E> createArchiveOutputStream(Path archive) throws IOException {
+        return createArchiveOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(archive), EntryExtractor.BUFFER_SIZE));
+    }
+
+    /**
+     * Returns a new ArchiveOutputStream for creating the given archive file, writing the file within the bandwidth of
+     * the given throttle.
+     *
+     * @param archiveFile the archive file to stream to
+     * @param throttle the throttle that limits writing the file
+     * @return a new ArchiveOutputStream for the given archive file
+     * @throws IOException propagated IO exceptions
+     */
+    ArchiveOutputStream<E> createArchiveOutputStream(File archiveFile, Throttle throttle) throws IOException {
+        if (throttle.isUnlimited()) {
+            return createArchiveOutputStream(archiveFile);
+        }
+        return createArchiveOutputStream(
+                new BufferedOutputStream(throttle.wrap(new FileOutputStream(archiveFile)), EntryExtractor.BUFFER_SIZE));
+    }
 
-            return archiveOutputStream;
+    /**
+     * Returns a new ArchiveOutputStream for creating archives at the given path, writing the archive within the
+     * bandwidth of the given throttle.
+     *
+     * @param archive the path of the archive to stream to
+     * @param throttle the throttle that limits writing the archive
+     * @return a new ArchiveOutputStream for the given archive path
+     * @throws IOException propagated IO exceptions
+     */
+    ArchiveOutputStream<E> createArchiveOutputStream(Path archive, Throttle throttle) throws IOException {
+        if (throttle.isUnlimited()) {
+            return createArchiveOutputStream(archive);
+        }
+        return createArchiveOutputStream(
+                new BufferedOutputStream(throttle.wrap(Files.newOutputStream(archive)), EntryExtractor.BUFFER_SIZE));
+    }
+
+    /**
+     * Returns a new ArchiveOutputStream that writes archives of this format into the given stream.
+     *
+     * @param out the stream to write the archive to
+     * @return a new ArchiveOutputStream
+     * @throws IOException propagated IO exceptions
+     */
+    ArchiveOutputStream<E> createArchiveOutputStream(OutputStream out) throws IOException {
+        try {
+            return configure(CommonsStreamFactory.createArchiveOutputStream(archiveFormat.getName(), out));
         } catch (ArchiveException e) {
             throw new IOException(e);
         }
     }
 
+    private static <T extends ArchiveEntry> ArchiveOutputStream<T> configure(ArchiveOutputStream<T> out) {
+        if (out instanceof TarArchiveOutputStream tarArchiveOutputStream) {
+            tarArchiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        }
+        return out;
+    }
+
     /**
      * Asserts that the given File object is a readable file that can be used to extract from.
      *
@@ -198,14 +543,16 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
     }
 
     /**
-     * Recursion entry point for {@link #writeToArchive(File, File[], ArchiveOutputStream)}. <br>
+     * Recursion entry point for {@link #writeToArchive(File, File[], ArchiveOutputStream, CreateOptions)}. <br>
      * Recursively writes all given source {@link File}s into the given {@link ArchiveOutputStream}.
      *
      * @param sources the files to write in to the archive
      * @param archive the archive to write into
+     * @param options the options that control the creation
      * @throws IOException when an I/O error occurs
      */
-    protected void writeToArchive(File[] sources, ArchiveOutputStream<E> archive) throws IOException {
+    protected void writeToArchive(File[] sources, ArchiveOutputStream<E> archive, CreateOptions options)
+            throws IOException {
         for (File source : sources) {
             if (!source.exists()) {
                 throw new FileNotFoundException(source.getPath());
@@ -213,7 +560,7 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
                 throw new FileNotFoundException(source.getPath() + " (Permission denied)");
             }
 
-            writeToArchive(source.getParentFile(), new File[] {source}, archive);
+            writeToArchive(source.getParentFile(), new File[] {source}, archive, options);
         }
     }
 
@@ -224,16 +571,18 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
      * @param parent the parent file node for computing a relative path
      * @param sources the files to write in to the archive
      * @param archive the archive to write into
+     * @param options the options that control the creation
      * @throws IOException when an I/O error occurs
      */
-    protected void writeToArchive(File parent, File[] sources, ArchiveOutputStream<E> archive) throws IOException {
+    protected void writeToArchive(File parent, File[] sources, ArchiveOutputStream<E> archive, CreateOptions options)
+            throws IOException {
         for (File source : sources) {
             String relativePath = getRelativePath(parent, source);
 
-            createArchiveEntry(source, relativePath, archive);
+            createArchiveEntry(source, relativePath, archive, options);
 
             if (source.isDirectory()) {
-                writeToArchive(parent, Objects.requireNonNull(source.listFiles()), archive);
+                writeToArchive(parent, Objects.requireNonNull(source.listFiles()), archive, options);
             }
         }
     }
@@ -245,19 +594,114 @@ class CommonsArchiver<E extends ArchiveEntry> implements Archiver {
      * @param file the file to add to the archive
      * @param entryName the name of the archive entry
      * @param archive the archive to write to
+     * @param options the options that control the creation
      * @throws IOException when an I/O error occurs during FileInputStream creation or during copying
      */
-    protected void createArchiveEntry(File file, String entryName, ArchiveOutputStream<E> archive) throws IOException {
+    protected void createArchiveEntry(
+            File file, String entryName, ArchiveOutputStream<E> archive, CreateOptions options) throws IOException {
+        options.getCancellation().throwIfCancelled();
         E entry = archive.createArchiveEntry(file, entryName);
         // TODO #23: read permission from file, write it to the ArchiveEntry
+        if (entry instanceof ZipArchiveEntry zipEntry) {
+            ZipFileArchiver.prepareEntry(zipEntry, file.toPath(), options);
+        }
         archive.putArchiveEntry(entry);
 
         if (!entry.isDirectory()) {
-            try (FileInputStream input = new FileInputStream(file)) {
+            try (InputStream input =
+                    options.getCancellation().wrap(options.getReadThrottle().wrap(new FileInputStream(file)))) {
                 input.transferTo(archive);
             }
         }
 
         archive.closeArchiveEntry();
     }
+
+    /**
+     * Recursively writes all given source {@link Path}s into the given {@link ArchiveOutputStream}. The paths may
+     * belong to any file system, their names in the archive are relative to their parent directories.
+     *
+     * @param sources the files to write in to the archive
+     * @param archive the archive to write into
+     * @param options the options that control the creation
+     * @throws IOException when an I/O error occurs
+     * @see #writeToArchive(File[], ArchiveOutputStream, CreateOptions)
+     */
+    protected void writeToArchive(Path[] sources, ArchiveOutputStream<E> archive, CreateOptions options)
+            throws IOException {
+        for (Path source : sources) {
+            if (!Files.exists(source)) {
+                throw new FileNotFoundException(source.toString());
+            } else if (!Files.isReadable(source)) {
+                throw new FileNotFoundException(source + " (Permission denied)");
+            }
+
+            writeToArchive(source.getParent(), source, archive, options);
+        }
+    }
+
+    private void writeToArchive(Path parent, Path source, ArchiveOutputStream<E> archive, CreateOptions options)
+            throws IOException {
+        boolean directory = Files.isDirectory(source);
+        StringJoiner entryName = new StringJoiner("/", "", directory ? "/" : "");
+        for (Path name : parent != null ? parent.relativize(source) : source) {
+            entryName.add(name.toString());
+        }
+
+        createArchiveEntry(source, entryName.toString(), archive, options);
+
+        if (directory) {
+            List<Path> children;
+            try (Stream<Path> list = Files.list(source)) {
+                children = list.toList();
+            }
+            for (Path child : children) {
+                writeToArchive(parent, child, archive, options);
+            }
+        }
+    }
+
+    /**
+     * Creates a new {@link ArchiveEntry} in the given {@link ArchiveOutputStream}, and copies the given {@link Path}
+     * into the new entry.
+     *
+     * @param path the file to add to the archive
+     * @param entryName the name of the archive entry
+     * @param archive the archive to write to
+     * @param options the options that control the creation
+     * @throws IOException when an I/O error occurs while reading or copying the file
+     */
+    protected void createArchiveEntry(
+            Path path, String entryName, ArchiveOutputStream<E> archive, CreateOptions options) throws IOException {
+        options.getCancellation().throwIfCancelled();
+        E entry = newArchiveEntry(path, entryName, archive);
+        if (entry instanceof ZipArchiveEntry zipEntry) {
+            ZipFileArchiver.prepareEntry(zipEntry, path, options);
+        }
+        archive.putArchiveEntry(entry);
+
+        if (!entry.isDirectory()) {
+            try (InputStream input =
+                    options.getCancellation().wrap(options.getReadThrottle().wrap(Files.newInputStream(path)))) {
+                input.transferTo(archive);
+            }
+        }
+
+        archive.closeArchiveEntry();
+    }
+
+    @SuppressWarnings("unchecked")
+    private E newArchiveEntry(Path path, String entryName, ArchiveOutputStream<E> archive) throws IOException {
+        if (archive instanceof TarArchiveOutputStream
+                && !path.getFileSystem().supportedFileAttributeViews().contains("owner")) {
+            // TarArchiveEntry reads the owner of the file, which not every file system supports
+            TarArchiveEntry entry = new TarArchiveEntry(entryName);
+            if (!entry.isDirectory()) {
+                entry.setSize(Files.size(path));
+            }
+            entry.setModTime(Files.getLastModifiedTime(path));
+            return (E) entry;
+        }
+        return archive.createArchiveEntry(path, entryName);
+    }
 }
@@ -16,14 +16,16 @@
 package org.compress4j.archivers;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorInputStream;
 import org.apache.commons.compress.compressors.CompressorOutputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
 
@@ -46,44 +48,129 @@ class CommonsCompressor implements Compressor {
 
     @Override
     public void compress(File source, File destination) throws IllegalArgumentException, IOException {
+        compress(source, destination, Throttle.UNLIMITED, Throttle.UNLIMITED);
+    }
+
+    @Override
+    public void decompress(File source, File destination) throws IOException {
+        decompress(source, destination, Throttle.UNLIMITED, Throttle.UNLIMITED);
+    }
+
+    @Override
+    public void compress(File source, File destination, Throttle readThrottle, Throttle writeThrottle)
+            throws IllegalArgumentException, IOException {
+        compress(source, destination, readThrottle, writeThrottle, CancellationToken.NONE);
+    }
+
+    @Override
+    public void compress(File source, File destination, CancellationToken cancellation)
+            throws IllegalArgumentException, IOException {
+        compress(source, destination, Throttle.UNLIMITED, Throttle.UNLIMITED, cancellation);
+    }
+
+    private void compress(
+            File source,
+            File destination,
+            Throttle readThrottle,
+            Throttle writeThrottle,
+            CancellationToken cancellation)
+            throws IOException {
         assertSource(source);
         assertDestination(destination);
+        readThrottle = readThrottle.bind(cancellation);
+        writeThrottle = writeThrottle.bind(cancellation);
 
         if (destination.isDirectory()) {
             destination = new File(destination, getCompressedFilename(source));
         }
 
-        try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(source));
-                CompressorOutputStream compressed =
-                        CommonsStreamFactory.createCompressorOutputStream(this, destination)) {
+        try (InputStream input =
+                        cancellation.wrap(new BufferedInputStream(readThrottle.wrap(new FileInputStream(source))));
+                CompressorOutputStream compressed = CommonsStreamFactory.createCompressorOutputStream(
+                        getCompressionType(), newOutputStream(destination, writeThrottle))) {
             input.transferTo(compressed);
         } catch (CompressorException e) {
             throw new IOException(e);
+        } catch (OperationCancelledException e) {
+            deletePartial(destination, e);
+            throw e;
         }
     }
 
     @Override
-    public void decompress(File source, File destination) throws IOException {
+    public void decompress(File source, File destination, Throttle readThrottle, Throttle writeThrottle)
+            throws IOException {
+        decompress(source, destination, readThrottle, writeThrottle, CancellationToken.NONE);
+    }
+
+    @Override
+    public void decompress(File source, File destination, CancellationToken cancellation) throws IOException {
+        decompress(source, destination, Throttle.UNLIMITED, Throttle.UNLIMITED, cancellation);
+    }
+
+    private void decompress(
+            File source,
+            File destination,
+            Throttle readThrottle,
+            Throttle writeThrottle,
+            CancellationToken cancellation)
+            throws IOException {
         assertSource(source);
         assertDestination(destination);
+        readThrottle = readThrottle.bind(cancellation);
+        writeThrottle = writeThrottle.bind(cancellation);
 
         if (destination.isDirectory()) {
             destination = new File(destination, getDecompressedFilename(source));
         }
 
-        try (CompressorInputStream compressed =
-                        CommonsStreamFactory.createCompressorInputStream(getCompressionType(), source);
-                FileOutputStream output = new FileOutputStream(destination); ) {
+        try (InputStream compressed = cancellation.wrap(CommonsStreamFactory.createCompressorInputStream(
+                        getCompressionType(),
+                        new BufferedInputStream(readThrottle.wrap(new FileInputStream(source))),
+                        cancellation));
+                OutputStream output = writeThrottle.wrap(new FileOutputStream(destination))) {
             compressed.transferTo(output);
         } catch (CompressorException e) {
             throw new IOException(e);
+        } catch (OperationCancelledException e) {
+            deletePartial(destination, e);
+            throw e;
         }
     }
 
+    /** Removes the destination of a cancelled operation, which is of no use when it is incomplete. */
+    private static void deletePartial(File destination, OperationCancelledException cancelled) {
+        try {
+            Files.deleteIfExists(destination.toPath());
+        } catch (IOException e) {
+            cancelled.addSuppressed(e);
+        }
+    }
+
+    /** Compressors write small blocks, throttled output is buffered so the throttle accounts for large writes. */
+    private static OutputStream newOutputStream(File destination, Throttle throttle) throws IOException {
+        OutputStream out = new FileOutputStream(destination);
+        return throttle.isUnlimited() ? out : new BufferedOutputStream(throttle.wrap(out), EntryExtractor.BUFFER_SIZE);
+    }
+
     @Override
     public InputStream decompressingStream(InputStream compressedStream) throws IOException {
+        return decompressingStream(compressedStream, CancellationToken.NONE);
+    }
+
+    /**
+     * Decompresses the given stream, waiting for the {@link MemoryBudget} of the decoder until the given token is
+     * cancelled.
+     *
+     * @param compressedStream the stream to decompress
+     * @param cancellation the token of the operation
+     * @return the decompressing stream
+     * @throws IOException if the stream can not be decompressed, or the token is cancelled while waiting
+     */
+    InputStream decompressingStream(InputStream compressedStream, CancellationToken cancellation) throws IOException {
         try {
-            return CommonsStreamFactory.createCompressorInputStream(getCompressionType(), compressedStream);
+            return CommonsStreamFactory.createCompressorInputStream(
+                    getCompressionType(), compressedStream, cancellation);
         } catch (CompressorException e) {
             throw new IOException(e);
         }
@@ -101,7 +188,9 @@ class CommonsCompressor implements Compressor {
     private String getDecompressedFilename(File source) {
         FileType fileType = FileType.get(source);
 
-        if (compressionType != fileType.getCompressionType()) {
+        if (fileType.getCompressionType() == null
+                || compressionType.getDecompressionType()
+                        != fileType.getCompressionType().getDecompressionType()) {
             throw new IllegalArgumentException(source + " is not of type " + compressionType);
         }
 
@@ -116,12 +116,12 @@ final class CommonsStreamFactory {
      * {@link File}.
      *
      * @param source the file to create the {@link CompressorInputStream} for
-     * @return a new {@link CompressorInputStream}
+     * @return a new {@link CompressorInputStream}, which holds a reservation of the global {@link MemoryBudget}
      * @throws IOException if an I/O error occurs
      * @throws CompressorException if the compressor name is not known
      */
-    static CompressorInputStream createCompressorInputStream(File source) throws IOException, CompressorException {
-        return createCompressorInputStream(new BufferedInputStream(new FileInputStream(source)));
+    static InputStream createCompressorInputStream(File source) throws IOException, CompressorException {
+        return createCompressorInputStream(new FileInputStream(source));
     }
 
     /**
@@ -129,29 +129,74 @@ final class CommonsStreamFactory {
      * and wraps the given source {@link File} with it.
      *
      * @param source the file to create the {@link CompressorInputStream} for
-     * @return a new {@link CompressorInputStream}
+     * @return a new {@link CompressorInputStream}, which holds a reservation of the global {@link MemoryBudget}
      * @throws IOException if an I/O error occurs
      * @throws CompressorException if the compressor name is not known
      */
-    static CompressorInputStream createCompressorInputStream(CompressionType type, File source)
+    static InputStream createCompressorInputStream(CompressionType type, File source)
             throws IOException, CompressorException {
-        return createCompressorInputStream(type, new BufferedInputStream(new FileInputStream(source)));
+        return createCompressorInputStream(type, new FileInputStream(source));
     }
 
     /** @see CompressorStreamFactory#createCompressorInputStream(String, java.io.InputStream) */
-    static CompressorInputStream createCompressorInputStream(CompressionType compressionType, InputStream in)
-            throws CompressorException {
-        return compressorStreamFactory.createCompressorInputStream(compressionType.getName(), in);
+    static InputStream createCompressorInputStream(CompressionType compressionType, InputStream in)
+            throws IOException, CompressorException {
+        return createCompressorInputStream(compressionType, in, CancellationToken.NONE);
+    }
+
+    /**
+     * Creates the decompressor of the compression type, waiting for the global {@link MemoryBudget} until the given
+     * token is cancelled.
+     *
+     * @see CompressorStreamFactory#createCompressorInputStream(String, java.io.InputStream)
+     */
+    static InputStream createCompressorInputStream(
+            CompressionType compressionType, InputStream in, CancellationToken cancellation)
+            throws IOException, CompressorException {
+        return createCompressorInputStream(
+                compressionType.getDecompressionType().getName(), IOUtils.markable(in), cancellation);
     }
 
     /** @see CompressorStreamFactory#createCompressorInputStream(InputStream) */
-    static CompressorInputStream createCompressorInputStream(InputStream in) throws CompressorException {
-        return compressorStreamFactory.createCompressorInputStream(in);
+    static InputStream createCompressorInputStream(InputStream in) throws IOException, CompressorException {
+        InputStream markable = IOUtils.markable(in);
+        return createCompressorInputStream(CompressorStreamFactory.detect(markable), markable, CancellationToken.NONE);
+    }
+
+    /**
+     * Creates the decompressor once the estimated footprint of its decoder is reserved from the global
+     * {@link MemoryBudget}. The decoder is limited to the maximum stream memory of the budget, and the reservation is
+     * released when the stream is closed. Within a {@link BatchService} job, decoding takes one of its
+     * {@link CpuPermits CPU permits}. Waiting for the budget stops when the given token is cancelled.
+     */
+    private static InputStream createCompressorInputStream(
+            String compressorName, InputStream in, CancellationToken cancellation)
+            throws IOException, CompressorException {
+        MemoryBudget budget = MemoryBudget.getGlobal();
+        MemoryBudget.Reservation reservation = budget.reserveDecoder(
+                DecoderMemory.estimate(compressorName, in, budget.getMaxStreamMemory()), cancellation);
+        try {
+            // concatenated gzip members, such as those of seekable tar.gz archives, form a single stream
+            CompressorStreamFactory factory = new CompressorStreamFactory(true, budget.getMaxStreamMemoryInKb());
+            return CpuPermits.wrap(
+                    MemoryBudget.releaseOnClose(factory.createCompressorInputStream(compressorName, in), reservation));
+        } catch (CompressorException | RuntimeException e) {
+            reservation.close();
+            throw e;
+        }
     }
 
     static CompressorOutputStream createCompressorOutputStream(CompressionType compressionType, File destination)
             throws IOException, CompressorException {
-        return createCompressorOutputStream(compressionType.getName(), new FileOutputStream(destination));
+        return createCompressorOutputStream(compressionType, new FileOutputStream(destination));
+    }
+
+    static CompressorOutputStream createCompressorOutputStream(CompressionType compressionType, OutputStream out)
+            throws CompressorException {
+        if (compressionType == CompressionType.BGZF) {
+            return CpuPermits.wrap(new BgzfOutputStream(out));
+        }
+        return createCompressorOutputStream(compressionType.getName(), out);
     }
 
     /**
@@ -169,9 +214,13 @@ final class CommonsStreamFactory {
         return createCompressorOutputStream(compressor.getCompressionType(), destination);
     }
 
-    /** @see CompressorStreamFactory#createCompressorOutputStream(String, OutputStream) */
+    /**
+     * Within a {@link BatchService} job, encoding takes one of its {@link CpuPermits CPU permits}.
+     *
+     * @see CompressorStreamFactory#createCompressorOutputStream(String, OutputStream)
+     */
     static CompressorOutputStream createCompressorOutputStream(String compressorName, OutputStream out)
             throws CompressorException {
-        return compressorStreamFactory.createCompressorOutputStream(compressorName, out);
+        return CpuPermits.wrap(compressorStreamFactory.createCompressorOutputStream(compressorName, out));
     }
 }
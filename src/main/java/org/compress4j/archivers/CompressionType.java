@@ -27,7 +27,12 @@ public enum CompressionType {
     /** Constant used to identify the XZ compression algorithm. */
     XZ(CompressorStreamFactory.XZ, ".xz"),
     /** Constant used to identify the PACK200 compression algorithm. */
-    PACK200(CompressorStreamFactory.PACK200, ".pack");
+    PACK200(CompressorStreamFactory.PACK200, ".pack"),
+    /**
+     * Constant used to identify BGZF, gzip compressed in independent blocks of up to 64 KiB. BGZF files are valid gzip
+     * files, which can additionally be read with random access by {@link BgzfInputStream}.
+     */
+    BGZF("bgzf", ".gz");
 
     /** The name by which the compression algorithm is identified */
     private final String name;
@@ -58,6 +63,15 @@ public enum CompressionType {
         return defaultFileExtension;
     }
 
+    /**
+     * Returns the compression type whose decompressor reads this compression type. BGZF is read as gzip.
+     *
+     * @return the compression type to decompress with
+     */
+    CompressionType getDecompressionType() {
+        return this == BGZF ? GZIP : this;
+    }
+
     /**
      * Checks if the given compression type name is valid and known format.
      *
@@ -48,6 +48,94 @@ public interface Compressor {
      */
     void decompress(File source, File destination) throws IllegalArgumentException, IOException;
 
+    /**
+     * Compresses the given input file to the given destination directory or file, reading and writing within the
+     * bandwidth of the given throttles. The throttles may be shared with other operations. <br>
+     * Throttling is best effort by default: the source is accounted to the read throttle before it is compressed, and
+     * a destination file to the write throttle once it is written, while the compression itself runs at full speed.
+     * Files written into a destination directory are not accounted.
+     *
+     * @param source the source file to compress
+     * @param destination the destination file
+     * @param readThrottle the throttle that limits reading the source
+     * @param writeThrottle the throttle that limits writing the destination
+     * @throws IllegalArgumentException if the source is not readable or the destination is not writable
+     * @throws IOException when an I/O error occurs
+     * @see #compress(File, File)
+     */
+    default void compress(File source, File destination, Throttle readThrottle, Throttle writeThrottle)
+            throws IllegalArgumentException, IOException {
+        readThrottle.acquire(source.length());
+        compress(source, destination);
+        if (destination.isFile()) {
+            writeThrottle.acquire(destination.length());
+        }
+    }
+
+    /**
+     * Decompresses the given source file to the given destination directory or file, reading and writing within the
+     * bandwidth of the given throttles. The throttles may be shared with other operations. <br>
+     * Throttling is best effort by default, as for {@link #compress(File, File, Throttle, Throttle)}.
+     *
+     * @param source the compressed source file to decompress
+     * @param destination the destination file
+     * @param readThrottle the throttle that limits reading the source
+     * @param writeThrottle the throttle that limits writing the destination
+     * @throws IllegalArgumentException if the source is not readable or the destination is not writable
+     * @throws IOException when an I/O error occurs
+     * @see #decompress(File, File)
+     */
+    default void decompress(File source, File destination, Throttle readThrottle, Throttle writeThrottle)
+            throws IllegalArgumentException, IOException {
+        readThrottle.acquire(source.length());
+        decompress(source, destination);
+        if (destination.isFile()) {
+            writeThrottle.acquire(destination.length());
+        }
+    }
+
+    /**
+     * Compresses the given input file to the given destination directory or file, stopping when the given token is
+     * cancelled or its deadline passes. The token is checked for every buffer that is read, a cancelled compression
+     * fails with an {@link OperationCancelledException} and removes the partially written destination. <br>
+     * By default, the token is only checked before and after the compression, which runs to its end and leaves the
+     * destination in place.
+     *
+     * @param source the source file to compress
+     * @param destination the destination file
+     * @param cancellation the token that stops the compression
+     * @throws IllegalArgumentException if the source is not readable or the destination is not writable
+     * @throws IOException when an I/O error occurs
+     * @see #compress(File, File)
+     */
+    default void compress(File source, File destination, CancellationToken cancellation)
+            throws IllegalArgumentException, IOException {
+        cancellation.throwIfCancelled();
+        compress(source, destination);
+        cancellation.throwIfCancelled();
+    }
+
+    /**
+     * Decompresses the given source file to the given destination directory or file, stopping when the given token is
+     * cancelled or its deadline passes. The token is checked for every buffer that is read, a cancelled decompression
+     * fails with an {@link OperationCancelledException} and removes the partially written destination. <br>
+     * By default, the token is only checked before and after the decompression, as for
+     * {@link #compress(File, File, CancellationToken)}.
+     *
+     * @param source the compressed source file to decompress
+     * @param destination the destination file
+     * @param cancellation the token that stops the decompression
+     * @throws IllegalArgumentException if the source is not readable or the destination is not writable
+     * @throws IOException when an I/O error occurs
+     * @see #decompress(File, File)
+     */
+    default void decompress(File source, File destination, CancellationToken cancellation)
+            throws IllegalArgumentException, IOException {
+        cancellation.throwIfCancelled();
+        decompress(source, destination);
+        cancellation.throwIfCancelled();
+    }
+
     /**
      * Accept a stream and wrap it in a decompressing stream suitable for the current compressor.
      *
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stores the contents of extracted files once per unique content, and links them into the destinations of
+ * extractions. An extraction that uses a store, see {@link ExtractOptions.Builder#setContentStore(ContentStore)},
+ * hashes every file while it is read from the archive, and only writes it if the store does not hold the same
+ * content yet. The file in the destination is a hard link to the blob in the store, or a copy where the file system
+ * does not support links. Extracting many versions of similar archives then costs disk writes and space only for the
+ * files that changed. <br>
+ * Blobs are keyed by the SHA-256 of their content and their unix mode. Linked files share the blob with all other
+ * destinations, and with it the modification time and owner of the entry that stored it first: they must not be
+ * modified in place, but may be deleted or replaced. <br>
+ * A store may be shared between concurrent extractions and processes, blobs are written to a temporary file and linked
+ * into place, which fails rather than replacing a blob stored concurrently. Blobs are never removed by the store; a
+ * store is cleaned by deleting its directory, which does not affect the hard links in destinations.
+ */
+public final class ContentStore {
+
+    /** Files up to this size are hashed in memory, and not written at all if their content is already stored. */
+    static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+    private final Path directory;
+    private final Path temp;
+
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong deduplicatedBytes = new AtomicLong();
+
+    private ContentStore(Path directory) {
+        this.directory = directory;
+        this.temp = directory.resolve("tmp");
+    }
+
+    /**
+     * Opens the store in the given directory, creating the directory if it does not exist.
+     *
+     * @param directory the directory of the store, on the same file system as the destinations to link to
+     * @return the store
+     * @throws IOException if the directory can not be created
+     */
+    public static ContentStore open(Path directory) throws IOException {
+        ContentStore store = new ContentStore(Objects.requireNonNull(directory).toAbsolutePath());
+        Files.createDirectories(store.temp);
+        return store;
+    }
+
+    /**
+     * Returns the directory of this store.
+     *
+     * @return the store directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of bytes of new content this store has written since it was opened.
+     *
+     * @return the stored bytes
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes extracted through this store since it was opened that were already stored, and
+     * linked instead of written.
+     *
+     * @return the deduplicated bytes
+     */
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.get();
+    }
+
+    /**
+     * Stores the remaining contents of the given stream, unless the same content with the same mode is stored
+     * already.
+     *
+     * @param in the contents to store
+     * @param mode the unix mode of the file, {@code 0} if unknown
+     * @param initializer applies the attributes of the entry to a new blob before it is linked into place
+     * @param throttle the throttle that limits the bandwidth of writing new blobs
+     * @return the blob with the given contents
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     */
+    Path store(InputStream in, int mode, Consumer<Path> initializer, Throttle throttle) throws IOException {
+        MessageDigest digest = IOUtils.sha256();
+        byte[] head = in.readNBytes(MEMORY_THRESHOLD + 1);
+
+        if (head.length <= MEMORY_THRESHOLD) {
+            digest.update(head);
+            Path blob = blob(digest, mode);
+            if (Files.exists(blob, LinkOption.NOFOLLOW_LINKS)) {
+                deduplicatedBytes.addAndGet(head.length);
+                return blob;
+            }
+            Path file = Files.createTempFile(temp, "blob", null);
+            try (OutputStream out = throttle.wrap(newOutputStream(file))) {
+                out.write(head);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            return commit(file, blob, head.length, initializer);
+        }
+
+        Path file = Files.createTempFile(temp, "blob", null);
+        long size;
+        try (OutputStream out = new DigestOutputStream(throttle.wrap(newOutputStream(file)), digest)) {
+            out.write(head);
+            size = head.length + in.transferTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        Path blob = blob(digest, mode);
+        if (Files.exists(blob, LinkOption.NOFOLLOW_LINKS)) {
+            Files.deleteIfExists(file);
+            deduplicatedBytes.addAndGet(size);
+            return blob;
+        }
+        return commit(file, blob, size, initializer);
+    }
+
+    /**
+     * Links the given blob to the given target, or copies it if the link can not be created.
+     *
+     * @param blob the blob to link to
+     * @param target the file to create
+     * @throws FileAlreadyExistsException if the target already exists
+     * @throws IOException propagated I/O errors by {@code java.nio}
+     */
+    static void link(Path blob, Path target) throws IOException {
+        try {
+            Files.createLink(target, blob);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // e.g. the target is on another file system, or the blob has too many links
+            Files.copy(blob, target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static OutputStream newOutputStream(Path file) throws IOException {
+        return Files.newOutputStream(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Path commit(Path file, Path blob, long size, Consumer<Path> initializer) throws IOException {
+        try {
+            initializer.accept(file);
+            Files.createDirectories(blob.getParent());
+            if (publish(file, blob)) {
+                storedBytes.addAndGet(size);
+            } else {
+                deduplicatedBytes.addAndGet(size);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return blob;
+    }
+
+    /**
+     * Makes the given temporary file the given blob, unless the blob exists already. Moving the file would silently
+     * replace a blob that a concurrent extraction stored in the meantime, so the blob is created as a hard link to the
+     * file, which fails if it exists.
+     *
+     * @return true if the blob was created, false if it was stored by a concurrent extraction
+     */
+    private static boolean publish(Path file, Path blob) throws IOException {
+        try {
+            Files.createLink(blob, file);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // without links, a move that does not replace the target fails if the blob exists
+            try {
+                Files.move(file, blob);
+                return true;
+            } catch (FileAlreadyExistsException alreadyStored) {
+                return false;
+            }
+        }
+    }
+
+    /** Blobs are spread over 256 directories by the first two hex digits of their digest. */
+    private Path blob(MessageDigest digest, int mode) {
+        String hash = HexFormat.of().formatHex(digest.digest());
+        String name = mode > 0 ? hash + "-" + Integer.toOctalString(mode) : hash;
+        return directory.resolve(hash.substring(0, 2)).resolve(name);
+    }
+
+    @Override
+    public String toString() {
+        return "ContentStore[" + directory + "]";
+    }
+}
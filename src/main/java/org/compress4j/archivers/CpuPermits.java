@@ -0,0 +1,262 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZMethod;
+import org.apache.commons.compress.archivers.sevenz.SevenZMethodConfiguration;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.compressors.CompressorOutputStream;
+
+/**
+ * Bounds the number of threads of a {@link BatchService} that compress or decompress at the same time. <br>
+ * A job {@link #run(Callable) runs with} the permits of its service. The codec streams created on its thread take a
+ * permit for every read or write and return it right after, so a job holds a permit only while its codec works, not
+ * while it waits for the file system or for the other limits of the service. Jobs that only move bytes, such as
+ * extracting a plain tar archive or the stored entries of a zip archive, never take a permit. <br>
+ * Streams created outside of a job are not limited. A thread that holds a permit does not take another one for
+ * nested codec streams.
+ */
+final class CpuPermits {
+
+    private static final ThreadLocal<CpuPermits> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> HOLDING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final Semaphore permits;
+    private final AtomicInteger holders = new AtomicInteger();
+    private final AtomicInteger peakHolders = new AtomicInteger();
+
+    /**
+     * Creates the given number of permits.
+     *
+     * @param permits the number of threads that may run a codec at the same time
+     */
+    CpuPermits(int permits) {
+        this.permits = new Semaphore(permits, true);
+    }
+
+    /**
+     * Runs the given job on the calling thread, limiting the codec streams it creates by these permits.
+     *
+     * @param job the job to run
+     * @param <T> the type of the result of the job
+     * @return the result of the job
+     * @throws Exception the exception thrown by the job
+     */
+    <T> T run(Callable<T> job) throws Exception {
+        CpuPermits previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return job.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Returns the largest number of threads that held a permit at the same time.
+     *
+     * @return the peak number of permit holders
+     */
+    int getPeakHolders() {
+        return peakHolders.get();
+    }
+
+    /**
+     * Returns whether a job runs on the calling thread, whose codec streams are limited by its permits. Codecs that
+     * would compress on threads of their own work on the calling thread instead, which holds the permit.
+     *
+     * @return true if the calling thread runs a job
+     */
+    static boolean isLimited() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Limits the given decompressor stream by the permits of the job running on the calling thread.
+     *
+     * @param in the decompressor stream
+     * @return the limited stream, or the given stream if no job is running
+     */
+    static InputStream wrap(InputStream in) {
+        CpuPermits current = CURRENT.get();
+        return current == null ? in : current.new CpuBoundInputStream(in);
+    }
+
+    /**
+     * Limits the given compressor stream by the permits of the job running on the calling thread.
+     *
+     * @param out the compressor stream
+     * @return the limited stream, or the given stream if no job is running
+     */
+    static CompressorOutputStream wrap(CompressorOutputStream out) {
+        CpuPermits current = CURRENT.get();
+        return current == null ? out : current.new CpuBoundOutputStream(out);
+    }
+
+    /**
+     * Limits the contents of the given entry by the permits of the job running on the calling thread, if they are
+     * compressed inside the archive, as the deflated entries of zip archives are.
+     *
+     * @param in the stream positioned at the contents of the entry
+     * @param entry the entry
+     * @return the limited stream, or the given stream if the entry is stored or no job is running
+     */
+    static InputStream wrap(InputStream in, ArchiveEntry entry) {
+        return isCompressed(entry) ? wrap(in) : in;
+    }
+
+    private static boolean isCompressed(ArchiveEntry entry) {
+        if (entry instanceof ZipArchiveEntry zip) {
+            return zip.getMethod() != ZipArchiveEntry.STORED;
+        } else if (entry instanceof SevenZArchiveEntry sevenZ && sevenZ.hasStream()) {
+            Iterable<? extends SevenZMethodConfiguration> methods = sevenZ.getContentMethods();
+            if (methods == null) {
+                return true;
+            }
+            for (SevenZMethodConfiguration method : methods) {
+                if (method.getMethod() != SevenZMethod.COPY) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean acquire() throws InterruptedIOException {
+        if (HOLDING.get()) {
+            return false;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a CPU permit");
+        }
+        HOLDING.set(Boolean.TRUE);
+        peakHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+        return true;
+    }
+
+    private void release(boolean acquired) {
+        if (acquired) {
+            holders.decrementAndGet();
+            HOLDING.set(Boolean.FALSE);
+            permits.release();
+        }
+    }
+
+    /** Holds a permit while the decompressor decodes. */
+    private final class CpuBoundInputStream extends FilterInputStream {
+
+        CpuBoundInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            boolean acquired = acquire();
+            try {
+                return in.read();
+            } finally {
+                release(acquired);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            boolean acquired = acquire();
+            try {
+                return in.read(b, off, len);
+            } finally {
+                release(acquired);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            boolean acquired = acquire();
+            try {
+                return in.skip(n);
+            } finally {
+                release(acquired);
+            }
+        }
+    }
+
+    /** Holds a permit while the compressor encodes, and while it finishes the stream on close. */
+    private final class CpuBoundOutputStream extends CompressorOutputStream {
+
+        private final CompressorOutputStream out;
+
+        CpuBoundOutputStream(CompressorOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            boolean acquired = acquire();
+            try {
+                out.write(b);
+            } finally {
+                release(acquired);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            boolean acquired = acquire();
+            try {
+                out.write(b, off, len);
+            } finally {
+                release(acquired);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            boolean acquired = acquire();
+            try {
+                out.flush();
+            } finally {
+                release(acquired);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            boolean acquired = acquire();
+            try {
+                out.close();
+            } finally {
+                release(acquired);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.util.Objects;
+
+/**
+ * Options that tune how an {@link Archiver} creates an archive. Instances are immutable and can be shared between
+ * concurrent operations. Use {@link #builder()} to create one, or {@link #DEFAULT} for the default behaviour.
+ */
+public final class CreateOptions {
+
+    /** Default maximum amount of uncompressed data in a gzip member of a seekable archive, 4 MiB. */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /** Largest supported alignment of stored entries, limited by the ZIP extra field that records it. */
+    public static final int MAX_ALIGNMENT = 16 * 1024;
+
+    /** Options that create ordinary archives. */
+    public static final CreateOptions DEFAULT = builder().build();
+
+    private final boolean seekable;
+    private final int chunkSize;
+    private final EntryFilter storedEntries;
+    private final int alignment;
+    private final Throttle readThrottle;
+    private final Throttle writeThrottle;
+    private final CancellationToken cancellation;
+    private final boolean deleteOnCancel;
+
+    private CreateOptions(Builder builder) {
+        this.seekable = builder.seekable;
+        this.chunkSize = builder.chunkSize;
+        this.storedEntries = builder.storedEntries;
+        this.alignment = builder.alignment;
+        // waits for bandwidth stop when the operation is cancelled
+        this.readThrottle = builder.readThrottle.bind(builder.cancellation);
+        this.writeThrottle = builder.writeThrottle.bind(builder.cancellation);
+        this.cancellation = builder.cancellation;
+        this.deleteOnCancel = builder.deleteOnCancel;
+    }
+
+    /**
+     * Returns a new builder initialised with the default options.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns whether a seekable archive is created, which embeds the index needed to read its entries with random
+     * access.
+     *
+     * @return true if a seekable archive is created
+     */
+    public boolean isSeekable() {
+        return seekable;
+    }
+
+    /**
+     * Returns the maximum amount of uncompressed data that is compressed as one unit in a seekable archive.
+     *
+     * @return the chunk size in bytes
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the filter that selects the files that are stored uncompressed in ZIP and JAR archives.
+     *
+     * @return the filter of stored entries, {@link EntryFilter#NONE} by default
+     */
+    public EntryFilter getStoredEntries() {
+        return storedEntries;
+    }
+
+    /**
+     * Returns the alignment of the data of stored entries in ZIP and JAR archives.
+     *
+     * @return the alignment in bytes, {@code 1} if the data is not aligned
+     */
+    public int getAlignment() {
+        return alignment;
+    }
+
+    /**
+     * Returns the throttle that limits the bandwidth of reading the files that are archived. It is the share of the
+     * throttle that was set, bound to the {@link #getCancellation() cancellation token} so that waiting for bandwidth
+     * stops when the token is cancelled.
+     *
+     * @return the read throttle, {@link Throttle#UNLIMITED} by default
+     */
+    public Throttle getReadThrottle() {
+        return readThrottle;
+    }
+
+    /**
+     * Returns the throttle that limits the bandwidth of writing the archive, bound to the cancellation token as the
+     * {@link #getReadThrottle() read throttle}.
+     *
+     * @return the write throttle, {@link Throttle#UNLIMITED} by default
+     */
+    public Throttle getWriteThrottle() {
+        return writeThrottle;
+    }
+
+    /**
+     * Returns the token that stops the creation when it is cancelled or its deadline passes.
+     *
+     * @return the cancellation token, {@link CancellationToken#NONE} by default
+     */
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Returns whether the partially written archive is removed when the creation is cancelled.
+     *
+     * @return true if the partial archive is removed, false by default
+     */
+    public boolean isDeleteOnCancel() {
+        return deleteOnCancel;
+    }
+
+    /** Builder for {@link CreateOptions}. */
+    public static final class Builder {
+
+        private boolean seekable;
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private EntryFilter storedEntries = EntryFilter.NONE;
+        private int alignment = 1;
+        private Throttle readThrottle = Throttle.UNLIMITED;
+        private Throttle writeThrottle = Throttle.UNLIMITED;
+        private CancellationToken cancellation = CancellationToken.NONE;
+        private boolean deleteOnCancel;
+
+        private Builder() {}
+
+        /**
+         * Sets whether a seekable archive is created. Seekable tar.gz archives start a new gzip member for every entry
+         * and every chunk of a large entry, and end with a table of contents that lists the offsets and digests of all
+         * entries. They remain ordinary tar.gz files that any tool can extract, while
+         * {@link Archiver#reader(java.io.File)} lists and reads their entries without decompressing the archive.
+         * Disabled by default.
+         *
+         * @param seekable true to create a seekable archive
+         * @return this builder
+         */
+        public Builder setSeekable(boolean seekable) {
+            this.seekable = seekable;
+            return this;
+        }
+
+        /**
+         * Sets the maximum amount of uncompressed data that is compressed as one unit in a seekable archive. Reading
+         * an entry decompresses at most one chunk that is not part of the entry, smaller chunks compress slightly
+         * worse.
+         *
+         * @param chunkSize the chunk size in bytes, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code chunkSize} is less than 1
+         */
+        public Builder setChunkSize(int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("Chunk size must be at least 1, was " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Sets the filter that selects the files that are stored uncompressed in ZIP and JAR archives, e.g. files
+         * that are already compressed, or files that consumers map into memory. Other archive formats ignore it.
+         *
+         * @param storedEntries the filter of stored entries
+         * @return this builder
+         */
+        public Builder setStoredEntries(EntryFilter storedEntries) {
+            this.storedEntries = Objects.requireNonNull(storedEntries, "storedEntries");
+            return this;
+        }
+
+        /**
+         * Sets the alignment of the data of stored entries in ZIP and JAR archives, like {@code zipalign} does. The
+         * local header of every stored entry is padded with an extra field, so that its data starts at a multiple of
+         * the alignment and can be mapped into memory directly, e.g. {@code 4} for 32-bit alignment or {@code 4096}
+         * for page alignment. Other archive formats ignore it.
+         *
+         * @param alignment the alignment in bytes, a power of two no larger than {@link #MAX_ALIGNMENT}
+         * @return this builder
+         * @throws IllegalArgumentException if {@code alignment} is not a power of two or too large
+         */
+        public Builder setAlignment(int alignment) {
+            if (alignment < 1 || alignment > MAX_ALIGNMENT || Integer.bitCount(alignment) != 1) {
+                throw new IllegalArgumentException(
+                        "Alignment must be a power of two up to " + MAX_ALIGNMENT + ", was " + alignment);
+            }
+            this.alignment = alignment;
+            return this;
+        }
+
+        /**
+         * Sets the throttle that limits the bandwidth of reading the files that are archived. The throttle may be
+         * shared with other operations.
+         *
+         * @param readThrottle the read throttle
+         * @return this builder
+         */
+        public Builder setReadThrottle(Throttle readThrottle) {
+            this.readThrottle = Objects.requireNonNull(readThrottle, "readThrottle");
+            return this;
+        }
+
+        /**
+         * Sets the throttle that limits the bandwidth of writing the archive. The throttle may be shared with other
+         * operations.
+         *
+         * @param writeThrottle the write throttle
+         * @return this builder
+         */
+        public Builder setWriteThrottle(Throttle writeThrottle) {
+            this.writeThrottle = Objects.requireNonNull(writeThrottle, "writeThrottle");
+            return this;
+        }
+
+        /**
+         * Sets the token that stops the creation. The token is checked for every entry and every buffer that is read
+         * from the archived files, a cancelled creation fails with an {@link OperationCancelledException}.
+         *
+         * @param cancellation the cancellation token
+         * @return this builder
+         */
+        public Builder setCancellation(CancellationToken cancellation) {
+            this.cancellation = Objects.requireNonNull(cancellation, "cancellation");
+            return this;
+        }
+
+        /**
+         * Sets whether the partially written archive is removed when the creation is cancelled.
+         *
+         * @param deleteOnCancel true to remove the partial archive
+         * @return this builder
+         */
+        public Builder setDeleteOnCancel(boolean deleteOnCancel) {
+            this.deleteOnCancel = deleteOnCancel;
+            return this;
+        }
+
+        /**
+         * Creates the {@link CreateOptions}.
+         *
+         * @return new create options
+         */
+        public CreateOptions build() {
+            return new CreateOptions(this);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZMethodConfiguration;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.tukaani.xz.LZMA2Options;
+
+/**
+ * Estimates the memory held by decoders, from the headers of the compressed streams where the format records it. The
+ * estimates are reserved from a {@link MemoryBudget} before decoding starts.
+ */
+final class DecoderMemory {
+
+    /** The number of bytes that are read ahead to find the first block header of an xz stream. */
+    static final int HEADER_READ_LIMIT = 12 + 1024;
+
+    /** Window, state and buffers of an inflater. */
+    private static final long DEFLATE = 64 * 1024;
+
+    /** Probability tables, range decoder and buffers of an LZMA decoder, in addition to its dictionary. */
+    private static final long LZMA_OVERHEAD = 128 * 1024;
+
+    /** Footprint of decoders that are not estimated. */
+    private static final long DEFAULT = 1024 * 1024;
+
+    private static final int LZMA2_FILTER_ID = 0x21;
+
+    private DecoderMemory() {}
+
+    /**
+     * Estimates the footprint of the decoder of the given compressor. The stream has to support mark and reset; its
+     * header is read and the stream is reset afterwards.
+     *
+     * @param compressorName the name of the compressor as used by {@link CompressorStreamFactory}
+     * @param in the compressed stream positioned at its start
+     * @param maxStreamMemory the estimate of decoders whose footprint is unbounded or unknown in advance
+     * @return the estimated footprint in bytes
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static long estimate(String compressorName, InputStream in, long maxStreamMemory) throws IOException {
+        switch (compressorName) {
+            case CompressorStreamFactory.GZIP:
+            case CompressorStreamFactory.DEFLATE:
+            case CompressorStreamFactory.Z:
+                return DEFLATE;
+            case CompressorStreamFactory.DEFLATE64:
+                return 2 * DEFLATE;
+            case CompressorStreamFactory.BZIP2:
+                return bzip2(peek(in, 4));
+            case CompressorStreamFactory.XZ:
+                return xz(peek(in, HEADER_READ_LIMIT), maxStreamMemory);
+            case CompressorStreamFactory.LZMA:
+                return lzma(peek(in, 5), maxStreamMemory);
+            case CompressorStreamFactory.PACK200:
+                // the unpacked archive is held in memory
+                return maxStreamMemory;
+            default:
+                return DEFAULT;
+        }
+    }
+
+    /**
+     * Estimates the footprint of the decoders of a 7z archive. Only one folder is decoded at a time, the estimate is
+     * the largest chain of coders of any entry.
+     *
+     * @param entries the entries of the archive
+     * @param maxStreamMemory the estimate of coders whose footprint is unknown
+     * @return the estimated footprint in bytes
+     */
+    static long estimate(Iterable<SevenZArchiveEntry> entries, long maxStreamMemory) {
+        long footprint = 0;
+        for (SevenZArchiveEntry entry : entries) {
+            if (!entry.hasStream() || entry.getContentMethods() == null) {
+                continue;
+            }
+            long coders = 0;
+            for (SevenZMethodConfiguration method : entry.getContentMethods()) {
+                coders += estimate(method, maxStreamMemory);
+            }
+            footprint = Math.max(footprint, coders);
+        }
+        return footprint;
+    }
+
+    private static long estimate(SevenZMethodConfiguration method, long maxStreamMemory) {
+        Object options = method.getOptions();
+        switch (method.getMethod()) {
+            case COPY:
+            case AES256SHA256:
+            case BCJ_X86_FILTER:
+            case BCJ_PPC_FILTER:
+            case BCJ_IA64_FILTER:
+            case BCJ_ARM_FILTER:
+            case BCJ_ARM_THUMB_FILTER:
+            case BCJ_SPARC_FILTER:
+            case DELTA_FILTER:
+                return 0;
+            case DEFLATE:
+                return DEFLATE;
+            case DEFLATE64:
+                return 2 * DEFLATE;
+            case BZIP2:
+                return bzip2(9);
+            case LZMA:
+            case LZMA2:
+                if (options instanceof Number number) {
+                    return number.longValue() + LZMA_OVERHEAD;
+                } else if (options instanceof LZMA2Options lzma) {
+                    return lzma.getDictSize() + LZMA_OVERHEAD;
+                }
+                return maxStreamMemory;
+            default:
+                return DEFAULT;
+        }
+    }
+
+    /** The tables of a bzip2 decoder grow with the block size, which is recorded as '1' to '9' after the magic. */
+    private static long bzip2(byte[] header) {
+        int level = header.length == 4 ? header[3] - '0' : 9;
+        return bzip2(level < 1 || level > 9 ? 9 : level);
+    }
+
+    private static long bzip2(int level) {
+        return level * 100_000L * 5 + DEFLATE;
+    }
+
+    /** An .lzma stream starts with the properties byte, followed by the dictionary size as little endian int. */
+    private static long lzma(byte[] header, long maxStreamMemory) {
+        if (header.length < 5) {
+            return maxStreamMemory;
+        }
+        long dictSize = (header[1] & 0xFFL)
+                | (header[2] & 0xFFL) << 8
+                | (header[3] & 0xFFL) << 16
+                | (header[4] & 0xFFL) << 24;
+        return dictSize + LZMA_OVERHEAD;
+    }
+
+    /**
+     * The dictionary size of an xz stream is recorded in the properties of the LZMA2 filter in the first block header,
+     * which follows the 12 byte stream header.
+     */
+    private static long xz(byte[] header, long maxStreamMemory) {
+        int offset = 12;
+        if (header.length <= offset + 1 || header[offset] == 0) {
+            // no block, the stream is empty
+            return LZMA_OVERHEAD;
+        }
+
+        int end = Math.min(header.length, offset + ((header[offset] & 0xFF) + 1) * 4);
+        int flags = header[offset + 1] & 0xFF;
+        int[] position = {offset + 2};
+        if ((flags & 0x40) != 0 && readVarInt(header, position, end) < 0) {
+            return maxStreamMemory;
+        }
+        if ((flags & 0x80) != 0 && readVarInt(header, position, end) < 0) {
+            return maxStreamMemory;
+        }
+
+        int filters = (flags & 0x03) + 1;
+        for (int i = 0; i < filters; i++) {
+            long id = readVarInt(header, position, end);
+            long size = readVarInt(header, position, end);
+            if (id < 0 || size < 0 || position[0] + size > end) {
+                break;
+            }
+            if (id == LZMA2_FILTER_ID && size == 1) {
+                int bits = header[position[0]] & 0x3F;
+                if (bits > 40) {
+                    break;
+                }
+                long dictSize = bits == 40 ? 0xFFFFFFFFL : (2L | (bits & 1)) << (bits / 2 + 11);
+                return dictSize + LZMA_OVERHEAD;
+            }
+            position[0] += (int) size;
+        }
+        return maxStreamMemory;
+    }
+
+    private static long readVarInt(byte[] header, int[] position, int end) {
+        long value = 0;
+        for (int shift = 0; shift < 63 && position[0] < end; shift += 7) {
+            int b = header[position[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] peek(InputStream in, int length) throws IOException {
+        in.mark(length);
+        try {
+            return in.readNBytes(length);
+        } finally {
+            in.reset();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves archive entry names to files inside an extraction destination, guaranteeing that no entry escapes it. <br>
+ * The destination is canonicalized once. Entry names are then validated and normalized lexically, so resolving an
+ * entry does not touch the file system. Names that would escape the destination are cleaned with
+ * {@link IOUtils#cleanEntryName(String)}. <br>
+ * In strict mode the resolver additionally refuses to place entries below a symbolic link inside the destination.
+ * Directories that have been verified once are cached, so every directory is checked at most once per extraction.
+ */
+final class DestinationResolver {
+
+    private static final char SEPARATOR = '/';
+
+    private final File source;
+    private final File destination;
+    private final boolean refuseSymlinks;
+    private final Set<File> verifiedDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a resolver for the given destination that validates entry names lexically.
+     *
+     * @param destination the destination directory
+     * @throws IOException if the destination can not be canonicalized
+     */
+    DestinationResolver(File destination) throws IOException {
+        this(destination, false);
+    }
+
+    /**
+     * Creates a resolver for the given destination.
+     *
+     * @param destination the destination directory
+     * @param refuseSymlinks whether to refuse entries whose parent directories are symbolic links
+     * @throws IOException if the destination can not be canonicalized
+     */
+    DestinationResolver(File destination, boolean refuseSymlinks) throws IOException {
+        this.source = destination;
+        this.destination = destination.getCanonicalFile();
+        this.refuseSymlinks = refuseSymlinks;
+    }
+
+    /**
+     * Checks whether this resolver was created for the given destination.
+     *
+     * @param destination the destination directory
+     * @return true if this resolver resolves entries into the given destination
+     */
+    boolean isFor(File destination) {
+        return source.equals(destination);
+    }
+
+    /**
+     * Returns the canonical destination directory.
+     *
+     * @return the destination directory
+     */
+    File getDestination() {
+        return destination;
+    }
+
+    /**
+     * Resolves the given entry name to a file inside the destination.
+     *
+     * @param entryName the name of the archive entry
+     * @return the file the entry is to be extracted to
+     * @throws FileSystemException in strict mode, if the file or one of its parents inside the destination is a
+     *     symbolic link
+     */
+    File resolve(String entryName) throws FileSystemException {
+        File file = new File(destination, safeEntryName(entryName));
+
+        if (refuseSymlinks) {
+            verifyNoSymlinks(file);
+        }
+
+        return file;
+    }
+
+    /**
+     * Returns a relative, normalized version of the given entry name that can not escape the directory it is resolved
+     * against. The returned name contains no {@code .} or {@code ..} segments.
+     *
+     * @param entryName the name of the archive entry
+     * @return the safe relative name
+     */
+    static String safeEntryName(String entryName) {
+        String normalized = normalize(entryName);
+        return normalized != null ? normalized : IOUtils.cleanEntryName(entryName);
+    }
+
+    /**
+     * Lexically normalizes the given entry name, removing empty, {@code .} and {@code ..} segments.
+     *
+     * @param entryName the name of the archive entry
+     * @return the normalized relative name, or {@code null} if the name would escape its parent directory
+     */
+    static String normalize(String entryName) {
+        if (isNormalized(entryName)) {
+            return entryName;
+        }
+
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = entryName.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || isSeparator(entryName.charAt(i))) {
+                String segment = entryName.substring(start, i);
+                if ("..".equals(segment)) {
+                    if (segments.isEmpty()) {
+                        return null;
+                    }
+                    segments.remove(segments.size() - 1);
+                } else if (!segment.isEmpty() && !".".equals(segment)) {
+                    segments.add(segment);
+                }
+                start = i + 1;
+            }
+        }
+
+        return String.join(String.valueOf(SEPARATOR), segments);
+    }
+
+    /** Fast path for the common case of a relative name without empty, {@code .} or {@code ..} segments. */
+    private static boolean isNormalized(String entryName) {
+        int length = entryName.length();
+        if (length == 0 || isSeparator(entryName.charAt(0))) {
+            return false;
+        }
+
+        int segmentStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || isSeparator(entryName.charAt(i))) {
+                int segmentLength = i - segmentStart;
+                if (segmentLength == 0 && i != length) {
+                    return false;
+                }
+                if (segmentLength == 1 && entryName.charAt(segmentStart) == '.') {
+                    return false;
+                }
+                if (segmentLength == 2
+                        && entryName.charAt(segmentStart) == '.'
+                        && entryName.charAt(segmentStart + 1) == '.') {
+                    return false;
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == SEPARATOR || c == File.separatorChar;
+    }
+
+    private void verifyNoSymlinks(File file) throws FileSystemException {
+        if (Files.isSymbolicLink(file.toPath())) {
+            throw new FileSystemException(file.getPath(), null, "Refusing to extract onto a symbolic link");
+        }
+
+        Deque<File> unverified = new ArrayDeque<>();
+        File parent = file.getParentFile();
+        while (parent != null && !parent.equals(destination) && !verifiedDirectories.contains(parent)) {
+            unverified.push(parent);
+            parent = parent.getParentFile();
+        }
+
+        for (File directory : unverified) {
+            if (Files.isSymbolicLink(directory.toPath())) {
+                throw new FileSystemException(
+                        file.getPath(), directory.getPath(), "Refusing to extract through a symbolic link");
+            }
+            verifiedDirectories.add(directory);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+
+/**
+ * Implementation of an {@link ArchiveEntry} that exposes the metadata of a commons compress entry without being bound
+ * to an {@link ArchiveStream}. Such entries can be inspected at any time, but not extracted.
+ */
+final class DetachedArchiveEntry implements ArchiveEntry {
+
+    /** The wrapped {@code ArchiveEntry} entry. */
+    private final org.apache.commons.compress.archivers.ArchiveEntry entry;
+
+    DetachedArchiveEntry(org.apache.commons.compress.archivers.ArchiveEntry entry) {
+        this.entry = entry;
+    }
+
+    /**
+     * Detaches the given entries.
+     *
+     * @param entries the commons compress entries
+     * @return an unmodifiable list of detached entries, in the given order
+     */
+    static List<ArchiveEntry> detach(Iterable<? extends org.apache.commons.compress.archivers.ArchiveEntry> entries) {
+        List<ArchiveEntry> detached = new ArrayList<>();
+        for (org.apache.commons.compress.archivers.ArchiveEntry entry : entries) {
+            detached.add(new DetachedArchiveEntry(entry));
+        }
+        return Collections.unmodifiableList(detached);
+    }
+
+    /**
+     * Reads the headers of all remaining entries of the given stream, without reading their contents, and closes it.
+     *
+     * @param input the archive stream
+     * @return an unmodifiable list of detached entries, in archive order
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static List<ArchiveEntry> list(ArchiveInputStream<?> input) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        try (input) {
+            org.apache.commons.compress.archivers.ArchiveEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                entries.add(new DetachedArchiveEntry(entry));
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    @Override
+    public String getName() {
+        return entry.getName();
+    }
+
+    @Override
+    public long getSize() {
+        return entry.getSize();
+    }
+
+    @Override
+    public Date getLastModifiedDate() {
+        return entry.getLastModifiedDate();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return entry.isDirectory();
+    }
+
+    @Override
+    public File extract(File destination) throws IllegalStateException {
+        throw new IllegalStateException("Entry " + entry.getName() + " is not read from an archive stream");
+    }
+
+    @Override
+    public String toString() {
+        return entry.getName();
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+
+/**
+ * Writes archive entries into a destination directory. Combines the {@link DestinationResolver} that places entries
+ * safely inside the destination with the {@link AttributeRestorer} that restores their attributes. <br>
+ * The destination may belong to any {@link java.nio.file.FileSystem}, such as an in-memory or zip file system. Entry
+ * names are validated lexically the same way for such destinations, and resolved against the destination path instead
+ * of its canonical file. Files are written through {@link Files#newByteChannel(Path, java.nio.file.OpenOption...)} in
+ * large blocks, as every write may be comparatively expensive on such file systems. Attributes are restored as far as
+ * the file system of the destination supports them. <br>
+ * One instance is meant to be used for all entries of an extraction, {@link #finish()} has to be called once all
+ * entries have been written.
+ */
+final class EntryExtractor {
+
+    /** The size of the blocks written to the destination, 256 KiB. */
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private final DestinationResolver resolver;
+    private final Path destination;
+    private final boolean refuseSymlinks;
+    private final AttributeRestorer restorer;
+    private final EntryFilter filter;
+    private final Throttle writeThrottle;
+    private final ExtractionGuard guard;
+    private final ContentStore contentStore;
+    private final IncrementalUpdate update;
+    private final Set<Path> createdDirectories = new HashSet<>();
+
+    private byte[] buffer;
+
+    /**
+     * Creates an extractor for the given destination.
+     *
+     * @param destination the destination directory
+     * @param options the options that control the extraction
+     * @throws IOException if the destination can not be canonicalized
+     */
+    EntryExtractor(File destination, ExtractOptions options) throws IOException {
+        this(destination, options, new ExtractionGuard(options));
+    }
+
+    /**
+     * Creates an extractor for the given destination.
+     *
+     * @param destination the destination directory
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @throws IOException if the destination can not be canonicalized
+     */
+    EntryExtractor(File destination, ExtractOptions options, ExtractionGuard guard) throws IOException {
+        this(new DestinationResolver(destination, options.isRefuseSymlinks()), null, options, guard);
+    }
+
+    /**
+     * Creates an extractor for the given destination, which may belong to any file system.
+     *
+     * @param destination the destination directory
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @throws IOException if the destination is on the default file system and can not be canonicalized
+     */
+    EntryExtractor(Path destination, ExtractOptions options, ExtractionGuard guard) throws IOException {
+        this(
+                IOUtils.isDefaultFileSystem(destination)
+                        ? new DestinationResolver(destination.toFile(), options.isRefuseSymlinks())
+                        : null,
+                destination,
+                options,
+                guard);
+    }
+
+    private EntryExtractor(
+            DestinationResolver resolver, Path destination, ExtractOptions options, ExtractionGuard guard) {
+        this.resolver = resolver;
+        this.destination = resolver != null
+                ? resolver.getDestination().toPath()
+                : destination.toAbsolutePath().normalize();
+        this.refuseSymlinks = options.isRefuseSymlinks();
+        this.restorer = new AttributeRestorer(options.isRestoreTimes(), options.isRestoreOwnership());
+        this.filter = options.getFilter();
+        this.writeThrottle = options.getWriteThrottle();
+        this.guard = guard;
+        this.contentStore = options.getContentStore();
+        this.update = options.isIncremental() ? new IncrementalUpdate(this.destination, options) : null;
+    }
+
+    /**
+     * Returns the resolver of the destination.
+     *
+     * @return the resolver, or null if the destination is not on the default file system
+     */
+    DestinationResolver getResolver() {
+        return resolver;
+    }
+
+    AttributeRestorer getRestorer() {
+        return restorer;
+    }
+
+    /**
+     * Checks whether the given entry is selected by the {@link ExtractOptions#getFilter() filter} of the extraction.
+     *
+     * @param entry the entry to check
+     * @return true if the entry is to be extracted
+     */
+    boolean accepts(ArchiveEntry entry) {
+        return filter == EntryFilter.ALL || filter.accept(new DetachedArchiveEntry(entry));
+    }
+
+    /**
+     * Extracts the given entry, reading its contents from the given stream. If the extraction uses a
+     * {@link ContentStore}, files are linked to their blob in the store, which holds their attributes. If the
+     * extraction is incremental, unchanged files are skipped and changed files are replaced.
+     *
+     * @param in the stream positioned at the contents of the entry
+     * @param entry the entry to extract
+     * @return the extracted file or directory
+     * @throws ExtractionLimitException if the entry exceeds a limit of the extraction
+     * @throws IOException if an I/O error occurs when reading or writing
+     */
+    Path extract(InputStream in, ArchiveEntry entry) throws IOException {
+        Path path = resolve(entry.getName());
+        guard.track(path);
+        if (update != null) {
+            update.record(path);
+        }
+
+        if (entry.isDirectory()) {
+            if (update != null) {
+                update.prepareDirectory(path);
+            }
+            createDirectories(path);
+            restorer.restore(entry, path);
+            return path;
+        }
+
+        createDirectories(path.getParent());
+        if (update != null && update.isUnchanged(entry, path)) {
+            return path;
+        }
+
+        InputStream data = guard.guard(CpuPermits.wrap(in, entry), entry.getName(), entry.getSize());
+        Path target = update != null ? update.target(path) : path;
+        try {
+            if (contentStore != null) {
+                Path blob = contentStore.store(
+                        data, AttributeRestorer.mode(entry), p -> restorer.restore(entry, p), writeThrottle);
+                ContentStore.link(blob, target);
+            } else {
+                write(data, target);
+                restorer.restore(entry, target);
+            }
+        } catch (IOException e) {
+            if (update != null) {
+                update.discard(target, path);
+            }
+            throw e;
+        }
+        if (update != null) {
+            update.replace(target, path);
+        }
+
+        return path;
+    }
+
+    /**
+     * Resolves the given entry name to a path inside the destination.
+     *
+     * @param entryName the name of the archive entry
+     * @return the path the entry is to be extracted to
+     * @throws FileSystemException if the entry name is unsafe, or if symbolic links are refused and the path or one of
+     *     its parents inside the destination is a symbolic link
+     */
+    Path resolve(String entryName) throws FileSystemException {
+        if (resolver != null) {
+            return resolver.resolve(entryName).toPath();
+        }
+
+        String name = DestinationResolver.safeEntryName(entryName).replace(File.separatorChar, '/');
+        Path path = destination.resolve(name);
+
+        if (refuseSymlinks) {
+            for (Path p = path; p != null && !p.equals(destination); p = p.getParent()) {
+                if (Files.isSymbolicLink(p)) {
+                    throw new FileSystemException(
+                            path.toString(), p.toString(), "Refusing to extract through a symbolic link");
+                }
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Writes the remaining contents of the given stream into a new file, limited by the write throttle of the
+     * extraction. Streams over uncompressed entries of an archive file are transferred directly between the channels.
+     *
+     * @param in the stream to read from
+     * @param path the file to create
+     * @throws java.nio.file.FileAlreadyExistsException if the file already exists
+     * @throws IOException if an I/O error occurs when reading or writing
+     */
+    void write(InputStream in, Path path) throws IOException {
+        try (SeekableByteChannel channel = writeThrottle.wrap(
+                Files.newByteChannel(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+            if (in instanceof ChannelTransferable transferable) {
+                transferable.transferTo(channel);
+            } else {
+                copy(in, channel);
+            }
+        }
+    }
+
+    /**
+     * Removes the files of the destination that an incremental extraction did not extract, if the options ask for it.
+     * Has to be called once all entries have been extracted, before {@link #finish()}.
+     *
+     * @throws IOException if a stale file or directory can not be removed
+     */
+    void removeStale() throws IOException {
+        if (update != null) {
+            update.removeStale();
+        }
+    }
+
+    /** Applies the deferred attributes of all extracted directories. */
+    void finish() {
+        restorer.finish();
+    }
+
+    private void createDirectories(Path directory) throws IOException {
+        if (createdDirectories.add(directory)) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    private void copy(InputStream in, WritableByteChannel channel) throws IOException {
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+
+        int n;
+        while ((n = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+            ByteBuffer block = ByteBuffer.wrap(buffer, 0, n);
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+        }
+    }
+}
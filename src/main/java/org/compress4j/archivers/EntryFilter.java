@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the entries of an archive that are extracted. Filters only see the metadata of an entry, entries that are
+ * not accepted are skipped as cheaply as the archive format allows: ZIP and 7z archives only read the accepted entries,
+ * uncompressed TAR archives seek past the contents of the rejected ones, and compressed archives at least skip
+ * writing them. <br>
+ * Entry names are matched without a trailing slash, so a directory entry {@code folder/} is matched by the name
+ * {@code folder}.
+ *
+ * @see ExtractOptions.Builder#setFilter(EntryFilter)
+ */
+@FunctionalInterface
+public interface EntryFilter {
+
+    /** A filter that accepts every entry. */
+    EntryFilter ALL = entry -> true;
+
+    /** A filter that accepts no entry. */
+    EntryFilter NONE = entry -> false;
+
+    /**
+     * Checks whether the given entry should be extracted. The entry can only be inspected, calling
+     * {@link ArchiveEntry#extract(java.io.File)} on it fails with an {@link IllegalStateException}.
+     *
+     * @param entry the archive entry
+     * @return true if the entry should be extracted
+     */
+    boolean accept(ArchiveEntry entry);
+
+    /**
+     * Returns a filter that accepts entries accepted by both this and the given filter.
+     *
+     * @param other the other filter
+     * @return the combined filter
+     */
+    default EntryFilter and(EntryFilter other) {
+        Objects.requireNonNull(other);
+        return entry -> accept(entry) && other.accept(entry);
+    }
+
+    /**
+     * Returns a filter that accepts entries accepted by this or the given filter.
+     *
+     * @param other the other filter
+     * @return the combined filter
+     */
+    default EntryFilter or(EntryFilter other) {
+        Objects.requireNonNull(other);
+        return entry -> accept(entry) || other.accept(entry);
+    }
+
+    /**
+     * Returns a filter that accepts the entries this filter rejects.
+     *
+     * @return the negated filter
+     */
+    default EntryFilter negate() {
+        return entry -> !accept(entry);
+    }
+
+    /**
+     * Returns a filter that accepts entries with one of the given names.
+     *
+     * @param names the entry names, e.g. {@code folder/folder_file.txt}
+     * @return a new filter
+     */
+    static EntryFilter names(String... names) {
+        return names(Arrays.asList(names));
+    }
+
+    /**
+     * Returns a filter that accepts entries with one of the given names.
+     *
+     * @param names the entry names, e.g. {@code folder/folder_file.txt}
+     * @return a new filter
+     */
+    static EntryFilter names(Collection<String> names) {
+        Set<String> accepted = new HashSet<>();
+        for (String name : names) {
+            accepted.add(IOUtils.normalizeEntryName(name));
+        }
+        return entry -> accepted.contains(IOUtils.normalizeEntryName(entry.getName()));
+    }
+
+    /**
+     * Returns a filter that accepts entries whose name matches one of the given glob patterns. Supported are
+     * {@code *} matching within a directory, {@code **} matching across directories, {@code ?} matching a single
+     * character, character classes such as {@code [a-z]} or {@code [!0-9]} and groups such as {@code {txt,md}}.
+     *
+     * @param patterns the glob patterns, e.g. {@code folder/**&#47;*.txt}
+     * @return a new filter
+     * @throws IllegalArgumentException if one of the patterns is malformed
+     */
+    static EntryFilter glob(String... patterns) {
+        List<Pattern> compiled = Arrays.stream(patterns).map(Glob::compile).toList();
+        return entry -> {
+            String name = IOUtils.normalizeEntryName(entry.getName());
+            for (Pattern pattern : compiled) {
+                if (pattern.matcher(name).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Returns a filter that accepts entries whose name matches the given predicate.
+     *
+     * @param predicate the predicate to test entry names with
+     * @return a new filter
+     */
+    static EntryFilter matching(Predicate<String> predicate) {
+        Objects.requireNonNull(predicate);
+        return entry -> predicate.test(IOUtils.normalizeEntryName(entry.getName()));
+    }
+}
@@ -0,0 +1,659 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.util.Objects;
+
+/**
+ * Options that tune how an {@link Archiver} extracts an archive. Instances are immutable and can be shared between
+ * concurrent extractions. Use {@link #builder()} to create one, or {@link #DEFAULT} for the default behaviour.
+ */
+public final class ExtractOptions {
+
+    /** Default in-memory size up to which an entry is handed to a writer thread, 1 MiB. */
+    public static final int DEFAULT_SPOOL_THRESHOLD = 1024 * 1024;
+
+    /** Default upper bound of entry data buffered for the writer threads at any time, 64 MiB. */
+    public static final int DEFAULT_MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    /** Options that extract sequentially on the calling thread. */
+    public static final ExtractOptions DEFAULT = builder().build();
+
+    private final int writerThreads;
+    private final int spoolThreshold;
+    private final int maxBufferedBytes;
+    private final boolean refuseSymlinks;
+    private final boolean restoreTimes;
+    private final boolean restoreOwnership;
+    private final EntryFilter filter;
+    private final long maxInMemorySize;
+    private final boolean directBuffers;
+    private final boolean memoryMapped;
+    private final Throttle readThrottle;
+    private final Throttle writeThrottle;
+    private final long maxTotalSize;
+    private final long maxEntries;
+    private final long maxEntrySize;
+    private final double maxCompressionRatio;
+    private final CancellationToken cancellation;
+    private final boolean deleteOnCancel;
+    private final ContentStore contentStore;
+    private final boolean incremental;
+    private final boolean compareCrc;
+    private final boolean removeStale;
+
+    private ExtractOptions(Builder builder) {
+        this.writerThreads = builder.writerThreads;
+        this.spoolThreshold = builder.spoolThreshold;
+        this.maxBufferedBytes = builder.maxBufferedBytes;
+        this.refuseSymlinks = builder.refuseSymlinks;
+        this.restoreTimes = builder.restoreTimes;
+        this.restoreOwnership = builder.restoreOwnership;
+        this.filter = builder.filter;
+        this.maxInMemorySize = builder.maxInMemorySize;
+        this.directBuffers = builder.directBuffers;
+        this.memoryMapped = builder.memoryMapped;
+        // waits for bandwidth stop when the operation is cancelled
+        this.readThrottle = builder.readThrottle.bind(builder.cancellation);
+        this.writeThrottle = builder.writeThrottle.bind(builder.cancellation);
+        this.maxTotalSize = builder.maxTotalSize;
+        this.maxEntries = builder.maxEntries;
+        this.maxEntrySize = builder.maxEntrySize;
+        this.maxCompressionRatio = builder.maxCompressionRatio;
+        this.cancellation = builder.cancellation;
+        this.deleteOnCancel = builder.deleteOnCancel;
+        this.contentStore = builder.contentStore;
+        this.incremental = builder.incremental;
+        this.compareCrc = builder.compareCrc;
+        this.removeStale = builder.removeStale;
+    }
+
+    /**
+     * Returns a new builder initialised with the default options.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of threads that write extracted entries to the file system. A value of {@code 1} means that
+     * entries are decoded and written sequentially on the calling thread.
+     *
+     * @return the number of writer threads
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * Returns the size up to which the content of an entry is buffered in memory and handed to a writer thread.
+     * Larger entries are written by the decoding thread itself.
+     *
+     * @return the spool threshold in bytes
+     */
+    public int getSpoolThreshold() {
+        return spoolThreshold;
+    }
+
+    /**
+     * Returns the maximum number of bytes that may be buffered for the writer threads at any time. The decoding thread
+     * blocks once this limit is reached until writers catch up.
+     *
+     * @return the maximum number of buffered bytes
+     */
+    public int getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    /**
+     * Returns whether extraction refuses to write entries through symbolic links that exist inside the destination.
+     *
+     * @return true if symbolic links inside the destination are refused
+     */
+    public boolean isRefuseSymlinks() {
+        return refuseSymlinks;
+    }
+
+    /**
+     * Returns whether the last modification times recorded in the archive are restored onto extracted files.
+     *
+     * @return true if modification times are restored
+     */
+    public boolean isRestoreTimes() {
+        return restoreTimes;
+    }
+
+    /**
+     * Returns whether the user and group ids recorded in the archive are restored onto extracted files.
+     *
+     * @return true if ownership is restored
+     */
+    public boolean isRestoreOwnership() {
+        return restoreOwnership;
+    }
+
+    /**
+     * Returns the filter that selects the entries to extract.
+     *
+     * @return the entry filter, {@link EntryFilter#ALL} by default
+     */
+    public EntryFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the maximum total size of the entries extracted into memory by
+     * {@link Archiver#extractToMemory(java.io.File, ExtractOptions)}.
+     *
+     * @return the maximum total size in bytes, unlimited by default
+     */
+    public long getMaxInMemorySize() {
+        return maxInMemorySize;
+    }
+
+    /**
+     * Returns whether entries extracted into memory are held in direct buffers, outside of the Java heap.
+     *
+     * @return true if direct buffers are used
+     */
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+
+    /**
+     * Returns whether ZIP archive files are read through memory mappings.
+     *
+     * @return true if archive files are memory mapped, false by default
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Returns the throttle that limits the bandwidth of reading archive files. It is the share of the throttle that
+     * was set, bound to the {@link #getCancellation() cancellation token} so that waiting for bandwidth stops when the
+     * token is cancelled.
+     *
+     * @return the read throttle, {@link Throttle#UNLIMITED} by default
+     */
+    public Throttle getReadThrottle() {
+        return readThrottle;
+    }
+
+    /**
+     * Returns the throttle that limits the bandwidth of writing extracted files, bound to the cancellation token as
+     * the {@link #getReadThrottle() read throttle}.
+     *
+     * @return the write throttle, {@link Throttle#UNLIMITED} by default
+     */
+    public Throttle getWriteThrottle() {
+        return writeThrottle;
+    }
+
+    /**
+     * Returns the maximum total size of the extracted entries. An extraction that writes more fails with an
+     * {@link ExtractionLimitException}.
+     *
+     * @return the maximum total size in bytes, unlimited by default
+     */
+    public long getMaxTotalSize() {
+        return maxTotalSize;
+    }
+
+    /**
+     * Returns the maximum number of entries that are read from an archive, including the entries that are not
+     * selected by the {@link #getFilter() filter}.
+     *
+     * @return the maximum number of entries, unlimited by default
+     */
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum size of a single extracted entry.
+     *
+     * @return the maximum entry size in bytes, unlimited by default
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the maximum ratio between the size of the extracted entries and the size of the archive.
+     *
+     * @return the maximum compression ratio, {@link Double#POSITIVE_INFINITY} by default
+     */
+    public double getMaxCompressionRatio() {
+        return maxCompressionRatio;
+    }
+
+    /**
+     * Returns the token that stops the extraction when it is cancelled or its deadline passes.
+     *
+     * @return the cancellation token, {@link CancellationToken#NONE} by default
+     */
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Returns whether the files and directories created by an extraction are removed when it is cancelled.
+     *
+     * @return true if partial output is removed, false by default
+     */
+    public boolean isDeleteOnCancel() {
+        return deleteOnCancel;
+    }
+
+    /**
+     * Returns the store that holds the contents of the extracted files, which are linked into the destination.
+     *
+     * @return the content store, or {@code null} if files are written into the destination, the default
+     */
+    public ContentStore getContentStore() {
+        return contentStore;
+    }
+
+    /**
+     * Returns whether an extraction refreshes the files that already exist in the destination, instead of failing on
+     * them.
+     *
+     * @return true if the extraction is incremental, false by default
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Returns whether an incremental extraction compares existing files with the CRC-32 recorded in the archive,
+     * instead of their modification time.
+     *
+     * @return true if checksums are compared, false by default
+     */
+    public boolean isCompareCrc() {
+        return compareCrc;
+    }
+
+    /**
+     * Returns whether an incremental extraction removes the files of the destination that are not in the archive.
+     *
+     * @return true if stale files are removed, false by default
+     */
+    public boolean isRemoveStale() {
+        return removeStale;
+    }
+
+    /**
+     * Checks whether entries are handed to {@link #getWriterThreads() writer threads}. Extractions into a
+     * {@link #getContentStore() content store} and incremental extractions run on the calling thread.
+     *
+     * @return true if the extraction writes entries in parallel
+     */
+    boolean isParallel() {
+        return writerThreads > 1 && contentStore == null && !incremental;
+    }
+
+    /** Builder for {@link ExtractOptions}. */
+    public static final class Builder {
+
+        private int writerThreads = 1;
+        private int spoolThreshold = DEFAULT_SPOOL_THRESHOLD;
+        private int maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+        private boolean refuseSymlinks;
+        private boolean restoreTimes = true;
+        private boolean restoreOwnership;
+        private EntryFilter filter = EntryFilter.ALL;
+        private long maxInMemorySize = Long.MAX_VALUE;
+        private boolean directBuffers;
+        private boolean memoryMapped;
+        private Throttle readThrottle = Throttle.UNLIMITED;
+        private Throttle writeThrottle = Throttle.UNLIMITED;
+        private long maxTotalSize = Long.MAX_VALUE;
+        private long maxEntries = Long.MAX_VALUE;
+        private long maxEntrySize = Long.MAX_VALUE;
+        private double maxCompressionRatio = Double.POSITIVE_INFINITY;
+        private CancellationToken cancellation = CancellationToken.NONE;
+        private boolean deleteOnCancel;
+        private ContentStore contentStore;
+        private boolean incremental;
+        private boolean compareCrc;
+        private boolean removeStale;
+
+        private Builder() {}
+
+        /**
+         * Sets the number of threads that write extracted entries to the file system. With more than one thread,
+         * entries are decoded on the calling thread and written concurrently by a pool of writer threads.
+         *
+         * @param writerThreads the number of writer threads, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code writerThreads} is less than 1
+         */
+        public Builder setWriterThreads(int writerThreads) {
+            if (writerThreads < 1) {
+                throw new IllegalArgumentException("Writer threads must be at least 1, was " + writerThreads);
+            }
+            this.writerThreads = writerThreads;
+            return this;
+        }
+
+        /**
+         * Sets the size up to which the content of an entry is buffered in memory and handed to a writer thread.
+         *
+         * @param spoolThreshold the threshold in bytes, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code spoolThreshold} is negative
+         */
+        public Builder setSpoolThreshold(int spoolThreshold) {
+            if (spoolThreshold < 0) {
+                throw new IllegalArgumentException("Spool threshold must not be negative, was " + spoolThreshold);
+            }
+            this.spoolThreshold = spoolThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes that may be buffered for the writer threads at any time.
+         *
+         * @param maxBufferedBytes the maximum in bytes, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxBufferedBytes} is less than 1
+         */
+        public Builder setMaxBufferedBytes(int maxBufferedBytes) {
+            if (maxBufferedBytes < 1) {
+                throw new IllegalArgumentException("Max buffered bytes must be at least 1, was " + maxBufferedBytes);
+            }
+            this.maxBufferedBytes = maxBufferedBytes;
+            return this;
+        }
+
+        /**
+         * Sets whether extraction refuses to write entries through symbolic links that exist inside the destination.
+         * Entry names are always validated so they can not escape the destination, this strict mode additionally
+         * protects against links that were placed in the destination beforehand. An entry whose file or parent
+         * directory is a symbolic link fails the extraction with a {@link java.nio.file.FileSystemException}.
+         *
+         * @param refuseSymlinks true to refuse symbolic links inside the destination
+         * @return this builder
+         */
+        public Builder setRefuseSymlinks(boolean refuseSymlinks) {
+            this.refuseSymlinks = refuseSymlinks;
+            return this;
+        }
+
+        /**
+         * Sets whether the last modification times recorded in the archive are restored onto extracted files. Enabled
+         * by default.
+         *
+         * @param restoreTimes true to restore modification times
+         * @return this builder
+         */
+        public Builder setRestoreTimes(boolean restoreTimes) {
+            this.restoreTimes = restoreTimes;
+            return this;
+        }
+
+        /**
+         * Sets whether the user and group ids recorded in the archive are restored onto extracted files. Changing the
+         * owner of a file usually requires elevated privileges, failures are logged and do not fail the extraction.
+         * Disabled by default.
+         *
+         * @param restoreOwnership true to restore ownership
+         * @return this builder
+         */
+        public Builder setRestoreOwnership(boolean restoreOwnership) {
+            this.restoreOwnership = restoreOwnership;
+            return this;
+        }
+
+        /**
+         * Sets the filter that selects the entries to extract. Entries that are not accepted are skipped without
+         * writing them, and without reading them where the archive format allows it.
+         *
+         * @param filter the entry filter
+         * @return this builder
+         */
+        public Builder setFilter(EntryFilter filter) {
+            this.filter = Objects.requireNonNull(filter, "filter");
+            return this;
+        }
+
+        /**
+         * Sets the maximum total size of the entries extracted into memory. An extraction into memory that exceeds it
+         * fails with an {@link java.io.IOException}.
+         *
+         * @param maxInMemorySize the maximum total size in bytes, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxInMemorySize} is negative
+         */
+        public Builder setMaxInMemorySize(long maxInMemorySize) {
+            if (maxInMemorySize < 0) {
+                throw new IllegalArgumentException("Max in-memory size must not be negative, was " + maxInMemorySize);
+            }
+            this.maxInMemorySize = maxInMemorySize;
+            return this;
+        }
+
+        /**
+         * Sets whether entries extracted into memory are held in direct buffers, outside of the Java heap. Disabled
+         * by default.
+         *
+         * @param directBuffers true to use direct buffers
+         * @return this builder
+         */
+        public Builder setDirectBuffers(boolean directBuffers) {
+            this.directBuffers = directBuffers;
+            return this;
+        }
+
+        /**
+         * Sets whether ZIP archive files are read through memory mappings. The central directory is parsed from a
+         * mapping of the end of the file, and large entries are read from a mapping of their data, which is released
+         * when the entry has been read. Has no effect if a {@link #setReadThrottle(Throttle) read throttle} is set.
+         * Disabled by default, as the archive file must not be truncated while a mapping of it is read.
+         *
+         * @param memoryMapped true to read archive files through memory mappings
+         * @return this builder
+         */
+        public Builder setMemoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
+
+        /**
+         * Sets the throttle that limits the bandwidth of reading archive files. Only archives that are extracted
+         * from a file or path are throttled, streams passed by the caller are read as they are.
+         *
+         * @param readThrottle the read throttle
+         * @return this builder
+         */
+        public Builder setReadThrottle(Throttle readThrottle) {
+            this.readThrottle = Objects.requireNonNull(readThrottle, "readThrottle");
+            return this;
+        }
+
+        /**
+         * Sets the throttle that limits the bandwidth of writing extracted files. The throttle may be shared with
+         * other operations.
+         *
+         * @param writeThrottle the write throttle
+         * @return this builder
+         */
+        public Builder setWriteThrottle(Throttle writeThrottle) {
+            this.writeThrottle = Objects.requireNonNull(writeThrottle, "writeThrottle");
+            return this;
+        }
+
+        /**
+         * Sets the maximum total size of the extracted entries. The size is checked as the entries are written, so an
+         * archive that exceeds it fails with an {@link ExtractionLimitException} as soon as the limit is reached,
+         * whatever sizes its headers declare.
+         *
+         * @param maxTotalSize the maximum total size in bytes, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxTotalSize} is negative
+         */
+        public Builder setMaxTotalSize(long maxTotalSize) {
+            if (maxTotalSize < 0) {
+                throw new IllegalArgumentException("Max total size must not be negative, was " + maxTotalSize);
+            }
+            this.maxTotalSize = maxTotalSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of entries that are read from an archive. Entries that are not selected by the
+         * filter count as well, as reading them costs time all the same.
+         *
+         * @param maxEntries the maximum number of entries, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxEntries} is negative
+         */
+        public Builder setMaxEntries(long maxEntries) {
+            if (maxEntries < 0) {
+                throw new IllegalArgumentException("Max entries must not be negative, was " + maxEntries);
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size of a single extracted entry.
+         *
+         * @param maxEntrySize the maximum entry size in bytes, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxEntrySize} is negative
+         */
+        public Builder setMaxEntrySize(long maxEntrySize) {
+            if (maxEntrySize < 0) {
+                throw new IllegalArgumentException("Max entry size must not be negative, was " + maxEntrySize);
+            }
+            this.maxEntrySize = maxEntrySize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum ratio between the size of the extracted entries and the size of the archive, which guards
+         * against decompression bombs. The archive size is the size of the archive file, or the number of bytes read
+         * so far from an archive stream. Small extractions of highly compressible data are common, so the ratio is
+         * only checked once more than 1 MiB has been extracted.
+         *
+         * @param maxCompressionRatio the maximum compression ratio, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxCompressionRatio} is less than 1
+         */
+        public Builder setMaxCompressionRatio(double maxCompressionRatio) {
+            if (!(maxCompressionRatio >= 1)) {
+                throw new IllegalArgumentException(
+                        "Max compression ratio must be at least 1, was " + maxCompressionRatio);
+            }
+            this.maxCompressionRatio = maxCompressionRatio;
+            return this;
+        }
+
+        /**
+         * Sets the token that stops the extraction. The token is checked for every entry and every buffer that is
+         * read, a cancelled extraction fails with an {@link OperationCancelledException}.
+         *
+         * @param cancellation the cancellation token
+         * @return this builder
+         */
+        public Builder setCancellation(CancellationToken cancellation) {
+            this.cancellation = Objects.requireNonNull(cancellation, "cancellation");
+            return this;
+        }
+
+        /**
+         * Sets whether the files and directories created by an extraction are removed when it is cancelled. Files and
+         * directories that existed before are left alone.
+         *
+         * @param deleteOnCancel true to remove partial output
+         * @return this builder
+         */
+        public Builder setDeleteOnCancel(boolean deleteOnCancel) {
+            this.deleteOnCancel = deleteOnCancel;
+            return this;
+        }
+
+        /**
+         * Sets the store that holds the contents of the extracted files. Every file is hashed while it is read, and
+         * only written into the store if its content is new; the destination receives a hard link to the stored
+         * content. Entries are then extracted on the calling thread, whatever the number of
+         * {@link #setWriterThreads(int) writer threads}. Destinations that are not on the default file system are
+         * written as usual.
+         *
+         * @param contentStore the content store, or {@code null} to write files into the destination
+         * @return this builder
+         */
+        public Builder setContentStore(ContentStore contentStore) {
+            this.contentStore = contentStore;
+            return this;
+        }
+
+        /**
+         * Sets whether an extraction refreshes a previously extracted destination. Files whose size and modification
+         * time match their entry are skipped without reading their contents, other files are written next to the
+         * existing ones and atomically moved over them. Comparing modification times relies on them being
+         * {@link #setRestoreTimes(boolean) restored}, otherwise every file counts as changed. Entries are then
+         * extracted on the calling thread, whatever the number of {@link #setWriterThreads(int) writer threads}.
+         *
+         * @param incremental true to refresh existing files, false to fail on them
+         * @return this builder
+         */
+        public Builder setIncremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        /**
+         * Sets whether an incremental extraction compares existing files with the CRC-32 that zip and 7z archives
+         * record for their entries, instead of their modification time. Every existing file of the same size is read
+         * to compute its checksum. Entries without a recorded checksum are compared by modification time.
+         *
+         * @param compareCrc true to compare checksums
+         * @return this builder
+         */
+        public Builder setCompareCrc(boolean compareCrc) {
+            this.compareCrc = compareCrc;
+            return this;
+        }
+
+        /**
+         * Sets whether an incremental extraction removes the files and directories of the destination that it did not
+         * extract, once all entries are extracted. With a {@link #setFilter(EntryFilter) filter}, the files of
+         * rejected entries are removed as well.
+         *
+         * @param removeStale true to remove stale files
+         * @return this builder
+         */
+        public Builder setRemoveStale(boolean removeStale) {
+            this.removeStale = removeStale;
+            return this;
+        }
+
+        /**
+         * Creates the {@link ExtractOptions}.
+         *
+         * @return new extract options
+         */
+        public ExtractOptions build() {
+            return new ExtractOptions(this);
+        }
+    }
+}
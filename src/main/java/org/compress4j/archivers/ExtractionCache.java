@@ -0,0 +1,543 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the extracted contents of archives in a managed directory, so that an archive that is extracted again is
+ * served from the cache instead of being decoded. <br>
+ * Archives are identified by their {@link ArchiveFingerprint fingerprint}: the size and modification time of the file,
+ * and a digest of the central directory of ZIP and JAR archives, or of the first and last 64 KiB of other archives.
+ * The first request for an archive extracts it into the cache, later requests either return the cached directory with
+ * {@link #get(File)}, or recreate its tree in a destination with {@link #extract(File, File)}, using hard links where
+ * the file system supports them. <br>
+ * The total size of the cached contents is bounded by the {@link Builder#setMaxSize(long) maximum size}; once it is
+ * exceeded, the least recently used archives are evicted. The cache directory may be shared between processes, every
+ * archive is extracted into a temporary directory and moved into place atomically. Entries that other processes add
+ * are picked up as they are requested, but only count towards the size of the process that sees them.
+ */
+public final class ExtractionCache {
+
+    /** Default upper bound of the total size of the cached contents, 10 GiB. */
+    public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024 * 1024;
+
+    /** Temporary directories older than this are left over by crashed processes, and removed when a cache is opened. */
+    private static final Duration STALE_TEMP_AGE = Duration.ofDays(1);
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+    private static final String TEMP_PREFIX = "tmp-";
+    private static final String SIZE_SUFFIX = ".size";
+
+    private final Path directory;
+    private final long maxSize;
+    private final boolean hardLinks;
+    private final ExtractOptions options;
+
+    /** The cached archives in the order of their last use, guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Object> populating = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long size;
+
+    private ExtractionCache(Builder builder) throws IOException {
+        this.directory = builder.directory.toAbsolutePath();
+        this.maxSize = builder.maxSize;
+        this.hardLinks = builder.hardLinks;
+        this.options = builder.options;
+
+        Files.createDirectories(directory);
+        load();
+    }
+
+    /**
+     * Returns a new builder.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the directory that holds the extracted contents of the given archive, extracting the archive into the
+     * cache first if it is not cached yet. <br>
+     * The returned directory belongs to the cache and must not be modified. It stays in place until it is evicted,
+     * which happens to the least recently used archives first.
+     *
+     * @param archive the archive file
+     * @return the directory of the cached contents
+     * @throws IOException propagated I/O errors by {@code java.nio}, or if the archive can not be extracted
+     */
+    public Path get(File archive) throws IOException {
+        Entry entry = acquire(archive);
+        release(entry);
+        return entry.path;
+    }
+
+    /**
+     * Extracts the given archive into the given destination directory through the cache. The cached tree is recreated
+     * in the destination with hard links if enabled and supported by the file system, and copied otherwise. <br>
+     * Hard links share the contents with the cache: files in the destination must not be modified in place, but they
+     * may be deleted or replaced.
+     *
+     * @param archive the archive file
+     * @param destination the directory to which to extract the files
+     * @throws IOException propagated I/O errors by {@code java.nio}, or if the archive can not be extracted
+     */
+    public void extract(File archive, File destination) throws IOException {
+        IOUtils.requireDirectory(destination);
+
+        Entry entry = acquire(archive);
+        try {
+            materialize(entry.path, destination.toPath());
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * Returns the directory of this cache.
+     *
+     * @return the cache directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the upper bound of the total size of the cached contents.
+     *
+     * @return the maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total size of the contents cached by this process.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of requests that were served from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests that extracted the archive into the cache.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractionCache[directory=" + directory + ", size=" + getSize() + ", maxSize=" + maxSize + "]";
+    }
+
+    /** Looks up or extracts the given archive, and marks its entry as used until it is released. */
+    private Entry acquire(File archive) throws IOException {
+        String key = ArchiveFingerprint.of(archive);
+
+        Entry entry = lookup(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+        }
+
+        Object lock = populating.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                entry = lookup(key);
+                if (entry != null) {
+                    hits.incrementAndGet();
+                    return entry;
+                }
+                entry = adopt(key);
+                if (entry != null) {
+                    hits.incrementAndGet();
+                    return entry;
+                }
+
+                misses.incrementAndGet();
+                return populate(key, archive);
+            }
+        } finally {
+            populating.remove(key, lock);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.users--;
+    }
+
+    /** Returns the entry of the given key in use, or {@code null} if it is not cached, or was removed from disk. */
+    private Entry lookup(String key) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (!Files.isDirectory(entry.path)) {
+                entries.remove(key);
+                size -= entry.size;
+                return null;
+            }
+            entry.users++;
+        }
+        touch(entry.path);
+        return entry;
+    }
+
+    /** Registers an entry that another process has added to the cache directory. */
+    private Entry adopt(String key) throws IOException {
+        Path path = directory.resolve(key);
+        if (!Files.isDirectory(path)) {
+            return null;
+        }
+        touch(path);
+        return register(key, path, readSize(key, path));
+    }
+
+    private Entry populate(String key, File archive) throws IOException {
+        Path temp = Files.createTempDirectory(directory, TEMP_PREFIX + key + "-");
+        Path path = directory.resolve(key);
+        long bytes;
+        try {
+            ArchiverFactory.createArchiver(archive).extract(archive, temp.toFile(), options);
+            bytes = sizeOf(temp);
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // another process has cached the same archive in the meantime
+                delete(temp);
+                return register(key, path, readSize(key, path));
+            }
+        } catch (IOException | RuntimeException e) {
+            delete(temp);
+            throw e;
+        }
+
+        Files.writeString(directory.resolve(key + SIZE_SUFFIX), Long.toString(bytes));
+        return register(key, path, bytes);
+    }
+
+    /** Adds an entry that is in use, and evicts the least recently used entries that are not in use. */
+    private Entry register(String key, Path path, long bytes) {
+        Entry entry = new Entry(path, bytes);
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                size -= previous.size;
+            }
+            size += bytes;
+            entry.users++;
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Entry candidate = iterator.next();
+                if (candidate.users == 0) {
+                    iterator.remove();
+                    size -= candidate.size;
+                    evicted.add(candidate);
+                }
+            }
+        }
+
+        for (Entry candidate : evicted) {
+            evict(candidate.path);
+        }
+        return entry;
+    }
+
+    /** Moves an evicted entry out of the way before deleting it, so that no other process sees it half deleted. */
+    private void evict(Path path) {
+        try {
+            Files.deleteIfExists(directory.resolve(path.getFileName() + SIZE_SUFFIX));
+            Path temp = directory.resolve(TEMP_PREFIX + path.getFileName() + "-evicted-" + System.nanoTime());
+            Files.move(path, temp, StandardCopyOption.ATOMIC_MOVE);
+            delete(temp);
+        } catch (IOException e) {
+            // another process may have evicted it already, or still be using it
+        }
+    }
+
+    /** Registers the entries of the cache directory in the order of their last use, and removes stale leftovers. */
+    private void load() throws IOException {
+        List<Path> cached = new ArrayList<>();
+        Instant stale = Instant.now().minus(STALE_TEMP_AGE);
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (KEY.matcher(name).matches() && Files.isDirectory(child)) {
+                    cached.add(child);
+                } else if (name.startsWith(TEMP_PREFIX)
+                        && Files.getLastModifiedTime(child).toInstant().isBefore(stale)) {
+                    delete(child);
+                }
+            }
+        }
+
+        cached.sort(Comparator.comparing(ExtractionCache::lastModified));
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (Path path : cached) {
+                String key = path.getFileName().toString();
+                Entry entry = new Entry(path, readSize(key, path));
+                entries.put(key, entry);
+                size += entry.size;
+            }
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Entry entry = iterator.next();
+                iterator.remove();
+                size -= entry.size;
+                evicted.add(entry);
+            }
+        }
+        for (Entry entry : evicted) {
+            evict(entry.path);
+        }
+    }
+
+    private long readSize(String key, Path path) throws IOException {
+        Path sizeFile = directory.resolve(key + SIZE_SUFFIX);
+        try {
+            return Long.parseLong(Files.readString(sizeFile).trim());
+        } catch (IOException | NumberFormatException e) {
+            long bytes = sizeOf(path);
+            Files.writeString(sizeFile, Long.toString(bytes));
+            return bytes;
+        }
+    }
+
+    /** Records the use of an entry in its modification time, which orders the entries when a cache is opened. */
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // the order of use is only a hint
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long sizeOf(Path tree) throws IOException {
+        long[] bytes = {0};
+        Files.walkFileTree(tree, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                bytes[0] += attributes.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return bytes[0];
+    }
+
+    /** Recreates the given cached tree in the destination, with hard links as long as they can be created. */
+    private void materialize(Path source, Path destination) throws IOException {
+        boolean[] link = {hardLinks};
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                Files.createDirectories(destination.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Path target = destination.resolve(source.relativize(file).toString());
+                if (link[0] && attributes.isRegularFile()) {
+                    try {
+                        Files.createLink(target, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (FileAlreadyExistsException e) {
+                        throw e;
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        // e.g. the destination is on another file system, copy the remaining files
+                        link[0] = false;
+                    }
+                }
+                Files.copy(file, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Deletes the given tree as far as possible, including directories whose mode does not allow it. */
+    private static void delete(Path tree) {
+        try {
+            Files.walkFileTree(tree, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                    //noinspection ResultOfMethodCallIgnored
+                    dir.toFile().setWritable(true);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // left for the next cache that is opened on the directory
+        }
+    }
+
+    /** An archive in the cache, guarded by the cache. */
+    private static final class Entry {
+
+        private final Path path;
+        private final long size;
+        private int users;
+
+        Entry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /** Builder for {@link ExtractionCache}. */
+    public static final class Builder {
+
+        private Path directory;
+        private long maxSize = DEFAULT_MAX_SIZE;
+        private boolean hardLinks = true;
+        private ExtractOptions options = ExtractOptions.DEFAULT;
+
+        private Builder() {}
+
+        /**
+         * Sets the directory that holds the cached contents. The directory is created if it does not exist, and is
+         * managed by the cache: it must not contain anything else.
+         *
+         * @param directory the cache directory
+         * @return this builder
+         */
+        public Builder setDirectory(Path directory) {
+            this.directory = Objects.requireNonNull(directory, "directory");
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of the total size of the cached contents. An archive that is larger on its own is
+         * still cached, and evicted as soon as another archive is added.
+         *
+         * @param maxSize the maximum size in bytes, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxSize} is negative
+         */
+        public Builder setMaxSize(long maxSize) {
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("Max size must not be negative, was " + maxSize);
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Sets whether {@link #extract(File, File)} recreates the cached tree with hard links, which is the default.
+         * Without hard links, or where the file system does not support them, the files are copied.
+         *
+         * @param hardLinks true to use hard links
+         * @return this builder
+         */
+        public Builder setHardLinks(boolean hardLinks) {
+            this.hardLinks = hardLinks;
+            return this;
+        }
+
+        /**
+         * Sets the options with which archives are extracted into the cache. The cache does not record them, a cache
+         * directory should always be used with the same options.
+         *
+         * @param options the extract options
+         * @return this builder
+         */
+        public Builder setExtractOptions(ExtractOptions options) {
+            this.options = Objects.requireNonNull(options, "options");
+            return this;
+        }
+
+        /**
+         * Creates the {@link ExtractionCache}, and registers the archives that are already in its directory.
+         *
+         * @return a new extraction cache
+         * @throws IllegalStateException if no directory was set
+         * @throws IOException if the directory can not be created or read
+         */
+        public ExtractionCache build() throws IOException {
+            if (directory == null) {
+                throw new IllegalStateException("Directory must be set");
+            }
+            return new ExtractionCache(this);
+        }
+    }
+}
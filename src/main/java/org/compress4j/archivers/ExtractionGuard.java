@@ -0,0 +1,314 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Enforces the limits and the {@link CancellationToken} of {@link ExtractOptions} for a single extraction. Entries are
+ * counted as they are read from the archive, and their contents as they stream through
+ * {@link #guard(InputStream, String, long)}, so an archive fails as soon as it exceeds a limit, whatever sizes its
+ * headers declare, and a cancelled extraction stops at the next buffer. <br>
+ * If the options ask to remove partial output, the extractors {@link #track(Path) track} the files and directories
+ * they create, which are {@link #deleteCreated() deleted} when the extraction is cancelled. <br>
+ * The contents of an archive are always read by the decoding thread, a guard is not meant to be used concurrently.
+ */
+final class ExtractionGuard {
+
+    /** The extracted size from which on the compression ratio is checked, 1 MiB. */
+    static final long RATIO_THRESHOLD = 1024 * 1024;
+
+    private final long maxTotalSize;
+    private final long maxEntries;
+    private final long maxEntrySize;
+    private final double maxCompressionRatio;
+    private final CancellationToken cancellation;
+    private final boolean deleteOnCancel;
+
+    /** The files and directories created by the extraction, parents before their children. */
+    private final List<Path> created = new ArrayList<>();
+
+    /** The number of archive bytes read so far, or {@code null} if the ratio can not be checked. */
+    private LongSupplier archiveSize;
+
+    private long entries;
+    private long totalSize;
+
+    /**
+     * Creates a guard for an archive of unknown size. The compression ratio is checked once the archive is passed to
+     * {@link #countArchive(InputStream)}.
+     *
+     * @param options the options that hold the limits
+     */
+    ExtractionGuard(ExtractOptions options) {
+        this.maxTotalSize = options.getMaxTotalSize();
+        this.maxEntries = options.getMaxEntries();
+        this.maxEntrySize = options.getMaxEntrySize();
+        this.maxCompressionRatio = options.getMaxCompressionRatio();
+        this.cancellation = options.getCancellation();
+        this.deleteOnCancel = options.isDeleteOnCancel();
+    }
+
+    /**
+     * Creates a guard for an archive of the given size.
+     *
+     * @param options the options that hold the limits
+     * @param archiveSize the size of the archive in bytes
+     * @return a new guard
+     */
+    static ExtractionGuard forArchive(ExtractOptions options, long archiveSize) {
+        ExtractionGuard guard = new ExtractionGuard(options);
+        guard.archiveSize = () -> archiveSize;
+        return guard;
+    }
+
+    /**
+     * Counts the bytes read from the given archive stream, against which the compression ratio is checked.
+     *
+     * @param in the archive stream
+     * @return a stream that counts the bytes read from the archive
+     */
+    InputStream countArchive(InputStream in) {
+        if (maxCompressionRatio == Double.POSITIVE_INFINITY) {
+            return in;
+        }
+
+        CountingInputStream counting = new CountingInputStream(in);
+        archiveSize = counting::getCount;
+        return counting;
+    }
+
+    /**
+     * Counts an entry that was read from the archive.
+     *
+     * @param name the name of the entry
+     * @throws ExtractionLimitException if the archive has more entries than allowed
+     * @throws OperationCancelledException if the extraction is cancelled
+     */
+    void checkEntry(String name) throws ExtractionLimitException, OperationCancelledException {
+        cancellation.throwIfCancelled();
+        if (++entries > maxEntries) {
+            throw new ExtractionLimitException(
+                    ExtractionLimitException.Limit.ENTRIES, name, "Archive has more than " + maxEntries + " entries");
+        }
+    }
+
+    /**
+     * Returns a stream over the contents of the given entry that fails once the entry exceeds a size limit. Entries
+     * that declare a size beyond the limits fail right away. <br>
+     * Streams that are transferred between channels are returned as they are, their size is exact and accounted up
+     * front, unless the extraction can be cancelled and has to check its token for every buffer.
+     *
+     * @param in the stream positioned at the contents of the entry
+     * @param name the name of the entry
+     * @param size the size the entry declares, negative if unknown
+     * @return the guarded stream
+     * @throws ExtractionLimitException if the declared size of the entry exceeds a limit
+     */
+    InputStream guard(InputStream in, String name, long size) throws ExtractionLimitException {
+        if (maxTotalSize == Long.MAX_VALUE
+                && maxEntrySize == Long.MAX_VALUE
+                && maxCompressionRatio == Double.POSITIVE_INFINITY
+                && !cancellation.isCancellable()) {
+            return in;
+        }
+
+        if (size > maxEntrySize) {
+            throw entrySizeExceeded(name);
+        }
+        if (size > maxTotalSize - totalSize) {
+            throw totalSizeExceeded(name);
+        }
+        if (in instanceof ChannelTransferable && size >= 0 && !cancellation.isCancellable()) {
+            account(name, size);
+            return in;
+        }
+        return new GuardedInputStream(in, name);
+    }
+
+    /**
+     * Records a file or directory the extraction is about to create, together with its parents that do not exist yet,
+     * to delete them if the extraction is cancelled. Nothing is recorded unless the options ask to remove partial
+     * output.
+     *
+     * @param path the file or directory to be created
+     */
+    void track(Path path) {
+        if (!deleteOnCancel) {
+            return;
+        }
+
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path p = path; p != null && Files.notExists(p, LinkOption.NOFOLLOW_LINKS); p = p.getParent()) {
+            missing.push(p);
+        }
+        created.addAll(missing);
+    }
+
+    /**
+     * Deletes the files and directories created by the extraction, as far as possible. Directories that still
+     * contain other files are kept.
+     */
+    void deleteCreated() {
+        for (int i = created.size() - 1; i >= 0; i--) {
+            try {
+                Files.deleteIfExists(created.get(i));
+            } catch (IOException e) {
+                // keep what can not be deleted
+            }
+        }
+        created.clear();
+    }
+
+    private void account(String name, long bytes) throws ExtractionLimitException {
+        totalSize += bytes;
+        if (totalSize > maxTotalSize) {
+            throw totalSizeExceeded(name);
+        }
+        if (archiveSize != null && totalSize > RATIO_THRESHOLD) {
+            long compressed = Math.max(archiveSize.getAsLong(), 1);
+            if (totalSize > maxCompressionRatio * compressed) {
+                throw new ExtractionLimitException(
+                        ExtractionLimitException.Limit.COMPRESSION_RATIO,
+                        name,
+                        "Extracting entry " + name + " exceeds the maximum compression ratio of "
+                                + maxCompressionRatio);
+            }
+        }
+    }
+
+    private ExtractionLimitException entrySizeExceeded(String name) {
+        return new ExtractionLimitException(
+                ExtractionLimitException.Limit.ENTRY_SIZE,
+                name,
+                "Entry " + name + " exceeds the maximum entry size of " + maxEntrySize + " bytes");
+    }
+
+    private ExtractionLimitException totalSizeExceeded(String name) {
+        return new ExtractionLimitException(
+                ExtractionLimitException.Limit.TOTAL_SIZE,
+                name,
+                "Extracting entry " + name + " exceeds the maximum total size of " + maxTotalSize + " bytes");
+    }
+
+    /** Counts the contents of an entry as they are read, and checks the cancellation token before every read. */
+    private final class GuardedInputStream extends FilterInputStream {
+
+        private final String name;
+        private long size;
+
+        GuardedInputStream(InputStream in, String name) {
+            super(in);
+            this.name = name;
+        }
+
+        @Override
+        public int read() throws IOException {
+            cancellation.throwIfCancelled();
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            cancellation.throwIfCancelled();
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported() {
+            // bytes that are read again after a reset would be counted twice
+            return false;
+        }
+
+        private void count(int n) throws ExtractionLimitException {
+            size += n;
+            if (size > maxEntrySize) {
+                throw entrySizeExceeded(name);
+            }
+            account(name, n);
+        }
+    }
+
+    /** Counts the bytes read from an archive stream. */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+        private long mark;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            mark = count;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            count = mark;
+        }
+    }
+}
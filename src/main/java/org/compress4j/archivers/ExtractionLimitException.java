@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+
+/**
+ * Signals that an extraction was aborted because the archive exceeded one of the limits of its
+ * {@link ExtractOptions}. Entries that were written before the limit was reached are left in place.
+ */
+public class ExtractionLimitException extends IOException {
+
+    /** The limits an extraction may exceed. */
+    public enum Limit {
+        /** The total size of the extracted entries, see {@link ExtractOptions#getMaxTotalSize()}. */
+        TOTAL_SIZE,
+        /** The number of entries of the archive, see {@link ExtractOptions#getMaxEntries()}. */
+        ENTRIES,
+        /** The size of a single entry, see {@link ExtractOptions#getMaxEntrySize()}. */
+        ENTRY_SIZE,
+        /** The ratio between extracted and archive size, see {@link ExtractOptions#getMaxCompressionRatio()}. */
+        COMPRESSION_RATIO,
+        /** The total size of the entries extracted into memory, see {@link ExtractOptions#getMaxInMemorySize()}. */
+        IN_MEMORY_SIZE
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    private final Limit limit;
+    private final String entryName;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param limit the limit that was exceeded
+     * @param entryName the name of the entry that was extracted when the limit was exceeded
+     * @param message the detail message
+     */
+    public ExtractionLimitException(Limit limit, String entryName, String message) {
+        super(message);
+        this.limit = limit;
+        this.entryName = entryName;
+    }
+
+    /**
+     * Returns the limit that was exceeded.
+     *
+     * @return the limit
+     */
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the name of the entry that was extracted when the limit was exceeded.
+     *
+     * @return the entry name
+     */
+    public String getEntryName() {
+        return entryName;
+    }
+}
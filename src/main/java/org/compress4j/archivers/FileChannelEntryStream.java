@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads a contiguous region of a {@link FileChannel}, such as the contents of an uncompressed archive entry. <br>
+ * All reads are positional and do not move the position of the channel, so any number of these streams can read from
+ * the same channel concurrently. Skipping only moves the position of the stream, and transfers into other channels are
+ * delegated to {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ */
+final class FileChannelEntryStream extends InputStream implements ChannelTransferable {
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    /**
+     * Creates a stream over a region of the given channel.
+     *
+     * @param channel the channel to read from
+     * @param offset the offset of the first byte of the region
+     * @param length the length of the region
+     */
+    FileChannelEntryStream(FileChannel channel, long offset, long length) {
+        this.channel = channel;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+        if (read == -1) {
+            throw new IOException("Truncated archive, entry data ends at " + position + " instead of " + end);
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(end - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        if (out instanceof FileOutputStream fileOutputStream) {
+            return transferTo(fileOutputStream.getChannel());
+        }
+        return super.transferTo(out);
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (position < end) {
+            long count = channel.transferTo(position, end - position, target);
+            if (count <= 0 && position >= channel.size()) {
+                throw new IOException("Truncated archive, entry data ends at " + position + " instead of " + end);
+            }
+            position += count;
+            transferred += count;
+        }
+        return transferred;
+    }
+}
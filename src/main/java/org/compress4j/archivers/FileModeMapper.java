@@ -15,115 +15,30 @@
  */
 package org.compress4j.archivers;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import org.apache.commons.compress.archivers.ArchiveEntry;
 
 /**
- * Reads *nix file mode flags of commons-compress ArchiveEntry (where possible) and maps them onto Files on the file
- * system.
+ * Maps *nix file mode flags of commons-compress ArchiveEntry objects onto the permissions of files on the file system.
+ * The permissions are applied by the {@link AttributeRestorer} once an archive is extracted.
  */
-abstract class FileModeMapper<E extends ArchiveEntry> {
+@SuppressWarnings("OctalInteger")
+final class FileModeMapper {
 
-    private static final Logger LOG = Logger.getLogger(FileModeMapper.class.getCanonicalName());
-    private static final boolean IS_POSIX =
-            FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    /** The permission bits of a unix file mode. */
+    static final int UNIX_PERMISSION_MASK = 0777;
 
-    private final E archiveEntry;
-
-    protected FileModeMapper(E archiveEntry) {
-        this.archiveEntry = archiveEntry;
-    }
-
-    public abstract void map(File file) throws IOException;
-
-    public E getArchiveEntry() {
-        return archiveEntry;
-    }
-
-    /**
-     * Utility method to create a FileModeMapper for the given entry, and use it to map the file mode onto the given
-     * file.
-     *
-     * @param entry the archive entry that holds the mode
-     * @param file the file to apply the mode onto
-     */
-    public static <T extends ArchiveEntry> void map(T entry, File file) throws IOException {
-        create(entry).map(file);
-    }
-
-    /**
-     * Factory method for creating a FileModeMapper for the given ArchiveEntry. Unknown types will yield a
-     * FallbackFileModeMapper that discretely does nothing.
-     *
-     * @param entry the archive entry for which to create a FileModeMapper for
-     * @return a new FileModeMapper instance
-     */
-    public static <T extends ArchiveEntry> FileModeMapper<T> create(T entry) {
-        if (IS_POSIX) {
-            return new PosixPermissionMapper<>(entry);
-        }
-
-        // TODO: implement basic windows permission mapping (e.g. with File.setX or attrib)
-        return new FallbackFileModeMapper<>(entry);
-    }
-
-    /** Does nothing! */
-    public static class FallbackFileModeMapper<F extends ArchiveEntry> extends FileModeMapper<F> {
-
-        public FallbackFileModeMapper(F archiveEntry) {
-            super(archiveEntry);
-        }
-
-        @Override
-        public void map(File file) {
-            // do nothing
-        }
-    }
+    private FileModeMapper() {}
 
     /**
-     * Uses an AttributeAccessor to extract the posix file permissions from the ArchiveEntry and sets them on the given
-     * file.
+     * Maps unix permission bits onto sets of {@link PosixFilePermission}. All 512 possible sets are computed once, so
+     * mapping a mode is a table lookup. The returned sets are unmodifiable and shared.
      */
-    @SuppressWarnings("OctalInteger")
-    public static class PosixPermissionMapper<P extends ArchiveEntry> extends FileModeMapper<P> {
-        public static final int UNIX_PERMISSION_MASK = 0777;
-
-        public PosixPermissionMapper(P archiveEntry) {
-            super(archiveEntry);
-        }
-
-        @Override
-        public void map(File file) throws IOException {
-            int mode = getMode() & UNIX_PERMISSION_MASK;
-
-            if (mode > 0) {
-                setPermissions(mode, file);
-            }
-        }
-
-        public int getMode() throws IOException {
-            return AttributeAccessor.create(getArchiveEntry()).getMode();
-        }
-
-        private void setPermissions(int mode, File file) {
-            try {
-                Set<PosixFilePermission> posixFilePermissions = new PosixFilePermissionsMapper().map(mode);
-                Files.setPosixFilePermissions(file.toPath(), posixFilePermissions);
-            } catch (Exception e) {
-                LOG.warning("Could not set file permissions of " + file + ". Exception was: " + e.getMessage());
-            }
-        }
-    }
-
-    @SuppressWarnings("OctalInteger")
     public static class PosixFilePermissionsMapper {
 
         public static final Map<Integer, PosixFilePermission> intToPosixFilePermission = Map.of(
@@ -137,11 +52,25 @@ abstract class FileModeMapper<E extends ArchiveEntry> {
                 0002, PosixFilePermission.OTHERS_WRITE,
                 0001, PosixFilePermission.OTHERS_EXECUTE);
 
+        private static final List<Set<PosixFilePermission>> PERMISSIONS = computePermissions();
+
         public Set<PosixFilePermission> map(int mode) {
-            return intToPosixFilePermission.entrySet().stream()
-                    .filter(entry -> (mode & entry.getKey()) > 0)
-                    .map(Map.Entry::getValue)
-                    .collect(Collectors.toSet());
+            return PERMISSIONS.get(mode & UNIX_PERMISSION_MASK);
+        }
+
+        private static List<Set<PosixFilePermission>> computePermissions() {
+            List<Set<PosixFilePermission>> permissions =
+                    new ArrayList<>(UNIX_PERMISSION_MASK + 1);
+            for (int mode = 0; mode <= UNIX_PERMISSION_MASK; mode++) {
+                Set<PosixFilePermission> set = EnumSet.noneOf(PosixFilePermission.class);
+                for (Map.Entry<Integer, PosixFilePermission> entry : intToPosixFilePermission.entrySet()) {
+                    if ((mode & entry.getKey()) > 0) {
+                        set.add(entry.getValue());
+                    }
+                }
+                permissions.add(Collections.unmodifiableSet(set));
+            }
+            return List.copyOf(permissions);
         }
     }
 }
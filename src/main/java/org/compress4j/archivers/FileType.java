@@ -58,6 +58,7 @@ public final class FileType {
         add(".xz", CompressionType.XZ);
         add(".gzip", CompressionType.GZIP);
         add(".gz", CompressionType.GZIP);
+        add(".bgz", CompressionType.BGZF);
         add(".pack", CompressionType.PACK200);
     }
 
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.util.regex.Pattern;
+
+/** Translates glob patterns over archive entry names into regular expressions. */
+final class Glob {
+
+    private static final String REGEX_META_CHARS = ".^$+()|{}[]\\";
+
+    private Glob() {}
+
+    /**
+     * Compiles the given glob pattern.
+     *
+     * @param glob the glob pattern
+     * @return a regular expression matching the same entry names
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    static Pattern compile(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 16);
+        int groups = 0;
+        int length = glob.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < length && glob.charAt(i + 1) == '*') {
+                        i++;
+                        if (i + 1 < length && glob.charAt(i + 1) == '/') {
+                            i++;
+                            regex.append("(?:.*/)?");
+                        } else {
+                            regex.append(".*");
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '[' -> i = appendCharacterClass(glob, i, regex);
+                case '{' -> {
+                    groups++;
+                    regex.append("(?:");
+                }
+                case '}' -> {
+                    if (groups == 0) {
+                        appendLiteral(c, regex);
+                    } else {
+                        groups--;
+                        regex.append(')');
+                    }
+                }
+                case ',' -> regex.append(groups > 0 ? "|" : ",");
+                case '\\' -> {
+                    if (++i == length) {
+                        throw new IllegalArgumentException("Dangling escape in glob " + glob);
+                    }
+                    appendLiteral(glob.charAt(i), regex);
+                }
+                default -> appendLiteral(c, regex);
+            }
+        }
+
+        if (groups > 0) {
+            throw new IllegalArgumentException("Unclosed group in glob " + glob);
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static int appendCharacterClass(String glob, int start, StringBuilder regex) {
+        int end = glob.indexOf(']', start + 2);
+        if (end < 0) {
+            throw new IllegalArgumentException("Unclosed character class in glob " + glob);
+        }
+
+        regex.append('[');
+        int i = start + 1;
+        if (glob.charAt(i) == '!' || glob.charAt(i) == '^') {
+            // like * and ?, a negated class does not match the separator of directories
+            regex.append("^/");
+            i++;
+        }
+        for (; i < end; i++) {
+            char c = glob.charAt(i);
+            if (c == '-') {
+                regex.append(c);
+            } else if (c == '&') {
+                // "&&" would intersect the class with the following characters
+                regex.append("\\&");
+            } else {
+                appendLiteral(c, regex);
+            }
+        }
+        regex.append(']');
+
+        return end;
+    }
+
+    private static void appendLiteral(char c, StringBuilder regex) {
+        if (REGEX_META_CHARS.indexOf(c) >= 0) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+}
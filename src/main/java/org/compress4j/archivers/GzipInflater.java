@@ -0,0 +1,631 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip file read with positional reads from a {@link FileChannel}, and can resume decompressing at any
+ * deflate block boundary. <br>
+ * {@link java.util.zip.Inflater} can only start at the beginning of a deflate stream. The blocks of a deflate stream
+ * however neither start on byte boundaries, nor can they be decoded without the 32 KiB of output that precede them.
+ * This inflater exposes both: a {@link Checkpoint} records the bit position of a block together with the preceding
+ * window, and {@link #GzipInflater(FileChannel, Checkpoint)} resumes decompressing from it. <br>
+ * Concatenated gzip members are decompressed as one stream. The CRC of a member is verified, unless decompressing
+ * resumed in the middle of it. Closing the inflater does not close the channel.
+ */
+final class GzipInflater extends InputStream {
+
+    /** Size of the deflate window, the maximum distance a block may refer back to. */
+    static final int WINDOW_SIZE = 32 * 1024;
+
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227,
+        258
+    };
+    private static final int[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+    private static final int[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097,
+        6145, 8193, 12289, 16385, 24577
+    };
+    private static final int[] DISTANCE_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final Huffman FIXED_LITERALS = new Huffman();
+    private static final Huffman FIXED_DISTANCES = new Huffman();
+
+    static {
+        byte[] lengths = new byte[288];
+        Arrays.fill(lengths, 0, 144, (byte) 8);
+        Arrays.fill(lengths, 144, 256, (byte) 9);
+        Arrays.fill(lengths, 256, 280, (byte) 7);
+        Arrays.fill(lengths, 280, 288, (byte) 8);
+        byte[] distances = new byte[30];
+        Arrays.fill(distances, (byte) 5);
+        try {
+            FIXED_LITERALS.build(lengths, 0, lengths.length);
+            FIXED_DISTANCES.build(distances, 0, distances.length);
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private enum State {
+        MEMBER_HEADER,
+        BLOCK_HEADER,
+        STORED,
+        HUFFMAN,
+        TRAILER,
+        END
+    }
+
+    private final BitInput input;
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private final CRC32 crc = new CRC32();
+
+    private final byte[] lengths = new byte[320];
+    private final Huffman codeLengths = new Huffman();
+    private final Huffman literals = new Huffman();
+    private final Huffman distances = new Huffman();
+
+    private CheckpointListener listener;
+
+    private State state;
+    private long position;
+    private int history;
+    private long memberStart;
+    private boolean verifyMember;
+
+    private boolean lastBlock;
+    private int storedRemaining;
+    private Huffman blockLiterals;
+    private Huffman blockDistances;
+    private int copyLength;
+    private int copyDistance;
+
+    /**
+     * Creates an inflater that decompresses the gzip file of the given channel from its start.
+     *
+     * @param channel the channel of the gzip file
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    GzipInflater(FileChannel channel) throws IOException {
+        this.input = new BitInput(channel, 0);
+        this.state = State.MEMBER_HEADER;
+    }
+
+    /**
+     * Creates an inflater that resumes decompressing the gzip file of the given channel at the given checkpoint.
+     *
+     * @param channel the channel of the gzip file
+     * @param checkpoint a checkpoint recorded while decompressing the same file
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    GzipInflater(FileChannel channel, Checkpoint checkpoint) throws IOException {
+        this.input = new BitInput(channel, checkpoint.bitPosition());
+        this.position = checkpoint.uncompressedOffset();
+        this.state = checkpoint.memberStart() ? State.MEMBER_HEADER : State.BLOCK_HEADER;
+
+        byte[] preceding = checkpoint.window();
+        int start = (int) (position - preceding.length) & WINDOW_MASK;
+        int first = Math.min(preceding.length, WINDOW_SIZE - start);
+        System.arraycopy(preceding, 0, window, start, first);
+        System.arraycopy(preceding, first, window, 0, preceding.length - first);
+        this.history = preceding.length;
+    }
+
+    /**
+     * Sets the listener that is notified before every gzip member and deflate block, where decompressing can be
+     * resumed.
+     *
+     * @param listener the listener, or {@code null}
+     */
+    void setCheckpointListener(CheckpointListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the number of uncompressed bytes preceding the next byte this inflater returns.
+     *
+     * @return the uncompressed position
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Records a checkpoint at the current position. Only valid while a {@link CheckpointListener} is notified.
+     *
+     * @param memberStart whether the inflater is positioned at the start of a gzip member
+     * @return the checkpoint
+     */
+    Checkpoint checkpoint(boolean memberStart) {
+        byte[] preceding = new byte[memberStart ? 0 : history];
+        int start = (int) (position - preceding.length) & WINDOW_MASK;
+        int first = Math.min(preceding.length, WINDOW_SIZE - start);
+        System.arraycopy(window, start, preceding, 0, first);
+        System.arraycopy(window, 0, preceding, first, preceding.length - first);
+        return new Checkpoint(input.bitPosition(), position, memberStart, preceding);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+
+        int n = 0;
+        while (n < len && state != State.END) {
+            switch (state) {
+                case MEMBER_HEADER:
+                    readMemberHeader();
+                    break;
+                case BLOCK_HEADER:
+                    readBlockHeader();
+                    break;
+                case STORED:
+                    n += update(b, off + n, readStored(b, off + n, len - n));
+                    break;
+                case HUFFMAN:
+                    n += update(b, off + n, inflate(b, off + n, len - n));
+                    break;
+                default:
+                    readTrailer();
+                    break;
+            }
+        }
+
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    private int update(byte[] b, int off, int len) {
+        if (verifyMember) {
+            crc.update(b, off, len);
+        }
+        return len;
+    }
+
+    private void readMemberHeader() throws IOException {
+        if (listener != null) {
+            listener.checkpoint(this, true);
+        }
+
+        if (input.read(8) != 0x1f || input.read(8) != 0x8b) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (input.read(8) != 8) {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+        int flags = input.read(8);
+        input.skipBytes(6);
+        if ((flags & FEXTRA) != 0) {
+            input.skipBytes(input.read(16));
+        }
+        if ((flags & FNAME) != 0) {
+            input.skipZeroTerminated();
+        }
+        if ((flags & FCOMMENT) != 0) {
+            input.skipZeroTerminated();
+        }
+        if ((flags & FHCRC) != 0) {
+            input.skipBytes(2);
+        }
+
+        crc.reset();
+        memberStart = position;
+        verifyMember = true;
+        history = 0;
+        state = State.BLOCK_HEADER;
+    }
+
+    private void readBlockHeader() throws IOException {
+        if (listener != null) {
+            listener.checkpoint(this, false);
+        }
+
+        lastBlock = input.read(1) == 1;
+        int type = input.read(2);
+        if (type == 0) {
+            input.alignToByte();
+            int length = input.read(16);
+            if (length != (~input.read(16) & 0xFFFF)) {
+                throw new ZipException("Invalid deflate stream, corrupt stored block length");
+            }
+            storedRemaining = length;
+            state = State.STORED;
+        } else if (type == 1) {
+            blockLiterals = FIXED_LITERALS;
+            blockDistances = FIXED_DISTANCES;
+            state = State.HUFFMAN;
+        } else if (type == 2) {
+            readDynamicCodes();
+            blockLiterals = literals;
+            blockDistances = distances;
+            state = State.HUFFMAN;
+        } else {
+            throw new ZipException("Invalid deflate stream, unknown block type");
+        }
+    }
+
+    private void readDynamicCodes() throws IOException {
+        int literalCount = input.read(5) + 257;
+        int distanceCount = input.read(5) + 1;
+        int codeLengthCount = input.read(4) + 4;
+        if (literalCount > 286 || distanceCount > 30) {
+            throw new ZipException("Invalid deflate stream, too many length or distance codes");
+        }
+
+        Arrays.fill(lengths, 0, CODE_LENGTH_ORDER.length, (byte) 0);
+        for (int i = 0; i < codeLengthCount; i++) {
+            lengths[CODE_LENGTH_ORDER[i]] = (byte) input.read(3);
+        }
+        codeLengths.build(lengths, 0, CODE_LENGTH_ORDER.length);
+
+        int total = literalCount + distanceCount;
+        int i = 0;
+        while (i < total) {
+            int symbol = codeLengths.decode(input);
+            if (symbol < 16) {
+                lengths[i++] = (byte) symbol;
+                continue;
+            }
+
+            byte value = 0;
+            int repeat;
+            if (symbol == 16) {
+                if (i == 0) {
+                    throw new ZipException("Invalid deflate stream, repeated length without a previous length");
+                }
+                value = lengths[i - 1];
+                repeat = 3 + input.read(2);
+            } else if (symbol == 17) {
+                repeat = 3 + input.read(3);
+            } else {
+                repeat = 11 + input.read(7);
+            }
+            if (i + repeat > total) {
+                throw new ZipException("Invalid deflate stream, too many code lengths");
+            }
+            Arrays.fill(lengths, i, i + repeat, value);
+            i += repeat;
+        }
+
+        if (lengths[256] == 0) {
+            throw new ZipException("Invalid deflate stream, missing end-of-block code");
+        }
+        literals.build(lengths, 0, literalCount);
+        distances.build(lengths, literalCount, distanceCount);
+    }
+
+    private int readStored(byte[] b, int off, int len) throws IOException {
+        int n = Math.min(len, storedRemaining);
+        input.readBytes(b, off, n);
+        storedRemaining -= n;
+
+        int keep = Math.min(n, WINDOW_SIZE);
+        int from = off + n - keep;
+        int start = (int) (position + n - keep) & WINDOW_MASK;
+        int first = Math.min(keep, WINDOW_SIZE - start);
+        System.arraycopy(b, from, window, start, first);
+        System.arraycopy(b, from + first, window, 0, keep - first);
+        position += n;
+        history = (int) Math.min(WINDOW_SIZE, (long) history + n);
+
+        if (storedRemaining == 0) {
+            endOfBlock();
+        }
+        return n;
+    }
+
+    private int inflate(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            if (copyLength > 0) {
+                int count = Math.min(copyLength, len - n);
+                for (int i = 0; i < count; i++) {
+                    byte value = window[(int) (position - copyDistance) & WINDOW_MASK];
+                    window[(int) position++ & WINDOW_MASK] = value;
+                    b[off + n++] = value;
+                }
+                copyLength -= count;
+                history = Math.min(WINDOW_SIZE, history + count);
+                continue;
+            }
+
+            int symbol = blockLiterals.decode(input);
+            if (symbol < 256) {
+                window[(int) position++ & WINDOW_MASK] = (byte) symbol;
+                b[off + n++] = (byte) symbol;
+                if (history < WINDOW_SIZE) {
+                    history++;
+                }
+            } else if (symbol == 256) {
+                endOfBlock();
+                break;
+            } else {
+                symbol -= 257;
+                if (symbol >= LENGTH_BASE.length) {
+                    throw new ZipException("Invalid deflate stream, invalid length code");
+                }
+                copyLength = LENGTH_BASE[symbol] + input.read(LENGTH_EXTRA[symbol]);
+
+                int code = blockDistances.decode(input);
+                if (code >= DISTANCE_BASE.length) {
+                    throw new ZipException("Invalid deflate stream, invalid distance code");
+                }
+                copyDistance = DISTANCE_BASE[code] + input.read(DISTANCE_EXTRA[code]);
+                if (copyDistance > history) {
+                    throw new ZipException("Invalid deflate stream, distance too far back");
+                }
+            }
+        }
+        return n;
+    }
+
+    private void endOfBlock() {
+        state = lastBlock ? State.TRAILER : State.BLOCK_HEADER;
+    }
+
+    private void readTrailer() throws IOException {
+        input.alignToByte();
+        long expectedCrc = input.read(16) | (long) input.read(16) << 16;
+        long expectedSize = input.read(16) | (long) input.read(16) << 16;
+        if (verifyMember) {
+            if (crc.getValue() != expectedCrc) {
+                throw new ZipException("Corrupt gzip stream, CRC mismatch");
+            }
+            if (((position - memberStart) & 0xFFFFFFFFL) != expectedSize) {
+                throw new ZipException("Corrupt gzip stream, size mismatch");
+            }
+        }
+
+        state = input.atGzipMember() ? State.MEMBER_HEADER : State.END;
+    }
+
+    /**
+     * A position in a gzip file where decompressing can be resumed.
+     *
+     * @param bitPosition the position in the compressed file, in bits
+     * @param uncompressedOffset the number of uncompressed bytes that precede the checkpoint
+     * @param memberStart whether the checkpoint is the start of a gzip member
+     * @param window the uncompressed bytes that precede the checkpoint, at most {@link #WINDOW_SIZE}
+     */
+    record Checkpoint(long bitPosition, long uncompressedOffset, boolean memberStart, byte[] window) {}
+
+    /** Notified by the inflater at every position where decompressing can be resumed. */
+    @FunctionalInterface
+    interface CheckpointListener {
+
+        /**
+         * Called before the inflater reads a gzip member header or a deflate block header.
+         *
+         * @param inflater the inflater, which can record a {@link Checkpoint}
+         * @param memberStart whether the inflater is positioned at the start of a gzip member
+         * @throws IOException propagated I/O errors by {@code java.io}
+         */
+        void checkpoint(GzipInflater inflater, boolean memberStart) throws IOException;
+    }
+
+    /** Canonical Huffman code, decoded with a single lookup table indexed by the bit-reversed code. */
+    private static final class Huffman {
+
+        private int[] table = new int[0];
+        private int bits;
+
+        void build(byte[] lengths, int offset, int count) throws IOException {
+            int[] counts = new int[16];
+            int maxLength = 0;
+            for (int i = 0; i < count; i++) {
+                int length = lengths[offset + i];
+                counts[length]++;
+                maxLength = Math.max(maxLength, length);
+            }
+            counts[0] = 0;
+
+            int left = 1;
+            for (int length = 1; length < counts.length; length++) {
+                left = (left << 1) - counts[length];
+                if (left < 0) {
+                    throw new ZipException("Invalid deflate stream, over-subscribed Huffman code");
+                }
+            }
+
+            int[] next = new int[16];
+            for (int length = 1, code = 0; length < next.length; length++) {
+                code = (code + counts[length - 1]) << 1;
+                next[length] = code;
+            }
+
+            int size = 1 << maxLength;
+            if (table.length < size) {
+                table = new int[size];
+            } else {
+                Arrays.fill(table, 0, size, 0);
+            }
+            bits = maxLength;
+
+            for (int symbol = 0; symbol < count; symbol++) {
+                int length = lengths[offset + symbol];
+                if (length == 0) {
+                    continue;
+                }
+                int reversed = Integer.reverse(next[length]++) >>> (32 - length);
+                for (int i = reversed; i < size; i += 1 << length) {
+                    table[i] = symbol << 4 | length;
+                }
+            }
+        }
+
+        int decode(BitInput input) throws IOException {
+            int entry = bits == 0 ? 0 : table[input.peek(bits)];
+            if (entry == 0) {
+                throw new ZipException("Invalid deflate stream, invalid Huffman code");
+            }
+            input.drop(entry & 15);
+            return entry >>> 4;
+        }
+    }
+
+    /** Reads the bits of a file least significant bit first, with positional reads on its channel. */
+    private static final class BitInput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private final byte[] bytes = buffer.array();
+        private long bufferOffset;
+        private int pos;
+        private int limit;
+
+        private long bits;
+        private int count;
+        private int padding;
+
+        BitInput(FileChannel channel, long bitPosition) throws IOException {
+            this.channel = channel;
+            this.bufferOffset = bitPosition >>> 3;
+            read((int) (bitPosition & 7));
+        }
+
+        long bitPosition() {
+            return (bufferOffset + pos) * 8 - (count - padding);
+        }
+
+        int peek(int n) throws IOException {
+            while (count < n) {
+                int b = nextByte();
+                if (b == -1) {
+                    b = 0;
+                    padding += 8;
+                }
+                bits |= (long) b << count;
+                count += 8;
+            }
+            return (int) (bits & ((1L << n) - 1));
+        }
+
+        void drop(int n) throws EOFException {
+            bits >>>= n;
+            count -= n;
+            if (count < padding) {
+                throw new EOFException("Unexpected end of gzip stream");
+            }
+        }
+
+        int read(int n) throws IOException {
+            int value = peek(n);
+            drop(n);
+            return value;
+        }
+
+        void alignToByte() throws EOFException {
+            drop(count & 7);
+        }
+
+        void skipBytes(int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                read(8);
+            }
+        }
+
+        void skipZeroTerminated() throws IOException {
+            while (read(8) != 0) {
+                // skip the string
+            }
+        }
+
+        /** Reads whole bytes, the input has to be aligned to a byte boundary. */
+        void readBytes(byte[] b, int off, int len) throws IOException {
+            int n = 0;
+            while (n < len && count - padding >= 8) {
+                b[off + n++] = (byte) read(8);
+            }
+            while (n < len) {
+                if (pos == limit && fill() == -1) {
+                    throw new EOFException("Unexpected end of gzip stream");
+                }
+                int chunk = Math.min(len - n, limit - pos);
+                System.arraycopy(bytes, pos, b, off + n, chunk);
+                pos += chunk;
+                n += chunk;
+            }
+        }
+
+        /** Checks whether another gzip member follows, the input has to be aligned to a byte boundary. */
+        boolean atGzipMember() throws IOException {
+            return peek(16) == 0x8b1f && count - padding >= 16;
+        }
+
+        private int nextByte() throws IOException {
+            if (pos == limit && fill() == -1) {
+                return -1;
+            }
+            return bytes[pos++] & 0xFF;
+        }
+
+        private int fill() throws IOException {
+            bufferOffset += limit;
+            pos = 0;
+            limit = 0;
+            buffer.clear();
+            int read = channel.read(buffer, bufferOffset);
+            if (read > 0) {
+                limit = read;
+            }
+            return read > 0 ? read : -1;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes gzip data as a sequence of independent gzip members. A new member is started whenever
+ * {@link #startMember()} is called, and after every chunk of uncompressed data. Every member can be decompressed
+ * without any of the data that precedes it, and the start of every member is recorded as a {@link GzipInflater}
+ * checkpoint. <br>
+ * Concatenated members form a valid gzip file, which any gzip implementation decompresses as a whole.
+ */
+final class GzipMemberOutputStream extends OutputStream {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xFF};
+    private static final byte FEXTRA = 4;
+    // an empty final block with fixed Huffman codes, followed by the CRC and size of the empty member
+    private static final byte[] EMPTY_DEFLATE_AND_TRAILER = {3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    private static final byte[] NO_WINDOW = new byte[0];
+
+    private final OutputStream out;
+    private final long chunkSize;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[64 * 1024];
+    private final List<GzipInflater.Checkpoint> members = new ArrayList<>();
+
+    private boolean inMember;
+    private long memberLength;
+    private long position;
+    private long compressedPosition;
+    private boolean closed;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param out the stream to write the gzip file to
+     * @param chunkSize the maximum amount of uncompressed data in a member, or {@code 0} for no maximum
+     */
+    GzipMemberOutputStream(OutputStream out, long chunkSize) {
+        this.out = out;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Ends the current member, the next byte written starts a new member. Does nothing if no byte has been written
+     * since the current member started.
+     *
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    void startMember() throws IOException {
+        if (inMember && memberLength > 0) {
+            finishMember();
+        }
+    }
+
+    /**
+     * Writes an empty gzip member whose header carries the given extra field. The current member is ended first.
+     *
+     * @param extra the contents of the extra field, including the subfield headers
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    void writeEmptyMember(byte[] extra) throws IOException {
+        if (inMember) {
+            finishMember();
+        }
+
+        byte[] member = emptyMember(extra);
+        writeRaw(member, 0, member.length);
+    }
+
+    /**
+     * Returns an empty gzip member whose header carries the given extra field.
+     *
+     * @param extra the contents of the extra field, including the subfield headers
+     * @return the complete member
+     */
+    static byte[] emptyMember(byte[] extra) {
+        byte[] member = new byte[HEADER.length + 2 + extra.length + EMPTY_DEFLATE_AND_TRAILER.length];
+        System.arraycopy(HEADER, 0, member, 0, HEADER.length);
+        member[3] = FEXTRA;
+        member[HEADER.length] = (byte) extra.length;
+        member[HEADER.length + 1] = (byte) (extra.length >>> 8);
+        System.arraycopy(extra, 0, member, HEADER.length + 2, extra.length);
+        System.arraycopy(
+                EMPTY_DEFLATE_AND_TRAILER,
+                0,
+                member,
+                HEADER.length + 2 + extra.length,
+                EMPTY_DEFLATE_AND_TRAILER.length);
+        return member;
+    }
+
+    /**
+     * Returns the number of uncompressed bytes written so far.
+     *
+     * @return the uncompressed position
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns a checkpoint for the start of every member written so far.
+     *
+     * @return the member checkpoints, in file order
+     */
+    List<GzipInflater.Checkpoint> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        while (len > 0) {
+            if (!inMember) {
+                beginMember();
+            }
+
+            int n = chunkSize > 0 ? (int) Math.min(len, chunkSize - memberLength) : len;
+            crc.update(b, off, n);
+            deflater.setInput(b, off, n);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+            memberLength += n;
+            position += n;
+            off += n;
+            len -= n;
+
+            if (chunkSize > 0 && memberLength == chunkSize) {
+                finishMember();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (inMember) {
+                finishMember();
+            }
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void beginMember() throws IOException {
+        members.add(new GzipInflater.Checkpoint(compressedPosition * 8, position, true, NO_WINDOW));
+        writeRaw(HEADER, 0, HEADER.length);
+        deflater.reset();
+        crc.reset();
+        memberLength = 0;
+        inMember = true;
+    }
+
+    private void finishMember() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+
+        long value = crc.getValue();
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (value >>> (8 * i));
+            trailer[i + 4] = (byte) (memberLength >>> (8 * i));
+        }
+        writeRaw(trailer, 0, trailer.length);
+        inMember = false;
+    }
+
+    private void deflate() throws IOException {
+        int n = deflater.deflate(buffer);
+        writeRaw(buffer, 0, n);
+    }
+
+    private void writeRaw(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        compressedPosition += len;
+    }
+}
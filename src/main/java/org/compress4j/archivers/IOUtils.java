@@ -15,15 +15,22 @@
  */
 package org.compress4j.archivers;
 
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +56,79 @@ public final class IOUtils {
         }
     }
 
+    /**
+     * Normalizes an archive entry name for lookups and matching, removing {@code .} segments, empty segments and the
+     * trailing slash of directory entries.
+     *
+     * @param entryName the name of the archive entry
+     * @return the normalized name
+     */
+    static String normalizeEntryName(String entryName) {
+        String normalized = DestinationResolver.normalize(entryName);
+        if (normalized == null) {
+            normalized = entryName;
+        }
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == '/') {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+
+    /**
+     * Creates a SHA-256 message digest, the digest archive indexes record for entry contents.
+     *
+     * @return a new message digest
+     */
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the given stream if it supports {@link InputStream#mark(int)}, otherwise wraps it in a buffer that does.
+     *
+     * @param in the stream
+     * @return a stream that supports mark and reset
+     */
+    static InputStream markable(InputStream in) {
+        return in.markSupported() ? in : new BufferedInputStream(in);
+    }
+
+    /**
+     * Returns a stream that reads from the given stream, but does not close it.
+     *
+     * @param in the stream
+     * @return a stream whose {@link InputStream#close()} has no effect on the given stream
+     */
+    static InputStream closeShield(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() {
+                // the stream is owned by the caller
+            }
+        };
+    }
+
+    /**
+     * Transfers all remaining bytes of the given stream into the given channel. Streams that can transfer into channels
+     * directly, such as the contents of uncompressed archive entries, do so without copying through heap buffers.
+     *
+     * @param in the stream to read from
+     * @param target the channel to write to
+     * @return the number of bytes transferred
+     * @throws IOException if an I/O error occurs when reading or writing
+     */
+    static long transfer(InputStream in, WritableByteChannel target) throws IOException {
+        if (in instanceof ChannelTransferable transferable) {
+            return transferable.transferTo(target);
+        }
+        return in.transferTo(Channels.newOutputStream(target));
+    }
+
     /**
      * Copies all bytes from an input stream to a file. On return, the input stream will be at end of stream.
      *
@@ -76,18 +156,9 @@ public final class IOUtils {
      * @throws UnsupportedOperationException if {@code options} contains a copy option that is not supported
      */
     public static <A extends ArchiveEntry> File copy(InputStream in, File destination, A entry) throws IOException {
-        File file = createResourceInDestination(destination, entry.getName());
-
-        if (entry.isDirectory()) {
-            //noinspection ResultOfMethodCallIgnored
-            file.mkdirs();
-        } else {
-            //noinspection ResultOfMethodCallIgnored
-            file.getParentFile().mkdirs();
-            Files.copy(in, file.toPath());
-        }
-
-        FileModeMapper.map(entry, file);
+        EntryExtractor extractor = new EntryExtractor(destination, ExtractOptions.DEFAULT);
+        File file = extractor.extract(in, entry).toFile();
+        extractor.finish();
 
         return file;
     }
@@ -125,8 +196,39 @@ public final class IOUtils {
             throw new IllegalArgumentException("Can not write to destination " + destination);
         }
     }
+
     /**
-     * Returns a resource after guaranteeing that it is created inside the destination directory
+     * Makes sure that the given {@link Path} is either a writable directory, or that it does not exist and a directory
+     * can be created at its path. The path may belong to any file system.
+     *
+     * @param destination the directory which to ensure its existence for
+     * @throws IOException if the directory can not be created
+     * @throws IllegalArgumentException if the destination is an existing file, or the directory is not writable
+     * @see #requireDirectory(File)
+     */
+    public static void requireDirectory(Path destination) throws IOException, IllegalArgumentException {
+        if (Files.isRegularFile(destination)) {
+            throw new IllegalArgumentException(destination + " exists and is a file, directory or path expected.");
+        } else if (!Files.exists(destination)) {
+            Files.createDirectories(destination);
+        }
+        if (!Files.isWritable(destination)) {
+            throw new IllegalArgumentException("Can not write to destination " + destination);
+        }
+    }
+
+    /**
+     * Checks whether the given path belongs to the default file system, and can thus be converted to a {@link File}.
+     *
+     * @param path the path to check
+     * @return true if the path belongs to the default file system
+     */
+    static boolean isDefaultFileSystem(Path path) {
+        return path.getFileSystem() == FileSystems.getDefault();
+    }
+    /**
+     * Returns a resource after guaranteeing that it is created inside the destination directory. The entry name is
+     * validated lexically, names that would escape the destination are cleaned with {@link #cleanEntryName(String)}.
      *
      * @param destination the destination directory to place the resource in
      * @param entryName the name of the resource to create in the destination
@@ -134,7 +236,7 @@ public final class IOUtils {
      * @throws IOException if an I/O error occurs when creating the resource
      */
     public static File createResourceInDestination(File destination, String entryName) throws IOException {
-        return createResourceInDestination(destination, entryName, destination.getCanonicalPath());
+        return new File(destination, DestinationResolver.safeEntryName(entryName));
     }
 
     /**
@@ -145,14 +247,13 @@ public final class IOUtils {
      * @param destinationCanonicalPath the canonical path of the destination
      * @return the created resource after it is placed in the destination directory
      * @throws IOException if an I/O error occurs when creating the resource
+     * @deprecated entry names are validated lexically and the canonical path is no longer needed, use
+     *     {@link #createResourceInDestination(File, String)}
      */
+    @Deprecated(since = "1.3.0")
     public static File createResourceInDestination(File destination, String entryName, String destinationCanonicalPath)
             throws IOException {
-        File file = new File(destination, entryName);
-        if (!file.getCanonicalPath().startsWith(destinationCanonicalPath)) {
-            file = new File(destination, cleanEntryName(entryName));
-        }
-        return file;
+        return createResourceInDestination(destination, entryName);
     }
 
     /**
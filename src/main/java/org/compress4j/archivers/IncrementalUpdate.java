@@ -0,0 +1,241 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+/**
+ * Refreshes a previously extracted tree for an {@link ExtractOptions#isIncremental() incremental} extraction. <br>
+ * An entry is unchanged if the existing file has its size and modification time, or, if the options ask for it, its
+ * size and the CRC-32 that zip and 7z archives record. Unchanged entries are skipped without reading their contents.
+ * Changed entries are written to a hidden sibling of the existing file, which then atomically replaces it, so readers
+ * of the tree never see a partially written file. <br>
+ * Every path the extraction visits is recorded, and if the options ask for it, everything else below the destination
+ * is {@link #removeStale() removed} once all entries have been extracted.
+ */
+final class IncrementalUpdate {
+
+    /** The size of the buffer existing files are read with to compute their checksum, 64 KiB. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path destination;
+    private final boolean compareCrc;
+    private final boolean removeStale;
+
+    /** The paths of the extracted entries and their parents, to tell stale files apart. */
+    private final Set<Path> extracted = new HashSet<>();
+
+    private byte[] buffer;
+
+    /**
+     * Creates the update of the given destination.
+     *
+     * @param destination the destination directory, in the form its entries are resolved against
+     * @param options the options that control the extraction
+     */
+    IncrementalUpdate(Path destination, ExtractOptions options) {
+        this.destination = destination;
+        this.compareCrc = options.isCompareCrc();
+        this.removeStale = options.isRemoveStale();
+    }
+
+    /**
+     * Records the path of an extracted entry, together with its parents, as part of the archive.
+     *
+     * @param path the path the entry is extracted to
+     */
+    void record(Path path) {
+        if (!removeStale) {
+            return;
+        }
+        Path p = path;
+        while (p != null && !p.equals(destination) && extracted.add(p)) {
+            p = p.getParent();
+        }
+    }
+
+    /**
+     * Checks whether the given file already holds the contents of the given entry.
+     *
+     * @param entry the entry to extract
+     * @param path the path the entry is extracted to
+     * @return true if the existing file is unchanged, and the entry can be skipped
+     * @throws IOException if the existing file can not be read
+     */
+    boolean isUnchanged(ArchiveEntry entry, Path path) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile() || entry.getSize() < 0 || attributes.size() != entry.getSize()) {
+            return false;
+        }
+
+        long crc = compareCrc ? crc(entry) : -1;
+        if (crc >= 0) {
+            return crc == crc(path);
+        }
+        FileTime lastModified = AttributeRestorer.lastModifiedTime(entry);
+        return lastModified != null && lastModified.toMillis() == attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Prepares the path of a directory entry. A file or symbolic link in its place is deleted.
+     *
+     * @param path the path the directory is extracted to
+     * @throws IOException if the file in place of the directory can not be deleted
+     */
+    void prepareDirectory(Path path) throws IOException {
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS) && !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Returns the path a file entry is to be written to: the path itself if nothing exists there, otherwise a new
+     * hidden sibling that is {@link #replace(Path, Path) moved} over the existing file once it is complete.
+     *
+     * @param path the path the entry is extracted to
+     * @return the path to write the contents to
+     */
+    Path target(Path path) {
+        if (Files.notExists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return path;
+        }
+        String suffix = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+        return path.resolveSibling("." + path.getFileName() + "." + suffix + ".tmp");
+    }
+
+    /**
+     * Moves a completely written target over the existing file, atomically where the file system supports it. Does
+     * nothing if the entry was written to its path directly.
+     *
+     * @param target the path the contents were written to
+     * @param path the path the entry is extracted to
+     * @throws IOException if the existing file can not be replaced, the target is deleted in that case
+     */
+    void replace(Path target, Path path) throws IOException {
+        if (target.equals(path)) {
+            return;
+        }
+        try {
+            try {
+                Files.move(target, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(target, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            discard(target, path);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes a target that could not be written completely. Does nothing if the entry was written to its path
+     * directly.
+     *
+     * @param target the path the contents were written to
+     * @param path the path the entry is extracted to
+     */
+    void discard(Path target, Path path) {
+        if (target.equals(path)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            // a leftover hidden file is harmless
+        }
+    }
+
+    /**
+     * Removes everything below the destination that was not extracted, if the options ask for it. Symbolic links are
+     * removed, not followed.
+     *
+     * @throws IOException if a stale file or directory can not be removed
+     */
+    void removeStale() throws IOException {
+        if (!removeStale) {
+            return;
+        }
+
+        Files.walkFileTree(destination, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (!extracted.contains(file)) {
+                    Files.delete(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                if (!directory.equals(destination) && !extracted.contains(directory)) {
+                    Files.delete(directory);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Returns the CRC-32 the archive records for the entry, or {@code -1} if it records none. */
+    private static long crc(ArchiveEntry entry) {
+        if (entry instanceof ZipArchiveEntry zip) {
+            return zip.getCrc();
+        } else if (entry instanceof SevenZArchiveEntry sevenZ && sevenZ.getHasCrc()) {
+            return sevenZ.getCrcValue();
+        }
+        return -1;
+    }
+
+    private long crc(Path path) throws IOException {
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+/**
+ * Random access to the entries of a gzip or xz compressed tar archive, located through an {@link ArchiveIndex}. Every
+ * stream decompresses the archive independently from the checkpoint or block preceding its entry, so streams of
+ * different entries can be read concurrently. <br>
+ * The contents of sparse entries are not contiguous in the archive, they are read by scanning the archive from its
+ * start.
+ */
+final class IndexedTarArchiveReader extends CommonsArchiveReader<TarArchiveEntry> {
+
+    private final File archive;
+    private final ArchiveIndex index;
+    private final FileChannel channel;
+
+    IndexedTarArchiveReader(File archive, ArchiveIndex index) throws IOException {
+        this.archive = archive;
+        this.index = index;
+        this.channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+        index(index.getEntries());
+    }
+
+    @Override
+    protected InputStream openStream(TarArchiveEntry entry) throws IOException {
+        if (index.isSparse(entry)) {
+            return openSequentially(entry);
+        }
+        InputStream in = index.openAt(archive, channel, entry.getDataOffset());
+        return new BoundedInputStream(in, entry.getSize(), entry.getName(), index.getDigest(entry));
+    }
+
+    private InputStream openSequentially(TarArchiveEntry entry) throws IOException {
+        List<TarArchiveEntry> entries = index.getEntries();
+        TarArchiveInputStream in = new TarArchiveInputStream(index.openAt(archive, channel, 0));
+        try {
+            for (TarArchiveEntry current : entries) {
+                if (in.getNextEntry() == null) {
+                    throw new EOFException("Archive " + archive + " ends before entry " + entry.getName());
+                }
+                if (current == entry) {
+                    return in;
+                }
+            }
+            throw new IllegalArgumentException("Entry " + entry.getName() + " is not indexed");
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(in);
+            throw e;
+        }
+    }
+
+    @Override
+    protected void closeArchive() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Limits a decompressed stream to the contents of a single entry. If the index recorded a digest of the contents,
+     * it is verified once the contents have been read completely, unless parts of them were skipped.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private final String name;
+        private final byte[] expectedDigest;
+        private MessageDigest digest;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length, String name, byte[] expectedDigest) throws IOException {
+            super(in);
+            this.remaining = length;
+            this.name = name;
+            this.expectedDigest = expectedDigest;
+            this.digest = expectedDigest != null ? IOUtils.sha256() : null;
+            verifyDigest();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw new EOFException("Truncated archive, entry data is missing " + remaining + " bytes");
+            }
+            remaining -= read;
+            if (digest != null) {
+                digest.update(b, off, read);
+                verifyDigest();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            if (skipped > 0) {
+                digest = null;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void verifyDigest() throws IOException {
+            if (digest == null || remaining > 0) {
+                return;
+            }
+            boolean matches = MessageDigest.isEqual(digest.digest(), expectedDigest);
+            digest = null;
+            if (!matches) {
+                throw new IOException("Contents of entry " + name + " do not match the digest in the archive index");
+            }
+        }
+    }
+}
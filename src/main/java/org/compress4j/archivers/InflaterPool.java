@@ -0,0 +1,115 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A bounded pool of raw {@link Inflater} instances, so that reading the deflated entries of an archive does not
+ * allocate native zlib state for every entry. <br>
+ * Inflaters are handed out by {@link #inflate(InputStream)}, and returned to the pool when the inflating stream is
+ * closed. Inflaters beyond the capacity of the pool are ended instead. Instances are thread-safe.
+ */
+final class InflaterPool {
+
+    /** The pool shared by all archivers, holding up to two inflaters per processor. */
+    static final InflaterPool SHARED = new InflaterPool(2 * Runtime.getRuntime().availableProcessors());
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int capacity;
+    private final Queue<Inflater> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Creates a new pool.
+     *
+     * @param capacity the maximum number of idle inflaters kept for reuse
+     */
+    InflaterPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a stream that inflates the given raw deflate data with an inflater of this pool. The inflater is
+     * returned to the pool when the stream is closed.
+     *
+     * @param raw the raw deflate data, without zlib or gzip framing
+     * @return a new inflating stream
+     */
+    InputStream inflate(InputStream raw) {
+        // the raw inflater may need an extra byte after the end of the compressed data
+        InputStream padded = new SequenceInputStream(raw, new ByteArrayInputStream(new byte[1]));
+        return new PooledInflaterInputStream(padded, acquire());
+    }
+
+    /**
+     * Returns the number of idle inflaters in the pool.
+     *
+     * @return the number of idle inflaters
+     */
+    int getIdleCount() {
+        return idleCount.get();
+    }
+
+    private Inflater acquire() {
+        Inflater inflater = idle.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        idleCount.decrementAndGet();
+        return inflater;
+    }
+
+    private void release(Inflater inflater) {
+        inflater.reset();
+        if (idleCount.incrementAndGet() <= capacity) {
+            idle.add(inflater);
+        } else {
+            idleCount.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    private final class PooledInflaterInputStream extends InflaterInputStream {
+
+        private boolean released;
+
+        PooledInflaterInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!released) {
+                    released = true;
+                    release(inf);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mappings of regions of a ZIP archive file. <br>
+ * The archive is exposed as a {@link SeekableByteChannel} that serves the central directory at the end of the file
+ * from a mapping, so that it is parsed straight from the page cache, and reads everything else from the file. The data
+ * of single entries is read from mappings of just their region, see {@link #newStream(long, long)}. Mapping regions
+ * instead of the whole file covers archives of any size, only regions of more than {@link Integer#MAX_VALUE} bytes
+ * can not be mapped. <br>
+ * Mappings are released as soon as they are no longer read, instead of when they are garbage collected, so that they
+ * neither keep the file locked nor fault when the file is truncated later on. Releasing them early relies on
+ * {@code sun.misc.Unsafe#invokeCleaner(ByteBuffer)}, if that is not available they are left to the garbage collector.
+ */
+final class MappedArchive {
+
+    /** The minimum size of an entry whose data is mapped, smaller entries are cheaper to read than to map. */
+    static final int MIN_MAPPED_SIZE = 64 * 1024;
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_LENGTH = 56;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final File file;
+    private final FileChannel channel;
+
+    private MappedArchive(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the given file for mapping. The file stays open until the channel returned by {@link #newChannel()} is
+     * closed.
+     *
+     * @param file the archive file
+     * @return the mappable archive
+     * @throws IOException if the file can not be opened
+     */
+    static MappedArchive open(File file) throws IOException {
+        return new MappedArchive(file, FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    /**
+     * Checks whether a region of the given length can be mapped.
+     *
+     * @param length the length of the region
+     * @return true if the region can be mapped
+     */
+    static boolean canMap(long length) {
+        return length >= 0 && length <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns a channel that reads the archive, serving the central directory from a mapping. The mapping is released
+     * by {@link MappedChannel#release()}, or when the channel is closed. Closing the channel closes the file.
+     *
+     * @return a new read-only channel positioned at the start of the file
+     * @throws IOException if the end of the file can not be read or mapped
+     */
+    MappedChannel newChannel() throws IOException {
+        long size = channel.size();
+        long start = findCentralDirectory(size);
+        MappedByteBuffer window = start >= 0 && canMap(size - start)
+                ? channel.map(FileChannel.MapMode.READ_ONLY, start, size - start)
+                : null;
+        return new MappedChannel(channel, window, start);
+    }
+
+    /**
+     * Returns a stream over a region of the file that reads a mapping of the region. The mapping is released when the
+     * stream is closed, the stream must not be read concurrently to closing it.
+     *
+     * @param offset the offset of the region in the file
+     * @param length the length of the region, at most {@link Integer#MAX_VALUE} bytes
+     * @return a new stream over the region
+     * @throws EOFException if the region does not lie within the file
+     * @throws IOException if the region can not be mapped
+     */
+    InputStream newStream(long offset, long length) throws IOException {
+        if (offset < 0 || !canMap(length) || offset + length > channel.size()) {
+            throw new EOFException("Region of " + length + " bytes at offset " + offset + " lies outside of " + file);
+        }
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return new ByteBufferEntryStream(mapping.asReadOnlyBuffer(), () -> release(mapping));
+    }
+
+    /**
+     * Releases the given mapping. It must not be accessed anymore, not even through buffers derived from it.
+     *
+     * @param mapping the mapping to release
+     */
+    static void release(MappedByteBuffer mapping) {
+        if (INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invokeExact((ByteBuffer) mapping);
+            } catch (Throwable e) {
+                // left to the garbage collector
+            }
+        }
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Locates the central directory from the end of central directory record, and the ZIP64 record if there is one.
+     *
+     * @param size the size of the file
+     * @return the offset of the central directory, or -1 if it can not be located
+     * @throws IOException if the end of the file can not be read
+     */
+    private long findCentralDirectory(long size) throws IOException {
+        int length = (int) Math.min(size, EOCD_LENGTH + 0xFFFF);
+        ByteBuffer end = read(size - length, length);
+        for (int i = length - EOCD_LENGTH; i >= 0; i--) {
+            if (end.getInt(i) != EOCD_SIGNATURE) {
+                continue;
+            }
+            long offset = end.getInt(i + 16) & 0xFFFFFFFFL;
+            if (offset == ZIP64_MAGIC
+                    && i >= ZIP64_LOCATOR_LENGTH
+                    && end.getInt(i - ZIP64_LOCATOR_LENGTH) == ZIP64_LOCATOR_SIGNATURE) {
+                long record = end.getLong(i - ZIP64_LOCATOR_LENGTH + 8);
+                if (record < 0 || record > size - ZIP64_EOCD_LENGTH) {
+                    return -1;
+                }
+                ByteBuffer zip64 = read(record, ZIP64_EOCD_LENGTH);
+                offset = zip64.getInt(0) == ZIP64_EOCD_SIGNATURE ? zip64.getLong(48) : -1;
+            }
+            return offset >= 0 && offset <= size ? offset : -1;
+        }
+        return -1;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * A {@link SeekableByteChannel} over the archive file that serves the reads from a mapped window at the end of the
+     * file from the mapping. Not thread-safe.
+     */
+    static final class MappedChannel implements SeekableByteChannel {
+
+        private final FileChannel channel;
+        private final long windowOffset;
+
+        private MappedByteBuffer window;
+        private long position;
+
+        MappedChannel(FileChannel channel, MappedByteBuffer window, long windowOffset) {
+            this.channel = channel;
+            this.window = window;
+            this.windowOffset = windowOffset;
+        }
+
+        /** Releases the mapped window, all further reads are served from the file. */
+        void release() {
+            if (window != null) {
+                MappedByteBuffer mapping = window;
+                window = null;
+                MappedArchive.release(mapping);
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            int n;
+            if (window != null && position >= windowOffset) {
+                int offset = (int) (position - windowOffset);
+                if (offset >= window.capacity()) {
+                    return -1;
+                }
+                n = Math.min(dst.remaining(), window.capacity() - offset);
+                dst.put(dst.position(), window, offset, n);
+                dst.position(dst.position() + n);
+            } else {
+                n = channel.read(dst, position);
+                if (n < 0) {
+                    return -1;
+                }
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            release();
+            channel.close();
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!channel.isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
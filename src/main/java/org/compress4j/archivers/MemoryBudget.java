@@ -0,0 +1,338 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the memory that is held by the decoders and buffers of concurrent archive operations. <br>
+ * Before an operation starts decoding, it reserves the estimated footprint of its decoder from the
+ * {@link #getGlobal() global budget}, and waits while the budget is exhausted. The reservation is released when the
+ * stream, reader or extraction is closed. Waiting operations are admitted in the order they arrived, so a large
+ * reservation is not starved by small ones. <br>
+ * The {@link #getMaxStreamMemory() maximum stream memory} is passed to the decoders that allocate memory depending
+ * on the archive, the LZMA dictionaries of xz and 7z archives in particular. Archives that need more memory than that
+ * fail with an {@link IOException} instead of exhausting the heap.
+ */
+public final class MemoryBudget {
+
+    /** Default upper bound of the memory of a single stream, 256 MiB. */
+    public static final long DEFAULT_MAX_STREAM_MEMORY = 256 * 1024 * 1024;
+
+    private static volatile MemoryBudget global =
+            builder().setCapacity(Runtime.getRuntime().maxMemory() / 2).build();
+
+    private final long capacity;
+    private final long maxStreamMemory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final ArrayDeque<Object> waiters = new ArrayDeque<>();
+    private long reserved;
+
+    private MemoryBudget(Builder builder) {
+        this.capacity = builder.capacity;
+        this.maxStreamMemory = builder.maxStreamMemory < 0
+                ? Math.min(capacity, DEFAULT_MAX_STREAM_MEMORY)
+                : builder.maxStreamMemory;
+    }
+
+    /**
+     * Returns a new builder. The capacity of the built budget defaults to half of the maximum heap size.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the budget that is shared by all operations of this process. Unless it is replaced, the global budget
+     * has half of the maximum heap size as capacity.
+     *
+     * @return the global budget
+     */
+    public static MemoryBudget getGlobal() {
+        return global;
+    }
+
+    /**
+     * Replaces the global budget. Operations that already hold a reservation release it to the budget they reserved
+     * it from.
+     *
+     * @param budget the new global budget
+     */
+    public static void setGlobal(MemoryBudget budget) {
+        global = Objects.requireNonNull(budget);
+    }
+
+    /**
+     * Returns the number of bytes that can be reserved at the same time.
+     *
+     * @return the capacity in bytes
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the upper bound of the memory a single decoder may allocate.
+     *
+     * @return the maximum stream memory in bytes
+     */
+    public long getMaxStreamMemory() {
+        return maxStreamMemory;
+    }
+
+    /**
+     * Returns the number of bytes that are currently reserved.
+     *
+     * @return the reserved bytes
+     */
+    public long getReserved() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves the given number of bytes, waiting until they are available. Reservations larger than the capacity are
+     * reduced to the capacity, and only wait until the budget is unused.
+     *
+     * @param bytes the number of bytes to reserve
+     * @return the reservation, which has to be closed to release the bytes
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     * @throws IllegalArgumentException if {@code bytes} is negative
+     */
+    public Reservation reserve(long bytes) throws InterruptedIOException {
+        return reserve(bytes, CancellationToken.NONE);
+    }
+
+    /**
+     * Reserves the given number of bytes, waiting until they are available or the given token is cancelled.
+     *
+     * @param bytes the number of bytes to reserve
+     * @param cancellation the token that stops the wait
+     * @return the reservation, which has to be closed to release the bytes
+     * @throws OperationCancelledException if the token is cancelled or its deadline passes before the bytes are
+     *     reserved
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     * @throws IllegalArgumentException if {@code bytes} is negative
+     * @see #reserve(long)
+     */
+    public Reservation reserve(long bytes, CancellationToken cancellation) throws InterruptedIOException {
+        Objects.requireNonNull(cancellation, "cancellation");
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Bytes must not be negative, was " + bytes);
+        }
+        long amount = Math.min(bytes, capacity);
+        if (amount == 0) {
+            return new Reservation(0);
+        }
+
+        Object waiter = new Object();
+        lock.lock();
+        try {
+            waiters.addLast(waiter);
+            try {
+                while (waiters.peekFirst() != waiter || capacity - reserved < amount) {
+                    cancellation.await(released);
+                }
+            } finally {
+                waiters.remove(waiter);
+                // the next waiter may fit into what is left
+                released.signalAll();
+            }
+            reserved += amount;
+            return new Reservation(amount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for memory");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves up to the given number of bytes without waiting. Nothing is reserved while other operations wait for
+     * the budget.
+     *
+     * @param bytes the maximum number of bytes to reserve
+     * @return the reservation, which may hold fewer bytes than requested, or none
+     */
+    Reservation reserveAvailable(long bytes) {
+        lock.lock();
+        try {
+            long amount = waiters.isEmpty() ? Math.max(0, Math.min(bytes, capacity - reserved)) : 0;
+            reserved += amount;
+            return new Reservation(amount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the maximum stream memory in KiB, as expected by the memory limits of xz and 7z decoders.
+     *
+     * @return the maximum stream memory in KiB
+     */
+    int getMaxStreamMemoryInKb() {
+        return (int) Math.min(Math.max(maxStreamMemory / 1024, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reserves the estimated footprint of a decoder, which is bounded by the maximum stream memory.
+     *
+     * @param footprint the estimated footprint in bytes
+     * @param cancellation the token of the operation, which stops the wait
+     * @return the reservation
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    Reservation reserveDecoder(long footprint, CancellationToken cancellation) throws InterruptedIOException {
+        return reserve(Math.min(footprint, maxStreamMemory), cancellation);
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            reserved -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget[capacity=" + capacity + ", maxStreamMemory=" + maxStreamMemory + "]";
+    }
+
+    /**
+     * Releases the given reservation when the stream is closed.
+     *
+     * @param in the stream that holds the reservation
+     * @param reservation the reservation to release
+     * @return a stream that releases the reservation when it is closed
+     */
+    static InputStream releaseOnClose(InputStream in, Reservation reservation) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    reservation.close();
+                }
+            }
+        };
+    }
+
+    /** Bytes reserved from a {@link MemoryBudget}. Closing the reservation releases them, closing it again does not. */
+    public final class Reservation implements Closeable {
+
+        private long bytes;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the number of reserved bytes, {@code 0} once the reservation is released.
+         *
+         * @return the reserved bytes
+         */
+        public synchronized long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            long amount;
+            synchronized (this) {
+                amount = bytes;
+                bytes = 0;
+            }
+            if (amount > 0) {
+                release(amount);
+            }
+        }
+    }
+
+    /** Builder for {@link MemoryBudget}. */
+    public static final class Builder {
+
+        private long capacity = Runtime.getRuntime().maxMemory() / 2;
+        private long maxStreamMemory = -1;
+
+        private Builder() {}
+
+        /**
+         * Sets the number of bytes that can be reserved at the same time.
+         *
+         * @param capacity the capacity in bytes, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code capacity} is less than 1
+         */
+        public Builder setCapacity(long capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Capacity must be at least 1, was " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of the memory a single decoder may allocate. Defaults to the capacity, but at most
+         * {@link #DEFAULT_MAX_STREAM_MEMORY}.
+         *
+         * @param maxStreamMemory the maximum stream memory in bytes, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maxStreamMemory} is less than 1
+         */
+        public Builder setMaxStreamMemory(long maxStreamMemory) {
+            if (maxStreamMemory < 1) {
+                throw new IllegalArgumentException("Max stream memory must be at least 1, was " + maxStreamMemory);
+            }
+            this.maxStreamMemory = maxStreamMemory;
+            return this;
+        }
+
+        /**
+         * Creates the {@link MemoryBudget}.
+         *
+         * @return a new memory budget
+         * @throws IllegalArgumentException if the maximum stream memory exceeds the capacity
+         */
+        public MemoryBudget build() {
+            if (maxStreamMemory > capacity) {
+                throw new IllegalArgumentException("Max stream memory must be at most the capacity of " + capacity
+                        + ", was " + maxStreamMemory);
+            }
+            return new MemoryBudget(this);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracts archive entries into memory instead of onto the file system. The contents of every accepted file entry are
+ * held in a read-only {@link ByteBuffer}, keyed by the normalized entry name, see
+ * {@link IOUtils#normalizeEntryName(String)}. Directory entries are implied by the names of the files they contain and
+ * are not part of the result. <br>
+ * The total size of the extracted entries is limited by {@link ExtractOptions#getMaxInMemorySize()}, in addition to
+ * the limits that apply to every extraction.
+ */
+final class MemoryExtractor {
+
+    /** The largest entry that fits into a single buffer. */
+    private static final int MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ExtractOptions options;
+    private final ExtractionGuard guard;
+    private final Map<String, ByteBuffer> entries = new LinkedHashMap<>();
+    private long totalSize;
+
+    MemoryExtractor(ExtractOptions options, ExtractionGuard guard) {
+        this.options = options;
+        this.guard = guard;
+    }
+
+    /**
+     * Extracts all accepted entries of the given reader into memory.
+     *
+     * @param reader the archive to extract
+     * @param options the options that control the extraction
+     * @param guard the guard that enforces the limits of the extraction
+     * @return an unmodifiable map of entry names to their contents, in archive order
+     * @throws ExtractionLimitException if the entries exceed a limit
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static Map<String, ByteBuffer> extract(ArchiveReader reader, ExtractOptions options, ExtractionGuard guard)
+            throws IOException {
+        MemoryExtractor extractor = new MemoryExtractor(options, guard);
+        for (ArchiveEntry entry : reader.getEntries()) {
+            guard.checkEntry(entry.getName());
+            if (extractor.accepts(entry)) {
+                try (InputStream in = reader.openStream(entry)) {
+                    extractor.extract(entry, in);
+                }
+            }
+        }
+        return extractor.finish();
+    }
+
+    /**
+     * Checks whether the given entry is a file that is accepted by the filter of the options.
+     *
+     * @param entry the archive entry
+     * @return true if the entry should be extracted
+     */
+    boolean accepts(ArchiveEntry entry) {
+        return !entry.isDirectory() && options.getFilter().accept(entry);
+    }
+
+    /**
+     * Reads the contents of the given entry into memory. The stream is read to its end, but not closed.
+     *
+     * @param entry the archive entry
+     * @param in the contents of the entry
+     * @throws ExtractionLimitException if the entry exceeds a limit
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    void extract(ArchiveEntry entry, InputStream in) throws IOException {
+        InputStream data = guard.guard(in, entry.getName(), entry.getSize());
+        long remaining = options.getMaxInMemorySize() - totalSize;
+        if (entry.getSize() > remaining) {
+            throw limitExceeded(entry);
+        }
+
+        int limit = (int) Math.min(remaining, MAX_ENTRY_SIZE);
+        byte[] content = data.readNBytes(limit + 1);
+        if (content.length > limit) {
+            throw content.length > remaining
+                    ? limitExceeded(entry)
+                    : new IOException("Entry " + entry.getName() + " is too large to be extracted into memory");
+        }
+
+        ByteBuffer buffer;
+        if (options.isDirectBuffers()) {
+            buffer = ByteBuffer.allocateDirect(content.length).put(content).flip();
+        } else {
+            buffer = ByteBuffer.wrap(content);
+        }
+
+        totalSize += content.length;
+        ByteBuffer previous = entries.put(IOUtils.normalizeEntryName(entry.getName()), buffer.asReadOnlyBuffer());
+        if (previous != null) {
+            // a later entry with the same name replaces the earlier one, as it would on the file system
+            totalSize -= previous.capacity();
+        }
+    }
+
+    /**
+     * Returns the extracted entries.
+     *
+     * @return an unmodifiable map of entry names to their contents, in archive order
+     */
+    Map<String, ByteBuffer> finish() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    private ExtractionLimitException limitExceeded(ArchiveEntry entry) {
+        return new ExtractionLimitException(
+                ExtractionLimitException.Limit.IN_MEMORY_SIZE,
+                entry.getName(),
+                "Extracting entry " + entry.getName() + " exceeds the in-memory limit of "
+                        + options.getMaxInMemorySize() + " bytes");
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Signals that an archive operation stopped because its {@link CancellationToken} was cancelled or its deadline
+ * passed. The streams of the operation are closed; its partial output is removed if the options of the operation ask
+ * for it, and left in place otherwise.
+ */
+public class OperationCancelledException extends InterruptedIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean deadlineExceeded;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param message the detail message
+     * @param deadlineExceeded whether the operation stopped because its deadline passed
+     */
+    public OperationCancelledException(String message, boolean deadlineExceeded) {
+        super(message);
+        this.deadlineExceeded = deadlineExceeded;
+    }
+
+    /**
+     * Returns whether the operation stopped because its deadline passed, rather than by an explicit
+     * {@link CancellationToken#cancel()}.
+     *
+     * @return true if the deadline passed
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+}
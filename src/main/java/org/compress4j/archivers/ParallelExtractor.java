@@ -0,0 +1,236 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+
+/**
+ * Extracts an {@link ArchiveInputStream} with a producer/consumer pipeline. The calling thread decodes the archive
+ * and creates directories, while a pool of writer threads creates the files, writes their contents and restores their
+ * attributes. <br>
+ * Entries up to the {@link ExtractOptions#getSpoolThreshold() spool threshold} are buffered in memory and handed to
+ * the writers, larger entries are streamed to disk by the decoding thread. The attributes of directories are restored
+ * once all writers have finished, so that restrictive directory modes do not prevent their children from being written.
+ * <br>
+ * The buffers are reserved from the global {@link MemoryBudget} without waiting, as the decoder of the archive already
+ * holds a reservation. When the budget is exhausted, fewer bytes are buffered, down to streaming every entry.
+ */
+final class ParallelExtractor {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final EntryExtractor extractor;
+    private final DestinationResolver resolver;
+    private final AttributeRestorer restorer;
+    private final ExtractOptions options;
+    private final ExtractionGuard guard;
+
+    private final ExecutorService writers;
+    private final MemoryBudget.Reservation buffers;
+    private final int maxBufferedBytes;
+    private final Semaphore bufferedBytes;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final Set<File> createdDirectories = new HashSet<>();
+
+    ParallelExtractor(File destination, ExtractOptions options, ExtractionGuard guard) throws IOException {
+        this.extractor = new EntryExtractor(destination, options, guard);
+        this.resolver = extractor.getResolver();
+        this.restorer = extractor.getRestorer();
+        this.options = options;
+        this.guard = guard;
+        this.writers = Executors.newFixedThreadPool(options.getWriterThreads(), new WriterThreadFactory());
+        this.buffers = MemoryBudget.getGlobal().reserveAvailable(options.getMaxBufferedBytes());
+        this.maxBufferedBytes = (int) buffers.getBytes();
+        this.bufferedBytes = new Semaphore(maxBufferedBytes);
+    }
+
+    /**
+     * Extracts all entries of the given stream into the destination directory, and waits for all writers to finish.
+     *
+     * @param input the archive to extract
+     * @param <E> the type of the archive entries
+     * @throws IOException if decoding the archive or writing any of the entries failed
+     */
+    <E extends ArchiveEntry> void extract(ArchiveInputStream<E> input) throws IOException {
+        boolean completed = false;
+        try {
+            E entry;
+            while ((entry = input.getNextEntry()) != null) {
+                rethrowFailure();
+                guard.checkEntry(entry.getName());
+                if (extractor.accepts(entry)) {
+                    dispatch(input, entry);
+                }
+            }
+            completed = true;
+        } finally {
+            try {
+                awaitWriters(completed);
+            } finally {
+                buffers.close();
+            }
+        }
+        rethrowFailure();
+
+        restorer.finish();
+    }
+
+    private void dispatch(InputStream input, ArchiveEntry entry) throws IOException {
+        File file = resolver.resolve(entry.getName());
+        guard.track(file.toPath());
+
+        if (entry.isDirectory()) {
+            createDirectories(file);
+            restorer.restore(entry, file);
+            return;
+        }
+
+        createDirectories(file.getParentFile());
+        InputStream data = guard.guard(CpuPermits.wrap(input, entry), entry.getName(), entry.getSize());
+
+        int threshold = options.getSpoolThreshold();
+        long size = entry.getSize();
+        if (size > threshold || maxBufferedBytes == 0) {
+            write(data, entry, file);
+            return;
+        }
+
+        int permits = (int) Math.min(size < 0 ? threshold : size, maxBufferedBytes);
+        acquire(permits);
+
+        byte[] content;
+        try {
+            content = data.readNBytes(threshold == Integer.MAX_VALUE ? threshold : threshold + 1);
+        } catch (IOException | RuntimeException e) {
+            bufferedBytes.release(permits);
+            throw e;
+        }
+
+        if (content.length > threshold) {
+            // the size was not known up front and the entry turned out to be too large to buffer
+            bufferedBytes.release(permits);
+            try (OutputStream output = options.getWriteThrottle()
+                    .wrap(Files.newOutputStream(file.toPath(), StandardOpenOption.CREATE_NEW))) {
+                output.write(content);
+                data.transferTo(output);
+            }
+            restorer.restore(entry, file);
+            return;
+        }
+
+        writers.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    try (OutputStream output = options.getWriteThrottle()
+                            .wrap(Files.newOutputStream(
+                                    file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+                        output.write(content);
+                    }
+                    restorer.restore(entry, file);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                bufferedBytes.release(permits);
+            }
+        });
+    }
+
+    private void write(InputStream input, ArchiveEntry entry, File file) throws IOException {
+        extractor.write(input, file.toPath());
+        restorer.restore(entry, file);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private void createDirectories(File directory) {
+        if (createdDirectories.add(directory)) {
+            directory.mkdirs();
+        }
+    }
+
+    private void acquire(int permits) throws InterruptedIOException {
+        try {
+            bufferedBytes.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer threads");
+        }
+    }
+
+    private void awaitWriters(boolean completed) throws InterruptedIOException {
+        if (completed) {
+            writers.shutdown();
+        } else {
+            writers.shutdownNow();
+        }
+
+        try {
+            while (!writers.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting for the pending writes
+            }
+        } catch (InterruptedException e) {
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer threads");
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable t = failure.get();
+        if (t == null) {
+            return;
+        }
+        if (t instanceof IOException ioException) {
+            throw ioException;
+        } else if (t instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (t instanceof Error error) {
+            throw error;
+        }
+        throw new IOException(t);
+    }
+
+    private static final class WriterThreadFactory implements ThreadFactory {
+
+        private final int pool = POOL_COUNTER.incrementAndGet();
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "compress4j-writer-" + pool + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+/**
+ * Options that tune how a {@link RangeSource} is read by {@link Archiver#reader(RangeSource, RangeReadOptions)}.
+ * Instances are immutable and can be shared between concurrent readers. Use {@link #builder()} to create one, or
+ * {@link #DEFAULT} for the default behaviour.
+ */
+public final class RangeReadOptions {
+
+    /** Default size of the blocks that are fetched from the source and cached, 64 KiB. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /** Default upper bound of the cached blocks, 8 MiB. */
+    public static final long DEFAULT_CACHE_SIZE = 8 * 1024 * 1024;
+
+    /** Default size of the tail of the source that is fetched when it is opened, 64 KiB. */
+    public static final int DEFAULT_TAIL_PREFETCH = 64 * 1024;
+
+    /** Options with the default block size, cache size and prefetch. */
+    public static final RangeReadOptions DEFAULT = builder().build();
+
+    private final int blockSize;
+    private final long cacheSize;
+    private final int tailPrefetch;
+
+    private RangeReadOptions(Builder builder) {
+        this.blockSize = builder.blockSize;
+        this.cacheSize = builder.cacheSize;
+        this.tailPrefetch = builder.tailPrefetch;
+    }
+
+    /**
+     * Returns a new builder initialised with the default options.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the size of the blocks that are fetched from the source and cached. Every request to the source covers
+     * one or more whole blocks.
+     *
+     * @return the block size in bytes
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the upper bound of the blocks that are cached. The least recently used blocks are evicted first.
+     *
+     * @return the cache size in bytes
+     */
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the size of the tail of the source that is fetched with a single request when it is opened. The tail
+     * holds the end of central directory record of ZIP archives, and the central directory itself is prefetched along
+     * with it.
+     *
+     * @return the tail prefetch size in bytes, {@code 0} if nothing is prefetched
+     */
+    public int getTailPrefetch() {
+        return tailPrefetch;
+    }
+
+    /** Builder for {@link RangeReadOptions}. */
+    public static final class Builder {
+
+        private int blockSize = DEFAULT_BLOCK_SIZE;
+        private long cacheSize = DEFAULT_CACHE_SIZE;
+        private int tailPrefetch = DEFAULT_TAIL_PREFETCH;
+
+        private Builder() {}
+
+        /**
+         * Sets the size of the blocks that are fetched from the source and cached.
+         *
+         * @param blockSize the block size in bytes, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if {@code blockSize} is less than 1
+         */
+        public Builder setBlockSize(int blockSize) {
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("Block size must be at least 1, was " + blockSize);
+            }
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of the blocks that are cached. At least one block is always cached.
+         *
+         * @param cacheSize the cache size in bytes, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code cacheSize} is negative
+         */
+        public Builder setCacheSize(long cacheSize) {
+            if (cacheSize < 0) {
+                throw new IllegalArgumentException("Cache size must not be negative, was " + cacheSize);
+            }
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the size of the tail of the source that is fetched when it is opened.
+         *
+         * @param tailPrefetch the tail prefetch size in bytes, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if {@code tailPrefetch} is negative
+         */
+        public Builder setTailPrefetch(int tailPrefetch) {
+            if (tailPrefetch < 0) {
+                throw new IllegalArgumentException("Tail prefetch must not be negative, was " + tailPrefetch);
+            }
+            this.tailPrefetch = tailPrefetch;
+            return this;
+        }
+
+        /**
+         * Creates the {@link RangeReadOptions}.
+         *
+         * @return new range read options
+         */
+        public RangeReadOptions build() {
+            return new RangeReadOptions(this);
+        }
+    }
+}
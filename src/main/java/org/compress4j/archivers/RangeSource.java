@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * A source of archive data that is read in byte ranges, such as an object in a remote object store that is fetched
+ * with ranged requests. <br>
+ * Sources are opened as an {@link ArchiveReader} with {@link Archiver#reader(RangeSource, RangeReadOptions)}, which
+ * reads them through a block cache, so that listing the entries of a ZIP archive or reading a single entry only
+ * transfers the ranges that are actually needed. <br>
+ * Implementations must support concurrent calls of {@link #read(long, ByteBuffer)}.
+ */
+public interface RangeSource extends Closeable {
+
+    /**
+     * Returns a source that reads the given local file, e.g. to stand in for remote storage in tests.
+     *
+     * @param file the file to read
+     * @return a new source reading the file
+     * @throws IOException if the file can not be opened
+     */
+    static RangeSource of(Path file) throws IOException {
+        return new FileRangeSource(file);
+    }
+
+    /**
+     * Returns the total size of the data.
+     *
+     * @return the size in bytes
+     * @throws IOException if the size can not be determined
+     */
+    long size() throws IOException;
+
+    /**
+     * Reads a range of bytes starting at the given position into the buffer. Implementations transfer as many bytes
+     * as are available, up to the remaining space of the buffer, in a single request.
+     *
+     * @param position the position of the first byte to read
+     * @param dst the buffer to read into
+     * @return the number of bytes read, or {@code -1} if the position is at or beyond the end of the data
+     * @throws IOException if reading the range failed
+     */
+    int read(long position, ByteBuffer dst) throws IOException;
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+/**
+ * Writes a gzip compressed tar archive that carries its own {@link ArchiveIndex}, similar to eStargz. <br>
+ * Every entry starts a new gzip member, as does every chunk of a large entry, so every entry can be decompressed
+ * without the data that precedes it. The archive ends with a table of contents entry named {@value #TOC_NAME}, which
+ * holds the index of all other entries including the SHA-256 digests of their contents, followed by an empty footer
+ * member whose extra field holds the compressed offset of the table of contents. <br>
+ * The result is an ordinary tar.gz file: other tools decompress the members as one stream, and extract the table of
+ * contents as a regular file.
+ */
+final class SeekableTarGzOutputStream extends TarArchiveOutputStream {
+
+    /** Name of the table of contents entry. */
+    static final String TOC_NAME = ".compress4j.toc";
+
+    private static final byte[] FOOTER_FIELD_ID = {'C', '4'};
+    private static final int FOOTER_EXTRA_LENGTH = 12;
+    private static final int FOOTER_SIZE = 10 + 2 + FOOTER_EXTRA_LENGTH + 10;
+
+    private final GzipMemberOutputStream members;
+    private final int chunkSize;
+    private final MessageDigest digest;
+
+    private final List<TarArchiveEntry> entries = new ArrayList<>();
+    private final Map<TarArchiveEntry, byte[]> digests = new IdentityHashMap<>();
+
+    private int depth;
+    private TarArchiveEntry currentEntry;
+    private long currentDataOffset;
+    private boolean finished;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param out the stream to write the archive to
+     * @param chunkSize the maximum amount of uncompressed data in a gzip member
+     */
+    SeekableTarGzOutputStream(OutputStream out, int chunkSize) {
+        this(new GzipMemberOutputStream(out, chunkSize), chunkSize);
+    }
+
+    private SeekableTarGzOutputStream(GzipMemberOutputStream members, int chunkSize) {
+        super(members);
+        this.members = members;
+        this.chunkSize = chunkSize;
+        this.digest = IOUtils.sha256();
+        setLongFileMode(LONGFILE_POSIX);
+    }
+
+    @Override
+    public void putArchiveEntry(TarArchiveEntry entry) throws IOException {
+        // long names are written as additional header entries, which belong to the member of the entry
+        if (depth++ == 0) {
+            members.startMember();
+        }
+        try {
+            super.putArchiveEntry(entry);
+        } finally {
+            depth--;
+        }
+
+        if (depth == 0) {
+            currentEntry = entry;
+            currentDataOffset = members.getPosition();
+            digest.reset();
+        }
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        if (depth == 0 && currentEntry != null) {
+            digest.update(b, off, len);
+        }
+    }
+
+    @Override
+    public void closeArchiveEntry() throws IOException {
+        super.closeArchiveEntry();
+        if (depth == 0 && currentEntry != null) {
+            TarArchiveEntry entry = ArchiveIndex.indexEntry(currentEntry, currentDataOffset);
+            entries.add(entry);
+            digests.put(entry, digest.digest());
+            currentEntry = null;
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        ByteArrayOutputStream toc = new ByteArrayOutputStream();
+        ArchiveIndex.ofMembers(new ArrayList<>(members.getMembers()), chunkSize, entries, digests)
+                .write(toc);
+
+        members.startMember();
+        // the table of contents may span several members, the footer points at the first one
+        int tocMember = members.getMembers().size();
+        TarArchiveEntry tocEntry = new TarArchiveEntry(TOC_NAME);
+        tocEntry.setSize(toc.size());
+        super.putArchiveEntry(tocEntry);
+        super.write(toc.toByteArray(), 0, toc.size());
+        super.closeArchiveEntry();
+
+        long tocOffset = members.getMembers().get(tocMember).bitPosition() / 8;
+
+        super.finish();
+        members.writeEmptyMember(footerExtra(tocOffset));
+    }
+
+    /**
+     * Reads the footer of a seekable archive.
+     *
+     * @param channel the channel of the archive file
+     * @return the compressed offset of the table of contents, or {@code -1} if the file has no valid footer
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static long readFooter(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < FOOTER_SIZE) {
+            return -1;
+        }
+
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        while (footer.hasRemaining()) {
+            if (channel.read(footer, size - FOOTER_SIZE + footer.position()) == -1) {
+                return -1;
+            }
+        }
+
+        byte[] template = GzipMemberOutputStream.emptyMember(footerExtra(0));
+        byte[] actual = footer.array();
+        int offsetStart = 10 + 2 + 4;
+        if (!Arrays.equals(actual, 0, offsetStart, template, 0, offsetStart)
+                || !Arrays.equals(actual, offsetStart + 8, FOOTER_SIZE, template, offsetStart + 8, FOOTER_SIZE)) {
+            return -1;
+        }
+
+        long offset = footer.order(ByteOrder.LITTLE_ENDIAN).getLong(offsetStart);
+        return offset >= 0 && offset < size - FOOTER_SIZE ? offset : -1;
+    }
+
+    /**
+     * Checks whether the given file ends with the footer of a seekable archive.
+     *
+     * @param archive the archive file
+     * @return true if the archive has a table of contents
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static boolean isSeekable(File archive) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            return readFooter(channel) >= 0;
+        }
+    }
+
+    /**
+     * Hides the table of contents among the entries of a seekable archive, which only serves random access to the
+     * archive and is not part of its contents.
+     *
+     * @param entries the entries of a seekable archive
+     * @param <E> the type of the archive entries
+     * @return the entries without the table of contents
+     */
+    static <E extends ArchiveEntry> ArchiveInputStream<E> hideTableOfContents(ArchiveInputStream<E> entries) {
+        return new ArchiveInputStream<>(entries, entries.getCharset().name()) {
+            @Override
+            public E getNextEntry() throws IOException {
+                E entry = entries.getNextEntry();
+                return entry != null && TOC_NAME.equals(entry.getName()) ? entries.getNextEntry() : entry;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return entries.read(b, off, len);
+            }
+
+            @Override
+            public boolean canReadEntryData(ArchiveEntry entry) {
+                return entries.canReadEntryData(entry);
+            }
+        };
+    }
+
+    private static byte[] footerExtra(long tocOffset) {
+        return ByteBuffer.allocate(FOOTER_EXTRA_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put(FOOTER_FIELD_ID)
+                .putShort((short) 8)
+                .putLong(tocOffset)
+                .array();
+    }
+}
@@ -18,6 +18,14 @@ package org.compress4j.archivers;
 import jakarta.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
@@ -41,18 +49,199 @@ class SevenZArchiver extends CommonsArchiver<SevenZArchiveEntry> {
         return new SevenZOutputStream(new SevenZOutputFile(archive));
     }
 
+    /**
+     * {@inheritDoc} <br>
+     * The header of a 7z archive is written last and referenced from the start of the file, which requires seeking
+     * back. As the file systems of other providers often can not seek while writing, the archive is written to a
+     * temporary file and copied to the given path when the stream is closed.
+     */
+    @Override
+    protected ArchiveOutputStream<SevenZArchiveEntry> createArchiveOutputStream(Path archive) throws IOException {
+        return createArchiveOutputStream(archive, Throttle.UNLIMITED);
+    }
+
+    @Override
+    ArchiveOutputStream<SevenZArchiveEntry> createArchiveOutputStream(File archive, Throttle throttle)
+            throws IOException {
+        if (throttle.isUnlimited()) {
+            return createArchiveOutputStream(archive);
+        }
+
+        SeekableByteChannel channel = throttle.wrap(Files.newByteChannel(
+                archive.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE));
+        return new SevenZOutputStream(new SevenZOutputFile(channel));
+    }
+
+    @Override
+    ArchiveOutputStream<SevenZArchiveEntry> createArchiveOutputStream(Path archive, Throttle throttle)
+            throws IOException {
+        if (IOUtils.isDefaultFileSystem(archive)) {
+            return createArchiveOutputStream(archive.toFile(), throttle);
+        }
+
+        Path temp = Files.createTempFile("compress4j", ArchiveFormat.SEVEN_Z.getDefaultFileExtension());
+        return new SevenZOutputStream(new SevenZOutputFile(temp.toFile())) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                    try (OutputStream out = throttle.wrap(Files.newOutputStream(archive))) {
+                        Files.copy(temp, out);
+                    }
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc} <br>
+     * 7z archives can not be streamed, archives that are not on the default file system are read through a
+     * {@link SeekableByteChannel}.
+     */
+    @Override
+    public void extract(Path archive, Path destination, ExtractOptions options) throws IOException {
+        if (IOUtils.isDefaultFileSystem(archive) && IOUtils.isDefaultFileSystem(destination)) {
+            super.extract(archive, destination, options);
+            return;
+        }
+
+        SeekableByteChannel channel = options.getReadThrottle().wrap(Files.newByteChannel(archive));
+        SevenZFile file;
+        try {
+            file = open(SevenZFile.builder().setSeekableByteChannel(channel));
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(channel);
+            throw e;
+        }
+        try (ArchiveInputStream<SevenZArchiveEntry> input = new SevenZInputStream(file, options.getCancellation())) {
+            extract(input, destination, options, ExtractionGuard.forArchive(options, Files.size(archive)));
+        }
+    }
+
     @Override
     protected ArchiveInputStream<SevenZArchiveEntry> createArchiveInputStream(File archive) throws IOException {
-        return new SevenZInputStream(SevenZFile.builder().setFile(archive).get());
+        return new SevenZInputStream(open(SevenZFile.builder().setFile(archive)));
+    }
+
+    @Override
+    ArchiveInputStream<SevenZArchiveEntry> createArchiveInputStream(File archive, ExtractOptions options)
+            throws IOException {
+        Throttle throttle = options.getReadThrottle();
+        if (throttle.isUnlimited()) {
+            return new SevenZInputStream(open(SevenZFile.builder().setFile(archive)), options.getCancellation());
+        }
+
+        SeekableByteChannel channel = throttle.wrap(Files.newByteChannel(archive.toPath()));
+        try {
+            return new SevenZInputStream(
+                    open(SevenZFile.builder().setSeekableByteChannel(channel)), options.getCancellation());
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(File archive) throws IOException {
+        assertExtractSource(archive);
+
+        // the entries are read from the header block when the file is opened, no stream is decoded
+        try (SevenZFile file = open(SevenZFile.builder().setFile(archive))) {
+            return DetachedArchiveEntry.detach(file.getEntries());
+        }
+    }
+
+    @Override
+    public ArchiveReader reader(File archive) throws IOException {
+        assertExtractSource(archive);
+        return new SevenZArchiveReader(open(SevenZFile.builder().setFile(archive)));
+    }
+
+    @Override
+    public ArchiveReader reader(SeekableByteChannel archive) throws IOException {
+        return new SevenZArchiveReader(open(SevenZFile.builder().setSeekableByteChannel(archive)));
+    }
+
+    /**
+     * Opens a SevenZFile whose decoders are limited to the maximum stream memory of the global {@link MemoryBudget}.
+     *
+     * @param builder the builder of the file
+     * @return the opened file
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    private static SevenZFile open(SevenZFile.Builder builder) throws IOException {
+        return builder.setMaxMemoryLimitKb(MemoryBudget.getGlobal().getMaxStreamMemoryInKb()).get();
+    }
+
+    /**
+     * Reserves the footprint of the decoders of the given file from the global {@link MemoryBudget}. The file is closed
+     * if the reservation fails.
+     *
+     * @param file the opened file
+     * @param cancellation the token that stops waiting for the budget
+     * @return the reservation
+     * @throws IOException if the thread is interrupted or the token is cancelled while waiting for the budget
+     */
+    private static MemoryBudget.Reservation reserve(SevenZFile file, CancellationToken cancellation)
+            throws IOException {
+        MemoryBudget budget = MemoryBudget.getGlobal();
+        try {
+            return budget.reserveDecoder(
+                    DecoderMemory.estimate(file.getEntries(), budget.getMaxStreamMemory()), cancellation);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Random access to the entries of a SevenZFile. Opening an entry repositions the shared decoder of the archive, so
+     * streams have to be read one at a time.
+     */
+    static class SevenZArchiveReader extends CommonsArchiveReader<SevenZArchiveEntry> {
+
+        private final SevenZFile file;
+        private final MemoryBudget.Reservation reservation;
+
+        SevenZArchiveReader(SevenZFile file) throws IOException {
+            this.file = file;
+            this.reservation = reserve(file, CancellationToken.NONE);
+            index(file.getEntries());
+        }
+
+        @Override
+        protected InputStream openStream(SevenZArchiveEntry entry) throws IOException {
+            return file.getInputStream(entry);
+        }
+
+        @Override
+        protected void closeArchive() throws IOException {
+            try {
+                file.close();
+            } finally {
+                reservation.close();
+            }
+        }
     }
 
     /** Wraps a SevenZFile to make it usable as an ArchiveInputStream. */
     static class SevenZInputStream extends ArchiveInputStream<SevenZArchiveEntry> {
 
         private final SevenZFile file;
+        private final MemoryBudget.Reservation reservation;
+
+        public SevenZInputStream(SevenZFile file) throws IOException {
+            this(file, CancellationToken.NONE);
+        }
 
-        public SevenZInputStream(SevenZFile file) {
+        SevenZInputStream(SevenZFile file, CancellationToken cancellation) throws IOException {
             this.file = file;
+            this.reservation = reserve(file, cancellation);
         }
 
         @Override
@@ -60,6 +249,21 @@ class SevenZArchiver extends CommonsArchiver<SevenZArchiveEntry> {
             return file.read(b, off, len);
         }
 
+        @Override
+        public long skip(long n) throws IOException {
+            // SevenZFile can only skip by decoding, but the default implementation would delegate to an empty stream
+            byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = file.read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
         @Override
         public SevenZArchiveEntry getNextEntry() throws IOException {
             return file.getNextEntry();
@@ -67,7 +271,11 @@ class SevenZArchiver extends CommonsArchiver<SevenZArchiveEntry> {
 
         @Override
         public void close() throws IOException {
-            file.close();
+            try {
+                file.close();
+            } finally {
+                reservation.close();
+            }
         }
     }
 
@@ -100,6 +308,12 @@ class SevenZArchiver extends CommonsArchiver<SevenZArchiveEntry> {
             return file.createArchiveEntry(inputFile, entryName);
         }
 
+        @Override
+        public SevenZArchiveEntry createArchiveEntry(Path inputPath, String entryName, LinkOption... options)
+                throws IOException {
+            return file.createArchiveEntry(inputPath, entryName, options);
+        }
+
         @Override
         public void write(int b) throws IOException {
             file.write(b);
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import jakarta.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarFile;
+
+/**
+ * Archiver that overwrites the extraction of uncompressed Tar archive files. It provides a wrapper for TarFile as an
+ * ArchiveInputStream, which reads the entry headers by seeking past the entry contents. The contents of an entry are
+ * only read when they are requested, so skipping an entry costs a seek instead of reading its contents. <br>
+ * The contents of regular entries are read with positional reads on the archive's {@link FileChannel}, so skipping
+ * within an entry is free and extracting an entry is a direct channel to channel transfer.
+ */
+class TarFileArchiver extends CommonsArchiver<TarArchiveEntry> {
+
+    TarFileArchiver() {
+        super(ArchiveFormat.TAR);
+    }
+
+    @Override
+    protected ArchiveInputStream<TarArchiveEntry> createArchiveInputStream(File archive) throws IOException {
+        FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+        try {
+            return new TarFileArchiveInputStream(new TarFile(channel), channel);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    ArchiveInputStream<TarArchiveEntry> createArchiveInputStream(File archive, ExtractOptions options)
+            throws IOException {
+        Throttle throttle = options.getReadThrottle();
+        if (throttle.isUnlimited()) {
+            return createArchiveInputStream(archive);
+        }
+
+        // without the file channel, entries are read through the throttled channel instead of being transferred
+        SeekableByteChannel channel = throttle.wrap(FileChannel.open(archive.toPath(), StandardOpenOption.READ));
+        try {
+            return new TarFileArchiveInputStream(new TarFile(channel), null);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<org.compress4j.archivers.ArchiveEntry> list(File archive) throws IOException {
+        assertExtractSource(archive);
+
+        try (TarFile file = new TarFile(archive)) {
+            return DetachedArchiveEntry.detach(file.getEntries());
+        }
+    }
+
+    @Override
+    public ArchiveReader reader(File archive) throws IOException {
+        assertExtractSource(archive);
+
+        FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+        try {
+            return new TarFileArchiveReader(new TarFile(channel), channel);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    public ArchiveReader reader(SeekableByteChannel archive) throws IOException {
+        return new TarFileArchiveReader(new TarFile(archive), null);
+    }
+
+    /**
+     * Opens a stream over the contents of the given entry. Regular entries of a file are read with positional reads
+     * on its channel, so streams of different entries can be read concurrently.
+     *
+     * @param file the tar file
+     * @param channel the file channel the tar file reads from, or {@code null} if it reads from another channel
+     * @param entry the entry to read
+     * @return a new stream over the contents of the entry
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static InputStream openEntryStream(TarFile file, FileChannel channel, TarArchiveEntry entry) throws IOException {
+        return entry.isSparse() || channel == null
+                ? file.getInputStream(entry)
+                : new FileChannelEntryStream(channel, entry.getDataOffset(), entry.getSize());
+    }
+
+    /** Random access to the entries of a TarFile, using the record offsets it keeps for every entry. */
+    static class TarFileArchiveReader extends CommonsArchiveReader<TarArchiveEntry> {
+
+        private final TarFile file;
+        private final FileChannel channel;
+
+        TarFileArchiveReader(TarFile file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+            index(file.getEntries());
+        }
+
+        @Override
+        protected InputStream openStream(TarArchiveEntry entry) throws IOException {
+            return openEntryStream(file, channel, entry);
+        }
+
+        @Override
+        protected void closeArchive() throws IOException {
+            file.close();
+        }
+    }
+
+    /** Wraps a TarFile to make it usable as an ArchiveInputStream. */
+    static class TarFileArchiveInputStream extends ArchiveInputStream<TarArchiveEntry> implements ChannelTransferable {
+
+        private final TarFile file;
+        private final FileChannel channel;
+
+        private Iterator<TarArchiveEntry> entries;
+        private TarArchiveEntry currentEntry;
+        private InputStream currentEntryStream;
+
+        public TarFileArchiveInputStream(TarFile file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public TarArchiveEntry getNextEntry() throws IOException {
+            Iterator<TarArchiveEntry> iterator = getEntries();
+
+            closeCurrentEntryStream();
+
+            currentEntry = iterator.hasNext() ? iterator.next() : null;
+
+            return currentEntry;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+            if (currentEntry == null) {
+                return -1;
+            }
+
+            int read = getCurrentEntryStream().read(b, off, len);
+
+            count(read);
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return currentEntry == null ? 0 : getCurrentEntryStream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return currentEntry == null ? 0 : getCurrentEntryStream().available();
+        }
+
+        @Override
+        public long transferTo(WritableByteChannel target) throws IOException {
+            if (currentEntry == null) {
+                return 0;
+            }
+            long transferred = IOUtils.transfer(getCurrentEntryStream(), target);
+            count(transferred);
+            return transferred;
+        }
+
+        @Override
+        public boolean canReadEntryData(ArchiveEntry archiveEntry) {
+            return archiveEntry == currentEntry;
+        }
+
+        private InputStream getCurrentEntryStream() throws IOException {
+            if (currentEntryStream == null) {
+                currentEntryStream = openEntryStream(file, channel, currentEntry);
+            }
+            return currentEntryStream;
+        }
+
+        private Iterator<TarArchiveEntry> getEntries() {
+            if (entries == null) {
+                entries = file.getEntries().iterator();
+            }
+            return entries;
+        }
+
+        private void closeCurrentEntryStream() {
+            IOUtils.closeQuietly(currentEntryStream);
+
+            currentEntryStream = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeCurrentEntryStream();
+            file.close();
+
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the bandwidth of archive operations to a number of bytes per second with a token bucket. <br>
+ * A throttle is passed to operations through {@link ExtractOptions} and {@link CreateOptions}, or to
+ * {@link Compressor#compress(File, File, Throttle, Throttle)}, and can be shared between concurrent operations, which
+ * then share its bandwidth. {@link #withWeight(int)} returns another share of the same bandwidth: when operations
+ * compete, the bandwidth is divided between the shares in proportion to their weights, and equally between the
+ * operations of the same share. <br>
+ * The bucket holds at most 50 milliseconds worth of bytes, so an operation that has been idle can not burst beyond
+ * the limit for longer than that. Bytes are accounted as they are transferred, sustained throughput stays at the
+ * limit. Throttled streams and channels transfer large buffers in chunks of at most the capacity of the bucket, each of
+ * which waits for its tokens, so a large buffer does not pass in a single burst either.
+ */
+public final class Throttle {
+
+    /** A throttle that does not limit the bandwidth. */
+    public static final Throttle UNLIMITED = new Throttle(null, 1, CancellationToken.NONE);
+
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Bucket bucket;
+    private final int weight;
+    private final CancellationToken cancellation;
+
+    /** The throttle that holds the virtual time of this share, itself unless this is bound to a token. */
+    private final Throttle share;
+
+    /** The virtual start time of the next transfer of this share, guarded by the lock of the bucket. */
+    private double virtualTime;
+
+    private Throttle(Bucket bucket, int weight, CancellationToken cancellation) {
+        this.bucket = bucket;
+        this.weight = weight;
+        this.cancellation = cancellation;
+        this.share = this;
+    }
+
+    private Throttle(Throttle share, CancellationToken cancellation) {
+        this.bucket = share.bucket;
+        this.weight = share.weight;
+        this.cancellation = cancellation;
+        this.share = share;
+    }
+
+    /**
+     * Creates a throttle that limits the bandwidth to the given number of bytes per second.
+     *
+     * @param bytesPerSecond the bandwidth limit, at least 1
+     * @return a new throttle with a weight of 1
+     * @throws IllegalArgumentException if {@code bytesPerSecond} is less than 1
+     */
+    public static Throttle of(long bytesPerSecond) {
+        if (bytesPerSecond < 1) {
+            throw new IllegalArgumentException("Bytes per second must be at least 1, was " + bytesPerSecond);
+        }
+        return new Throttle(new Bucket(bytesPerSecond), 1, CancellationToken.NONE);
+    }
+
+    /**
+     * Returns a new share of the bandwidth of this throttle with the given weight.
+     *
+     * @param weight the weight of the share, at least 1
+     * @return a new throttle sharing the bandwidth of this one
+     * @throws IllegalArgumentException if {@code weight} is less than 1
+     */
+    public Throttle withWeight(int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be at least 1, was " + weight);
+        }
+        return bucket == null ? this : new Throttle(bucket, weight, CancellationToken.NONE);
+    }
+
+    /**
+     * Returns the bandwidth limit shared by all shares of this throttle.
+     *
+     * @return the limit in bytes per second, {@link Long#MAX_VALUE} if unlimited
+     */
+    public long getBytesPerSecond() {
+        return bucket == null ? Long.MAX_VALUE : bucket.rate;
+    }
+
+    /**
+     * Returns the weight of this share.
+     *
+     * @return the weight
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns whether this throttle does not limit the bandwidth.
+     *
+     * @return true if the bandwidth is not limited
+     */
+    public boolean isUnlimited() {
+        return bucket == null;
+    }
+
+    /**
+     * Accounts for the transfer of the given number of bytes, blocking until the bandwidth limit allows it.
+     *
+     * @param bytes the number of bytes to transfer
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        if (bucket != null && bytes > 0) {
+            bucket.acquire(share, bytes, cancellation);
+        }
+    }
+
+    /**
+     * Returns the same share of the bandwidth, whose waits stop with an {@link OperationCancelledException} once the
+     * given token is cancelled. Options bind their throttles to their token, so every stream of an operation is bound.
+     *
+     * @param token the token of the operation
+     * @return a throttle bound to the token, this throttle if it is unlimited or the token is never cancelled
+     */
+    Throttle bind(CancellationToken token) {
+        return bucket == null || !token.isCancellable() ? this : new Throttle(share, token);
+    }
+
+    InputStream wrap(InputStream in) {
+        return bucket == null ? in : new ThrottledInputStream(in);
+    }
+
+    OutputStream wrap(OutputStream out) {
+        return bucket == null ? out : new ThrottledOutputStream(out);
+    }
+
+    SeekableByteChannel wrap(SeekableByteChannel channel) {
+        return bucket == null ? channel : new ThrottledChannel(channel);
+    }
+
+    /** Returns the largest number of bytes a throttled stream transfers at once, the capacity of the bucket. */
+    int chunkSize() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) bucket.capacity);
+    }
+
+    @Override
+    public String toString() {
+        return bucket == null ? "Throttle[unlimited]" : "Throttle[" + bucket.rate + " B/s, weight=" + weight + "]";
+    }
+
+    /**
+     * The token bucket shared by all shares of a throttle. Waiting transfers are granted in the order of their virtual
+     * start times, as in start-time fair queuing: the virtual start of a transfer is the later of the virtual time of
+     * the bucket and the virtual finish of the previous transfer of its share, and it finishes {@code bytes / weight}
+     * later. A transfer may take more tokens than the bucket holds, the debt delays the following transfers.
+     */
+    private static final class Bucket {
+
+        private final long rate;
+        private final double capacity;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final PriorityQueue<Waiter> waiters =
+                new PriorityQueue<>(Comparator.comparingDouble(Waiter::start).thenComparingLong(Waiter::sequence));
+
+        private double tokens;
+        private long refilled = System.nanoTime();
+        private double virtualTime;
+        private long sequence;
+
+        Bucket(long rate) {
+            this.rate = rate;
+            this.capacity = Math.max(1, rate * (double) BURST_NANOS / TimeUnit.SECONDS.toNanos(1));
+            this.tokens = capacity;
+        }
+
+        void acquire(Throttle share, long bytes, CancellationToken cancellation) throws InterruptedIOException {
+            lock.lock();
+            try {
+                double start = Math.max(virtualTime, share.virtualTime);
+                double finish = start + (double) bytes / share.weight;
+                share.virtualTime = finish;
+                Waiter waiter = new Waiter(start, sequence++);
+                waiters.add(waiter);
+                try {
+                    awaitTurn(waiter, Math.min(bytes, capacity), cancellation);
+                    tokens -= bytes;
+                    virtualTime = start;
+                } catch (OperationCancelledException e) {
+                    // the bytes are not transferred, the following transfers of the share need not wait for them
+                    if (share.virtualTime == finish) {
+                        share.virtualTime = start;
+                    }
+                    throw e;
+                } finally {
+                    waiters.remove(waiter);
+                    changed.signalAll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void awaitTurn(Waiter waiter, double needed, CancellationToken cancellation)
+                throws InterruptedException, OperationCancelledException {
+            while (true) {
+                if (waiters.peek() != waiter) {
+                    cancellation.await(changed);
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - refilled) * (double) rate / TimeUnit.SECONDS.toNanos(1));
+                refilled = now;
+                if (tokens >= needed) {
+                    return;
+                }
+                cancellation.awaitNanos(
+                        changed, (long) Math.ceil((needed - tokens) * TimeUnit.SECONDS.toNanos(1) / rate));
+            }
+        }
+
+        private record Waiter(double start, long sequence) {}
+    }
+
+    /** Accounts for the bytes read from the underlying stream once they have been read. */
+    private final class ThrottledInputStream extends FilterInputStream {
+
+        ThrottledInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                acquire(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, Math.min(len, chunkSize()));
+            acquire(n);
+            return n;
+        }
+    }
+
+    /** Accounts for the bytes written to the underlying stream before they are written. */
+    private final class ThrottledOutputStream extends FilterOutputStream {
+
+        ThrottledOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            acquire(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int chunk = chunkSize();
+            for (int written = 0; written < len; written += chunk) {
+                int n = Math.min(chunk, len - written);
+                acquire(n);
+                out.write(b, off + written, n);
+            }
+        }
+    }
+
+    /** Accounts for the bytes read from and written to the underlying channel. */
+    private final class ThrottledChannel implements SeekableByteChannel {
+
+        private final SeekableByteChannel channel;
+
+        ThrottledChannel(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int limit = dst.limit();
+            dst.limit(dst.position() + Math.min(dst.remaining(), chunkSize()));
+            try {
+                int n = channel.read(dst);
+                acquire(n);
+                return n;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int limit = src.limit();
+            int written = 0;
+            try {
+                while (src.hasRemaining()) {
+                    int n = Math.min(src.remaining(), chunkSize());
+                    acquire(n);
+                    src.limit(src.position() + n);
+                    int w = channel.write(src);
+                    src.limit(limit);
+                    written += w;
+                    if (w < n) {
+                        // the channel accepted fewer bytes, as non-blocking channels may
+                        break;
+                    }
+                }
+            } finally {
+                src.limit(limit);
+            }
+            return written;
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
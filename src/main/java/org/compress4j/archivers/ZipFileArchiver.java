@@ -19,15 +19,29 @@ import jakarta.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipMethod;
 
 /**
  * Archiver that overwrites the extraction of Zip archives. It provides a wrapper for ZipFile as an ArchiveInputStream
- * to retrieve file attributes properly.
+ * to retrieve file attributes properly. <br>
+ * Entries are listed from the central directory and their data is only read when it is requested, so skipping an
+ * entry costs nothing. Deflated entries are inflated with inflaters from the {@link InflaterPool#SHARED shared pool}.
+ * <br>
+ * If {@link ExtractOptions#isMemoryMapped() enabled}, archive files are read through {@link MappedArchive memory
+ * mappings}: the central directory is parsed from a mapping of the end of the file, and the data of a large entry is
+ * read from a mapping of its region. Stored entries are thus extracted without copying them through a heap buffer.
  */
 class ZipFileArchiver extends CommonsArchiver<ZipArchiveEntry> {
 
@@ -37,20 +51,221 @@ class ZipFileArchiver extends CommonsArchiver<ZipArchiveEntry> {
 
     @Override
     protected ArchiveInputStream<ZipArchiveEntry> createArchiveInputStream(File archive) throws IOException {
-        return new ZipFileArchiveInputStream(ZipFile.builder().setFile(archive).get());
+        return new ZipFileArchiveInputStream(ZipFile.builder().setFile(archive).get(), null);
+    }
+
+    @Override
+    ArchiveInputStream<ZipArchiveEntry> createArchiveInputStream(File archive, ExtractOptions options)
+            throws IOException {
+        Throttle throttle = options.getReadThrottle();
+        if (throttle.isUnlimited()) {
+            if (options.isMemoryMapped()) {
+                MappedArchive mapping = MappedArchive.open(archive);
+                return new ZipFileArchiveInputStream(open(mapping), mapping);
+            }
+            return createArchiveInputStream(archive);
+        }
+
+        // a mapping would bypass the throttle, the archive is read through a throttled channel instead
+        SeekableByteChannel channel = throttle.wrap(Files.newByteChannel(archive.toPath()));
+        try {
+            return new ZipFileArchiveInputStream(ZipFile.builder().setSeekableByteChannel(channel).get(), null);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<org.compress4j.archivers.ArchiveEntry> list(File archive) throws IOException {
+        assertExtractSource(archive);
+        return listCentralDirectory(archive);
+    }
+
+    @Override
+    public ArchiveReader reader(File archive) throws IOException {
+        assertExtractSource(archive);
+        return openReader(archive);
+    }
+
+    @Override
+    public ArchiveReader reader(SeekableByteChannel archive) throws IOException {
+        return openReader(archive);
+    }
+
+    /**
+     * Opens a ZIP or JAR archive read from the given channel for random access. For a {@link RangeSource}, the local
+     * file headers are only read when an entry is opened, so that opening the archive reads nothing but its central
+     * directory.
+     *
+     * @param archive the channel to read the archive from
+     * @return a new reader for the archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static ZipFileArchiveReader openReader(SeekableByteChannel archive) throws IOException {
+        ZipFile file = ZipFile.builder()
+                .setSeekableByteChannel(archive)
+                .setIgnoreLocalFileHeader(archive instanceof CachingRangeChannel)
+                .get();
+        return new ZipFileArchiveReader(file);
+    }
+
+    /**
+     * Opens a ZIP or JAR archive for random access.
+     *
+     * @param archive the archive file
+     * @return a new reader for the archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static ZipFileArchiveReader openReader(File archive) throws IOException {
+        return new ZipFileArchiveReader(ZipFile.builder().setFile(archive).get());
+    }
+
+    /**
+     * Lists the entries of a ZIP or JAR archive from its central directory, without reading any entry data.
+     *
+     * @param archive the archive file
+     * @return an unmodifiable list of detached entries, in the order they are stored in the archive
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static List<org.compress4j.archivers.ArchiveEntry> listCentralDirectory(File archive) throws IOException {
+        try (ZipFile file = ZipFile.builder().setFile(archive).get()) {
+            return DetachedArchiveEntry.detach(Collections.list(file.getEntriesInPhysicalOrder()));
+        }
+    }
+
+    /**
+     * Prepares a new entry for writing according to the given options. Files selected by
+     * {@link CreateOptions#getStoredEntries()} are stored uncompressed, with their size and CRC computed up front so
+     * that no data descriptor is needed, and their data aligned to {@link CreateOptions#getAlignment()}.
+     *
+     * @param entry the new zip entry
+     * @param file the file the entry is created from
+     * @param options the options that control the creation
+     * @throws IOException if the file can not be read
+     */
+    static void prepareEntry(ZipArchiveEntry entry, Path file, CreateOptions options) throws IOException {
+        if (entry.isDirectory() || !options.getStoredEntries().accept(new DetachedArchiveEntry(entry))) {
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in =
+                options.getCancellation().wrap(options.getReadThrottle().wrap(Files.newInputStream(file)))) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+                size += n;
+            }
+        }
+
+        entry.setMethod(ZipMethod.STORED.getCode());
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+        if (options.getAlignment() > 1) {
+            entry.setAlignment(options.getAlignment());
+        }
+    }
+
+    /**
+     * Opens the given mapped archive. The mapping of the central directory is released once it has been parsed, and
+     * the file is closed with the returned zip file.
+     *
+     * @param mapping the mapped archive
+     * @return the zip file
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    private static ZipFile open(MappedArchive mapping) throws IOException {
+        MappedArchive.MappedChannel channel = mapping.newChannel();
+        try {
+            return ZipFile.builder().setSeekableByteChannel(channel).get();
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(channel);
+            throw e;
+        } finally {
+            channel.release();
+        }
+    }
+
+    /**
+     * Opens a stream over the contents of the given entry. Directories are read as empty streams without touching the
+     * file, and deflated entries are inflated with a pooled inflater that is released when the stream is closed. If
+     * the archive is mapped, stored and deflated entries of at least {@link MappedArchive#MIN_MAPPED_SIZE} bytes are
+     * read from a mapping of their data, which is released when the stream is closed.
+     *
+     * @param file the zip file
+     * @param mapping the mapping of the zip file, or {@code null} if it is not mapped
+     * @param entry the entry to read
+     * @return a new stream over the contents of the entry
+     * @throws IOException propagated I/O errors by {@code java.io}
+     */
+    static InputStream openEntryStream(ZipFile file, MappedArchive mapping, ZipArchiveEntry entry) throws IOException {
+        if (entry.isDirectory()) {
+            return InputStream.nullInputStream();
+        }
+        if (!file.canReadEntryData(entry)) {
+            return file.getInputStream(entry);
+        }
+
+        boolean stored = entry.getMethod() == ZipMethod.STORED.getCode();
+        boolean deflated = entry.getMethod() == ZipMethod.DEFLATED.getCode();
+        long compressedSize = entry.getCompressedSize();
+        if (mapping != null
+                && entry.getDataOffset() >= 0
+                && compressedSize >= MappedArchive.MIN_MAPPED_SIZE
+                && MappedArchive.canMap(compressedSize)) {
+            if (stored) {
+                return mapping.newStream(entry.getDataOffset(), entry.getSize());
+            } else if (deflated) {
+                return InflaterPool.SHARED.inflate(mapping.newStream(entry.getDataOffset(), compressedSize));
+            }
+        }
+        if (deflated) {
+            InputStream raw = file.getRawInputStream(entry);
+            if (raw != null) {
+                return InflaterPool.SHARED.inflate(raw);
+            }
+        }
+        return file.getInputStream(entry);
+    }
+
+    /** Random access to the entries of a ZipFile. Streams of different entries can be read concurrently. */
+    static class ZipFileArchiveReader extends CommonsArchiveReader<ZipArchiveEntry> {
+
+        private final ZipFile file;
+
+        ZipFileArchiveReader(ZipFile file) {
+            this.file = file;
+            index(Collections.list(file.getEntriesInPhysicalOrder()));
+        }
+
+        @Override
+        protected InputStream openStream(ZipArchiveEntry entry) throws IOException {
+            return openEntryStream(file, null, entry);
+        }
+
+        @Override
+        protected void closeArchive() throws IOException {
+            file.close();
+        }
     }
 
     /** Wraps a ZipFile to make it usable as an ArchiveInputStream. */
-    static class ZipFileArchiveInputStream extends ArchiveInputStream<ZipArchiveEntry> {
+    static class ZipFileArchiveInputStream extends ArchiveInputStream<ZipArchiveEntry> implements ChannelTransferable {
 
         private final ZipFile file;
+        private final MappedArchive mapping;
 
         private Enumeration<ZipArchiveEntry> entries;
         private ZipArchiveEntry currentEntry;
         private InputStream currentEntryStream;
 
-        public ZipFileArchiveInputStream(ZipFile file) {
+        public ZipFileArchiveInputStream(ZipFile file, MappedArchive mapping) {
             this.file = file;
+            this.mapping = mapping;
         }
 
         @Override
@@ -60,7 +275,6 @@ class ZipFileArchiver extends CommonsArchiver<ZipArchiveEntry> {
             closeCurrentEntryStream();
 
             currentEntry = (enumerationEntries.hasMoreElements()) ? enumerationEntries.nextElement() : null;
-            currentEntryStream = (currentEntry != null) ? file.getInputStream(currentEntry) : null;
 
             return currentEntry;
         }
@@ -70,7 +284,9 @@ class ZipFileArchiver extends CommonsArchiver<ZipArchiveEntry> {
             int read = getCurrentEntryStream().read(b, off, len);
 
             if (read == -1) {
-                IOUtils.closeQuietly(getCurrentEntryStream());
+                // release the inflater early, the entry stays readable as an empty stream
+                closeCurrentEntryStream();
+                currentEntryStream = InputStream.nullInputStream();
             }
 
             count(read);
@@ -78,6 +294,26 @@ class ZipFileArchiver extends CommonsArchiver<ZipArchiveEntry> {
             return read;
         }
 
+        @Override
+        public long skip(long n) throws IOException {
+            return currentEntry == null ? 0 : getCurrentEntryStream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return currentEntry == null ? 0 : getCurrentEntryStream().available();
+        }
+
+        @Override
+        public long transferTo(WritableByteChannel target) throws IOException {
+            if (currentEntry == null) {
+                return 0;
+            }
+            long transferred = IOUtils.transfer(getCurrentEntryStream(), target);
+            count(transferred);
+            return transferred;
+        }
+
         @Override
         public boolean canReadEntryData(ArchiveEntry archiveEntry) {
             return archiveEntry == getCurrentEntry();
@@ -87,7 +323,10 @@ class ZipFileArchiver extends CommonsArchiver<ZipArchiveEntry> {
             return currentEntry;
         }
 
-        public InputStream getCurrentEntryStream() {
+        public InputStream getCurrentEntryStream() throws IOException {
+            if (currentEntryStream == null && currentEntry != null) {
+                currentEntryStream = openEntryStream(file, mapping, currentEntry);
+            }
             return currentEntryStream;
         }
 
@@ -99,7 +338,7 @@ class ZipFileArchiver extends CommonsArchiver<ZipArchiveEntry> {
         }
 
         private void closeCurrentEntryStream() {
-            IOUtils.closeQuietly(getCurrentEntryStream());
+            IOUtils.closeQuietly(currentEntryStream);
 
             currentEntryStream = null;
         }
@@ -22,11 +22,19 @@ import static org.junit.jupiter.api.Assertions.fail;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -54,6 +62,11 @@ public abstract class AbstractArchiverTest extends AbstractResourceTest {
         archive = null;
     }
 
+    private static FileSystem newZipFileSystem() throws IOException {
+        Path file = new File(ARCHIVE_CREATE_DIR, "filesystem.zip").toPath();
+        return FileSystems.newFileSystem(file, Map.of("create", "true"));
+    }
+
     protected abstract Archiver getArchiver();
 
     protected abstract File getArchive();
@@ -73,6 +86,97 @@ public abstract class AbstractArchiverTest extends AbstractResourceTest {
         }
     }
 
+    @Test
+    void extract_withWriterThreads_properlyExtractsArchive() throws Exception {
+        ExtractOptions options = ExtractOptions.builder().setWriterThreads(4).setSpoolThreshold(20).build();
+
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR, options);
+
+        assertExtractionWasSuccessful();
+    }
+
+    @Test
+    void extract_withGlobFilter_extractsMatchingEntriesOnly() throws Exception {
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR, EntryFilter.glob("folder/**/*.txt"));
+
+        assertThat(flatRelativeList(ARCHIVE_EXTRACT_DIR))
+                .containsExactlyInAnyOrder(
+                        "folder",
+                        "folder/folder_file.txt",
+                        "folder/subfolder",
+                        "folder/subfolder/subfolder_file.txt");
+        assertFileContentEquals(
+                new File(ARCHIVE_DIR, "folder/subfolder/subfolder_file.txt"),
+                new File(ARCHIVE_EXTRACT_DIR, "folder/subfolder/subfolder_file.txt"));
+    }
+
+    @Test
+    void extract_withNameFilter_extractsNamedEntriesOnly() throws Exception {
+        ExtractOptions options = ExtractOptions.builder()
+                .setFilter(EntryFilter.names("file.txt", "permissions/readonly_file.txt"))
+                .setWriterThreads(4)
+                .build();
+
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR, options);
+
+        assertThat(flatRelativeList(ARCHIVE_EXTRACT_DIR))
+                .containsExactlyInAnyOrder("file.txt", "permissions", "permissions/readonly_file.txt");
+        assertFileContentEquals(new File(ARCHIVE_DIR, "file.txt"), new File(ARCHIVE_EXTRACT_DIR, "file.txt"));
+    }
+
+    @Test
+    void extract_withPredicateFilter_skipsRejectedEntries() throws Exception {
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR, entry -> !entry.getName().startsWith("permissions"));
+
+        assertThat(new File(ARCHIVE_EXTRACT_DIR, "permissions")).doesNotExist();
+        assertThat(new File(ARCHIVE_EXTRACT_DIR, "folder/subfolder/subfolder_file.txt")).exists();
+    }
+
+    @Test
+    void extract_toZipFileSystem_properlyExtractsArchive() throws Exception {
+        try (FileSystem fileSystem = newZipFileSystem()) {
+            Path destination = fileSystem.getPath("/extracted");
+
+            archiver.extract(archive.toPath(), destination);
+
+            List<String> names =
+                    List.of("file.txt", "folder/subfolder/subfolder_file.txt", "permissions/readonly_file.txt");
+            for (String name : names) {
+                assertThat(destination.resolve(name)).hasSameBinaryContentAs(new File(ARCHIVE_DIR, name).toPath());
+            }
+            assertThat(destination.resolve("permissions/private_folder")).isDirectory();
+        }
+    }
+
+    @Test
+    void create_onZipFileSystem_createsExtractableArchive() throws Exception {
+        File created;
+        try (FileSystem fileSystem = newZipFileSystem()) {
+            Path sources = fileSystem.getPath("/sources");
+            archiver.extract(archive.toPath(), sources);
+
+            Path path = archiver.create(
+                    "created", fileSystem.getPath("/archives"), sources.resolve("file.txt"), sources.resolve("folder"));
+
+            assertThat(path.getFileName()).hasToString("created" + archiver.getFilenameExtension());
+            created = new File(ARCHIVE_CREATE_DIR, path.getFileName().toString());
+            Files.copy(path, created.toPath());
+        }
+
+        archiver.extract(created, ARCHIVE_EXTRACT_DIR);
+
+        assertThat(flatRelativeList(ARCHIVE_EXTRACT_DIR))
+                .containsExactlyInAnyOrder(
+                        "file.txt",
+                        "folder",
+                        "folder/folder_file.txt",
+                        "folder/subfolder",
+                        "folder/subfolder/subfolder_file.txt");
+        assertFileContentEquals(
+                new File(ARCHIVE_DIR, "folder/subfolder/subfolder_file.txt"),
+                new File(ARCHIVE_EXTRACT_DIR, "folder/subfolder/subfolder_file.txt"));
+    }
+
     @Test
     void create_recursiveDirectory_withFileExtension_properlyCreatesArchive() throws Exception {
         String archiveName = archive.getName();
@@ -180,6 +284,70 @@ public abstract class AbstractArchiverTest extends AbstractResourceTest {
         }
     }
 
+    @Test
+    void list_returnsSameEntriesAsStream() throws IOException {
+        List<String> streamed = new ArrayList<>();
+        try (ArchiveStream stream = archiver.stream(archive)) {
+            ArchiveEntry entry;
+            while ((entry = stream.getNextEntry()) != null) {
+                streamed.add(entry.getName() + ":" + entry.getSize() + ":" + entry.isDirectory());
+            }
+        }
+
+        List<ArchiveEntry> listed = archiver.list(archive);
+
+        assertThat(listed)
+                .extracting(entry -> entry.getName() + ":" + entry.getSize() + ":" + entry.isDirectory())
+                .containsExactlyInAnyOrderElementsOf(streamed);
+    }
+
+    @Test
+    void list_entries_canNotBeExtracted() throws IOException {
+        ArchiveEntry entry = archiver.list(archive).get(0);
+
+        assertThrows(IllegalStateException.class, () -> entry.extract(ARCHIVE_EXTRACT_DIR));
+    }
+
+    @Test
+    void list_withNonExistingSource_fails() {
+        assertThrows(FileNotFoundException.class, () -> archiver.list(NON_EXISTING_FILE));
+    }
+
+    @Test
+    void extractToMemory_returnsContentsOfAllFiles() throws Exception {
+        Map<String, ByteBuffer> contents = archiver.extractToMemory(archive, ExtractOptions.DEFAULT);
+
+        assertThat(contents).hasSize(8).containsKeys("file.txt", "folder/subfolder/subfolder_file.txt");
+        for (Map.Entry<String, ByteBuffer> entry : contents.entrySet()) {
+            byte[] content = new byte[entry.getValue().remaining()];
+            entry.getValue().get(content);
+            assertThat(content).isEqualTo(Files.readAllBytes(new File(ARCHIVE_DIR, entry.getKey()).toPath()));
+        }
+    }
+
+    @Test
+    void extractToMemory_fromBytes_withDirectBuffers_returnsSameContents() throws Exception {
+        ExtractOptions options = ExtractOptions.builder()
+                .setDirectBuffers(true)
+                .setFilter(EntryFilter.glob("folder/**"))
+                .build();
+
+        Map<String, ByteBuffer> contents = archiver.extractToMemory(Files.readAllBytes(archive.toPath()), options);
+
+        assertThat(contents).containsOnlyKeys("folder/folder_file.txt", "folder/subfolder/subfolder_file.txt");
+        assertThat(contents.values()).allMatch(ByteBuffer::isDirect).allMatch(ByteBuffer::isReadOnly);
+        assertThat(contents)
+                .isEqualTo(archiver.extractToMemory(
+                        archive, ExtractOptions.builder().setFilter(EntryFilter.glob("folder/**")).build()));
+    }
+
+    @Test
+    void extractToMemory_exceedingMaxInMemorySize_fails() {
+        ExtractOptions options = ExtractOptions.builder().setMaxInMemorySize(100).build();
+
+        assertThrows(IOException.class, () -> archiver.extractToMemory(archive, options));
+    }
+
     @Test
     void entry_isDirectory_behavesCorrectly() throws Exception {
         try (ArchiveStream stream = archiver.stream(archive)) {
@@ -250,6 +418,43 @@ public abstract class AbstractArchiverTest extends AbstractResourceTest {
         assertExtractionWasSuccessful();
     }
 
+    @Test
+    void stream_skip_skipsWithinCurrentEntry() throws Exception {
+        try (ArchiveStream stream = archiver.stream(archive)) {
+            ArchiveEntry entry;
+            while ((entry = stream.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                byte[] expected = Files.readAllBytes(new File(ARCHIVE_DIR, entry.getName()).toPath());
+
+                assertThat(stream.skip(3)).isEqualTo(3);
+                assertThat(stream.readAllBytes()).isEqualTo(Arrays.copyOfRange(expected, 3, expected.length));
+                assertThat(stream.skip(3)).isZero();
+            }
+        }
+    }
+
+    @Test
+    void stream_transferTo_copiesCurrentEntry() throws Exception {
+        File target = new File(ARCHIVE_EXTRACT_DIR, "transferred");
+
+        try (ArchiveStream stream = archiver.stream(archive)) {
+            ArchiveEntry entry;
+            while ((entry = stream.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                byte[] expected = Files.readAllBytes(new File(ARCHIVE_DIR, entry.getName()).toPath());
+
+                try (FileOutputStream out = new FileOutputStream(target)) {
+                    assertThat(stream.transferTo(out)).isEqualTo(expected.length);
+                }
+                assertThat(target).hasBinaryContent(expected);
+            }
+        }
+    }
+
     @Test
     void stream_extractPassedEntry_throwsException() throws Exception {
         try (ArchiveStream stream = archiver.stream(archive)) {
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ArchiveFileSystemProviderTest extends AbstractResourceTest {
+
+    private static final ArchiveFileSystemProvider PROVIDER = new ArchiveFileSystemProvider();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.tar", "archive.tar.gz", "archive.tar.bz2", "archive.cpio", "archive.zip"})
+    void walk_listsAllFilesOfArchive(String archive) throws Exception {
+        try (FileSystem fileSystem = mount(archive)) {
+            List<String> files;
+            try (Stream<Path> paths = Files.walk(fileSystem.getPath("/"))) {
+                files = paths.filter(Files::isRegularFile).map(Path::toString).toList();
+            }
+
+            assertThat(files)
+                    .hasSize(8)
+                    .contains("/file.txt", "/folder/folder_file.txt", "/folder/subfolder/subfolder_file.txt");
+            assertThat(Files.isDirectory(fileSystem.getPath("/folder/subfolder"))).isTrue();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.tar", "archive.tar.gz", "archive.tar.bz2", "archive.cpio", "archive.zip"})
+    void newInputStream_readsEntryContents(String archive) throws Exception {
+        try (FileSystem fileSystem = mount(archive)) {
+            Path entry = fileSystem.getPath("folder", "subfolder", "subfolder_file.txt");
+            Path expected = new File(ARCHIVE_DIR, "folder/subfolder/subfolder_file.txt").toPath();
+
+            assertThat(Files.readAllBytes(entry)).isEqualTo(Files.readAllBytes(expected));
+            assertThat(Files.size(entry)).isEqualTo(Files.size(entry.toAbsolutePath()));
+        }
+    }
+
+    @Test
+    void newByteChannel_seeksWithinEntry() throws Exception {
+        try (FileSystem fileSystem = mount("archive.tar.bz2");
+                SeekableByteChannel channel = Files.newByteChannel(fileSystem.getPath("/file.txt"))) {
+            byte[] expected = Files.readAllBytes(new File(ARCHIVE_DIR, "file.txt").toPath());
+            ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+
+            channel.position(5);
+            channel.read(buffer);
+            channel.position(0);
+            buffer.clear();
+            channel.read(buffer);
+
+            assertThat(channel.size()).isEqualTo(expected.length);
+            assertThat(buffer.array()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void newFileSystem_byUri_isRegisteredWithProvider() throws Exception {
+        URI uri = URI.create("archive:" + new File(RESOURCES_DIR, "archive.tar.gz").toPath().toUri());
+
+        try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Map.of())) {
+            Path entry = Path.of(URI.create(uri + "!/file.txt"));
+
+            assertThat(entry.getFileSystem()).isSameAs(fileSystem);
+            assertThat(Files.readString(entry, StandardCharsets.UTF_8)).isNotEmpty();
+            assertThat(entry.toUri()).isEqualTo(URI.create(uri + "!/file.txt"));
+            assertThrows(FileSystemAlreadyExistsException.class, () -> FileSystems.newFileSystem(uri, Map.of()));
+        }
+    }
+
+    @Test
+    void fileSystem_isReadOnly() throws Exception {
+        try (FileSystem fileSystem = mount("archive.tar")) {
+            assertThat(fileSystem.isReadOnly()).isTrue();
+            assertThrows(ReadOnlyFileSystemException.class, () -> Files.delete(fileSystem.getPath("/file.txt")));
+            assertThrows(NoSuchFileException.class, () -> Files.size(fileSystem.getPath("/missing.txt")));
+        }
+    }
+
+    @Test
+    void newFileSystem_notAnArchive_fails() {
+        assertThrows(
+                UnsupportedOperationException.class,
+                () -> PROVIDER.newFileSystem(new File(ARCHIVE_DIR, "file.txt").toPath(), Map.of()));
+    }
+
+    private static FileSystem mount(String archive) throws Exception {
+        return PROVIDER.newFileSystem(new File(RESOURCES_DIR, archive).toPath(), Map.of());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+
+public class ArchiveIndexTest extends AbstractResourceTest {
+
+    @Test
+    void build_gzipArchive_indexesAllEntries() throws Exception {
+        ArchiveIndex index = ArchiveIndex.build(new File(RESOURCES_DIR, "archive.tar.gz"));
+
+        assertThat(index.getCompressionType()).isEqualTo(CompressionType.GZIP);
+        assertThat(index.getEntryCount()).isEqualTo(12);
+        assertThat(index.getCheckpointCount()).isEqualTo(1);
+    }
+
+    @Test
+    void build_xzArchive_indexesAllEntries() throws Exception {
+        ArchiveIndex index = ArchiveIndex.build(new File(RESOURCES_DIR, "archive.tar.xz"));
+
+        assertThat(index.getCompressionType()).isEqualTo(CompressionType.XZ);
+        assertThat(index.getEntryCount()).isEqualTo(12);
+        assertThat(index.getCheckpointCount()).isZero();
+    }
+
+    @Test
+    void build_uncompressedArchive_throwsException() {
+        File archive = new File(RESOURCES_DIR, "archive.tar");
+
+        assertThrows(IllegalArgumentException.class, () -> ArchiveIndex.build(archive));
+    }
+
+    @Test
+    void build_largeArchive_recordsCheckpointPerInterval() throws Exception {
+        File archive = new File(ARCHIVE_CREATE_DIR, "large.tar.gz");
+        Map<String, byte[]> contents = createLargeArchive(archive);
+
+        ArchiveIndex index = ArchiveIndex.build(archive, 64 * 1024);
+
+        assertThat(index.getEntryCount()).isEqualTo(contents.size());
+        assertThat(index.getCheckpointCount()).isGreaterThan(4);
+    }
+
+    @Test
+    void reader_withSidecar_readsAllEntries() throws Exception {
+        File archive = new File(ARCHIVE_CREATE_DIR, "large.tar.gz");
+        Map<String, byte[]> contents = createLargeArchive(archive);
+        ArchiveIndex.build(archive, 64 * 1024).write(ArchiveIndex.sidecarFor(archive));
+
+        try (ArchiveReader reader = ArchiverFactory.createArchiver(archive).reader(archive)) {
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                try (InputStream in = reader.openStream(reader.getEntry(content.getKey()))) {
+                    assertThat(in.readAllBytes()).isEqualTo(content.getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    void write_read_restoresIndex() throws Exception {
+        File archive = new File(ARCHIVE_CREATE_DIR, "large.tar.gz");
+        createLargeArchive(archive);
+        ArchiveIndex index = ArchiveIndex.build(archive, 64 * 1024);
+        File sidecar = ArchiveIndex.sidecarFor(archive);
+
+        index.write(sidecar);
+        ArchiveIndex read = ArchiveIndex.read(sidecar);
+
+        assertThat(sidecar).hasName("large.tar.gz.idx");
+        assertThat(read.getCompressionType()).isEqualTo(index.getCompressionType());
+        assertThat(read.getCheckpointInterval()).isEqualTo(index.getCheckpointInterval());
+        assertThat(read.getCheckpointCount()).isEqualTo(index.getCheckpointCount());
+        assertThat(read.getEntryCount()).isEqualTo(index.getEntryCount());
+        assertThat(read.isFor(archive)).isTrue();
+    }
+
+    @Test
+    void isFor_modifiedArchive_returnsFalse() throws Exception {
+        File archive = new File(ARCHIVE_CREATE_DIR, "archive.tar.gz");
+        Files.copy(new File(RESOURCES_DIR, "archive.tar.gz").toPath(), archive.toPath());
+        ArchiveIndex index = ArchiveIndex.build(archive);
+
+        assertThat(archive.setLastModified(archive.lastModified() - 60_000)).isTrue();
+
+        assertThat(index.isFor(archive)).isFalse();
+    }
+
+    @Test
+    void read_notAnIndex_throwsException() {
+        File file = new File(RESOURCES_DIR, "archive.tar.gz");
+
+        assertThrows(IOException.class, () -> ArchiveIndex.read(file));
+    }
+
+    private static Map<String, byte[]> createLargeArchive(File archive) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        Random random = new Random(42);
+        String alphabet = "abcdefghij \n";
+
+        try (TarArchiveOutputStream out =
+                new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(archive)))) {
+            for (int i = 0; i < 50; i++) {
+                byte[] content = new byte[random.nextInt(40_000)];
+                for (int j = 0; j < content.length; j++) {
+                    content[j] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+                }
+
+                TarArchiveEntry entry = new TarArchiveEntry("folder" + i % 5 + "/file" + i + ".txt");
+                entry.setSize(content.length);
+                out.putArchiveEntry(entry);
+                out.write(content);
+                out.closeArchiveEntry();
+                contents.put(entry.getName(), content);
+            }
+        }
+
+        return contents;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class ArchiveReaderTest {
+
+    @Nested
+    class ZipArchiveReaderTest extends BaseArchiveReaderTest {
+        @Override
+        protected String getArchiveFileName() {
+            return "archive.zip";
+        }
+    }
+
+    @Nested
+    class JarArchiveReaderTest extends BaseArchiveReaderTest {
+        @Override
+        protected String getArchiveFileName() {
+            return "archive.jar";
+        }
+    }
+
+    @Nested
+    class TarArchiveReaderTest extends BaseArchiveReaderTest {
+        @Override
+        protected String getArchiveFileName() {
+            return "archive.tar";
+        }
+    }
+
+    @Nested
+    class TarGzArchiveReaderTest extends BaseArchiveReaderTest {
+        @Override
+        protected String getArchiveFileName() {
+            return "archive.tar.gz";
+        }
+    }
+
+    @Nested
+    class TarXzArchiveReaderTest extends BaseArchiveReaderTest {
+        @Override
+        protected String getArchiveFileName() {
+            return "archive.tar.xz";
+        }
+    }
+
+    @Nested
+    class SevenZArchiveReaderTest extends BaseArchiveReaderTest {
+        @Override
+        protected String getArchiveFileName() {
+            return "archive.7z";
+        }
+
+        @Override
+        protected boolean supportsConcurrentStreams() {
+            return false;
+        }
+    }
+
+    @Test
+    void reader_bzip2CompressedTar_isNotSupported() {
+        File archive = new File(AbstractResourceTest.RESOURCES_DIR, "archive.tar.bz2");
+
+        Archiver archiver = ArchiverFactory.createArchiver(archive);
+
+        assertThrows(UnsupportedOperationException.class, () -> archiver.reader(archive));
+    }
+
+    public abstract static class BaseArchiveReaderTest extends AbstractResourceTest {
+
+        protected abstract String getArchiveFileName();
+
+        protected boolean supportsConcurrentStreams() {
+            return true;
+        }
+
+        private ArchiveReader openReader() throws Exception {
+            File archive = new File(RESOURCES_DIR, getArchiveFileName());
+            return ArchiverFactory.createArchiver(archive).reader(archive);
+        }
+
+        @Test
+        void getEntries_returnsAllEntries() throws Exception {
+            try (ArchiveReader reader = openReader()) {
+                assertThat(reader.getEntries()).hasSize(12);
+            }
+        }
+
+        @Test
+        void getEntry_findsEntriesByName() throws Exception {
+            try (ArchiveReader reader = openReader()) {
+                assertThat(reader.getEntry("folder/subfolder/subfolder_file.txt")).isNotNull();
+                assertThat(reader.getEntry("folder").isDirectory()).isTrue();
+                assertThat(reader.getEntry("folder/")).isSameAs(reader.getEntry("folder"));
+                assertThat(reader.getEntry("does/not/exist.txt")).isNull();
+            }
+        }
+
+        @Test
+        void openStream_readsEntriesInAnyOrder() throws Exception {
+            try (ArchiveReader reader = openReader()) {
+                assertEntryContent(reader, "permissions/readonly_file.txt");
+                assertEntryContent(reader, "file.txt");
+                assertEntryContent(reader, "folder/subfolder/subfolder_file.txt");
+                assertEntryContent(reader, "file.txt");
+            }
+        }
+
+        @Test
+        void openStream_concurrently_readsAllEntries() throws Exception {
+            try (ArchiveReader reader = openReader()) {
+                ExecutorService executor = Executors.newFixedThreadPool(supportsConcurrentStreams() ? 4 : 1);
+                try {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (ArchiveEntry entry : reader.getEntries()) {
+                        if (!entry.isDirectory()) {
+                            futures.add(executor.submit(() -> assertEntryContent(reader, entry.getName())));
+                        }
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+            }
+        }
+
+        @Test
+        void entry_extract_extractsSingleEntry() throws Exception {
+            try (ArchiveReader reader = openReader()) {
+                File file = reader.getEntry("folder/folder_file.txt").extract(ARCHIVE_EXTRACT_DIR);
+
+                assertFileContentEquals(new File(ARCHIVE_DIR, "folder/folder_file.txt"), file);
+                assertThat(flatRelativeList(ARCHIVE_EXTRACT_DIR))
+                        .containsExactlyInAnyOrder("folder", "folder/folder_file.txt");
+            }
+        }
+
+        @Test
+        void openStream_onClosedReader_throwsException() throws Exception {
+            try (ArchiveReader reader = openReader()) {
+                ArchiveEntry entry = reader.getEntry("file.txt");
+                reader.close();
+
+                assertThrows(IllegalStateException.class, () -> reader.openStream(entry));
+            }
+        }
+
+        @Test
+        void openStream_withForeignEntry_throwsException() throws Exception {
+            try (ArchiveReader reader = openReader();
+                    ArchiveReader other = openReader()) {
+                ArchiveEntry entry = other.getEntry("file.txt");
+
+                assertThrows(IllegalArgumentException.class, () -> reader.openStream(entry));
+            }
+        }
+
+        private static Void assertEntryContent(ArchiveReader reader, String name) throws Exception {
+            byte[] expected = Files.readAllBytes(new File(ARCHIVE_DIR, name).toPath());
+            try (InputStream in = reader.openStream(reader.getEntry(name))) {
+                assertThat(in.readAllBytes()).isEqualTo(expected);
+            }
+            return null;
+        }
+    }
+}
@@ -18,6 +18,13 @@ package org.compress4j.archivers;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.junit.jupiter.api.Test;
 
 class ArchiverTarTest extends AbstractArchiverTest {
@@ -32,6 +39,65 @@ class ArchiverTarTest extends AbstractArchiverTest {
         return new File(RESOURCES_DIR, "archive.tar");
     }
 
+    @Test
+    void extract_readOnlyDirectory_extractsChildrenBeforeRestoringMode() throws Exception {
+        File archive = createReadOnlyDirectoryArchive();
+        File directory = new File(ARCHIVE_EXTRACT_DIR, "readonly");
+
+        try {
+            getArchiver().extract(archive, ARCHIVE_EXTRACT_DIR);
+
+            assertThat(new File(directory, "file.txt")).hasContent("content");
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.toPath())))
+                    .isEqualTo("r-xr-xr-x");
+        } finally {
+            directory.setWritable(true);
+        }
+    }
+
+    @Test
+    void extract_stream_readOnlyDirectory_extractsChildrenBeforeRestoringMode() throws Exception {
+        File archive = createReadOnlyDirectoryArchive();
+        File directory = new File(ARCHIVE_EXTRACT_DIR, "readonly");
+
+        try {
+            try (ArchiveStream stream = getArchiver().stream(archive)) {
+                ArchiveEntry entry;
+                while ((entry = stream.getNextEntry()) != null) {
+                    entry.extract(ARCHIVE_EXTRACT_DIR);
+                }
+            }
+
+            assertThat(new File(directory, "file.txt")).hasContent("content");
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.toPath())))
+                    .isEqualTo("r-xr-xr-x");
+        } finally {
+            directory.setWritable(true);
+        }
+    }
+
+    private static File createReadOnlyDirectoryArchive() throws IOException {
+        File archive = new File(ARCHIVE_CREATE_DIR, "readonly.tar");
+        byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+
+        try (OutputStream out = Files.newOutputStream(archive.toPath());
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(out)) {
+            TarArchiveEntry directory = new TarArchiveEntry("readonly/");
+            directory.setMode(040555);
+            tar.putArchiveEntry(directory);
+            tar.closeArchiveEntry();
+
+            TarArchiveEntry file = new TarArchiveEntry("readonly/file.txt");
+            file.setMode(0100644);
+            file.setSize(content.length);
+            tar.putArchiveEntry(file);
+            tar.write(content);
+            tar.closeArchiveEntry();
+        }
+
+        return archive;
+    }
+
     @Test
     void getFilenameExtension_tar_returnsCorrectFilenameExtension() {
         assertThat(getArchiver().getFilenameExtension()).isEqualTo(".tar");
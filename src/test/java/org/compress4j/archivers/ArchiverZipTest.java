@@ -16,10 +16,15 @@
 package org.compress4j.archivers;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipMethod;
 import org.junit.jupiter.api.Test;
 
 class ArchiverZipTest extends AbstractArchiverTest {
@@ -101,6 +106,39 @@ class ArchiverZipTest extends AbstractArchiverTest {
         assertZipTraversal();
     }
 
+    @Test
+    void create_withStoredEntriesAndAlignment_alignsStoredData() throws Exception {
+        CreateOptions options = CreateOptions.builder()
+                .setStoredEntries(EntryFilter.glob("**/*.txt"))
+                .setAlignment(4096)
+                .build();
+
+        File archive = getArchiver().create("archive", ARCHIVE_CREATE_DIR, options, ARCHIVE_DIR);
+
+        try (ZipFile file = ZipFile.builder().setFile(archive).get()) {
+            for (ZipArchiveEntry entry : Collections.list(file.getEntries())) {
+                if (entry.isDirectory()) {
+                    assertThat(entry.getMethod()).isEqualTo(ZipMethod.DEFLATED.getCode());
+                } else {
+                    assertThat(entry.getMethod()).isEqualTo(ZipMethod.STORED.getCode());
+                    assertThat(entry.getDataOffset() % 4096).isZero();
+                }
+            }
+        }
+
+        getArchiver().extract(archive, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, new File(ARCHIVE_EXTRACT_DIR, "archive"));
+    }
+
+    @Test
+    void createOptions_invalidAlignment_throwsException() {
+        CreateOptions.Builder builder = CreateOptions.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.setAlignment(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.setAlignment(3));
+        assertThrows(IllegalArgumentException.class, () -> builder.setAlignment(2 * CreateOptions.MAX_ALIGNMENT));
+    }
+
     private void archiveExtractorHelper(final String fileName) throws IOException {
         File archive = new File(RESOURCES_DIR, fileName);
         ArchiveStream stream = null;
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+class BatchServiceTest extends AbstractResourceTest {
+
+    private static final String[] ARCHIVES = {
+        "archive.tar", "archive.tar.gz", "archive.tar.bz2", "archive.zip", "archive.jar", "archive.cpio"
+    };
+
+    @Test
+    void extract_manyArchives_extractsAllWithinLimits() throws Exception {
+        List<File> destinations = new ArrayList<>();
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
+
+        try (BatchService service = BatchService.builder()
+                .setCpuParallelism(2)
+                .setMaxOpenFiles(6)
+                .build()) {
+            for (int i = 0; i < 4; i++) {
+                for (String archive : ARCHIVES) {
+                    File destination = new File(ARCHIVE_EXTRACT_DIR, i + "-" + archive);
+                    destinations.add(destination);
+                    jobs.add(service.extract(new File(RESOURCES_DIR, archive), destination));
+                }
+            }
+            CompletableFuture.allOf(jobs.toArray(new CompletableFuture[0])).get();
+
+            BatchService.Statistics statistics = service.getStatistics();
+            assertThat(statistics.getCompletedJobs()).isEqualTo(destinations.size());
+            assertThat(statistics.getFailedJobs()).isZero();
+            assertThat(statistics.getBytes()).isPositive();
+
+            // every extraction holds one file for the archive and one for its writer thread
+            assertThat(service.getPeakRunningJobs()).isBetween(1, 3);
+            assertThat(service.getPeakOpenFiles()).isBetween(2, 6);
+            assertThat(service.getPeakCpuHolders()).isBetween(1, 2);
+        }
+
+        for (File destination : destinations) {
+            assertDirectoryStructureEquals(ARCHIVE_DIR, destination);
+            assertFilesEquals(ARCHIVE_DIR, destination);
+        }
+    }
+
+    @Test
+    void extract_uncompressedArchive_needsNoCpuPermit() throws Exception {
+        try (BatchService service = BatchService.builder().setCpuParallelism(1).build()) {
+            service.extract(new File(RESOURCES_DIR, "archive.tar"), ARCHIVE_EXTRACT_DIR).get();
+
+            assertThat(service.getPeakRunningJobs()).isEqualTo(1);
+            assertThat(service.getPeakCpuHolders()).isZero();
+        }
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+    }
+
+    @Test
+    void createAndCompress_completeWithResults() throws Exception {
+        Archiver archiver = ArchiverFactory.createArchiver(ArchiveFormat.TAR);
+        Compressor compressor = CompressorFactory.createCompressor(CompressionType.GZIP);
+
+        try (BatchService service = BatchService.builder().build()) {
+            File archive =
+                    service.create(archiver, "batch", ARCHIVE_CREATE_DIR, ARCHIVE_DIR).get();
+            service.compress(compressor, archive, ARCHIVE_CREATE_DIR).get();
+
+            assertThat(archive).exists();
+            assertThat(new File(ARCHIVE_CREATE_DIR, "batch.tar.gz")).exists();
+            assertThat(service.getStatistics().getCompletedJobs()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void extract_failingJob_completesExceptionally() {
+        try (BatchService service = BatchService.builder().build()) {
+            CompletableFuture<Void> job = service.extract(new File(RESOURCES_DIR, "archive.tar"), NON_WRITABLE_FILE);
+
+            assertThrows(ExecutionException.class, job::get);
+            assertThat(service.getStatistics().getFailedJobs()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void extract_afterClose_fails() {
+        BatchService service = BatchService.builder().build();
+        service.close();
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> service.extract(new File(RESOURCES_DIR, "archive.tar"), ARCHIVE_EXTRACT_DIR));
+    }
+
+    @Test
+    void builder_invalidCpuParallelism_fails() {
+        BatchService.Builder builder = BatchService.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.setCpuParallelism(0));
+    }
+}
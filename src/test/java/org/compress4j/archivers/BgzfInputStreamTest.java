@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BgzfInputStreamTest extends AbstractResourceTest {
+
+    private final byte[] content = new byte[1024 * 1024];
+    private File compressed;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        File source = new File(ARCHIVE_CREATE_DIR, "bgzf.txt");
+        try (OutputStream out = new FileOutputStream(source)) {
+            out.write(content);
+        }
+        compressed = new File(ARCHIVE_CREATE_DIR, "bgzf.txt.gz");
+        new CommonsCompressor(CompressionType.BGZF).compress(source, compressed);
+    }
+
+    @Test
+    void compress_bgzf_isReadableAsGzip() throws Exception {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(compressed))) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void read_bgzf_returnsContent() throws Exception {
+        try (BgzfInputStream in = new BgzfInputStream(compressed)) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void seek_toRecordedVirtualOffsets_readsFromThere() throws Exception {
+        List<Long> virtualOffsets = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+
+        try (BgzfInputStream in = new BgzfInputStream(compressed)) {
+            byte[] buffer = new byte[10_000];
+            int position = 0;
+            int n;
+            do {
+                virtualOffsets.add(in.getVirtualOffset());
+                positions.add(position);
+                n = in.readNBytes(buffer, 0, buffer.length);
+                position += n;
+            } while (n > 0);
+
+            for (int i = virtualOffsets.size() - 1; i >= 0; i--) {
+                in.seek(virtualOffsets.get(i));
+                int start = positions.get(i);
+                byte[] expected = Arrays.copyOfRange(content, start, Math.min(content.length, start + 100));
+                assertThat(in.readNBytes(100)).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void virtualOffset_combinesBlockAddressAndOffset() {
+        assertThat(BgzfInputStream.virtualOffset(3, 5)).isEqualTo(3L << 16 | 5);
+        assertThrows(IllegalArgumentException.class, () -> BgzfInputStream.virtualOffset(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> BgzfInputStream.virtualOffset(0, 0x10000));
+    }
+
+    @Test
+    void compress_parallel_writesSameBlocksAsSequential() throws Exception {
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        try (BgzfOutputStream out = new BgzfOutputStream(sequential, 1)) {
+            out.write(content);
+        }
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        try (BgzfOutputStream out = new BgzfOutputStream(parallel, 4)) {
+            out.write(content);
+        }
+
+        assertThat(parallel.toByteArray()).isEqualTo(sequential.toByteArray());
+    }
+
+    @Test
+    void compress_withinBatchJob_compressesOnCallingThread() throws Exception {
+        try (BgzfOutputStream out = new BgzfOutputStream(OutputStream.nullOutputStream())) {
+            assertThat(out.isConcurrent()).isEqualTo(Runtime.getRuntime().availableProcessors() > 1);
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new CpuPermits(1).run(() -> {
+            try (BgzfOutputStream out = new BgzfOutputStream(compressed)) {
+                assertThat(out.isConcurrent()).isFalse();
+                out.write(content);
+            }
+            return null;
+        });
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        try (BgzfOutputStream out = new BgzfOutputStream(sequential, 1)) {
+            out.write(content);
+        }
+        assertThat(compressed.toByteArray()).isEqualTo(sequential.toByteArray());
+    }
+
+    @Test
+    void open_plainGzip_throwsException() {
+        assertThrows(IOException.class, () -> new BgzfInputStream(new File(RESOURCES_DIR, "compress.txt.gz")));
+    }
+}
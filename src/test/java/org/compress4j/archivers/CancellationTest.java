@@ -0,0 +1,202 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CancellationTest extends AbstractResourceTest {
+
+    @Test
+    void token_invalidUse_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> CancellationToken.withTimeout(Duration.ofMillis(-1)));
+        assertThrows(UnsupportedOperationException.class, CancellationToken.NONE::cancel);
+    }
+
+    @Test
+    void token_deadlinePassed_isCancelled() throws Exception {
+        CancellationToken token = CancellationToken.withTimeout(Duration.ofMillis(50));
+        assertThat(token.isCancelled()).isFalse();
+
+        Thread.sleep(100);
+
+        assertThat(token.isCancelled()).isTrue();
+        OperationCancelledException e = assertThrows(OperationCancelledException.class, token::throwIfCancelled);
+        assertThat(e.isDeadlineExceeded()).isTrue();
+    }
+
+    @Test
+    void reserve_cancelledWhileWaiting_stopsWaiting() throws Exception {
+        MemoryBudget budget = MemoryBudget.builder().setCapacity(1024).build();
+        CancellationToken token = CancellationToken.create();
+
+        try (MemoryBudget.Reservation first = budget.reserve(1024)) {
+            CompletableFuture<MemoryBudget.Reservation> second = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return budget.reserve(512, token);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertThat(second).isNotDone();
+
+            token.cancel();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.SECONDS));
+            assertThat(e.getCause()).hasCauseInstanceOf(OperationCancelledException.class);
+            assertThat(budget.getReserved()).isEqualTo(1024);
+        }
+        assertThat(budget.getReserved()).isZero();
+    }
+
+    @Test
+    void acquire_deadlinePassedWhileWaiting_stopsWaiting() {
+        CancellationToken token = CancellationToken.withTimeout(Duration.ofMillis(100));
+        Throttle throttle = Throttle.of(1024);
+        ExtractOptions options =
+                ExtractOptions.builder().setReadThrottle(throttle).setCancellation(token).build();
+
+        // 10 seconds worth of bytes, which the following transfer waits for
+        options.getReadThrottle().acquire(10 * 1024);
+        long start = System.nanoTime();
+        OperationCancelledException e =
+                assertThrows(OperationCancelledException.class, () -> options.getReadThrottle().acquire(1));
+
+        assertThat(e.isDeadlineExceeded()).isTrue();
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+        assertThat(options.getReadThrottle().getWeight()).isEqualTo(throttle.getWeight());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.tar", "archive.tar.gz", "archive.zip", "archive.cpio", "archive.jar"})
+    void extract_cancelled_fails(String name) throws Exception {
+        File archive = new File(RESOURCES_DIR, name);
+        CancellationToken token = CancellationToken.create();
+        token.cancel();
+        ExtractOptions options = ExtractOptions.builder().setCancellation(token).build();
+
+        OperationCancelledException e = assertThrows(
+                OperationCancelledException.class,
+                () -> ArchiverFactory.createArchiver(archive).extract(archive, ARCHIVE_EXTRACT_DIR, options));
+
+        assertThat(e.isDeadlineExceeded()).isFalse();
+        assertThat(ARCHIVE_EXTRACT_DIR.list()).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void extract_cancelledWhileRunning_removesCreatedFiles(int writerThreads) throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.tar");
+        File existing = new File(ARCHIVE_EXTRACT_DIR, "existing.txt");
+        Files.writeString(existing.toPath(), "existing");
+
+        CancellationToken token = CancellationToken.create();
+        ExtractOptions options = ExtractOptions.builder()
+                .setCancellation(token)
+                .setDeleteOnCancel(true)
+                .setWriterThreads(writerThreads)
+                .setFilter(entry -> {
+                    if (entry.getName().equals("folder/folder_file.txt")) {
+                        token.cancel();
+                    }
+                    return true;
+                })
+                .build();
+
+        assertThrows(
+                OperationCancelledException.class,
+                () -> ArchiverFactory.createArchiver(archive).extract(archive, ARCHIVE_EXTRACT_DIR, options));
+
+        assertThat(ARCHIVE_EXTRACT_DIR.list()).containsExactly("existing.txt");
+    }
+
+    @Test
+    void create_cancelled_removesArchive() {
+        CancellationToken token = CancellationToken.create();
+        token.cancel();
+        CreateOptions options = CreateOptions.builder().setCancellation(token).setDeleteOnCancel(true).build();
+
+        assertThrows(
+                OperationCancelledException.class,
+                () -> ArchiverFactory.createArchiver(ArchiveFormat.TAR, CompressionType.GZIP)
+                        .create("archive", ARCHIVE_CREATE_DIR, options, ARCHIVE_DIR));
+
+        assertThat(ARCHIVE_CREATE_DIR.list()).isEmpty();
+    }
+
+    @Test
+    void compress_defaultMethods_checkToken() throws Exception {
+        Compressor gzip = CompressorFactory.createCompressor(CompressionType.GZIP);
+        Compressor compressor = new Compressor() {
+            @Override
+            public void compress(File source, File destination) throws IOException {
+                gzip.compress(source, destination);
+            }
+
+            @Override
+            public void decompress(File source, File destination) throws IOException {
+                gzip.decompress(source, destination);
+            }
+
+            @Override
+            public InputStream decompressingStream(InputStream compressedStream) throws IOException {
+                return gzip.decompressingStream(compressedStream);
+            }
+
+            @Override
+            public String getFilenameExtension() {
+                return gzip.getFilenameExtension();
+            }
+        };
+        File source = new File(ARCHIVE_DIR, "file.txt");
+        File compressed = new File(ARCHIVE_CREATE_DIR, "file.txt.gz");
+        CancellationToken cancelled = CancellationToken.create();
+        cancelled.cancel();
+
+        assertThrows(OperationCancelledException.class, () -> compressor.compress(source, compressed, cancelled));
+        assertThat(compressed).doesNotExist();
+
+        compressor.compress(source, compressed, CancellationToken.create());
+        compressor.decompress(compressed, ARCHIVE_EXTRACT_DIR, Throttle.of(1024 * 1024), Throttle.of(1024 * 1024));
+        assertThat(new File(ARCHIVE_EXTRACT_DIR, "file.txt")).hasSameTextualContentAs(source);
+    }
+
+    @Test
+    void compress_cancelled_removesDestination() {
+        File source = new File(ARCHIVE_DIR, "file.txt");
+        CancellationToken token = CancellationToken.withTimeout(Duration.ZERO);
+
+        assertThrows(
+                OperationCancelledException.class,
+                () -> CompressorFactory.createCompressor(CompressionType.GZIP)
+                        .compress(source, ARCHIVE_CREATE_DIR, token));
+
+        assertThat(ARCHIVE_CREATE_DIR.list()).isEmpty();
+    }
+}
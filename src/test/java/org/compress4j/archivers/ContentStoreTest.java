@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ContentStoreTest extends AbstractResourceTest {
+
+    @Test
+    void extract_withStore_extractsArchive() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.tar.gz");
+        ContentStore store = ContentStore.open(new File(ARCHIVE_CREATE_DIR, "store").toPath());
+
+        ArchiverFactory.createArchiver(archive)
+                .extract(archive, ARCHIVE_EXTRACT_DIR, ExtractOptions.builder().setContentStore(store).build());
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertThat(store.getStoredBytes()).isPositive();
+        assertThat(store.getDeduplicatedBytes()).isZero();
+    }
+
+    @Test
+    void extract_identicalContents_storedOnce() throws Exception {
+        ContentStore store = ContentStore.open(new File(ARCHIVE_CREATE_DIR, "store").toPath());
+        ExtractOptions options = ExtractOptions.builder().setContentStore(store).build();
+        File second = new File(ARCHIVE_CREATE_DIR, "second");
+        assertThat(second.mkdir()).isTrue();
+
+        File zip = new File(RESOURCES_DIR, "archive.zip");
+        ArchiverFactory.createArchiver(zip).extract(zip, ARCHIVE_EXTRACT_DIR, options);
+        long stored = store.getStoredBytes();
+
+        File tar = new File(RESOURCES_DIR, "archive.tar");
+        ArchiverFactory.createArchiver(tar).extract(tar, second, options);
+
+        assertThat(store.getStoredBytes()).isEqualTo(stored);
+        assertThat(store.getDeduplicatedBytes()).isEqualTo(stored);
+        assertFilesEquals(ARCHIVE_DIR, second);
+
+        Path file = Path.of("folder", "subfolder", "subfolder_file.txt");
+        assertThat(Files.isSameFile(ARCHIVE_EXTRACT_DIR.toPath().resolve(file), second.toPath().resolve(file)))
+                .isTrue();
+    }
+
+    @Test
+    void extract_toOtherFileSystem_usesStore() throws Exception {
+        ContentStore store = ContentStore.open(new File(ARCHIVE_CREATE_DIR, "store").toPath());
+        ExtractOptions options = ExtractOptions.builder().setContentStore(store).build();
+        Path zipfs = new File(ARCHIVE_CREATE_DIR, "destination.zip").toPath();
+
+        Path archive = new File(RESOURCES_DIR, "archive.zip").toPath();
+        try (FileSystem fs = FileSystems.newFileSystem(zipfs, Map.of("create", "true"))) {
+            ArchiverFactory.createArchiver(archive.toFile()).extract(archive, fs.getPath("/"), options);
+
+            assertThat(fs.getPath("/folder/subfolder/subfolder_file.txt")).isRegularFile();
+        }
+        assertThat(store.getStoredBytes()).isPositive();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1024, ContentStore.MEMORY_THRESHOLD + 1})
+    void store_concurrentSameContent_storedOnce(int size) throws Exception {
+        ContentStore store = ContentStore.open(new File(ARCHIVE_CREATE_DIR, "store").toPath());
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) 'x');
+        int threads = 8;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Path>> blobs = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                blobs.add(executor.submit(() -> {
+                    start.await();
+                    return store.store(new ByteArrayInputStream(content), 0644, p -> {}, Throttle.UNLIMITED);
+                }));
+            }
+            Path blob = blobs.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Path> other : blobs) {
+                assertThat(other.get(10, TimeUnit.SECONDS)).isEqualTo(blob);
+            }
+            assertThat(Files.readAllBytes(blob)).isEqualTo(content);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(store.getStoredBytes()).isEqualTo(size);
+        assertThat(store.getDeduplicatedBytes()).isEqualTo((long) size * (threads - 1));
+        try (Stream<Path> temporary = Files.list(store.getDirectory().resolve("tmp"))) {
+            assertThat(temporary).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+
+class DestinationResolverTest extends AbstractResourceTest {
+
+    @Test
+    void normalize_keepsNormalizedNames() {
+        assertThat(DestinationResolver.normalize("folder/file.txt")).isEqualTo("folder/file.txt");
+        assertThat(DestinationResolver.normalize("folder/")).isEqualTo("folder/");
+        assertThat(DestinationResolver.normalize("..folder/file..")).isEqualTo("..folder/file..");
+    }
+
+    @Test
+    void normalize_removesRedundantSegments() {
+        assertThat(DestinationResolver.normalize("/folder/file.txt")).isEqualTo("folder/file.txt");
+        assertThat(DestinationResolver.normalize("./folder//file.txt")).isEqualTo("folder/file.txt");
+        assertThat(DestinationResolver.normalize("folder/../file.txt")).isEqualTo("file.txt");
+    }
+
+    @Test
+    void normalize_escapingName_returnsNull() {
+        assertThat(DestinationResolver.normalize("../file.txt")).isNull();
+        assertThat(DestinationResolver.normalize("folder/../../file.txt")).isNull();
+    }
+
+    @Test
+    void safeEntryName_escapingName_isCleaned() {
+        assertThat(DestinationResolver.safeEntryName("../../tmp/unsafe.txt")).isEqualTo("tmp/unsafe.txt");
+        assertThat(DestinationResolver.safeEntryName("folder/../../../tmp/unsafe.txt")).isEqualTo("tmp/unsafe.txt");
+    }
+
+    @Test
+    void resolve_returnsFileInsideCanonicalDestination() throws Exception {
+        DestinationResolver resolver = new DestinationResolver(ARCHIVE_EXTRACT_DIR);
+
+        assertThat(resolver.resolve("../../folder/file.txt"))
+                .isEqualTo(new File(ARCHIVE_EXTRACT_DIR.getCanonicalFile(), "folder/file.txt"));
+    }
+
+    @Test
+    void resolve_symlinkedParent_isAllowedByDefault() throws Exception {
+        createLinkToCreateDir();
+
+        DestinationResolver resolver = new DestinationResolver(ARCHIVE_EXTRACT_DIR);
+
+        assertThat(resolver.resolve("link/file.txt")).hasName("file.txt");
+    }
+
+    @Test
+    void resolve_symlinkedParent_inStrictMode_throwsException() throws Exception {
+        createLinkToCreateDir();
+
+        DestinationResolver resolver = new DestinationResolver(ARCHIVE_EXTRACT_DIR, true);
+
+        assertThat(resolver.resolve("folder/file.txt")).hasName("file.txt");
+        assertThrows(FileSystemException.class, () -> resolver.resolve("link/file.txt"));
+        assertThrows(FileSystemException.class, () -> resolver.resolve("link"));
+    }
+
+    private static void createLinkToCreateDir() throws IOException {
+        Files.createSymbolicLink(
+                new File(ARCHIVE_EXTRACT_DIR, "link").toPath(), ARCHIVE_CREATE_DIR.toPath().toAbsolutePath());
+    }
+}
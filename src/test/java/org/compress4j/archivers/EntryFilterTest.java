@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+
+class EntryFilterTest {
+
+    @Test
+    void glob_singleStar_matchesWithinDirectory() {
+        EntryFilter filter = EntryFilter.glob("*.txt");
+
+        assertThat(filter.accept(entry("file.txt"))).isTrue();
+        assertThat(filter.accept(entry("folder/file.txt"))).isFalse();
+    }
+
+    @Test
+    void glob_doubleStar_matchesAcrossDirectories() {
+        EntryFilter filter = EntryFilter.glob("**/*.txt");
+
+        assertThat(filter.accept(entry("file.txt"))).isTrue();
+        assertThat(filter.accept(entry("folder/subfolder/file.txt"))).isTrue();
+        assertThat(filter.accept(entry("folder/file.md"))).isFalse();
+    }
+
+    @Test
+    void glob_groupsAndClasses_match() {
+        EntryFilter filter = EntryFilter.glob("folder/{a,b}[0-9].?");
+
+        assertThat(filter.accept(entry("folder/a1.c"))).isTrue();
+        assertThat(filter.accept(entry("folder/b9.h"))).isTrue();
+        assertThat(filter.accept(entry("folder/c1.c"))).isFalse();
+        assertThat(filter.accept(entry("folder/a1.cc"))).isFalse();
+    }
+
+    @Test
+    void glob_negatedClass_match() {
+        EntryFilter filter = EntryFilter.glob("[!.]*");
+
+        assertThat(filter.accept(entry("file"))).isTrue();
+        assertThat(filter.accept(entry(".hidden"))).isFalse();
+    }
+
+    @Test
+    void glob_negatedClass_doesNotMatchDirectorySeparator() {
+        EntryFilter filter = EntryFilter.glob("*/[!a]*");
+
+        assertThat(filter.accept(entry("folder/file"))).isTrue();
+        assertThat(filter.accept(entry("folder/afile"))).isFalse();
+        assertThat(EntryFilter.glob("a[!x]b").accept(entry("a/b"))).isFalse();
+    }
+
+    @Test
+    void glob_regexCharacters_areMatchedLiterally() {
+        EntryFilter filter = EntryFilter.glob("a+b(1).txt");
+
+        assertThat(filter.accept(entry("a+b(1).txt"))).isTrue();
+        assertThat(filter.accept(entry("aab(1)xtxt"))).isFalse();
+    }
+
+    @Test
+    void glob_ampersandsInClass_areMatchedLiterally() {
+        EntryFilter filter = EntryFilter.glob("[a&&b].txt");
+
+        assertThat(filter.accept(entry("a.txt"))).isTrue();
+        assertThat(filter.accept(entry("b.txt"))).isTrue();
+        assertThat(filter.accept(entry("&.txt"))).isTrue();
+        assertThat(filter.accept(entry("c.txt"))).isFalse();
+    }
+
+    @Test
+    void glob_directoryEntry_matchesWithoutTrailingSlash() {
+        assertThat(EntryFilter.glob("folder").accept(entry("folder/"))).isTrue();
+        assertThat(EntryFilter.glob("folder/*").accept(entry("./folder/file.txt"))).isTrue();
+    }
+
+    @Test
+    void glob_malformed_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> EntryFilter.glob("{a,b"));
+        assertThrows(IllegalArgumentException.class, () -> EntryFilter.glob("[ab"));
+    }
+
+    @Test
+    void names_matchesNormalizedNames() {
+        EntryFilter filter = EntryFilter.names("folder/file.txt", "other/");
+
+        assertThat(filter.accept(entry("folder/file.txt"))).isTrue();
+        assertThat(filter.accept(entry("./folder//file.txt"))).isTrue();
+        assertThat(filter.accept(entry("other"))).isTrue();
+        assertThat(filter.accept(entry("folder/other.txt"))).isFalse();
+    }
+
+    @Test
+    void combinators_behaveCorrectly() {
+        EntryFilter txt = EntryFilter.glob("**/*.txt");
+        EntryFilter folder = EntryFilter.glob("folder/**");
+
+        assertThat(txt.and(folder).accept(entry("folder/file.txt"))).isTrue();
+        assertThat(txt.and(folder).accept(entry("file.txt"))).isFalse();
+        assertThat(txt.or(folder).accept(entry("folder/file.md"))).isTrue();
+        assertThat(txt.negate().accept(entry("file.md"))).isTrue();
+    }
+
+    private static ArchiveEntry entry(String name) {
+        return new ArchiveEntry() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public long getSize() {
+                return 0;
+            }
+
+            @Override
+            public Date getLastModifiedDate() {
+                return new Date();
+            }
+
+            @Override
+            public boolean isDirectory() {
+                return name.endsWith("/");
+            }
+
+            @Override
+            public File extract(File destination) {
+                throw new IllegalStateException();
+            }
+        };
+    }
+}
@@ -21,6 +21,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -80,6 +82,12 @@ public class ExtractPermissionsTest {
             assertPosixPermissions();
         }
 
+        @Test
+        public void extract_withWriterThreads_restoresUnixPermissions() throws Exception {
+            archiver.extract(archive, ARCHIVE_EXTRACT_DIR, ExtractOptions.builder().setWriterThreads(4).build());
+            assertPosixPermissions();
+        }
+
         @Test
         public void extract_stream_restoresUnixPermissions() throws Exception {
             extractWithStream();
@@ -92,6 +100,34 @@ public class ExtractPermissionsTest {
             assertJavaPermissions();
         }
 
+        @Test
+        public void extract_restoresModificationTimes() throws Exception {
+            Map<String, Long> expected = new HashMap<>();
+            try (ArchiveStream stream = archiver.stream(archive)) {
+                ArchiveEntry entry;
+                while ((entry = stream.getNextEntry()) != null) {
+                    expected.put(entry.getName(), entry.getLastModifiedDate().getTime());
+                }
+            }
+
+            archiver.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+            assertThat(expected).isNotEmpty();
+            for (Map.Entry<String, Long> entry : expected.entrySet()) {
+                File file = getExtractedFile(entry.getKey());
+                assertThat(file.lastModified()).as(entry.getKey()).isEqualTo(entry.getValue());
+            }
+        }
+
+        @Test
+        public void extract_withoutRestoreTimes_keepsCurrentModificationTime() throws Exception {
+            long start = System.currentTimeMillis() - 1000;
+
+            archiver.extract(archive, ARCHIVE_EXTRACT_DIR, ExtractOptions.builder().setRestoreTimes(false).build());
+
+            assertThat(getExtractedFile("permissions/readonly_file.txt").lastModified()).isGreaterThanOrEqualTo(start);
+        }
+
         private void extractWithStream() throws IOException {
             try (ArchiveStream stream = archiver.stream(archive)) {
                 ArchiveEntry entry;
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ExtractionCacheTest extends AbstractResourceTest {
+
+    private final Path cacheDir = new File(ARCHIVE_CREATE_DIR, "cache").toPath();
+
+    @Test
+    void builder_invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> ExtractionCache.builder().setMaxSize(-1));
+        assertThrows(IllegalStateException.class, () -> ExtractionCache.builder().build());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.tar.gz", "archive.zip", "archive.jar", "archive.cpio"})
+    void extract_secondRequest_isServedFromCache(String name) throws Exception {
+        File archive = new File(RESOURCES_DIR, name);
+        ExtractionCache cache = ExtractionCache.builder().setDirectory(cacheDir).build();
+
+        cache.extract(archive, ARCHIVE_EXTRACT_DIR);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isZero();
+
+        Path cached = cache.get(archive);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertDirectoryStructureEquals(ARCHIVE_DIR, cached.toFile());
+    }
+
+    @Test
+    void extract_hardLinks_shareCachedFiles() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.tar");
+        ExtractionCache cache = ExtractionCache.builder().setDirectory(cacheDir).build();
+
+        cache.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        Path cached = cache.get(archive).resolve("file.txt");
+        assertThat(Files.isSameFile(cached, ARCHIVE_EXTRACT_DIR.toPath().resolve("file.txt"))).isTrue();
+    }
+
+    @Test
+    void extract_withoutHardLinks_copiesCachedFiles() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.tar");
+        ExtractionCache cache = ExtractionCache.builder().setDirectory(cacheDir).setHardLinks(false).build();
+
+        cache.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        Path cached = cache.get(archive).resolve("file.txt");
+        assertThat(Files.isSameFile(cached, ARCHIVE_EXTRACT_DIR.toPath().resolve("file.txt"))).isFalse();
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+    }
+
+    @Test
+    void get_maxSizeExceeded_evictsLeastRecentlyUsed() throws Exception {
+        File tar = new File(RESOURCES_DIR, "archive.tar");
+        File zip = new File(RESOURCES_DIR, "archive.zip");
+        File cpio = new File(RESOURCES_DIR, "archive.cpio");
+        ExtractionCache cache = ExtractionCache.builder().setDirectory(cacheDir).build();
+        cache.get(tar);
+        long archiveSize = cache.getSize();
+
+        cache = ExtractionCache.builder().setDirectory(cacheDir).setMaxSize(2 * archiveSize).build();
+        Path tarDir = cache.get(tar);
+        Path zipDir = cache.get(zip);
+        cache.get(tar);
+        Path cpioDir = cache.get(cpio);
+
+        assertThat(cache.getSize()).isEqualTo(2 * archiveSize);
+        assertThat(tarDir).isDirectory();
+        assertThat(zipDir).doesNotExist();
+        assertThat(cpioDir).isDirectory();
+    }
+
+    @Test
+    void build_existingDirectory_registersCachedArchives() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.zip");
+        ExtractionCache first = ExtractionCache.builder().setDirectory(cacheDir).build();
+        Path cached = first.get(archive);
+
+        ExtractionCache second = ExtractionCache.builder().setDirectory(cacheDir).build();
+
+        assertThat(second.getSize()).isEqualTo(first.getSize());
+        assertThat(second.get(archive)).isEqualTo(cached);
+        assertThat(second.getHits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ExtractionLimitTest extends AbstractResourceTest {
+
+    @Test
+    void builder_invalidLimits_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> ExtractOptions.builder().setMaxTotalSize(-1));
+        assertThrows(IllegalArgumentException.class, () -> ExtractOptions.builder().setMaxEntries(-1));
+        assertThrows(IllegalArgumentException.class, () -> ExtractOptions.builder().setMaxEntrySize(-1));
+        assertThrows(IllegalArgumentException.class, () -> ExtractOptions.builder().setMaxCompressionRatio(0.5));
+        assertThrows(IllegalArgumentException.class, () -> ExtractOptions.builder().setMaxCompressionRatio(Double.NaN));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.tar", "archive.tar.gz", "archive.zip", "archive.cpio"})
+    void extract_tooManyEntries_fails(String name) throws Exception {
+        ExtractOptions options = ExtractOptions.builder().setMaxEntries(5).build();
+
+        ExtractionLimitException e = assertThrows(ExtractionLimitException.class, () -> extract(name, options));
+
+        assertThat(e.getLimit()).isEqualTo(ExtractionLimitException.Limit.ENTRIES);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.tar", "archive.tar.gz", "archive.zip", "archive.cpio"})
+    void extract_entryTooLarge_fails(String name) throws Exception {
+        ExtractOptions options = ExtractOptions.builder().setMaxEntrySize(20).build();
+
+        ExtractionLimitException e = assertThrows(ExtractionLimitException.class, () -> extract(name, options));
+
+        assertThat(e.getLimit()).isEqualTo(ExtractionLimitException.Limit.ENTRY_SIZE);
+        assertThat(e.getEntryName()).isNotEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void extract_totalSizeExceeded_fails(int writerThreads) throws Exception {
+        ExtractOptions options = ExtractOptions.builder()
+                .setMaxTotalSize(60)
+                .setWriterThreads(writerThreads)
+                .build();
+
+        ExtractionLimitException e =
+                assertThrows(ExtractionLimitException.class, () -> extract("archive.tar.gz", options));
+
+        assertThat(e.getLimit()).isEqualTo(ExtractionLimitException.Limit.TOTAL_SIZE);
+    }
+
+    @Test
+    void extract_withinLimits_extractsArchive() throws Exception {
+        ExtractOptions options = ExtractOptions.builder()
+                .setMaxTotalSize(10_000)
+                .setMaxEntries(20)
+                .setMaxCompressionRatio(2)
+                .build();
+
+        extract("archive.tar.gz", options);
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+    }
+
+    @Test
+    void extract_compressionRatioExceeded_failsEarly() throws Exception {
+        File bomb = createBomb();
+        Archiver archiver = ArchiverFactory.createArchiver(bomb);
+        ExtractOptions options = ExtractOptions.builder().setMaxCompressionRatio(100).build();
+
+        ExtractionLimitException e = assertThrows(
+                ExtractionLimitException.class, () -> archiver.extract(bomb, ARCHIVE_EXTRACT_DIR, options));
+        assertThat(e.getLimit()).isEqualTo(ExtractionLimitException.Limit.COMPRESSION_RATIO);
+        assertThat(new File(ARCHIVE_EXTRACT_DIR, "zeros")).hasSizeLessThan(32 * 1024 * 1024);
+
+        try (InputStream in = new FileInputStream(bomb)) {
+            e = assertThrows(ExtractionLimitException.class, () -> archiver.extractToMemory(in, options));
+        }
+        assertThat(e.getLimit()).isEqualTo(ExtractionLimitException.Limit.COMPRESSION_RATIO);
+    }
+
+    private static void extract(String name, ExtractOptions options) throws Exception {
+        File archive = new File(RESOURCES_DIR, name);
+        ArchiverFactory.createArchiver(archive).extract(archive, ARCHIVE_EXTRACT_DIR, options);
+    }
+
+    /** Creates a gzip compressed tar archive of 64 MB of zeros, which compresses by a factor of about 1000. */
+    private static File createBomb() throws Exception {
+        File source = new File(ARCHIVE_CREATE_DIR, "zeros");
+        try (OutputStream out = new FileOutputStream(source)) {
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 64; i++) {
+                out.write(zeros);
+            }
+        }
+        try {
+            return ArchiverFactory.createArchiver(ArchiveFormat.TAR, CompressionType.GZIP)
+                    .create("bomb", ARCHIVE_CREATE_DIR, source);
+        } finally {
+            source.delete();
+        }
+    }
+}
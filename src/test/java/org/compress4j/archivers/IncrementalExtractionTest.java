@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class IncrementalExtractionTest extends AbstractResourceTest {
+
+    private static final ExtractOptions INCREMENTAL = ExtractOptions.builder().setIncremental(true).build();
+
+    @Test
+    void extract_existingFiles_failsUnlessIncremental() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.tar");
+        Archiver archiver = ArchiverFactory.createArchiver(archive);
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        assertThrows(FileAlreadyExistsException.class, () -> archiver.extract(archive, ARCHIVE_EXTRACT_DIR));
+
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR, INCREMENTAL);
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.zip", "archive.tar.gz"})
+    void extract_incremental_replacesChangedAndSkipsUnchanged(String name) throws Exception {
+        File archive = new File(RESOURCES_DIR, name);
+        Archiver archiver = ArchiverFactory.createArchiver(archive);
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        Path changed = ARCHIVE_EXTRACT_DIR.toPath().resolve("file.txt");
+        Path unchanged = ARCHIVE_EXTRACT_DIR.toPath().resolve("folder/folder_file.txt");
+        Files.writeString(changed, "changed contents of another size");
+        Object fileKey = Files.readAttributes(unchanged, "basic:fileKey").get("fileKey");
+
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR, INCREMENTAL);
+
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertThat(Files.readAttributes(unchanged, "basic:fileKey")).containsEntry("fileKey", fileKey);
+    }
+
+    @Test
+    void extract_compareCrc_replacesFileWithSameSizeAndTime() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.zip");
+        Archiver archiver = ArchiverFactory.createArchiver(archive);
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        Path file = ARCHIVE_EXTRACT_DIR.toPath().resolve("file.txt");
+        FileTime lastModified = Files.getLastModifiedTime(file);
+        byte[] contents = Files.readAllBytes(file);
+        contents[0] ^= 1;
+        Files.write(file, contents);
+        Files.setLastModifiedTime(file, lastModified);
+
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR, INCREMENTAL);
+        assertThat(Files.readAllBytes(file)).isEqualTo(contents);
+
+        archiver.extract(
+                archive,
+                ARCHIVE_EXTRACT_DIR,
+                ExtractOptions.builder().setIncremental(true).setCompareCrc(true).build());
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+    }
+
+    @Test
+    void extract_removeStale_removesFilesNotInArchive() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.tar.gz");
+        Archiver archiver = ArchiverFactory.createArchiver(archive);
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        Path destination = ARCHIVE_EXTRACT_DIR.toPath();
+        Files.writeString(destination.resolve("stale.txt"), "stale");
+        Files.createDirectories(destination.resolve("folder/stale"));
+        Files.writeString(destination.resolve("folder/stale/file.txt"), "stale");
+
+        archiver.extract(
+                archive,
+                ARCHIVE_EXTRACT_DIR,
+                ExtractOptions.builder().setIncremental(true).setRemoveStale(true).build());
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertThat(destination.resolve("stale.txt")).doesNotExist();
+        assertThat(destination.resolve("folder/stale")).doesNotExist();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import org.junit.jupiter.api.Test;
+
+public class InflaterPoolTest {
+
+    private static final byte[] CONTENT = "inflater pool ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void inflate_returnsContent() throws IOException {
+        InflaterPool pool = new InflaterPool(1);
+
+        try (InputStream in = pool.inflate(new ByteArrayInputStream(deflate(CONTENT)))) {
+            assertThat(in.readAllBytes()).isEqualTo(CONTENT);
+        }
+    }
+
+    @Test
+    void close_returnsInflaterToPool() throws IOException {
+        InflaterPool pool = new InflaterPool(1);
+
+        for (int i = 0; i < 3; i++) {
+            try (InputStream in = pool.inflate(new ByteArrayInputStream(deflate(CONTENT)))) {
+                assertThat(pool.getIdleCount()).isZero();
+                assertThat(in.readAllBytes()).isEqualTo(CONTENT);
+            }
+            assertThat(pool.getIdleCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void close_beyondCapacity_endsInflater() throws IOException {
+        InflaterPool pool = new InflaterPool(1);
+
+        InputStream first = pool.inflate(new ByteArrayInputStream(deflate(CONTENT)));
+        InputStream second = pool.inflate(new ByteArrayInputStream(deflate(CONTENT)));
+        first.close();
+        second.close();
+        second.close();
+
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class MappedArchiveTest extends AbstractResourceTest {
+
+    private final File archive = new File(RESOURCES_DIR, "archive.zip");
+
+    @Test
+    void newStream_returnsRegionOfFile() throws Exception {
+        byte[] content = Files.readAllBytes(archive.toPath());
+        MappedArchive mapping = MappedArchive.open(archive);
+
+        try (SeekableByteChannel ignored = mapping.newChannel();
+                InputStream in = mapping.newStream(10, 100)) {
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 10, 110));
+        }
+    }
+
+    @Test
+    void newStream_beyondEndOfFile_throwsException() throws Exception {
+        MappedArchive mapping = MappedArchive.open(archive);
+
+        try (SeekableByteChannel ignored = mapping.newChannel()) {
+            assertThrows(EOFException.class, () -> mapping.newStream(archive.length() - 10, 11));
+        }
+    }
+
+    @Test
+    void newStream_closed_throwsException() throws Exception {
+        MappedArchive mapping = MappedArchive.open(archive);
+
+        try (SeekableByteChannel ignored = mapping.newChannel()) {
+            InputStream in = mapping.newStream(0, 100);
+            in.close();
+
+            assertThrows(IOException.class, in::read);
+        }
+    }
+
+    @Test
+    void newChannel_readsFromPosition() throws Exception {
+        byte[] content = Files.readAllBytes(archive.toPath());
+
+        try (MappedArchive.MappedChannel channel = MappedArchive.open(archive).newChannel()) {
+            assertThat(channel.size()).isEqualTo(content.length);
+
+            channel.position(content.length - 22);
+            assertThat(Channels.newInputStream(channel).readAllBytes())
+                    .isEqualTo(Arrays.copyOfRange(content, content.length - 22, content.length));
+
+            channel.release();
+            channel.position(0);
+            assertThat(Channels.newInputStream(channel).readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void extract_memoryMapped_extractsArchive() throws Exception {
+        ExtractOptions options = ExtractOptions.builder().setMemoryMapped(true).build();
+
+        ArchiverFactory.createArchiver(archive).extract(archive, ARCHIVE_EXTRACT_DIR, options);
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+    }
+
+    @Test
+    void extract_memoryMappedLargeEntries_extractsArchive() throws Exception {
+        File source = new File(ARCHIVE_CREATE_DIR, "source");
+        assertThat(source.mkdir()).isTrue();
+        byte[] random = new byte[MappedArchive.MIN_MAPPED_SIZE * 2];
+        new Random(42).nextBytes(random);
+        Files.write(new File(source, "stored.bin").toPath(), random);
+        Files.write(new File(source, "deflated.txt").toPath(), random);
+        Archiver archiver = ArchiverFactory.createArchiver(ArchiveFormat.ZIP);
+        CreateOptions create = CreateOptions.builder()
+                .setStoredEntries(EntryFilter.glob("**/*.bin"))
+                .build();
+        File zip = archiver.create("large", ARCHIVE_CREATE_DIR, create, source);
+
+        archiver.extract(zip, ARCHIVE_EXTRACT_DIR, ExtractOptions.builder().setMemoryMapped(true).build());
+
+        assertFilesEquals(source, new File(ARCHIVE_EXTRACT_DIR, "source"));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MemoryBudgetTest extends AbstractResourceTest {
+
+    private final MemoryBudget global = MemoryBudget.getGlobal();
+
+    @AfterEach
+    void restoreGlobal() {
+        MemoryBudget.setGlobal(global);
+    }
+
+    @Test
+    void builder_invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> MemoryBudget.builder().setCapacity(0));
+        assertThrows(IllegalArgumentException.class, () -> MemoryBudget.builder().setMaxStreamMemory(0));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> MemoryBudget.builder().setCapacity(1024).setMaxStreamMemory(2048).build());
+    }
+
+    @Test
+    void builder_maxStreamMemory_defaultsToCapacity() {
+        MemoryBudget budget = MemoryBudget.builder().setCapacity(1024).build();
+
+        assertThat(budget.getMaxStreamMemory()).isEqualTo(1024);
+    }
+
+    @Test
+    void reserve_closed_releasesBytesOnce() throws Exception {
+        MemoryBudget budget = MemoryBudget.builder().setCapacity(1024).build();
+
+        MemoryBudget.Reservation reservation = budget.reserve(4096);
+        assertThat(reservation.getBytes()).isEqualTo(1024);
+        assertThat(budget.getReserved()).isEqualTo(1024);
+
+        reservation.close();
+        reservation.close();
+        assertThat(budget.getReserved()).isZero();
+    }
+
+    @Test
+    void reserve_exhausted_waitsForRelease() throws Exception {
+        MemoryBudget budget = MemoryBudget.builder().setCapacity(1024).build();
+        MemoryBudget.Reservation first = budget.reserve(768);
+
+        CompletableFuture<MemoryBudget.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.reserve(512);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Thread.sleep(200);
+        assertThat(second).isNotDone();
+
+        first.close();
+        try (MemoryBudget.Reservation reservation = second.get(5, TimeUnit.SECONDS)) {
+            assertThat(reservation.getBytes()).isEqualTo(512);
+        }
+        assertThat(budget.getReserved()).isZero();
+    }
+
+    @Test
+    void decompressingStream_holdsReservationUntilClosed() throws Exception {
+        MemoryBudget.setGlobal(MemoryBudget.builder().setCapacity(64 * 1024 * 1024).build());
+        Compressor compressor = CompressorFactory.createCompressor(CompressionType.BZIP2);
+
+        try (InputStream in =
+                compressor.decompressingStream(new FileInputStream(new File(RESOURCES_DIR, "compress.txt.bz2")))) {
+            assertThat(MemoryBudget.getGlobal().getReserved()).isPositive();
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        assertThat(MemoryBudget.getGlobal().getReserved()).isZero();
+    }
+
+    @Test
+    void extract_smallBudget_extractsArchive() throws Exception {
+        MemoryBudget.setGlobal(MemoryBudget.builder().setCapacity(1024).build());
+        File archive = new File(RESOURCES_DIR, "archive.tar.bz2");
+
+        ArchiverFactory.createArchiver(archive)
+                .extract(archive, ARCHIVE_EXTRACT_DIR, ExtractOptions.builder().setWriterThreads(4).build());
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertThat(MemoryBudget.getGlobal().getReserved()).isZero();
+    }
+
+    @Test
+    void estimate_xz_readsDictionarySizeFromBlockHeader() throws Exception {
+        byte[] header = new byte[24];
+        header[12] = 2; // block header of 12 bytes
+        header[14] = 0x21; // LZMA2
+        header[15] = 1;
+        header[16] = 22; // 8 MiB dictionary
+
+        long estimate = DecoderMemory.estimate(
+                CompressorStreamFactory.XZ, new ByteArrayInputStream(header), 256 * 1024 * 1024);
+
+        assertThat(estimate).isBetween(8L * 1024 * 1024, 9L * 1024 * 1024);
+    }
+}
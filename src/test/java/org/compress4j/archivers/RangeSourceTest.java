@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class RangeSourceTest extends AbstractResourceTest {
+
+    @Test
+    void reader_zip_listsEntriesWithSingleRequest() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.zip");
+        CountingSource source = new CountingSource(archive.toPath());
+
+        try (ArchiveReader reader = ArchiverFactory.createArchiver(archive).reader(source)) {
+            assertThat(reader.getEntries()).hasSize(12);
+            assertThat(reader.getEntry("folder/subfolder/subfolder_file.txt")).isNotNull();
+        }
+        assertThat(source.requests).isEqualTo(1);
+        assertThat(source.bytes).isEqualTo(archive.length());
+    }
+
+    @Test
+    void reader_zip_prefetchesCentralDirectoryBeyondTail() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.zip");
+        CountingSource source = new CountingSource(archive.toPath());
+        RangeReadOptions options = RangeReadOptions.builder().setBlockSize(256).setTailPrefetch(64).build();
+
+        try (ArchiveReader reader = ArchiverFactory.createArchiver(archive).reader(source, options)) {
+            assertThat(reader.getEntries()).hasSize(12);
+        }
+        assertThat(source.requests).isEqualTo(2);
+        assertThat(source.bytes).isLessThan(archive.length());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.zip", "archive.jar", "archive.tar"})
+    void openStream_readsEntryContents(String name) throws Exception {
+        File archive = new File(RESOURCES_DIR, name);
+        RangeReadOptions options = RangeReadOptions.builder().setBlockSize(512).setTailPrefetch(0).build();
+        Path expected = new File(ARCHIVE_DIR, "folder/subfolder/subfolder_file.txt").toPath();
+
+        Archiver archiver = ArchiverFactory.createArchiver(archive);
+
+        try (ArchiveReader reader = archiver.reader(RangeSource.of(archive.toPath()), options);
+                InputStream in = reader.openStream(reader.getEntry("folder/subfolder/subfolder_file.txt"))) {
+            assertThat(in.readAllBytes()).isEqualTo(Files.readAllBytes(expected));
+        }
+    }
+
+    @Test
+    void read_missingBlocks_areFetchedWithSingleRequestAndCached() throws Exception {
+        File archive = new File(RESOURCES_DIR, "archive.tar");
+        CountingSource source = new CountingSource(archive.toPath());
+        RangeReadOptions options = RangeReadOptions.builder().setBlockSize(16).setTailPrefetch(0).build();
+
+        try (CachingRangeChannel channel = new CachingRangeChannel(source, options)) {
+            ByteBuffer first = ByteBuffer.allocate(100);
+            channel.position(10).read(first);
+            ByteBuffer second = ByteBuffer.allocate(50);
+            channel.position(20).read(second);
+
+            assertThat(source.requests).isEqualTo(1);
+            assertThat(source.bytes).isEqualTo(112);
+            assertThat(second.array()).isEqualTo(Arrays.copyOfRange(first.array(), 10, 60));
+        }
+    }
+
+    @Test
+    void reader_unsupportedOrCorrupt_closesSource() throws Exception {
+        File tar = new File(RESOURCES_DIR, "archive.tar");
+
+        CountingSource unsupported = new CountingSource(tar.toPath());
+        Archiver cpio = ArchiverFactory.createArchiver(ArchiveFormat.CPIO);
+        assertThrows(UnsupportedOperationException.class, () -> cpio.reader(unsupported));
+        assertThat(unsupported.closed).isTrue();
+
+        CountingSource corrupt = new CountingSource(tar.toPath());
+        Archiver zip = ArchiverFactory.createArchiver(ArchiveFormat.ZIP);
+        assertThrows(IOException.class, () -> zip.reader(corrupt));
+        assertThat(corrupt.closed).isTrue();
+    }
+
+    @Test
+    void builder_invalidBlockSize_fails() {
+        RangeReadOptions.Builder builder = RangeReadOptions.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.setBlockSize(0));
+    }
+
+    /** Stands in for remote storage, counting the ranged requests made to a local file. */
+    private static final class CountingSource implements RangeSource {
+
+        private final RangeSource delegate;
+        private int requests;
+        private long bytes;
+        private boolean closed;
+
+        CountingSource(Path file) throws IOException {
+            this.delegate = RangeSource.of(file);
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public int read(long position, ByteBuffer dst) throws IOException {
+            requests++;
+            int n = delegate.read(position, dst);
+            bytes += Math.max(n, 0);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.Test;
+
+public class SeekableTarGzTest extends AbstractResourceTest {
+
+    private static final CreateOptions SEEKABLE =
+            CreateOptions.builder().setSeekable(true).setChunkSize(64).build();
+
+    @Test
+    void create_seekable_isReadableAsOrdinaryTarGz() throws Exception {
+        File archive = createSeekableArchive();
+
+        List<String> names = new ArrayList<>();
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new GZIPInputStream(new FileInputStream(archive)))) {
+            TarArchiveEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+
+        assertThat(names).hasSize(14).endsWith(SeekableTarGzOutputStream.TOC_NAME);
+    }
+
+    @Test
+    void create_seekable_extractsAllEntries() throws Exception {
+        File archive = createSeekableArchive();
+
+        ArchiverFactory.createArchiver(archive).extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        assertFilesEquals(ARCHIVE_DIR, new File(ARCHIVE_EXTRACT_DIR, "archive"));
+        assertThat(new File(ARCHIVE_EXTRACT_DIR, SeekableTarGzOutputStream.TOC_NAME)).doesNotExist();
+    }
+
+    @Test
+    void stream_seekable_skipsTableOfContents() throws Exception {
+        File archive = createSeekableArchive();
+
+        List<String> names = streamNames(ArchiverFactory.createArchiver(archive), archive);
+
+        assertThat(names).hasSize(13).doesNotContain(SeekableTarGzOutputStream.TOC_NAME);
+    }
+
+    @Test
+    void list_seekable_matchesStreamWhateverTheIndex() throws Exception {
+        File archive = createSeekableArchive();
+        Archiver archiver = ArchiverFactory.createArchiver(archive);
+        List<String> streamed = streamNames(archiver, archive);
+
+        assertThat(names(archiver.list(archive))).isEqualTo(streamed);
+
+        ArchiveIndex.build(archive).write(ArchiveIndex.sidecarFor(archive));
+        assertThat(names(archiver.list(archive))).isEqualTo(streamed);
+    }
+
+    @Test
+    void reader_seekable_readsEntriesThroughTableOfContents() throws Exception {
+        File archive = createSeekableArchive();
+
+        try (ArchiveReader reader = ArchiverFactory.createArchiver(archive).reader(archive)) {
+            assertThat(reader.getEntries()).hasSize(13);
+            assertThat(reader.getEntry(SeekableTarGzOutputStream.TOC_NAME)).isNull();
+
+            for (ArchiveEntry entry : reader.getEntries()) {
+                if (!entry.isDirectory()) {
+                    byte[] expected = Files.readAllBytes(new File(RESOURCES_DIR, entry.getName()).toPath());
+                    try (InputStream in = reader.openStream(entry)) {
+                        assertThat(in.readAllBytes()).isEqualTo(expected);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void create_seekableZip_throwsException() {
+        Archiver archiver = ArchiverFactory.createArchiver(ArchiveFormat.ZIP);
+
+        assertThrows(
+                UnsupportedOperationException.class,
+                () -> archiver.create("archive", ARCHIVE_CREATE_DIR, SEEKABLE, ARCHIVE_DIR));
+    }
+
+    @Test
+    void setChunkSize_notPositive_throwsException() {
+        CreateOptions.Builder builder = CreateOptions.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.setChunkSize(0));
+    }
+
+    private static List<String> names(List<ArchiveEntry> entries) {
+        List<String> names = new ArrayList<>();
+        for (ArchiveEntry entry : entries) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    private static List<String> streamNames(Archiver archiver, File archive) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ArchiveStream stream = archiver.stream(archive)) {
+            ArchiveEntry entry;
+            while ((entry = stream.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
+    private static File createSeekableArchive() throws Exception {
+        Archiver archiver = ArchiverFactory.createArchiver(ArchiveFormat.TAR, CompressionType.GZIP);
+        return archiver.create("seekable", ARCHIVE_CREATE_DIR, SEEKABLE, ARCHIVE_DIR);
+    }
+}
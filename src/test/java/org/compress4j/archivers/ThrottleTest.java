@@ -0,0 +1,166 @@
+/*
+ * Copyright 2024 The Compress4J Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.compress4j.archivers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ThrottleTest extends AbstractResourceTest {
+
+    @Test
+    void of_invalidRate_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> Throttle.of(0));
+    }
+
+    @Test
+    void withWeight_invalidWeight_throwsException() {
+        Throttle throttle = Throttle.of(1024);
+        assertThrows(IllegalArgumentException.class, () -> throttle.withWeight(0));
+    }
+
+    @Test
+    void withWeight_sharesBandwidth() {
+        Throttle throttle = Throttle.of(1024).withWeight(3);
+
+        assertThat(throttle.getBytesPerSecond()).isEqualTo(1024);
+        assertThat(throttle.getWeight()).isEqualTo(3);
+        assertThat(Throttle.UNLIMITED.isUnlimited()).isTrue();
+    }
+
+    @Test
+    void wrap_inputStream_limitsRate() throws Exception {
+        Throttle throttle = Throttle.of(1_000_000);
+
+        long start = System.nanoTime();
+        try (InputStream in = throttle.wrap(new ByteArrayInputStream(new byte[500_000]))) {
+            assertThat(in.transferTo(OutputStream.nullOutputStream())).isEqualTo(500_000);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // the bucket starts full, everything after the first 50 milliseconds worth of bytes waits for tokens
+        assertThat(elapsed).isBetween(400L, 2000L);
+    }
+
+    @Test
+    void wrap_outputStream_splitsLargeWritesIntoBursts() throws Exception {
+        Throttle throttle = Throttle.of(1_000_000);
+        AtomicLong largestWrite = new AtomicLong();
+        OutputStream recorder = new OutputStream() {
+            @Override
+            public void write(int b) {
+                largestWrite.accumulateAndGet(1, Math::max);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                largestWrite.accumulateAndGet(len, Math::max);
+            }
+        };
+
+        long start = System.nanoTime();
+        // flushes of the buffer write 256 KiB at once
+        try (OutputStream out = new BufferedOutputStream(throttle.wrap(recorder), EntryExtractor.BUFFER_SIZE)) {
+            for (int i = 0; i < 4; i++) {
+                out.write(new byte[EntryExtractor.BUFFER_SIZE]);
+            }
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // at most 50 milliseconds worth of bytes pass at once
+        assertThat(largestWrite.get()).isPositive().isLessThanOrEqualTo(50_000);
+        assertThat(elapsed).isBetween(900L, 3000L);
+    }
+
+    @Test
+    void withWeight_concurrentShares_divideBandwidthByWeight() throws Exception {
+        Throttle throttle = Throttle.of(1_000_000);
+        AtomicLong light = new AtomicLong();
+        AtomicLong heavy = new AtomicLong();
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> lightTransfer = executor.submit(() -> transfer(throttle.withWeight(1), light, stop));
+            Future<?> heavyTransfer = executor.submit(() -> transfer(throttle.withWeight(3), heavy, stop));
+
+            // measure once both shares are competing
+            Thread.sleep(250);
+            long lightStart = light.get();
+            long heavyStart = heavy.get();
+            Thread.sleep(1000);
+            long lightBytes = light.get() - lightStart;
+            long heavyBytes = heavy.get() - heavyStart;
+
+            stop.set(true);
+            lightTransfer.get(5, TimeUnit.SECONDS);
+            heavyTransfer.get(5, TimeUnit.SECONDS);
+
+            assertThat(lightBytes + heavyBytes).isBetween(800_000L, 1_200_000L);
+            assertThat((double) heavyBytes / lightBytes).isBetween(2.5, 3.5);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Void transfer(Throttle throttle, AtomicLong bytes, AtomicBoolean stop) throws Exception {
+        while (!stop.get()) {
+            throttle.acquire(4096);
+            bytes.addAndGet(4096);
+        }
+        return null;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"archive.tar", "archive.tar.gz", "archive.zip", "archive.cpio"})
+    void extract_throttled_extractsArchive(String name) throws Exception {
+        File archive = new File(RESOURCES_DIR, name);
+        ExtractOptions options = ExtractOptions.builder()
+                .setReadThrottle(Throttle.of(1024 * 1024))
+                .setWriteThrottle(Throttle.of(1024 * 1024))
+                .build();
+
+        ArchiverFactory.createArchiver(archive).extract(archive, ARCHIVE_EXTRACT_DIR, options);
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+        assertFilesEquals(ARCHIVE_DIR, ARCHIVE_EXTRACT_DIR);
+    }
+
+    @Test
+    void create_throttled_createsArchive() throws Exception {
+        Archiver archiver = ArchiverFactory.createArchiver(ArchiveFormat.TAR, CompressionType.GZIP);
+        CreateOptions options =
+                CreateOptions.builder().setWriteThrottle(Throttle.of(1024 * 1024)).build();
+
+        File archive = archiver.create("throttled", ARCHIVE_CREATE_DIR, options, ARCHIVE_DIR);
+        archiver.extract(archive, ARCHIVE_EXTRACT_DIR);
+
+        assertDirectoryStructureEquals(ARCHIVE_DIR, new File(ARCHIVE_EXTRACT_DIR, "archive"));
+    }
+}